@@ -17,6 +17,18 @@ public interface GroceryAdapter {
      */
     List<GroceryList> getGroceryListNamesByUser(String token) throws InvalidParamException, ServerException;
 
+    /**
+     * Returns a single page of the GroceryList objects that correspond to the User associated with the given
+     * token, in order of list ID. Only the ID, name and template flag of each list are set.
+     * <p>
+     *
+     * @param token a string representing the user token to fetch lists for
+     * @param after the cursor of the page to fetch, as returned by the previous page, or 0 for the first page
+     * @param limit the maximum number of lists on the page
+     * @return a Page of GroceryList objects, along with the cursor of the next page
+     */
+    Page<GroceryList> getGroceryListNamesByUser(String token, long after, int limit) throws InvalidParamException, ServerException;
+
     /**
      * Returns a list of GroceryItem objects that belong to the given list
      *
@@ -26,6 +38,27 @@ public interface GroceryAdapter {
      */
     GroceryList getGroceryList(long listID, String token) throws InvalidParamException, ServerException;
 
+    /**
+     * Returns a single page of the names of the items of the given list, in list order.
+     *
+     * @param listID id of the list which holds the items you are getting
+     * @param token  token of the user who holds the list
+     * @param after  the cursor of the page to fetch, as returned by the previous page, or 0 for the first page
+     * @param limit  the maximum number of item names on the page
+     * @return a Page of item names, along with the cursor of the next page
+     */
+    Page<String> getGroceryItemNames(long listID, String token, long after, int limit) throws InvalidParamException, ServerException;
+
+    /**
+     * Returns the GroceryList objects that the User associated with the given token has access to, holding
+     * items matching a query, in order of list ID. Only the ID and name of each list are set.
+     *
+     * @param query the words to search for, each matching the start of a word in an item name
+     * @param token a string representing the user token to search lists for
+     * @return a List of the matching GroceryList objects
+     */
+    List<GroceryList> searchGroceryLists(String query, String token) throws InvalidParamException, ServerException;
+
     /**
      * Returns the username of the Owner of the grocery list.
      *
@@ -62,6 +95,28 @@ public interface GroceryAdapter {
      */
     void setGroceryItems(List<String> items, long listID, String token) throws InvalidParamException, ServerException;
 
+    /**
+     * Add grocery items to the GroceryList that corresponds to the listID given, leaving the
+     * rest of the list untouched. Items already in the list are ignored. A user token is required
+     * for authorization.
+     *
+     * @param items  a List of Strings containing the names of grocery items to add
+     * @param listID a long representing the ID of the list to change
+     * @param token  a string representing the token of the list's owner
+     */
+    void addGroceryItems(List<String> items, long listID, String token) throws InvalidParamException, ServerException;
+
+    /**
+     * Remove grocery items from the GroceryList that corresponds to the listID given, leaving the
+     * rest of the list untouched. Items not in the list are ignored. A user token is required
+     * for authorization.
+     *
+     * @param items  a List of Strings containing the names of grocery items to remove
+     * @param listID a long representing the ID of the list to change
+     * @param token  a string representing the token of the list's owner
+     */
+    void removeGroceryItems(List<String> items, long listID, String token) throws InvalidParamException, ServerException;
+
     /**
      * Returns whether the GroceryList corresponding to the listID is deleted.
      * A user token is required for authorization.
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -26,6 +27,44 @@ public class HttpUtil {
     }
 
     public static String makeRequest(OkHttpClient client, Request request, String is4xxMessage) throws ServerException, InvalidParamException {
+        return readBody(execute(client, request, is4xxMessage));
+    }
+
+    /**
+     * Make a GET request, revalidating a previously cached response with If-None-Match instead of
+     * downloading it again. If the server answers 304 Not Modified, the cached body is returned.
+     * Responses carrying an ETag are stored in the given cache, keyed by URL.
+     */
+    public static String makeConditionalRequest(OkHttpClient client, Request request, Map<HttpUrl, CachedResponse> cache,
+                                                String is4xxMessage) throws ServerException, InvalidParamException {
+        CachedResponse cached = cache.get(request.url());
+
+        if (cached != null) {
+            request = request.newBuilder()
+                    .header("If-None-Match", cached.getETag())
+                    .build();
+        }
+
+        Response response = execute(client, request, is4xxMessage);
+
+        if (response.code() == 304 && cached != null) {
+            response.close();
+            return cached.getBody();
+        }
+
+        String body = readBody(response);
+        String eTag = response.header("ETag");
+
+        if (eTag != null) {
+            cache.put(request.url(), new CachedResponse(eTag, body));
+        } else {
+            cache.remove(request.url());
+        }
+
+        return body;
+    }
+
+    private static Response execute(OkHttpClient client, Request request, String is4xxMessage) throws ServerException, InvalidParamException {
         Response response;
 
         try {
@@ -61,6 +100,10 @@ public class HttpUtil {
             }
         }
 
+        return response;
+    }
+
+    private static String readBody(Response response) {
         try {
             return Objects.requireNonNull(response.body()).string();
         } catch (IOException e) {
@@ -76,4 +119,36 @@ public class HttpUtil {
             throw new InternalException(e);
         }
     }
+
+    public static RequestBody writeListAsBody(List<?> list) {
+        try {
+            return RequestBody.create((new ObjectMapper()).writeValueAsString(list),
+                    MediaType.get("application/json; charset=utf-8"));
+        } catch (JsonProcessingException e) {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * A response body, along with the ETag the server sent with it.
+     */
+    public static class CachedResponse {
+
+        private final String eTag;
+
+        private final String body;
+
+        public CachedResponse(String eTag, String body) {
+            this.eTag = eTag;
+            this.body = body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
 }
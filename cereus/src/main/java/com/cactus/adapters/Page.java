@@ -0,0 +1,54 @@
+package com.cactus.adapters;
+
+import java.util.List;
+
+/**
+ * A single page of results fetched from the server, along with the cursor needed to fetch the page after it.
+ * Pages are fetched one at a time, so that only as much as is shown needs to be downloaded.
+ *
+ * @param <T> the type of the results
+ */
+public class Page<T> {
+
+    private final List<T> items;
+
+    private final Long next;
+
+    /**
+     * Create a Page
+     *
+     * @param items the results on this page
+     * @param next  the cursor of the next page, or null if this is the last page
+     */
+    public Page(List<T> items, Long next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    /**
+     * Returns the results on this page
+     *
+     * @return a List of the results on this page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns whether there is a page after this one
+     *
+     * @return true if there is a next page, false otherwise
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Returns the cursor to pass to fetch the next page
+     *
+     * @return the cursor of the next page, or null if this is the last page
+     */
+    public Long getNext() {
+        return next;
+    }
+}
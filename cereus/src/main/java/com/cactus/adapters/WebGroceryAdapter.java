@@ -7,15 +7,20 @@ import com.cactus.exceptions.ServerException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import okhttp3.*;
 
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static com.cactus.adapters.HttpUtil.makeConditionalRequest;
 import static com.cactus.adapters.HttpUtil.makeRequest;
+import static com.cactus.adapters.HttpUtil.writeListAsBody;
 import static com.cactus.adapters.HttpUtil.writeMapAsBody;
 
 /**
@@ -28,6 +33,11 @@ public class WebGroceryAdapter implements GroceryAdapter {
 
     private final OkHttpClient client;
 
+    /**
+     * The last response to each conditional GET, so that unchanged lists are not downloaded again
+     */
+    private final Map<HttpUrl, HttpUtil.CachedResponse> responseCache = new ConcurrentHashMap<>();
+
     @Inject
     public WebGroceryAdapter(OkHttpClient client) {
         String tempIp = "192.168.0.127"; // default to this address
@@ -75,7 +85,7 @@ public class WebGroceryAdapter implements GroceryAdapter {
                 .addHeader("Authorization", token)
                 .build();
 
-        String responseString = makeRequest(this.client, request);
+        String responseString = makeConditionalRequest(this.client, request, this.responseCache, null);
 
         Map<String,
                 Map<String,
@@ -90,6 +100,58 @@ public class WebGroceryAdapter implements GroceryAdapter {
             throw new InternalException(e);
         }
 
+        return this.parseAll(fullListNames);
+    }
+
+    /**
+     * Returns a single page of the GroceryList objects that correspond to the User associated with the given
+     * token, in order of list ID.
+     * <p>
+     * The page is fetched from the same endpoint as getGroceryListNamesByUser(), with a limit, so that a
+     * user with many lists only downloads the lists that are shown. Each page is cached separately.
+     *
+     * @param token a string representing the user token to fetch lists for
+     * @param after the cursor of the page to fetch, as returned by the previous page, or 0 for the first page
+     * @param limit the maximum number of lists on the page
+     * @return a Page of GroceryList objects, along with the cursor of the next page
+     */
+    @Override
+    public Page<GroceryList> getGroceryListNamesByUser(String token, long after, int limit) throws InvalidParamException, ServerException {
+        HttpUrl url = new HttpUrl.Builder()
+                .scheme("http")
+                .host(STATIC_IP)
+                .port(8080)
+                .addPathSegment("api")
+                .addPathSegment("v2")
+                .addPathSegment("all-lists")
+                .addQueryParameter("after", String.valueOf(after))
+                .addQueryParameter("limit", String.valueOf(limit))
+                .build();
+
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", token)
+                .build();
+
+        String responseString = makeConditionalRequest(this.client, request, this.responseCache, null);
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        try {
+            ObjectNode body = (ObjectNode) mapper.readTree(responseString);
+            JsonNode next = body.remove("next");
+
+            Map<String, Map<String, Map<Long, String>>> pageListNames = mapper.convertValue(body,
+                    new TypeReference<Map<String, Map<String, Map<Long, String>>>>() {
+                    });
+
+            return new Page<>(this.parseAll(pageListNames), next == null || next.isNull() ? null : next.asLong());
+        } catch (IOException e) {
+            throw new InternalException(e);
+        }
+    }
+
+    private List<GroceryList> parseAll(Map<String, Map<String, Map<Long, String>>> fullListNames) {
         // O(1) appending
         int size = Objects.requireNonNull(Objects.requireNonNull(fullListNames.get("lists")).get("owned")).size() +
                 Objects.requireNonNull(Objects.requireNonNull(fullListNames.get("lists")).get("shared")).size() +
@@ -148,7 +210,8 @@ public class WebGroceryAdapter implements GroceryAdapter {
                 .addHeader("Authorization", token)
                 .build();
 
-        String responseBody = makeRequest(this.client, request, "Grocery list could not be found");
+        String responseBody = makeConditionalRequest(this.client, request, this.responseCache,
+                "Grocery list could not be found");
 
         try {
             return new ObjectMapper()
@@ -158,6 +221,98 @@ public class WebGroceryAdapter implements GroceryAdapter {
         }
     }
 
+    /**
+     * Returns a single page of the names of the items of the given list, in list order.
+     * <p>
+     * Unlike getGroceryList(), only the item names on the page are downloaded, so long lists can be shown
+     * a page at a time. Each page is cached separately, and is only downloaded again once the list changes.
+     *
+     * @param listID id of the list which holds the items you are getting
+     * @param token  token of the user who holds the list
+     * @param after  the cursor of the page to fetch, as returned by the previous page, or 0 for the first page
+     * @param limit  the maximum number of item names on the page
+     * @return a Page of item names, along with the cursor of the next page
+     */
+    @Override
+    public Page<String> getGroceryItemNames(long listID, String token, long after, int limit) throws InvalidParamException, ServerException {
+        HttpUrl url = this.itemsUrl(listID).newBuilder()
+                .addQueryParameter("after", String.valueOf(after))
+                .addQueryParameter("limit", String.valueOf(limit))
+                .build();
+
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", token)
+                .build();
+
+        String responseBody = makeConditionalRequest(this.client, request, this.responseCache,
+                "Grocery list could not be found");
+
+        try {
+            Map<String, Object> page = new ObjectMapper()
+                    .readValue(responseBody, new TypeReference<Map<String, Object>>() {
+                    });
+
+            @SuppressWarnings("unchecked")
+            List<String> items = (List<String>) page.get("items");
+            Number next = (Number) page.get("next");
+
+            return new Page<>(items, next == null ? null : next.longValue());
+        } catch (JsonProcessingException e) {
+            throw new InternalException(e);
+        }
+    }
+
+    /**
+     * Returns the GroceryList objects that the User associated with the given token has access to, holding
+     * items matching a query, in order of list ID. Only the ID and name of each list are set.
+     * <p>
+     * The search runs on the server, so no list needs to be fetched with getGroceryList() to find its items.
+     *
+     * @param query the words to search for, each matching the start of a word in an item name
+     * @param token a string representing the user token to search lists for
+     * @return a List of the matching GroceryList objects
+     */
+    @Override
+    public List<GroceryList> searchGroceryLists(String query, String token) throws InvalidParamException, ServerException {
+        HttpUrl url = new HttpUrl.Builder()
+                .scheme("http")
+                .host(STATIC_IP)
+                .port(8080)
+                .addPathSegment("api")
+                .addPathSegment("lists")
+                .addPathSegment("search")
+                .addQueryParameter("q", query)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", token)
+                .build();
+
+        String responseString = makeRequest(this.client, request);
+
+        try {
+            Map<Long, String> listNames = new ObjectMapper()
+                    .readValue(responseString, new TypeReference<LinkedHashMap<Long, String>>() {
+                    });
+
+            List<GroceryList> result = new ArrayList<>(listNames.size());
+
+            for (Map.Entry<Long, String> entry : listNames.entrySet()) {
+                GroceryList list = new GroceryList();
+                list.setId(entry.getKey());
+                list.setName(entry.getValue());
+
+                result.add(list);
+            }
+
+            return result;
+        } catch (JsonProcessingException e) {
+            throw new InternalException(e);
+        }
+    }
+
     /**
      * Returns the username of the Owner of the grocery list.
      * <p>
@@ -270,6 +425,62 @@ public class WebGroceryAdapter implements GroceryAdapter {
 
     }
 
+    /**
+     * Add grocery items to the GroceryList that corresponds to the listID given. A user token is
+     * required for authorization.
+     * <p>
+     * Only the names of the added items are sent to the server, so the size of the request does not
+     * depend on the size of the list.
+     *
+     * @param items  a List of Strings containing the names of grocery items to add
+     * @param listID a long representing the ID of the list to change
+     * @param token  a string representing the token of the list's owner
+     */
+    @Override
+    public void addGroceryItems(List<String> items, long listID, String token) throws InvalidParamException, ServerException {
+        Request request = new Request.Builder()
+                .url(this.itemsUrl(listID))
+                .addHeader("Authorization", token)
+                .post(writeListAsBody(items))
+                .build();
+
+        makeRequest(this.client, request, "Could not add to this list");
+    }
+
+    /**
+     * Remove grocery items from the GroceryList that corresponds to the listID given. A user token is
+     * required for authorization.
+     * <p>
+     * Only the names of the removed items are sent to the server, so the size of the request does not
+     * depend on the size of the list.
+     *
+     * @param items  a List of Strings containing the names of grocery items to remove
+     * @param listID a long representing the ID of the list to change
+     * @param token  a string representing the token of the list's owner
+     */
+    @Override
+    public void removeGroceryItems(List<String> items, long listID, String token) throws InvalidParamException, ServerException {
+        Request request = new Request.Builder()
+                .url(this.itemsUrl(listID))
+                .addHeader("Authorization", token)
+                .delete(writeListAsBody(items))
+                .build();
+
+        makeRequest(this.client, request, "Could not remove from this list");
+    }
+
+    private HttpUrl itemsUrl(long listID) {
+        return new HttpUrl.Builder()
+                .scheme("http")
+                .host(STATIC_IP)
+                .port(8080)
+                .addPathSegment("api")
+                .addPathSegment("list")
+                .addPathSegment(String.valueOf(listID))
+                .addPathSegment("items")
+                .build();
+    }
+
     /**
      * Returns whether the GroceryList corresponding to the listID is deleted.
      * A user token is required for authorization.
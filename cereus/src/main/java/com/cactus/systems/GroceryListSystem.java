@@ -23,6 +23,12 @@ public class GroceryListSystem {
 
     private Map<String, GroceryList> currentTemplateNamesMap;
 
+    /**
+     * The item names of each list, as last seen by this system, keyed by list ID. Used to send
+     * only the items that changed when a list is edited.
+     */
+    private final Map<Long, Set<String>> knownItems = new HashMap<>();
+
     /***
      * Create a new GroceryListSystem with groceryList managers
      */
@@ -68,6 +74,11 @@ public class GroceryListSystem {
 
         this.currentGroceryListName = name;
 
+        // lists initialized from a template have unknown contents until they are fetched
+        if (template || templateName == null) {
+            this.knownItems.put(newGroceryList.getId(), new HashSet<>());
+        }
+
         if (template) {
             this.currentTemplateNamesMap.put(name, newGroceryList);
         } else {
@@ -128,7 +139,10 @@ public class GroceryListSystem {
      * @return groceryItemNames
      */
     public GroceryList getGroceryCurrentList(String token) throws InvalidParamException, ServerException {
-        return this.groceryAdapter.getGroceryList(this.getCurrentList().getId(), token);
+        GroceryList list = this.groceryAdapter.getGroceryList(this.getCurrentList().getId(), token);
+        this.knownItems.put(list.getId(), new HashSet<>(list.getItems()));
+
+        return list;
     }
 
     /**
@@ -152,14 +166,45 @@ public class GroceryListSystem {
     }
 
     /**
-     * Add grocery items to the current grocery list
+     * Set the items of the current grocery list. If the list's items were fetched before, only
+     * the items that were added or removed since then are sent to the server. Otherwise, the
+     * full list of items is saved.
      *
      * @param items list of items to be added
      * @param token the token of the user that it is being added to
      **/
     public void addGroceryItems(List<String> items, String token) throws InvalidParamException, ServerException {
         long id = this.getCurrentList().getId();
-        this.groceryAdapter.setGroceryItems(items, id, token);
+        Set<String> known = this.knownItems.get(id);
+
+        if (known == null) {
+            this.groceryAdapter.setGroceryItems(items, id, token);
+        } else {
+            Set<String> current = new LinkedHashSet<>(items);
+
+            List<String> removed = new ArrayList<>();
+            for (String item : known) {
+                if (!current.contains(item)) {
+                    removed.add(item);
+                }
+            }
+
+            List<String> added = new ArrayList<>();
+            for (String item : current) {
+                if (!known.contains(item)) {
+                    added.add(item);
+                }
+            }
+
+            if (!removed.isEmpty()) {
+                this.groceryAdapter.removeGroceryItems(removed, id, token);
+            }
+            if (!added.isEmpty()) {
+                this.groceryAdapter.addGroceryItems(added, id, token);
+            }
+        }
+
+        this.knownItems.put(id, new HashSet<>(items));
     }
 
 
@@ -177,6 +222,7 @@ public class GroceryListSystem {
 
         if (removed != null) {
             this.exitGroceryList();
+            this.knownItems.remove(removed.getId());
             groceryAdapter.deleteGroceryList(removed.getId(), token);
         }
 
@@ -252,6 +298,7 @@ public class GroceryListSystem {
         this.currentGroceryListName = null;
         this.currentListNamesMap = null;
         this.currentTemplateNamesMap = null;
+        this.knownItems.clear();
     }
 }
 
@@ -0,0 +1,48 @@
+package com.saguaro;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A Hibernate StatementInspector that records every SQL statement prepared by Hibernate,
+ * so that integration tests can assert on the number of statements issued by an operation.
+ * <p>
+ * Registered through the <code>hibernate.session_factory.statement_inspector</code> property
+ * in the integration test application configuration.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (STATEMENTS) {
+            STATEMENTS.add(sql.toLowerCase(Locale.ROOT));
+        }
+
+        return sql;
+    }
+
+    public static void reset() {
+        synchronized (STATEMENTS) {
+            STATEMENTS.clear();
+        }
+    }
+
+    public static long count(String prefix, String table) {
+        synchronized (STATEMENTS) {
+            return STATEMENTS.stream()
+                    .filter(sql -> sql.startsWith(prefix) && sql.contains(table))
+                    .count();
+        }
+    }
+
+    public static List<String> getStatements() {
+        synchronized (STATEMENTS) {
+            return new ArrayList<>(STATEMENTS);
+        }
+    }
+}
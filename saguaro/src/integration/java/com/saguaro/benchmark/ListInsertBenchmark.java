@@ -0,0 +1,145 @@
+package com.saguaro.benchmark;
+
+import com.saguaro.SqlStatementCounter;
+import com.saguaro.entity.GroceryItem;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.entity.User;
+import com.saguaro.id.PooledSequenceGenerator;
+import com.saguaro.repository.GroceryListRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how many grocery lists per second can be inserted, each with a few new items. Run with
+ * <code>gradle benchmark</code>; not part of the regular integration tests.
+ * <p>
+ * The "before" figure is measured as lists were saved before IDs were pooled: with a block size of 1, so
+ * that every insert costs its own sequence call, and flushing each list on its own, as the custom save
+ * method used to, so that no two inserts can share a JDBC batch. The "after" figure uses the configured
+ * block size, saves every list and flushes once. Since the block size is fixed when the session factory is
+ * built, each figure is measured in its own Spring context.
+ */
+@Tag("benchmark")
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+abstract class ListInsertBenchmark {
+
+    private static final int LISTS = 2000;
+    private static final int ITEMS_PER_LIST = 3;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    GroceryListRepository groceryListRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private User owner;
+    private int round;
+
+    @BeforeEach
+    void setUp() {
+        owner = new User();
+        owner.setName("Harry Potter");
+        owner.setUsername("thechosenone");
+        owner = entityManager.persistFlushFind(owner);
+    }
+
+    /**
+     * Save a round of new lists, leaving the last flush to the caller.
+     *
+     * @param lists the GroceryLists to save
+     */
+    abstract void save(List<GroceryList> lists);
+
+    private List<GroceryList> newLists() {
+        List<GroceryList> lists = new ArrayList<>();
+        round++;
+
+        // the previous round cleared the persistence context
+        owner = entityManager.find(User.class, owner.getId());
+
+        for (int i = 0; i < LISTS; i++) {
+            GroceryList list = new GroceryList();
+            list.setName("List " + i);
+            list.setOwner(owner);
+
+            for (int j = 0; j < ITEMS_PER_LIST; j++) {
+                list.addItem(new GroceryItem("Item " + round + "-" + i + "-" + j));
+            }
+
+            lists.add(list);
+        }
+
+        return lists;
+    }
+
+    void measure(String name) {
+        // warm up before measuring
+        save(newLists());
+        entityManager.flush();
+        entityManager.clear();
+
+        double best = 0;
+        long sequenceCalls = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            List<GroceryList> lists = newLists();
+            SqlStatementCounter.reset();
+
+            long start = System.nanoTime();
+            save(lists);
+            entityManager.flush();
+            long elapsed = System.nanoTime() - start;
+
+            entityManager.clear();
+            best = Math.max(best, LISTS * 1e9 / elapsed);
+            sequenceCalls = SqlStatementCounter.count("", "next value for");
+        }
+
+        // one row for each list, each item and each list entry
+        int rows = LISTS * (1 + 2 * ITEMS_PER_LIST);
+        System.out.printf("%-50s %10.0f lists/s %10.0f rows/s %8.3f sequence calls/row%n",
+                name, best, best * rows / LISTS, (double) sequenceCalls / rows);
+    }
+
+    @TestPropertySource(properties = "spring.jpa.properties." + PooledSequenceGenerator.BLOCK_SIZE + "=1")
+    static class Before extends ListInsertBenchmark {
+
+        @Override
+        void save(List<GroceryList> lists) {
+            for (GroceryList list : lists) {
+                groceryListRepository.save(list);
+                entityManager.flush();
+            }
+        }
+
+        @Test
+        void benchmarkListInserts() {
+            measure("before: block size 1, flush after every list");
+        }
+    }
+
+    static class After extends ListInsertBenchmark {
+
+        @Override
+        void save(List<GroceryList> lists) {
+            groceryListRepository.saveAll(lists);
+        }
+
+        @Test
+        void benchmarkListInserts() {
+            measure("after: pooled IDs, saveAll, one batched flush");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.saguaro.entity;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -150,6 +151,19 @@ public class GroceryListTest {
                     assertTrue(savedItem.getLists().contains(savedList));
                 }
 
+                @Test
+                void testRemovingItemDoesNotLoadItsLists() {
+                    entityManager.clear();
+                    GroceryList list = entityManager.find(GroceryList.class, savedList.getId());
+                    GroceryItem item = list.getItems().get(0);
+
+                    list.removeItem(item);
+                    entityManager.flush();
+
+                    assertFalse(Hibernate.isInitialized(item.getLists()));
+                    assertEquals(0, entityManager.find(GroceryList.class, savedList.getId()).getItems().size());
+                }
+
                 @Test
                 void testDeleteListRemovesFromItems() {
                     entityManager.remove(savedList);
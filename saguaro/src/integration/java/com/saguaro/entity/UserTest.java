@@ -95,5 +95,48 @@ public class UserTest {
     @Nested
     class RemoveFriendTest {
 
+        User user;
+        User friend;
+
+        @BeforeEach
+        void setUpRemoveFriend() {
+            user = new User();
+            user.setUsername("user");
+            user.setPassword("password");
+            user.setName("name");
+            user = testEntityManager.persistFlushFind(user);
+
+            friend = new User();
+            friend.setUsername("friend");
+            friend.setPassword("password");
+            friend.setName("name");
+            friend = testEntityManager.persistFlushFind(friend);
+
+            user.addFriend(friend);
+            testEntityManager.flush();
+        }
+
+        @Test
+        void testRemoveFriend() {
+            user.removeFriend(friend);
+            User savedUser = testEntityManager.persistFlushFind(user);
+
+            friend = testEntityManager.refresh(friend);
+            List<User> befriended = (List<User>) ReflectionTestUtils.getField(friend, "befriended");
+            assert befriended != null; // sanity check
+
+            assertEquals(0, savedUser.getFriends().size());
+            assertFalse(savedUser.hasFriend(friend));
+            assertEquals(0, befriended.size());
+        }
+
+        @Test
+        void testRemoveFriendNotFriend() {
+            friend.removeFriend(user);
+            User savedUser = testEntityManager.persistFlushFind(user);
+
+            assertEquals(1, savedUser.getFriends().size());
+            assertTrue(savedUser.hasFriend(friend));
+        }
     }
 }
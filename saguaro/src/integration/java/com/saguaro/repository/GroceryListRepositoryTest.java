@@ -1,8 +1,10 @@
 package com.saguaro.repository;
 
+import com.saguaro.SqlStatementCounter;
 import com.saguaro.entity.GroceryItem;
 import com.saguaro.entity.GroceryList;
 import com.saguaro.entity.User;
+import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -10,8 +12,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(SpringExtension.class)
@@ -66,6 +77,233 @@ public class GroceryListRepositoryTest {
         assertEquals(0, savedItem.getLists().size());
     }
 
+    @Test
+    void testFindSummariesByUserId() {
+        User friend = new User();
+        friend.setName("Ron Weasley");
+        friend.setUsername("ronald");
+        friend = entityManager.persistFlushFind(friend);
+
+        list = entityManager.persist(list);
+
+        GroceryList template = new GroceryList();
+        template.setName("Template");
+        template.setTemplate(true);
+        template.setOwner(list.getOwner());
+        template = entityManager.persist(template);
+
+        GroceryList sharedList = new GroceryList();
+        sharedList.setName("Shared List");
+        sharedList.setOwner(friend);
+        sharedList.addSharedUser(list.getOwner());
+        sharedList = entityManager.persist(sharedList);
+
+        GroceryList otherList = new GroceryList();
+        otherList.setName("Other List");
+        otherList.setOwner(friend);
+        entityManager.persist(otherList);
+        entityManager.flush();
+
+        Map<Long, GroceryListSummary> summaries = groceryListRepository
+                .findSummariesByUserId(list.getOwner().getId())
+                .stream()
+                .collect(Collectors.toMap(GroceryListSummary::getId, summary -> summary));
+
+        assertEquals(Set.of(list.getId(), template.getId(), sharedList.getId()), summaries.keySet());
+
+        assertEquals("New List", summaries.get(list.getId()).getName());
+        assertFalse(summaries.get(list.getId()).isTemplate());
+        assertEquals(list.getOwner().getId(), summaries.get(list.getId()).getOwnerId());
+
+        assertTrue(summaries.get(template.getId()).isTemplate());
+        assertEquals(friend.getId(), summaries.get(sharedList.getId()).getOwnerId());
+    }
+
+    @Test
+    void testFindSummariesByUserIdAfter() {
+        list = entityManager.persist(list);
+        List<Long> ids = new ArrayList<>(List.of(list.getId()));
+
+        for (int i = 0; i < 4; i++) {
+            GroceryList other = new GroceryList();
+            other.setName("List " + i);
+            other.setOwner(list.getOwner());
+            ids.add(entityManager.persist(other).getId());
+        }
+        entityManager.flush();
+
+        long userId = list.getOwner().getId();
+
+        List<Long> firstPage = groceryListRepository.findSummariesByUserIdAfter(userId, 0, PageRequest.of(0, 2))
+                .stream().map(GroceryListSummary::getId).collect(Collectors.toList());
+        List<Long> secondPage = groceryListRepository
+                .findSummariesByUserIdAfter(userId, firstPage.get(1), PageRequest.of(0, 2))
+                .stream().map(GroceryListSummary::getId).collect(Collectors.toList());
+
+        assertEquals(ids.subList(0, 2), firstPage);
+        assertEquals(ids.subList(2, 4), secondPage);
+        assertEquals(1, groceryListRepository.findOwnedSummariesAfter(userId, false, secondPage.get(1),
+                PageRequest.of(0, 2)).size());
+        assertTrue(groceryListRepository.findOwnedSummariesAfter(userId, true, 0, PageRequest.of(0, 2))
+                .isEmpty());
+    }
+
+    @Test
+    void testFindItemNamesAfter() {
+        for (String name : List.of("Bread", "Milk", "Eggs")) {
+            GroceryItem item = new GroceryItem();
+            item.setName(name);
+            list.addItem(entityManager.persist(item));
+        }
+        list = entityManager.persistFlushFind(list);
+
+        SortedMap<Long, String> firstPage = groceryListRepository.findItemNamesAfter(list.getId(), 0, 2);
+        SortedMap<Long, String> secondPage = groceryListRepository.findItemNamesAfter(list.getId(),
+                firstPage.lastKey(), 2);
+
+        assertEquals(List.of("Bread", "Milk"), new ArrayList<>(firstPage.values()));
+        assertEquals(List.of("Eggs"), new ArrayList<>(secondPage.values()));
+    }
+
+    @Test
+    void testStreamList() {
+        User friend = new User();
+        friend.setName("Ron Weasley");
+        friend.setUsername("ronald");
+        friend = entityManager.persist(friend);
+
+        for (String name : List.of("Bread", "Milk", "Eggs")) {
+            GroceryItem item = new GroceryItem();
+            item.setName(name);
+            list.addItem(entityManager.persist(item));
+        }
+        list.addSharedUser(friend);
+        list = entityManager.persistFlushFind(list);
+        entityManager.clear();
+
+        GroceryListHeader header = groceryListRepository.findHeaderByIdAndUserId(list.getId(), friend.getId());
+
+        assertEquals("New List", header.getName());
+        assertEquals("thechosenone", header.getOwnerUsername());
+        assertEquals(list.getVersion(), header.getVersion());
+
+        try (Stream<String> names = groceryListRepository.streamItemNames(list.getId());
+             Stream<String> usernames = groceryListRepository.streamSharedUsernames(list.getId())) {
+            assertEquals(List.of("Bread", "Milk", "Eggs"), names.collect(Collectors.toList()));
+            assertEquals(List.of("ronald"), usernames.collect(Collectors.toList()));
+        }
+
+        // rows are read as scalars, so nothing is loaded into the persistence context
+        assertEquals(0, entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    void testStreamAllItemEntries() {
+        for (String name : List.of("Bread", "Milk")) {
+            GroceryItem item = new GroceryItem();
+            item.setName(name);
+            list.addItem(entityManager.persist(item));
+        }
+        list = entityManager.persistFlushFind(list);
+        long id = list.getId();
+
+        List<String> names;
+        try (Stream<ListItemEntry> entries = groceryListRepository.streamAllItemEntries()) {
+            names = entries.filter(entry -> entry.getListId() == id)
+                    .map(ListItemEntry::getItemName)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        assertEquals(List.of("Bread", "Milk"), names);
+    }
+
+    @Test
+    void testFindVersionByIdAndUserId() {
+        User stranger = new User();
+        stranger.setName("Draco Malfoy");
+        stranger.setUsername("malfoy");
+        stranger = entityManager.persistFlushFind(stranger);
+
+        list = entityManager.persistFlushFind(list);
+
+        assertEquals(list.getVersion(), groceryListRepository.findVersionByIdAndUserId(list.getId(), list.getOwner().getId()));
+        assertNull(groceryListRepository.findVersionByIdAndUserId(list.getId(), stranger.getId()));
+    }
+
+    @Test
+    void testIsSharedWith() {
+        User friend = new User();
+        friend.setName("Ron Weasley");
+        friend.setUsername("ronald");
+        friend = entityManager.persistFlushFind(friend);
+
+        User stranger = new User();
+        stranger.setName("Draco Malfoy");
+        stranger.setUsername("malfoy");
+        stranger = entityManager.persistFlushFind(stranger);
+
+        list.addSharedUser(friend);
+        list = entityManager.persistFlushFind(list);
+
+        assertTrue(groceryListRepository.isSharedWith(list.getId(), friend.getId()));
+        assertFalse(groceryListRepository.isSharedWith(list.getId(), stranger.getId()));
+        // ownership is checked separately
+        assertFalse(groceryListRepository.isSharedWith(list.getId(), list.getOwner().getId()));
+    }
+
+    @Nested
+    class ShareTest {
+
+        private User friend;
+
+        @BeforeEach
+        void setUpShare() {
+            friend = new User();
+            friend.setName("Ron Weasley");
+            friend.setUsername("ronald");
+            friend = entityManager.persistFlushFind(friend);
+            list = entityManager.persistFlushFind(list);
+        }
+
+        @Test
+        void testAddShare() {
+            long version = list.getVersion();
+
+            groceryListRepository.addShare(list, friend.getId());
+
+            assertTrue(groceryListRepository.isSharedWith(list.getId(), friend.getId()));
+            assertEquals(List.of(friend), list.getSharedUsers());
+            assertEquals(version + 1, list.getVersion());
+        }
+
+        @Test
+        void testAddShareRefreshesLoadedUsers() {
+            assertEquals(List.of(), list.getSharedUsers());
+            long version = list.getVersion();
+
+            groceryListRepository.addShare(list, friend.getId());
+
+            assertEquals(List.of(friend), list.getSharedUsers());
+            assertEquals(version + 1, list.getVersion());
+        }
+
+        @Test
+        void testRemoveShare() {
+            list.addSharedUser(friend);
+            entityManager.flush();
+            long version = list.getVersion();
+
+            assertTrue(groceryListRepository.removeShare(list, friend.getId()));
+            assertFalse(groceryListRepository.isSharedWith(list.getId(), friend.getId()));
+            assertEquals(List.of(), list.getSharedUsers());
+            assertEquals(version + 1, list.getVersion());
+
+            assertFalse(groceryListRepository.removeShare(list, friend.getId()));
+            assertEquals(version + 1, list.getVersion());
+        }
+    }
+
     @Nested
     class SaveTest {
 
@@ -95,5 +333,33 @@ public class GroceryListRepositoryTest {
             assertNotNull(entityManager.find(GroceryItem.class, "Bread"));
             assertEquals(list, entityManager.find(GroceryList.class, savedList.getId()));
         }
+
+        /**
+         * IDs are reserved 50 at a time, so saving 100 lists should only take two sequence calls for
+         * each table. Batched inserts are prepared once and re-executed for every batch, so each
+         * table should only see a single insert statement.
+         */
+        @Test
+        void testSaveAllBatchesInserts() {
+            List<GroceryList> lists = new ArrayList<>();
+
+            for (int i = 0; i < 100; i++) {
+                GroceryList newList = new GroceryList();
+                newList.setName("List " + i);
+                newList.setOwner(list.getOwner());
+                newList.addItem(new GroceryItem("Item " + i));
+                lists.add(newList);
+            }
+
+            SqlStatementCounter.reset();
+            groceryListRepository.saveAll(lists);
+            entityManager.flush();
+
+            assertEquals(2, SqlStatementCounter.count("", "next value for list_seq"));
+            assertEquals(2, SqlStatementCounter.count("", "next value for list_items_seq"));
+            assertEquals(1, SqlStatementCounter.count("insert", "grocery_list"));
+            assertEquals(1, SqlStatementCounter.count("insert", "grocery_item"));
+            assertEquals(1, SqlStatementCounter.count("insert", "list_items"));
+        }
     }
 }
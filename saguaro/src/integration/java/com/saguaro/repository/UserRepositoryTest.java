@@ -0,0 +1,74 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+public class UserRepositoryTest {
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private User user;
+    private User friend;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setName("Harry Potter");
+        user.setUsername("thechosenone");
+        user = entityManager.persistFlushFind(user);
+
+        friend = new User();
+        friend.setName("Ron Weasley");
+        friend.setUsername("ronald");
+        friend = entityManager.persistFlushFind(friend);
+    }
+
+    @Nested
+    class FriendshipTest {
+
+        @Test
+        void testExistsFriendship() {
+            user.addFriend(friend);
+            entityManager.flush();
+
+            assertTrue(userRepository.existsFriendship(user.getId(), friend.getId()));
+            // friendships are one way
+            assertFalse(userRepository.existsFriendship(friend.getId(), user.getId()));
+        }
+
+        @Test
+        void testAddFriendship() {
+            userRepository.addFriendship(user.getId(), friend.getId());
+            entityManager.clear();
+
+            assertTrue(userRepository.existsFriendship(user.getId(), friend.getId()));
+            assertEquals(1, entityManager.find(User.class, user.getId()).getFriends().size());
+        }
+
+        @Test
+        void testRemoveFriendship() {
+            user.addFriend(friend);
+            entityManager.flush();
+            entityManager.clear();
+
+            assertTrue(userRepository.removeFriendship(user.getId(), friend.getId()));
+            assertFalse(userRepository.existsFriendship(user.getId(), friend.getId()));
+            assertFalse(userRepository.removeFriendship(user.getId(), friend.getId()));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.User;
+import com.saguaro.entity.UserSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+public class UserSessionRepositoryTest {
+
+    @Autowired
+    UserSessionRepository sessionRepository;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private User user;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setName("Harry Potter");
+        user.setUsername("thechosenone");
+        user = entityManager.persistFlushFind(user);
+
+        now = Instant.parse("2021-12-01T00:00:00Z");
+    }
+
+    private UserSession createSession(String token, Instant expiresAt) {
+        UserSession session = new UserSession(user, UserSession.hashToken(token), now.minus(Duration.ofDays(1)),
+                expiresAt);
+
+        return entityManager.persistFlushFind(session);
+    }
+
+    @Test
+    void testFindActiveByTokenHash() {
+        createSession("phone", now.plusSeconds(60));
+        createSession("laptop", now.plusSeconds(60));
+        entityManager.clear();
+
+        UserSession session = sessionRepository.findActiveByTokenHash(UserSession.hashToken("laptop"), now);
+
+        assertEquals(UserSession.hashToken("laptop"), session.getTokenHash());
+        assertEquals("thechosenone", session.getUser().getUsername());
+        assertNull(sessionRepository.findActiveByTokenHash(UserSession.hashToken("tablet"), now));
+    }
+
+    @Test
+    void testExpiredSessionNotFound() {
+        createSession("token", now);
+
+        assertNull(sessionRepository.findActiveByTokenHash(UserSession.hashToken("token"), now));
+    }
+
+    @Test
+    void testTokenHashUnique() {
+        createSession("token", now.plusSeconds(60));
+
+        assertThrows(DataIntegrityViolationException.class, () ->
+                sessionRepository.saveAndFlush(new UserSession(user, UserSession.hashToken("token"), now, now)));
+    }
+
+    @Test
+    void testDeleteByTokenHashLeavesOtherSessions() {
+        createSession("phone", now.plusSeconds(60));
+        createSession("laptop", now.plusSeconds(60));
+
+        assertEquals(1, sessionRepository.deleteByTokenHash(UserSession.hashToken("phone")));
+        entityManager.clear();
+
+        assertNull(sessionRepository.findActiveByTokenHash(UserSession.hashToken("phone"), now));
+        assertNotNull(sessionRepository.findActiveByTokenHash(UserSession.hashToken("laptop"), now));
+    }
+
+    @Test
+    void testUpdateLastSeen() {
+        long id = createSession("phone", now.plusSeconds(60)).getId();
+        createSession("laptop", now.plusSeconds(60));
+
+        int updated = sessionRepository.updateLastSeen(
+                List.of(UserSession.hashToken("phone"), UserSession.hashToken("tablet")), now);
+        entityManager.clear();
+
+        assertEquals(1, updated);
+        assertEquals(now, entityManager.find(UserSession.class, id).getLastSeenAt());
+    }
+
+    @Test
+    void testPurgeExpiredInBatches() {
+        for (int i = 0; i < 5; i++) {
+            createSession("expired " + i, now.minusSeconds(i));
+        }
+        long active = createSession("active", now.plusSeconds(60)).getId();
+
+        List<Long> batch = sessionRepository.findExpiredIds(now, PageRequest.of(0, 3));
+        assertEquals(3, batch.size());
+        assertEquals(3, sessionRepository.deleteByIds(batch));
+
+        batch = sessionRepository.findExpiredIds(now, PageRequest.of(0, 3));
+        assertEquals(2, batch.size());
+        assertEquals(2, sessionRepository.deleteByIds(batch));
+
+        assertTrue(sessionRepository.findExpiredIds(now, PageRequest.of(0, 3)).isEmpty());
+        entityManager.clear();
+        assertNotNull(entityManager.find(UserSession.class, active));
+    }
+}
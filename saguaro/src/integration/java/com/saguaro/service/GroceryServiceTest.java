@@ -0,0 +1,404 @@
+package com.saguaro.service;
+
+import com.saguaro.SqlStatementCounter;
+import com.saguaro.entity.GroceryItem;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.entity.User;
+import com.saguaro.security.ListAccessCache;
+import com.saguaro.security.SaguaroPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@Import({GroceryService.class, ListAccessCache.class, ItemSuggestionIndex.class, ListSearchIndex.class,
+        ItemCooccurrenceIndex.class})
+public class GroceryServiceTest {
+
+    @Autowired
+    GroceryService groceryService;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private User user;
+    private SaguaroPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        // test transactions roll back, which would otherwise leave their rows in the second-level cache
+        entityManager.getEntityManager().getEntityManagerFactory().getCache().evictAll();
+
+        user = new User();
+        user.setName("Harry Potter");
+        user.setUsername("thechosenone");
+        user = entityManager.persistFlushFind(user);
+
+        // inserted directly, as if by an earlier transaction, since Hibernate never caches an item read
+        // back in the transaction that persisted it
+        for (int i = 0; i < 20; i++) {
+            entityManager.getEntityManager()
+                    .createNativeQuery("insert into grocery_item (name) values (:name)")
+                    .setParameter("name", "Existing " + i)
+                    .executeUpdate();
+        }
+
+        principal = new SaguaroPrincipal(user.getId(), user.getUsername(), List.of());
+    }
+
+    private long createList(String name) {
+        return createList(name, 1);
+    }
+
+    private long createList(String name, int size) {
+        return createList(name, size, false);
+    }
+
+    private long createList(String name, int size, boolean template) {
+        GroceryList list = new GroceryList();
+        list.setName(name);
+        list.setOwner(entityManager.find(User.class, user.getId()));
+        list.setTemplate(template);
+
+        for (int i = 0; i < size; i++) {
+            list.addItem(entityManager.find(GroceryItem.class, "Existing " + i));
+        }
+
+        long id = entityManager.persistAndGetId(list, Long.class);
+        entityManager.flush();
+        entityManager.clear();
+
+        return id;
+    }
+
+    private GroceryList newState(long id, int existing, int created) {
+        List<GroceryItem> items = new ArrayList<>();
+
+        // new instances, as if deserialized from a request body
+        for (int i = 0; i < existing; i++) {
+            items.add(new GroceryItem("Existing " + i));
+        }
+
+        for (int i = 0; i < created; i++) {
+            items.add(new GroceryItem("Created " + i));
+        }
+
+        return new GroceryList(id, items);
+    }
+
+    private long countSaveSelects(GroceryList newList) throws Exception {
+        SqlStatementCounter.reset();
+
+        groceryService.saveList(newList, null, principal);
+        entityManager.flush();
+
+        return SqlStatementCounter.count("select", "");
+    }
+
+    @Nested
+    class SaveListTest {
+
+        @Test
+        void testSaveListResolvesItemsInOneQuery() throws Exception {
+            long id = createList("List");
+
+            countSaveSelects(newState(id, 20, 30));
+            entityManager.clear();
+
+            assertEquals(1, SqlStatementCounter.count("select", "from grocery_item"));
+            assertEquals(50, entityManager.find(GroceryList.class, id).getItems().size());
+        }
+
+        @Test
+        void testSaveListSelectsIndependentOfSize() throws Exception {
+            long smallId = createList("Small");
+            long largeId = createList("Large");
+
+            long smallSelects = countSaveSelects(newState(smallId, 2, 3));
+            entityManager.clear();
+            long largeSelects = countSaveSelects(newState(largeId, 20, 100));
+
+            assertEquals(smallSelects, largeSelects);
+        }
+
+        @Test
+        void testSaveListNoNewItems() throws Exception {
+            long id = createList("List");
+
+            countSaveSelects(newState(id, 1, 0));
+
+            assertEquals(0, SqlStatementCounter.count("select", "from grocery_item"));
+        }
+
+        @Test
+        void testSaveListResolvesCachedItemsWithoutQuery() throws Exception {
+            long id = createList("List");
+
+            for (int i = 0; i < 20; i++) {
+                entityManager.find(GroceryItem.class, "Existing " + i);
+            }
+            entityManager.clear();
+
+            countSaveSelects(newState(id, 20, 0));
+            entityManager.clear();
+
+            assertEquals(0, SqlStatementCounter.count("select", "from grocery_item"));
+            assertEquals(20, entityManager.find(GroceryList.class, id).getItems().size());
+        }
+
+        @Test
+        void testSaveListQueriesOnlyUncachedItems() throws Exception {
+            long id = createList("List");
+            entityManager.find(GroceryItem.class, "Existing 1");
+            entityManager.clear();
+
+            countSaveSelects(newState(id, 3, 1));
+            entityManager.clear();
+
+            assertEquals(1, SqlStatementCounter.count("select", "from grocery_item"));
+            assertEquals(4, entityManager.find(GroceryList.class, id).getItems().size());
+        }
+    }
+
+    @Nested
+    class ItemRowsTest {
+
+        /**
+         * Statements are counted once per JDBC batch, so a list being rewritten in full would still
+         * only show one delete and one insert. Comparing the surrogate entry IDs catches that case.
+         */
+        private List<Long> entryIds(long id) {
+            List<?> rows = entityManager.getEntityManager()
+                    .createNativeQuery("select entry_id from list_items where list_id = :id order by entry_id")
+                    .setParameter("id", id)
+                    .getResultList();
+
+            List<Long> ids = new ArrayList<>();
+            for (Object row : rows) {
+                ids.add(((Number) row).longValue());
+            }
+
+            return ids;
+        }
+
+        @Test
+        void testAddItemWritesOneRow() throws Exception {
+            long id = createList("List", 20);
+            List<Long> before = entryIds(id);
+
+            SqlStatementCounter.reset();
+            groceryService.addItems(id, List.of("Created 0"), null, principal);
+            entityManager.flush();
+
+            assertEquals(1, SqlStatementCounter.count("insert", "list_items"));
+            assertEquals(0, SqlStatementCounter.count("delete", "list_items"));
+            assertEquals(before, entryIds(id).subList(0, 20));
+        }
+
+        @Test
+        void testRemoveItemWritesOneRow() throws Exception {
+            long id = createList("List", 20);
+            List<Long> expected = new ArrayList<>(entryIds(id));
+            expected.remove(10);
+
+            SqlStatementCounter.reset();
+            groceryService.removeItems(id, List.of("Existing 10"), null, principal);
+            entityManager.flush();
+
+            assertEquals(0, SqlStatementCounter.count("insert", "list_items"));
+            assertEquals(1, SqlStatementCounter.count("delete", "list_items"));
+            assertEquals(expected, entryIds(id));
+        }
+
+        @Test
+        void testSaveListWritesOnlyChangedRows() throws Exception {
+            long id = createList("List", 20);
+            List<Long> before = entryIds(id);
+
+            // drop Existing 0, keep the rest, and add one new item
+            GroceryList newList = newState(id, 20, 1);
+            List<GroceryItem> items = new ArrayList<>(newList.getItems());
+            items.remove(0);
+
+            SqlStatementCounter.reset();
+            groceryService.saveList(new GroceryList(id, items), null, principal);
+            entityManager.flush();
+
+            assertEquals(1, SqlStatementCounter.count("insert", "list_items"));
+            assertEquals(1, SqlStatementCounter.count("delete", "list_items"));
+            assertEquals(before.subList(1, 20), entryIds(id).subList(0, 19));
+        }
+
+        @Test
+        void testItemOrderPersisted() throws Exception {
+            long id = createList("List", 3);
+
+            groceryService.addItems(id, List.of("Created 0"), null, principal);
+            groceryService.removeItems(id, List.of("Existing 1"), null, principal);
+            entityManager.flush();
+            entityManager.clear();
+
+            List<String> names = new ArrayList<>();
+            for (GroceryItem item : entityManager.find(GroceryList.class, id).getItems()) {
+                names.add(item.getName());
+            }
+
+            assertEquals(List.of("Existing 0", "Existing 2", "Created 0"), names);
+        }
+    }
+
+    @Nested
+    class VersionTest {
+
+        @Test
+        void testListVersionIncrementedOnItemChange() throws Exception {
+            long id = createList("List", 3);
+            long before = groceryService.getListVersion(id, principal);
+
+            groceryService.addItems(id, List.of("Created 0"), null, principal);
+            entityManager.flush();
+
+            assertEquals(before + 1, groceryService.getListVersion(id, principal));
+        }
+
+        @Test
+        void testListVersionIncrementedOnShareAndUnshare() throws Exception {
+            User friend = new User();
+            friend.setName("Ron Weasley");
+            friend.setUsername("ronald");
+            friend = entityManager.persist(friend);
+            entityManager.find(User.class, user.getId()).addFriend(friend);
+            long id = createList("List", 1);
+            long before = groceryService.getListVersion(id, principal);
+
+            groceryService.shareList(id, "ronald", principal);
+            entityManager.flush();
+            entityManager.clear();
+
+            assertEquals(before + 1, groceryService.getListVersion(id, principal));
+
+            groceryService.unshareList(id, "ronald", principal);
+            entityManager.flush();
+
+            assertEquals(before + 2, groceryService.getListVersion(id, principal));
+        }
+
+        @Test
+        void testDashboardVersionIncrementedOnRename() throws Exception {
+            long id = createList("List", 1);
+            long before = groceryService.getDashboardVersion(principal);
+
+            groceryService.editListName(id, "Renamed", null, principal);
+            entityManager.flush();
+
+            assertEquals(before + 1, groceryService.getDashboardVersion(principal));
+        }
+
+        @Test
+        void testDashboardVersionUnchangedOnItemChange() throws Exception {
+            long id = createList("List", 1);
+            long before = groceryService.getDashboardVersion(principal);
+
+            groceryService.addItems(id, List.of("Created 0"), null, principal);
+            entityManager.flush();
+
+            assertEquals(before, groceryService.getDashboardVersion(principal));
+        }
+    }
+
+    @Nested
+    class TemplateTest {
+
+        private List<String> itemNames(GroceryList list) {
+            List<String> names = new ArrayList<>();
+            for (GroceryItem item : list.getItems()) {
+                names.add(item.getName());
+            }
+
+            return names;
+        }
+
+        private long countCreateStatements(long templateId) throws Exception {
+            SqlStatementCounter.reset();
+
+            groceryService.createNewList("From template", principal, templateId);
+            entityManager.flush();
+
+            // sequence calls depend on where the current block of IDs ends, not on the template
+            return SqlStatementCounter.getStatements().stream()
+                    .filter(sql -> !sql.startsWith("call next value for") && !sql.startsWith("select next value for"))
+                    .count();
+        }
+
+        @Test
+        void testCreateFromTemplateCopiesItemsInOrder() throws Exception {
+            long templateId = createList("Template", 20, true);
+            List<String> expected = itemNames(entityManager.find(GroceryList.class, templateId));
+            entityManager.clear();
+
+            long id = groceryService.createNewList("From template", principal, templateId).getId();
+            entityManager.flush();
+            entityManager.clear();
+
+            assertEquals(expected, itemNames(entityManager.find(GroceryList.class, id)));
+            assertEquals(expected, itemNames(entityManager.find(GroceryList.class, templateId)));
+        }
+
+        @Test
+        void testItemAddedAfterCreateFromTemplateComesLast() throws Exception {
+            long templateId = createList("Template", 5, true);
+
+            long id = groceryService.createNewList("From template", principal, templateId).getId();
+            groceryService.addItems(id, List.of("Added"), null, principal);
+            entityManager.flush();
+            entityManager.clear();
+
+            List<String> names = itemNames(entityManager.find(GroceryList.class, id));
+
+            assertEquals(6, names.size());
+            assertEquals("Added", names.get(5));
+
+            KeysetPage<List<String>> first = groceryService.getItemNames(id, 0, 3, principal);
+            KeysetPage<List<String>> second = groceryService.getItemNames(id, first.getNext(), 3, principal);
+
+            assertEquals(names.subList(0, 3), first.getContent());
+            assertEquals(names.subList(3, 6), second.getContent());
+            assertNull(second.getNext());
+        }
+
+        @Test
+        void testCreateFromTemplateDoesNotLoadItems() throws Exception {
+            long templateId = createList("Template", 20, true);
+
+            countCreateStatements(templateId);
+
+            assertEquals(1, SqlStatementCounter.count("insert", "list_items"));
+            assertEquals(1, SqlStatementCounter.count("select item_name", "list_items"));
+            assertEquals(0, SqlStatementCounter.count("select", "from grocery_item"));
+        }
+
+        @Test
+        void testCreateFromTemplateStatementsIndependentOfSize() throws Exception {
+            long smallId = createList("Small", 2, true);
+            long largeId = createList("Large", 20, true);
+
+            long smallStatements = countCreateStatements(smallId);
+            entityManager.clear();
+            long largeStatements = countCreateStatements(largeId);
+
+            assertEquals(smallStatements, largeStatements);
+        }
+    }
+}
@@ -2,13 +2,16 @@ package com.saguaro;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
- * Main application class for Saguaro
+ * Main application class for Saguaro. Scheduling is enabled for background maintenance,
+ * such as purging expired sessions.
  *
  * @author Charles Wong
  */
 @SpringBootApplication
+@EnableScheduling
 public class SaguaroApplication {
 
     /**
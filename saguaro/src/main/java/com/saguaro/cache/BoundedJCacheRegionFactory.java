@@ -0,0 +1,94 @@
+package com.saguaro.cache;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+
+import javax.cache.Cache;
+import javax.cache.configuration.MutableConfiguration;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A Hibernate second-level cache region factory that backs every region with a bounded, in-process
+ * Ehcache heap cache. No external cache server or XML configuration is needed, so the same cache is
+ * used by the application and by tests.
+ * <p>
+ * Each region holds at most <code>saguaro.cache.max-entries</code> entries, evicting old entries once
+ * full, and entries expire after going unused for <code>saguaro.cache.time-to-idle-seconds</code>. Both
+ * are read from the Hibernate properties (<code>spring.jpa.properties.*</code>).
+ * <p>
+ * The update timestamps region is the exception: it holds one entry per table, and evicting from it
+ * could let the query cache serve stale results, so it is never bounded.
+ *
+ * @author Charles Wong
+ */
+public class BoundedJCacheRegionFactory extends JCacheRegionFactory {
+
+    /**
+     * Hibernate property holding the maximum number of entries in each region
+     */
+    public static final String MAX_ENTRIES = "saguaro.cache.max-entries";
+
+    /**
+     * Hibernate property holding the number of seconds an unused entry is kept for
+     */
+    public static final String TIME_TO_IDLE_SECONDS = "saguaro.cache.time-to-idle-seconds";
+
+    /**
+     * The maximum number of entries in each region
+     */
+    private long maxEntries = 10000;
+
+    /**
+     * How long an unused entry is kept for
+     */
+    private Duration timeToIdle = Duration.ofHours(1);
+
+    /**
+     * Read the region size and time to idle from the Hibernate properties, then start the cache manager.
+     *
+     * @param settings     the SessionFactoryOptions of the session factory being built
+     * @param configValues a Map of all Hibernate properties
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected void prepareForUse(SessionFactoryOptions settings, Map configValues) {
+        Object maxEntries = configValues.get(MAX_ENTRIES);
+        if (maxEntries != null) {
+            this.maxEntries = Long.parseLong(maxEntries.toString());
+        }
+
+        Object timeToIdle = configValues.get(TIME_TO_IDLE_SECONDS);
+        if (timeToIdle != null) {
+            this.timeToIdle = Duration.ofSeconds(Long.parseLong(timeToIdle.toString()));
+        }
+
+        super.prepareForUse(settings, configValues);
+    }
+
+    /**
+     * Create the cache backing a region, bounded as described above.
+     *
+     * @param regionName the qualified String name of the region
+     * @return the newly created Cache
+     */
+    @Override
+    protected Cache<Object, Object> createCache(String regionName) {
+        if (regionName.endsWith(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME)) {
+            return getCacheManager().createCache(regionName, new MutableConfiguration<>());
+        }
+
+        CacheConfiguration<Object, Object> configuration = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToIdleExpiration(timeToIdle))
+                .build();
+
+        return getCacheManager().createCache(regionName, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+    }
+}
@@ -0,0 +1,81 @@
+package com.saguaro.controller;
+
+import com.saguaro.exception.BatchFailedException;
+import com.saguaro.exception.InvalidParamException;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.service.BatchOperation;
+import com.saguaro.service.BatchService;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller defining the api/batch endpoint, which runs a sequence of grocery list operations in a
+ * single request and a single transaction.
+ *
+ * @author Charles Wong
+ */
+@RestController
+public class BatchController {
+
+    /**
+     * A batch Service to delegate logic to.
+     */
+    private final BatchService batchService;
+
+    /**
+     * Constructs this batch controller given a BatchService.
+     * <p>
+     * Notice that by default, Spring will attempt to autowire the only
+     * constructor of a class.
+     *
+     * @param batchService a BatchService to provide logic for this controller
+     */
+    public BatchController(BatchService batchService) {
+        this.batchService = batchService;
+    }
+
+    /**
+     * Run a JSON array of grocery list operations, in order. Each operation is an object whose "op"
+     * property names the endpoint it stands in for, and whose other properties hold that endpoint's
+     * parameters:
+     * <ul>
+     *     <li>create-list: name, and optionally template or templateId
+     *     <li>edit-list-name: id, name, and optionally version
+     *     <li>add-items: id, items, and optionally version
+     *     <li>remove-items: id, items, and optionally version
+     *     <li>delete-list: id, and optionally version
+     *     <li>share-list: id, username
+     *     <li>unshare-list: id, username
+     * </ul>
+     * <p>
+     * A list ID may be given as <code>$</code> followed by the index of an earlier operation, to refer to
+     * the list that operation returned. The version, if given, is checked as an If-Match header would be.
+     * <p>
+     * The returned JSON object has a single property, "results", holding the result of each operation in
+     * order; operations that return no content have a null result. If any operation fails, the whole batch
+     * is rolled back, and the response has the status that operation would have had on its own, with a
+     * body holding the index of the failed operation.
+     * <p>
+     * Since this endpoint is a protected resource, a valid principal must
+     * be available from the SecurityContext when this method is invoked.
+     *
+     * @param operations a List of the BatchOperations to run
+     * @return a Map holding the results of the operations
+     * @throws InvalidParamException if the batch holds too many operations
+     * @throws BatchFailedException  if an operation failed
+     */
+    @PostMapping("api/batch")
+    public Map<String, Object> batch(@RequestBody List<BatchOperation> operations)
+            throws InvalidParamException, BatchFailedException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        return Map.of("results", batchService.execute(operations, principal));
+    }
+}
@@ -0,0 +1,141 @@
+package com.saguaro.controller;
+
+import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.service.CatalogService;
+import com.saguaro.service.CatalogTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.Map;
+
+/**
+ * REST controller defining endpoints related to the published template catalog. The following
+ * endpoints are defined:
+ * <ul>
+ *     <li>api/catalog
+ *     <li>api/catalog/{id}
+ *     <li>api/catalog/{id}/create-list
+ *     <li>api/catalog/publish
+ * </ul>
+ * <p>
+ * Reading the catalog and creating lists from it are answered from an in-memory copy of the catalog.
+ * Catalog pages are served with an ETag derived from the catalog's contents, and requests carrying a
+ * matching If-None-Match header are answered with 304 NOT MODIFIED.
+ *
+ * @author Charles Wong
+ */
+@RestController
+@Validated
+public class CatalogController {
+
+    /**
+     * A catalog Service to delegate logic to.
+     */
+    private final CatalogService catalogService;
+
+    /**
+     * Constructs this catalog controller given a CatalogService.
+     * <p>
+     * Notice that by default, Spring will attempt to autowire the only
+     * constructor of a class.
+     *
+     * @param catalogService a CatalogService to provide logic for this controller
+     */
+    public CatalogController(CatalogService catalogService) {
+        this.catalogService = catalogService;
+    }
+
+    /**
+     * Fetch a page of the template catalog, ordered by template name. The returned JSON object has the
+     * properties "templates", "page", "size" and "total", the last being the number of templates in the
+     * whole catalog.
+     *
+     * @param page    the index of the page to fetch, starting from 0
+     * @param size    the number of templates on each page, at most 100
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a Map describing the page, or null if the client's copy is up to date
+     */
+    @GetMapping("api/catalog")
+    public Map<String, Object> browse(@RequestParam(value = "page", defaultValue = "0") @Min(0) int page,
+                                      @RequestParam(value = "size", defaultValue = "20") @Min(1) @Max(100) int size,
+                                      WebRequest request) {
+        String eTag = "\"catalog-" + Long.toHexString(catalogService.getCatalogVersion()) + "\"";
+
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return catalogService.browse(page, size);
+    }
+
+    /**
+     * Fetch a single template from the catalog, including the names of its items.
+     *
+     * @param id a long representing the ID of the template to fetch
+     * @return the CatalogTemplate with the given ID
+     * @throws ResourceNotFoundException if no template with the given ID is published
+     */
+    @GetMapping("api/catalog/{id}")
+    public CatalogTemplate getTemplate(@PathVariable("id") long id) throws ResourceNotFoundException {
+        return catalogService.getTemplate(id);
+    }
+
+    /**
+     * Create a new grocery list for the currently authenticated user from a template in the catalog. The
+     * list is named after the template, unless a non-blank name is given.
+     *
+     * @param id   a long representing the ID of the template to create the list from
+     * @param name the String to set the new grocery list's name to, or null or blank to use the template's name
+     * @return the newly created GroceryList object
+     * @throws ResourceNotFoundException if no template with the given ID is published
+     */
+    @PostMapping("api/catalog/{id}/create-list")
+    public GroceryList createList(@PathVariable("id") long id,
+                                  @RequestParam(value = "name", required = false) String name)
+            throws ResourceNotFoundException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        return catalogService.createList(id, name, principal);
+    }
+
+    /**
+     * Publish one of the authenticated user's templates to the catalog, or republish it with its current
+     * name and items.
+     *
+     * @param id a long representing the ID of the template to publish
+     * @return the CatalogTemplate as published
+     * @throws ResourceNotFoundException if the ID does not match a template owned by the authenticated user
+     */
+    @PostMapping("api/catalog/publish")
+    public CatalogTemplate publish(@RequestParam("id") long id) throws ResourceNotFoundException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        return catalogService.publish(id, principal);
+    }
+
+    /**
+     * Remove a template the authenticated user published from the catalog. Lists already created from
+     * the template are not affected.
+     *
+     * @param id a long representing the ID of the template to unpublish
+     * @throws ResourceNotFoundException if the ID does not match a template published by the authenticated user
+     */
+    @DeleteMapping("api/catalog/publish")
+    @ResponseStatus(value = HttpStatus.NO_CONTENT)
+    public void unpublish(@RequestParam("id") long id) throws ResourceNotFoundException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        catalogService.unpublish(id, principal);
+    }
+}
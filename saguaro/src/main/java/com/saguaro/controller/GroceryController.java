@@ -1,16 +1,28 @@
 package com.saguaro.controller;
 
 import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.PreconditionFailedException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListHeader;
+import com.saguaro.security.SaguaroPrincipal;
 import com.saguaro.service.GroceryService;
+import com.saguaro.service.KeysetPage;
+import com.saguaro.service.ListExportService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,8 +33,20 @@ import java.util.Map;
  *     <li>api/list
  *     <li>api/create-list
  *     <li>api/save-list
+ *     <li>api/list/{id}/items
+ *     <li>api/list/{id}/export
+ *     <li>api/lists/search
  *     <li>api/delete-list
  * </ul>
+ * <p>
+ * Grocery lists and the api/v2/all-lists dashboard are served with ETags derived from version counters,
+ * and requests carrying a matching If-None-Match header are answered with 304 NOT MODIFIED. Endpoints
+ * modifying a list accept an If-Match header holding the list's ETag, and fail with 412 PRECONDITION
+ * FAILED if the list has changed since.
+ * <p>
+ * api/all-lists, api/v2/all-lists and the items of a list can also be fetched a page at a time, by passing
+ * a limit parameter. Pages are ordered by ID, and the body of each page holds a "next" cursor, to be passed as
+ * the after parameter to fetch the page following it, or null on the last page.
  *
  * @author Charles Wong
  */
@@ -30,27 +54,39 @@ import java.util.Map;
 @Validated
 public class GroceryController {
 
+    /**
+     * The largest page size a client can ask for
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
     /**
      * A grocery list Service to delegate logic to.
      */
     private final GroceryService groceryService;
 
     /**
-     * Constructs this grocery controller given a GroceryService.
+     * A Service streaming grocery lists as JSON.
+     */
+    private final ListExportService listExportService;
+
+    /**
+     * Constructs this grocery controller given a GroceryService and a ListExportService.
      * <p>
      * Notice that by default, Spring will attempt to autowire the only
      * constructor of a class.
      *
-     * @param groceryService a GroceryService to provide logic for this controller
+     * @param groceryService    a GroceryService to provide logic for this controller
+     * @param listExportService a ListExportService to stream lists with
      */
-    public GroceryController(GroceryService groceryService) {
+    public GroceryController(GroceryService groceryService, ListExportService listExportService) {
         this.groceryService = groceryService;
+        this.listExportService = listExportService;
     }
 
     /**
      * Fetches all grocery lists for the currently authenticated user.
      * <p>
-     * Since this endpoint is a protected resource, a valid username must
+     * Since this endpoint is a protected resource, a valid principal must
      * be available from the SecurityContext when this method is invoked.
      *
      * @return a Map from list IDs to list names
@@ -58,9 +94,34 @@ public class GroceryController {
     @GetMapping("api/all-lists")
     public Map<Long, String> getLists() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        return groceryService.getOwnedListNames(principal);
+    }
+
+    /**
+     * Fetches a page of the grocery lists of the currently authenticated user, in order of list ID.
+     * <p>
+     * The returned JSON object has two properties: "lists", mapping list ID to list name for the lists on
+     * this page, and "next", holding the cursor of the next page, or null if this is the last page.
+     *
+     * @param after a long representing the list ID after which the page starts, or 0 for the first page
+     * @param limit the maximum number of lists on the page
+     * @return a Map holding the page of lists and the cursor of the next page
+     */
+    @GetMapping(value = "api/all-lists", params = "limit")
+    public Map<String, Object> getLists(@RequestParam(value = "after", defaultValue = "0") long after,
+                                        @RequestParam("limit") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return groceryService.getOwnedListNames(username);
+        KeysetPage<Map<Long, String>> page = groceryService.getOwnedListNames(principal, after, limit);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("lists", page.getContent());
+        body.put("next", page.getNext());
+
+        return body;
     }
 
     /**
@@ -77,19 +138,57 @@ public class GroceryController {
      *     <li>grocery items
      * </ul>
      * <p>
-     * Since this endpoint is a protected resource, a valid username must
+     * The list's version is checked against the If-None-Match header before the list is loaded, so an
+     * unchanged list is answered with 304 NOT MODIFIED without being loaded or serialized.
+     * <p>
+     * Since this endpoint is a protected resource, a valid principal must
      * be available from the SecurityContext when this method is invoked.
      *
-     * @param id the ID specifying the grocery list to fetch
-     * @return a GroceryList object which can be deserialized
+     * @param id      the ID specifying the grocery list to fetch
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a GroceryList object which can be deserialized, or null if the client's copy is up to date
      * @throws ResourceNotFoundException if the provided list ID is invalid
      */
     @GetMapping("api/list")
-    public GroceryList getList(@RequestParam("id") long id) throws ResourceNotFoundException {
+    public GroceryList getList(@RequestParam("id") long id, WebRequest request) throws ResourceNotFoundException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        if (request.checkNotModified(listETag(groceryService.getListVersion(id, principal)))) {
+            return null;
+        }
+
+        return groceryService.getListById(id, principal);
+    }
+
+    /**
+     * Stream a grocery list as JSON, in the same shape as api/list, for lists too large to be loaded whole.
+     * The list's items are read from the database and written to the response as they are read, so memory
+     * use does not grow with the size of the list.
+     * <p>
+     * Access is checked, and the list's version compared against the If-None-Match header, before the
+     * response is started, so that an invalid ID is still answered with 404 NOT FOUND.
+     *
+     * @param id      the ID specifying the grocery list to stream
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a StreamingResponseBody writing the list, or null if the client's copy is up to date
+     * @throws ResourceNotFoundException if the provided list ID is invalid
+     */
+    @GetMapping("api/list/{id}/export")
+    public ResponseEntity<StreamingResponseBody> exportList(@PathVariable("id") long id, WebRequest request)
+            throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        GroceryListHeader header = listExportService.getListHeader(id, principal);
 
-        return groceryService.getListById(id, username);
+        if (request.checkNotModified(listETag(header.getVersion()))) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> listExportService.writeList(header, out));
     }
 
     /**
@@ -119,15 +218,15 @@ public class GroceryController {
                                      @RequestParam(value = "templateId", required = false) Long templateId)
             throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
         if (template) {
-            return groceryService.createNewList(name, username, template);
+            return groceryService.createNewList(name, principal, template);
         } else if (templateId != null) {
-            return groceryService.createNewList(name, username, templateId);
+            return groceryService.createNewList(name, principal, templateId);
         }
 
-        return groceryService.createNewList(name, username, template);
+        return groceryService.createNewList(name, principal, template);
     }
 
     /**
@@ -141,19 +240,110 @@ public class GroceryController {
      * <p>
      * If the save is successful, then the newly saved grocery list is returned.
      * <p>
-     * Since this endpoint is a protected resource, a valid username must
+     * Since this endpoint is a protected resource, a valid principal must
      * be available from the SecurityContext when this method is invoked.
      *
-     * @param list the GroceryList to save
-     * @return the newly saved GroceryList
-     * @throws ResourceNotFoundException if the provided GroceryList contains an invalid ID
+     * @param list    the GroceryList to save
+     * @param ifMatch the ETag the list is expected to have, or null to save unconditionally
+     * @return the newly saved GroceryList, along with its new ETag
+     * @throws ResourceNotFoundException   if the provided GroceryList contains an invalid ID
+     * @throws PreconditionFailedException if the list does not match the If-Match header
      */
     @PutMapping("api/save-list")
-    public GroceryList saveList(@Validated @RequestBody GroceryList list) throws ResourceNotFoundException {
+    public ResponseEntity<GroceryList> saveList(@Validated @RequestBody GroceryList list,
+                                                @RequestHeader(value = "If-Match", required = false) String ifMatch)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        GroceryList saved = groceryService.saveList(list, parseListETag(ifMatch), principal);
+
+        return ResponseEntity.ok().eTag(listETag(saved.getVersion())).body(saved);
+    }
+
+    /**
+     * Add grocery items to an existing grocery list, given a JSON array of the names of the items to add. Names
+     * of items already in the list are ignored. Unlike api/save-list, only the added items need to be sent.
+     * <p>
+     * If the list ID does not exist, or the currently authenticated user does not own or have shared access
+     * to the list, a ResourceNotFoundException is thrown.
+     *
+     * @param id      a long representing the ID of the grocery list to add items to
+     * @param names   a List of the String names of the grocery items to add
+     * @param ifMatch the ETag the list is expected to have, or null to add unconditionally
+     * @throws ResourceNotFoundException   if the provided list ID is invalid
+     * @throws PreconditionFailedException if the list does not match the If-Match header
+     */
+    @PostMapping("api/list/{id}/items")
+    @ResponseStatus(value = HttpStatus.NO_CONTENT)
+    public void addItems(@PathVariable("id") long id, @RequestBody List<@NotBlank String> names,
+                         @RequestHeader(value = "If-Match", required = false) String ifMatch)
+            throws ResourceNotFoundException, PreconditionFailedException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return groceryService.saveList(list, username);
+        groceryService.addItems(id, names, parseListETag(ifMatch), principal);
+    }
+
+    /**
+     * Fetch a page of the names of the items of a grocery list, in list order, without loading the list.
+     * <p>
+     * The returned JSON object has two properties: "items", an array of the item names on this page, and
+     * "next", holding the cursor of the next page, or null if this is the last page. The list's version is
+     * checked against the If-None-Match header first, in the same way as api/list.
+     *
+     * @param id      a long representing the ID of the grocery list
+     * @param after   a long representing the cursor after which the page starts, or 0 for the first page
+     * @param limit   the maximum number of item names on the page
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a Map holding the page of item names and the cursor of the next page, or null if the client's
+     * copy is up to date
+     * @throws ResourceNotFoundException if the provided list ID is invalid
+     */
+    @GetMapping("api/list/{id}/items")
+    public Map<String, Object> getItems(@PathVariable("id") long id,
+                                        @RequestParam(value = "after", defaultValue = "0") long after,
+                                        @RequestParam(value = "limit", defaultValue = "100")
+                                        @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+                                        WebRequest request) throws ResourceNotFoundException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        if (request.checkNotModified(listETag(groceryService.getListVersion(id, principal)))) {
+            return null;
+        }
+
+        KeysetPage<List<String>> page = groceryService.getItemNames(id, after, limit, principal);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("items", page.getContent());
+        body.put("next", page.getNext());
+
+        return body;
+    }
+
+    /**
+     * Remove grocery items from an existing grocery list, given a JSON array of the names of the items to
+     * remove. Names of items not in the list are ignored.
+     * <p>
+     * If the list ID does not exist, or the currently authenticated user does not own or have shared access
+     * to the list, a ResourceNotFoundException is thrown.
+     *
+     * @param id      a long representing the ID of the grocery list to remove items from
+     * @param names   a List of the String names of the grocery items to remove
+     * @param ifMatch the ETag the list is expected to have, or null to remove unconditionally
+     * @throws ResourceNotFoundException   if the provided list ID is invalid
+     * @throws PreconditionFailedException if the list does not match the If-Match header
+     */
+    @DeleteMapping("api/list/{id}/items")
+    @ResponseStatus(value = HttpStatus.NO_CONTENT)
+    public void removeItems(@PathVariable("id") long id, @RequestBody List<@NotBlank String> names,
+                            @RequestHeader(value = "If-Match", required = false) String ifMatch)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        groceryService.removeItems(id, names, parseListETag(ifMatch), principal);
     }
 
     /**
@@ -165,19 +355,25 @@ public class GroceryController {
      * <p>
      * If the edit is successful, the newly modified grocery list is returned.
      *
-     * @param name the String to set the list name to
-     * @param id   a long representing the ID of the grocery list to edit
-     * @return the newly modified GroceryList
-     * @throws ResourceNotFoundException if the provided list ID does not match any grocery list belonging to
-     *                                   the currently authenticated user
+     * @param name    the String to set the list name to
+     * @param id      a long representing the ID of the grocery list to edit
+     * @param ifMatch the ETag the list is expected to have, or null to edit unconditionally
+     * @return the newly modified GroceryList, along with its new ETag
+     * @throws ResourceNotFoundException   if the provided list ID does not match any grocery list belonging to
+     *                                     the currently authenticated user
+     * @throws PreconditionFailedException if the list does not match the If-Match header
      */
     @PutMapping("api/edit-list-name")
-    public GroceryList editListName(@RequestParam("name") @NotBlank String name, @RequestParam("id") long id)
-            throws ResourceNotFoundException {
+    public ResponseEntity<GroceryList> editListName(@RequestParam("name") @NotBlank String name,
+                                                    @RequestParam("id") long id,
+                                                    @RequestHeader(value = "If-Match", required = false) String ifMatch)
+            throws ResourceNotFoundException, PreconditionFailedException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        GroceryList edited = groceryService.editListName(id, name, parseListETag(ifMatch), principal);
 
-        return groceryService.editListName(id, name, username);
+        return ResponseEntity.ok().eTag(listETag(edited.getVersion())).body(edited);
     }
 
     /**
@@ -186,16 +382,20 @@ public class GroceryController {
      * belong to the currently authenticated user. If such an ID is provided, a
      * ResourceNotFoundException will be thrown.
      *
-     * @param id the ID of the list to delete
-     * @throws ResourceNotFoundException if the provided list ID is invalid
+     * @param id      the ID of the list to delete
+     * @param ifMatch the ETag the list is expected to have, or null to delete unconditionally
+     * @throws ResourceNotFoundException   if the provided list ID is invalid
+     * @throws PreconditionFailedException if the list does not match the If-Match header
      */
     @DeleteMapping("api/delete-list")
     @ResponseStatus(value = HttpStatus.NO_CONTENT)
-    public void deleteList(@RequestParam("id") long id) throws ResourceNotFoundException {
+    public void deleteList(@RequestParam("id") long id,
+                           @RequestHeader(value = "If-Match", required = false) String ifMatch)
+            throws ResourceNotFoundException, PreconditionFailedException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        groceryService.removeList(id, username);
+        groceryService.removeList(id, parseListETag(ifMatch), principal);
     }
 
     /**
@@ -215,30 +415,86 @@ public class GroceryController {
      * <p>
      * These properties correspond to an object mapping list ID to list name, of lists
      * that the authenticated user owns and has shared access to, respectively.
+     * <p>
+     * All four mappings are built from a single query, since this endpoint is called every time
+     * the client application is opened. If the user's dashboard version matches the If-None-Match
+     * header, that query is skipped entirely and 304 NOT MODIFIED is returned.
+     * <p>
+     * The version is read before the lists, so that a concurrent change can only make the returned
+     * lists newer than their ETag, never older.
      *
-     * @return a Map object describing all lists the authenticated user has access to
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a Map object describing all lists the authenticated user has access to, or null if the
+     * client's copy is up to date
      */
     @GetMapping("api/v2/all-lists")
-    public Map<String, Object> getAllListsFull() {
+    public Map<String, Object> getAllListsFull(WebRequest request) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        Map<String, Object> body = new HashMap<>();
+        // the user ID is part of the ETag, since the dashboard is different for every user
+        String eTag = "\"" + principal.getId() + "-" + groceryService.getDashboardVersion(principal) + "\"";
+
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return groceryService.getAllListNames(principal);
+    }
 
-        Map<String, Object> lists = new HashMap<>();
-        lists.put("owned", groceryService.getOwnedListNames(username));
-        lists.put("shared", groceryService.getSharedListNames(username));
+    /**
+     * Fetch a page of the grocery lists the authenticated user has access to, in order of list ID.
+     * <p>
+     * The returned JSON object is grouped in the same way as {@link #getAllListsFull(WebRequest)}, with each
+     * group holding the lists of that kind on this page, and has an additional property "next", holding the
+     * cursor of the next page, or null if this is the last page. Pages are checked against the same dashboard
+     * ETag as the full response.
+     *
+     * @param after   a long representing the list ID after which the page starts, or 0 for the first page
+     * @param limit   the maximum number of lists and templates on the page
+     * @param request the WebRequest being handled, used to check If-None-Match
+     * @return a Map object describing the page of lists, or null if the client's copy is up to date
+     */
+    @GetMapping(value = "api/v2/all-lists", params = "limit")
+    public Map<String, Object> getAllListsFull(@RequestParam(value = "after", defaultValue = "0") long after,
+                                               @RequestParam("limit") @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+                                               WebRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        Map<String, Object> templates = new HashMap<>();
-        templates.put("owned", groceryService.getOwnedTemplateNames(username));
-        templates.put("shared", groceryService.getSharedTemplateNames(username));
+        String eTag = "\"" + principal.getId() + "-" + groceryService.getDashboardVersion(principal) + "\"";
 
-        body.put("lists", lists);
-        body.put("templates", templates);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        KeysetPage<Map<String, Object>> page = groceryService.getAllListNames(principal, after, limit);
+
+        Map<String, Object> body = new HashMap<>(page.getContent());
+        body.put("next", page.getNext());
 
         return body;
     }
 
+    /**
+     * Find the grocery lists and templates the authenticated user has access to, holding items matching a
+     * query. Every word of the query must match the start of a word of some item in a list, ignoring case, so
+     * "whole mil" finds lists holding "Whole milk".
+     * <p>
+     * Since this endpoint is a protected resource, a valid principal must be available from the SecurityContext
+     * when this method is invoked.
+     *
+     * @param query the non-blank String query to search for
+     * @return a Map from list IDs to list names of the matching lists, in order of list ID
+     */
+    @GetMapping("api/lists/search")
+    public Map<Long, String> searchLists(@RequestParam("q") @NotBlank String query) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
+
+        return groceryService.searchLists(query, principal);
+    }
+
     /**
      * Add a user to the shared users of a grocery list. A list can only be shared by the owner of the list,
      * and if the user it is being shared with is a friend of the owner. If any of these conditions are
@@ -247,7 +503,7 @@ public class GroceryController {
      * Furthermore, if the user to be shared with cannot be found, or if the list ID does not match any
      * existing list, a ResourceNotFoundException is thrown.
      * <p>
-     * Since this endpoint is a protected resource, a valid username must be available from the SecurityContext
+     * Since this endpoint is a protected resource, a valid principal must be available from the SecurityContext
      * when this method is invoked.
      * <p>
      * If the sharing was successful, the newly modified GroceryList object is returned.
@@ -262,9 +518,9 @@ public class GroceryController {
     public GroceryList shareList(@RequestParam("id") long id,
                                  @RequestParam("username") String shareUsername) throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return groceryService.shareList(id, shareUsername, username);
+        return groceryService.shareList(id, shareUsername, principal);
     }
 
     /**
@@ -285,8 +541,44 @@ public class GroceryController {
     public GroceryList unshareList(@RequestParam("id") long id,
                                    @RequestParam("username") String shareUsername) throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return groceryService.unshareList(id, shareUsername, username);
+        return groceryService.unshareList(id, shareUsername, principal);
+    }
+
+    /**
+     * Format a grocery list version as an ETag.
+     *
+     * @param version a long representing the version of a grocery list
+     * @return a String ETag for that version
+     */
+    private static String listETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Parse the list version out of an If-Match header. A missing header, or the wildcard "*", matches any
+     * version, and is parsed to null.
+     *
+     * @param ifMatch the String value of an If-Match header, or null if none was provided
+     * @return the version the If-Match header requires, or null if any version matches
+     * @throws PreconditionFailedException if the header does not hold a grocery list ETag
+     */
+    private static Long parseListETag(String ifMatch) throws PreconditionFailedException {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String eTag = ifMatch.trim();
+
+        if (eTag.startsWith("W/")) {
+            eTag = eTag.substring(2);
+        }
+
+        try {
+            return Long.parseLong(eTag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match any version of this list: " + ifMatch);
+        }
     }
 }
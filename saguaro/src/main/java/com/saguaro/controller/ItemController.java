@@ -0,0 +1,80 @@
+package com.saguaro.controller;
+
+import com.saguaro.service.ItemCooccurrenceIndex;
+import com.saguaro.service.ItemService;
+import com.saguaro.service.ItemSuggestionIndex;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+/**
+ * REST controller defining endpoints related to grocery items across all lists. The following
+ * endpoints are defined:
+ * <ul>
+ *     <li>api/items/suggest
+ *     <li>api/items/recommend
+ * </ul>
+ *
+ * @author Charles Wong
+ */
+@RestController
+@Validated
+public class ItemController {
+
+    /**
+     * A grocery item Service to delegate logic to.
+     */
+    private final ItemService itemService;
+
+    /**
+     * Constructs this item controller given an ItemService.
+     * <p>
+     * Notice that by default, Spring will attempt to autowire the only
+     * constructor of a class.
+     *
+     * @param itemService an ItemService to provide logic for this controller
+     */
+    public ItemController(ItemService itemService) {
+        this.itemService = itemService;
+    }
+
+    /**
+     * Suggest grocery items to complete what a user has typed so far. Items whose names start with the
+     * prefix, ignoring case, are returned as a JSON array of names, with the items in the most grocery lists
+     * first.
+     *
+     * @param prefix the non-blank String typed so far
+     * @param limit  the maximum number of suggestions to return, at most 10
+     * @return a List of the String names of the suggested grocery items
+     */
+    @GetMapping("api/items/suggest")
+    public List<String> suggest(@RequestParam("prefix") @NotBlank String prefix,
+                                @RequestParam(value = "limit", defaultValue = "10")
+                                @Min(1) @Max(ItemSuggestionIndex.MAX_SUGGESTIONS) int limit) {
+        return itemService.suggest(prefix, limit);
+    }
+
+    /**
+     * Recommend grocery items to add alongside others, such as the items of a list being edited. Items
+     * that are often found in the same lists as the given ones are returned as a JSON array of names, with
+     * the items found with them in the most lists first.
+     *
+     * @param names the non-empty List of String names of the grocery items to recommend alongside, passed
+     *              as repeated name parameters
+     * @param limit the maximum number of recommendations to return, at most 10
+     * @return a List of the String names of the recommended grocery items
+     */
+    @GetMapping("api/items/recommend")
+    public List<String> recommend(@RequestParam("name") @NotEmpty List<@NotBlank String> names,
+                                  @RequestParam(value = "limit", defaultValue = "10")
+                                  @Min(1) @Max(ItemCooccurrenceIndex.MAX_RECOMMENDATIONS) int limit) {
+        return itemService.recommend(names, limit);
+    }
+}
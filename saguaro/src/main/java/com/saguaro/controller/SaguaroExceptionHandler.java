@@ -1,16 +1,24 @@
 package com.saguaro.controller;
 
+import com.saguaro.exception.BatchFailedException;
 import com.saguaro.exception.InvalidLoginException;
 import com.saguaro.exception.InvalidParamException;
+import com.saguaro.exception.PreconditionFailedException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.exception.ServiceUnavailableException;
+import com.saguaro.exception.TooManyRequestsException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Exception handler for Saguaro. This class provides methods that intercept exceptions
  * thrown by controllers, and responds accordingly.
@@ -20,6 +28,11 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
  *     <li>InvalidLoginException
  *     <li>InvalidParamException
  *     <li>ResourceNotFoundException
+ *     <li>PreconditionFailedException
+ *     <li>ObjectOptimisticLockingFailureException
+ *     <li>ServiceUnavailableException
+ *     <li>TooManyRequestsException
+ *     <li>BatchFailedException
  * </ul>
  *
  * @author Charles Wong
@@ -88,4 +101,128 @@ public class SaguaroExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(e,
                 e.getMessage(), new HttpHeaders(), HttpStatus.NOT_FOUND, request);
     }
+
+    /**
+     * Handler for any PreconditionFailedException. This exception is thrown when a request
+     * carries an If-Match header that does not match the current version of the resource it
+     * modifies.
+     * <p>
+     * Returns a 412 PRECONDITION_FAILED with the exception message.
+     *
+     * @param e       the PreconditionFailedException to be handled
+     * @param request the request which generated this exception
+     * @return a response with 412 PRECONDITION_FAILED status
+     * @see PreconditionFailedException
+     */
+    @ExceptionHandler(value = {
+            PreconditionFailedException.class
+    })
+    ResponseEntity<Object> handle(PreconditionFailedException e, WebRequest request) {
+
+        return handleExceptionInternal(e,
+                e.getMessage(), new HttpHeaders(), HttpStatus.PRECONDITION_FAILED, request);
+    }
+
+    /**
+     * Handler for any ObjectOptimisticLockingFailureException. This exception is thrown when
+     * an entity was modified by another request between being loaded and being saved.
+     * <p>
+     * Returns a 412 PRECONDITION_FAILED, since the client's view of the resource is out of date
+     * in the same way as for a failed If-Match.
+     *
+     * @param e       the ObjectOptimisticLockingFailureException to be handled
+     * @param request the request which generated this exception
+     * @return a response with 412 PRECONDITION_FAILED status
+     */
+    @ExceptionHandler(value = {
+            ObjectOptimisticLockingFailureException.class
+    })
+    ResponseEntity<Object> handle(ObjectOptimisticLockingFailureException e, WebRequest request) {
+
+        return handleExceptionInternal(e,
+                "Resource was modified concurrently, fetch it again and retry",
+                new HttpHeaders(), HttpStatus.PRECONDITION_FAILED, request);
+    }
+
+    /**
+     * Handler for any ServiceUnavailableException. This exception is thrown when the server is
+     * shedding load, for example when too many passwords are already waiting to be hashed.
+     * <p>
+     * Returns a 503 SERVICE_UNAVAILABLE with the exception message, and a Retry-After header
+     * asking the client to wait a second before retrying.
+     *
+     * @param e       the ServiceUnavailableException to be handled
+     * @param request the request which generated this exception
+     * @return a response with 503 SERVICE_UNAVAILABLE status
+     * @see ServiceUnavailableException
+     */
+    @ExceptionHandler(value = {
+            ServiceUnavailableException.class
+    })
+    ResponseEntity<Object> handle(ServiceUnavailableException e, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        return handleExceptionInternal(e,
+                e.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE, request);
+    }
+
+    /**
+     * Handler for any TooManyRequestsException. This exception is thrown when a client has
+     * exceeded a rate limit, such as the one on login attempts.
+     * <p>
+     * Returns a 429 TOO_MANY_REQUESTS with the exception message, and a Retry-After header
+     * holding the number of seconds until the client may try again.
+     *
+     * @param e       the TooManyRequestsException to be handled
+     * @param request the request which generated this exception
+     * @return a response with 429 TOO_MANY_REQUESTS status
+     * @see TooManyRequestsException
+     */
+    @ExceptionHandler(value = {
+            TooManyRequestsException.class
+    })
+    ResponseEntity<Object> handle(TooManyRequestsException e, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+
+        return handleExceptionInternal(e,
+                e.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS, request);
+    }
+
+    /**
+     * Handler for any BatchFailedException. This exception is thrown when one operation of a batch
+     * fails, after which the whole batch is rolled back.
+     * <p>
+     * Returns the status the failed operation would have been answered with on its own, with a body
+     * holding the index and name of the failed operation and the exception message.
+     *
+     * @param e       the BatchFailedException to be handled
+     * @param request the request which generated this exception
+     * @return a response with the status of the failed operation
+     * @see BatchFailedException
+     */
+    @ExceptionHandler(value = {
+            BatchFailedException.class
+    })
+    ResponseEntity<Object> handle(BatchFailedException e, WebRequest request) {
+        HttpStatus status;
+
+        if (e.getCause() instanceof ResourceNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e.getCause() instanceof PreconditionFailedException) {
+            status = HttpStatus.PRECONDITION_FAILED;
+        } else if (e.getCause() instanceof InvalidParamException) {
+            status = HttpStatus.CONFLICT;
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("failed", e.getIndex());
+        body.put("op", e.getOperation());
+        body.put("error", e.getCause().getMessage());
+
+        return handleExceptionInternal(e, body, new HttpHeaders(), status, request);
+    }
 }
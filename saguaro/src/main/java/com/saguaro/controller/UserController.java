@@ -4,6 +4,11 @@ import com.saguaro.entity.User;
 import com.saguaro.exception.InvalidLoginException;
 import com.saguaro.exception.InvalidParamException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.exception.ServiceUnavailableException;
+import com.saguaro.exception.TooManyRequestsException;
+import com.saguaro.security.LoginRateLimiter;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.security.TokenAuthenticationFilter;
 import com.saguaro.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
@@ -11,6 +16,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotBlank;
 
 /**
@@ -33,15 +39,22 @@ public class UserController {
     private final UserService userService;
 
     /**
-     * Constructs this user controller given a UserService.
+     * A rate limiter for the unauthenticated login and register endpoints
+     */
+    private final LoginRateLimiter loginRateLimiter;
+
+    /**
+     * Constructs this user controller given a UserService and a LoginRateLimiter.
      * <p>
      * Notice that by default, Spring will attempt to autowire the only
      * constructor of a class.
      *
-     * @param userService a UserService to provide logic for this controller
+     * @param userService      a UserService to provide logic for this controller
+     * @param loginRateLimiter a LoginRateLimiter to limit login and register attempts with
      */
-    public UserController(UserService userService) {
+    public UserController(UserService userService, LoginRateLimiter loginRateLimiter) {
         this.userService = userService;
+        this.loginRateLimiter = loginRateLimiter;
     }
 
     /**
@@ -60,18 +73,28 @@ public class UserController {
      * username, then the login operation is unsuccessful and an InvalidLoginException
      * is thrown.
      * <p>
-     * A new token is provided on every successful login, and any prior tokens are
-     * invalidated; at most one token will be valid for a user at any given time.
-     * Tokens are non-expiring.
+     * A new token is provided on every successful login, for a new session. Prior
+     * tokens remain valid, so a user can be logged in on several devices at once.
+     * Tokens expire a fixed amount of time after the login that created them.
+     * <p>
+     * Attempts are rate limited per username and per client address, before the password
+     * is checked. Attempts over the limit cause a TooManyRequestsException to be thrown.
      *
      * @param username a String username to authenticate
      * @param password a String password to authenticate
+     * @param request  the HttpServletRequest being served, used to identify the client
      * @return the User that was successfully authenticated
-     * @throws InvalidLoginException if the login operation was unsuccessful
+     * @throws InvalidLoginException       if the login operation was unsuccessful
+     * @throws TooManyRequestsException    if too many attempts were made for the username or from the client
+     * @throws ServiceUnavailableException if the server is too busy checking other passwords
      */
     @PostMapping("/login")
     public User login(@RequestParam("username") String username,
-                      @RequestParam("password") String password) throws InvalidLoginException {
+                      @RequestParam("password") String password,
+                      HttpServletRequest request)
+            throws InvalidLoginException, TooManyRequestsException, ServiceUnavailableException {
+        loginRateLimiter.acquire(username, request.getRemoteAddr());
+
         return userService.login(username, password);
     }
 
@@ -90,14 +113,23 @@ public class UserController {
      * On successful registration, the newly created User object is returned. Note that
      * registering a user does not log them in; the object returned will have a null
      * token attribute.
+     * <p>
+     * Registrations are rate limited in the same way as logins.
      *
      * @param payload a RegisterPayload containing information about the user to register
+     * @param request the HttpServletRequest being served, used to identify the client
      * @return the User that was registered
-     * @throws InvalidParamException if an invalid RegisterPayload was provided
+     * @throws InvalidParamException       if an invalid RegisterPayload was provided
+     * @throws TooManyRequestsException    if too many attempts were made for the username or from the client
+     * @throws ServiceUnavailableException if the server is too busy hashing other passwords
      * @see UserPayload
      */
     @PostMapping("/register")
-    public User register(@Validated(RegisterGroup.class) @RequestBody UserPayload payload) throws InvalidParamException {
+    public User register(@Validated(RegisterGroup.class) @RequestBody UserPayload payload,
+                         HttpServletRequest request)
+            throws InvalidParamException, TooManyRequestsException, ServiceUnavailableException {
+        loginRateLimiter.acquire(payload.username, request.getRemoteAddr());
+
         return userService.registerNewUser(payload.username,
                 payload.password,
                 payload.name);
@@ -106,15 +138,15 @@ public class UserController {
     /**
      * Logout an authenticated user. This endpoint is a protected resource, meaning
      * that a valid token must have been provided in an Authorization header to reach
-     * this method. On successful logout, that token will be invalidated.
+     * this method. On successful logout, that token will be invalidated. Tokens of the
+     * user's other sessions are not affected.
+     *
+     * @param request the HttpServletRequest being served, used to read the token
      */
     @PostMapping("/logout")
     @ResponseStatus(value = HttpStatus.NO_CONTENT)
-    public void logout() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
-
-        userService.logout(username);
+    public void logout(HttpServletRequest request) {
+        userService.logout(TokenAuthenticationFilter.resolveToken(request));
     }
 
     /**
@@ -124,13 +156,15 @@ public class UserController {
      *
      * @param payload the UserPayload containing user attributes to change
      * @return the newly saved User object
+     * @throws ServiceUnavailableException if the server is too busy hashing other passwords
      */
     @PutMapping("/api/edit-user")
-    public User editUser(@Validated(EditGroup.class) @RequestBody UserPayload payload) {
+    public User editUser(@Validated(EditGroup.class) @RequestBody UserPayload payload)
+            throws ServiceUnavailableException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return userService.edit(payload.name, payload.password, username);
+        return userService.edit(payload.name, payload.password, principal);
     }
 
     /**
@@ -148,9 +182,9 @@ public class UserController {
     public User addFriend(@RequestParam("username") String friendUsername)
             throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return userService.addFriend(friendUsername, username);
+        return userService.addFriend(friendUsername, principal);
     }
 
     /**
@@ -168,9 +202,9 @@ public class UserController {
     public User removeFriend(@RequestParam("username") String friendUsername)
             throws ResourceNotFoundException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = (String) auth.getPrincipal();
+        SaguaroPrincipal principal = (SaguaroPrincipal) auth.getPrincipal();
 
-        return userService.removeFriend(friendUsername, username);
+        return userService.removeFriend(friendUsername, principal);
     }
 
     /**
@@ -2,6 +2,9 @@ package com.saguaro.entity;
 
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -16,10 +19,17 @@ import java.util.Objects;
  * Grocery items are contained within grocery lists, however grocery items are shared in
  * between lists. This means that two lists containing an item with the same name will
  * have pointers to the same item object.
+ * <p>
+ * Grocery items are never modified once created, so they are kept in the second-level cache.
+ * They are cached non-strict read-write rather than read-only, since Hibernate treats reading
+ * an item back in the transaction that created it as a cache update, which a read-only cache
+ * rejects.
  *
  * @author Charles Wong
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class GroceryItem {
 
     /**
@@ -88,22 +98,33 @@ public class GroceryItem {
      * Add a grocery list to the collection of lists that contain this item. Must be
      * called when adding a GroceryItem to a GroceryList to maintain the bi-directional
      * relationship.
+     * <p>
+     * The collection is only updated if it has already been loaded. Otherwise, it is read
+     * from the join table when first used, which already includes the list, and loading
+     * every list containing a common item just to add one more is avoided.
      *
      * @param list a GroceryList to add
      */
     void addList(GroceryList list) {
-        this.lists.add(list);
+        if (Hibernate.isInitialized(this.lists)) {
+            this.lists.add(list);
+        }
     }
 
     /**
      * Remove a grocery list from the collection of lists that contain this item. Must
      * be called when removing a GroceryItem from a GroceryList to maintain the
      * bi-directional relationship.
+     * <p>
+     * As with {@link #addList(GroceryList)}, the collection is only updated if it has
+     * already been loaded.
      *
      * @param list a GroceryList to remove
      */
     void removeList(GroceryList list) {
-        this.lists.remove(list);
+        if (Hibernate.isInitialized(this.lists)) {
+            this.lists.remove(list);
+        }
     }
 
     /**
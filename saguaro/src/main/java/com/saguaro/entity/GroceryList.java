@@ -6,13 +6,22 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.saguaro.id.PooledSequenceGenerator;
+import org.hibernate.annotations.CollectionId;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OrderBy;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -32,7 +41,12 @@ public class GroceryList {
      */
     @NotNull
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "list_seq")
+    @GenericGenerator(
+            name = "list_seq",
+            strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "LIST_SEQ")
+    )
     @Column(name = "LIST_ID")
     private long id;
 
@@ -42,10 +56,27 @@ public class GroceryList {
     private String name;
 
     /**
-     * The grocery items in this list
+     * The grocery items in this list.
+     * <p>
+     * Each row of the join table has its own surrogate ENTRY_ID, so Hibernate can insert or
+     * delete a single row when one item is added or removed, rather than deleting and
+     * re-inserting every row for the list as it does for a plain bag. Entry IDs are drawn
+     * from a sequence in blocks, so ordering by them gives the order in which items were added
+     * through the same server.
      */
     @NotNull
     @ManyToMany
+    @CollectionId(
+            columns = @Column(name = "ENTRY_ID"),
+            type = @Type(type = "long"),
+            generator = "list_items_seq"
+    )
+    @GenericGenerator(
+            name = "list_items_seq",
+            strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "LIST_ITEMS_SEQ")
+    )
+    @OrderBy(clause = "ENTRY_ID")
     @JoinTable(
             name = "LIST_ITEMS",
             joinColumns = @JoinColumn(
@@ -71,7 +102,8 @@ public class GroceryList {
     // serialized, but not deserialized
 
     /**
-     * A list of unique Users that this GroceryList is shared with
+     * A list of unique Users that this GroceryList is shared with. The unique constraint also provides
+     * the index used to check a user's access to a list.
      */
     @JsonSerialize(using = SharedUserSerializer.class)
     @ManyToMany
@@ -84,7 +116,8 @@ public class GroceryList {
             inverseJoinColumns = @JoinColumn(
                     name = "USER_ID",
                     referencedColumnName = "USER_ID"
-            )
+            ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"LIST_ID", "USER_ID"})
     )
     private List<User> sharedUsers;
 
@@ -93,6 +126,29 @@ public class GroceryList {
      */
     private boolean isTemplate;
 
+    /**
+     * The version of this list, incremented by Hibernate every time the list, its items or its shared users
+     * are modified. Shared users changed through the join table, rather than through this entity, increment
+     * it explicitly. Used for optimistic locking, and exposed to clients as the ETag of this list.
+     */
+    @JsonIgnore
+    @Version
+    private long version;
+
+    /**
+     * A hashed index over the grocery items in this list, used for constant time membership
+     * checks. Built lazily from {@link #items}, and rebuilt whenever it no longer describes
+     * that list (for example, when Hibernate or Jackson replaces the list).
+     */
+    @Transient
+    private Set<GroceryItem> itemIndex;
+
+    /**
+     * The list of items that {@link #itemIndex} was built from
+     */
+    @Transient
+    private List<GroceryItem> indexedItems;
+
     /**
      * Creates a new GroceryList, with null ID, name, and user. The newly created
      * grocery list contains an empty list of items.
@@ -205,12 +261,24 @@ public class GroceryList {
     }
 
     /**
-     * Get the items in this grocery list
+     * Get the items in this grocery list, in the order they were added. The returned List
+     * cannot be modified; use {@link #addItem(GroceryItem)}, {@link #removeItem(GroceryItem)}
+     * and {@link #retainItems(Set)} instead.
      *
-     * @return the List of GroceryItems in this list
+     * @return an unmodifiable List of GroceryItems in this list
      */
     public List<GroceryItem> getItems() {
-        return this.items;
+        return Collections.unmodifiableList(this.items);
+    }
+
+    /**
+     * Check if this list contains a GroceryItem. Runs in constant time.
+     *
+     * @param item the GroceryItem to check for
+     * @return true if this list contains the item, false otherwise
+     */
+    public boolean containsItem(GroceryItem item) {
+        return getItemIndex().contains(item);
     }
 
     /**
@@ -219,7 +287,7 @@ public class GroceryList {
      * @param item the GroceryItem to add to this list
      */
     public void addItem(GroceryItem item) {
-        if (!this.items.contains(item)) {
+        if (getItemIndex().add(item)) {
             this.items.add(item);
             item.addList(this);
         }
@@ -231,11 +299,55 @@ public class GroceryList {
      * @param item the GroceryItem to remove
      */
     public void removeItem(GroceryItem item) {
-        if (this.items.remove(item)) {
+        if (getItemIndex().remove(item)) {
+            this.items.remove(item);
             item.removeList(this);
         }
     }
 
+    /**
+     * Remove every GroceryItem from this list that is not contained in the given set, keeping
+     * the remaining items in their current order.
+     * <p>
+     * Items are removed one at a time rather than by rewriting the list, since clearing a
+     * persistent collection discards the entry IDs of its rows, and would cause every row for
+     * this list to be deleted and re-inserted. This way, only the removed rows are deleted.
+     * <p>
+     * The list is walked once from the end, removing items by position, so no item has to be
+     * searched for and each removal only shifts the items after it. Removing through the list's
+     * iterator would be cheaper, but Hibernate does not move the entry IDs of the later rows
+     * along with it, and would rewrite them all on flush.
+     *
+     * @param retained a Set of the GroceryItems to keep
+     */
+    public void retainItems(Set<GroceryItem> retained) {
+        Set<GroceryItem> index = getItemIndex();
+
+        for (int i = this.items.size() - 1; i >= 0; i--) {
+            GroceryItem item = this.items.get(i);
+
+            if (!retained.contains(item)) {
+                this.items.remove(i);
+                index.remove(item);
+                item.removeList(this);
+            }
+        }
+    }
+
+    /**
+     * Get the hashed index over this list's items, rebuilding it if it is missing or out of date.
+     *
+     * @return a Set containing the same GroceryItems as this list
+     */
+    private Set<GroceryItem> getItemIndex() {
+        if (this.itemIndex == null || this.indexedItems != this.items) {
+            this.itemIndex = new LinkedHashSet<>(this.items);
+            this.indexedItems = this.items;
+        }
+
+        return this.itemIndex;
+    }
+
     /**
      * Get whether this list is a template
      *
@@ -254,6 +366,15 @@ public class GroceryList {
         this.isTemplate = isTemplate;
     }
 
+    /**
+     * Get the version of this list
+     *
+     * @return a long representing the version of this list
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Performs all necessary operations to maintain database relations before deleting
      * this list. This list is removed from the collection of lists the owner User owns,
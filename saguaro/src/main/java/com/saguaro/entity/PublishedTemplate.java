@@ -0,0 +1,174 @@
+package com.saguaro.entity;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class implements a PublishedTemplate entity, and is used by Hibernate to generate a
+ * corresponding database representation.
+ * <p>
+ * A published template is a copy of a grocery list template, made when its owner publishes it to the
+ * template catalog, so that any user can create lists from it. It is identified by the ID of the template
+ * it was published from, and holds its own copy of the template's name and item names, so that the
+ * catalog never needs to read grocery lists. Republishing a template replaces that copy, and increments
+ * its revision.
+ *
+ * @author Charles Wong
+ */
+@Entity
+@Table(name = "PUBLISHED_TEMPLATE")
+public class PublishedTemplate {
+
+    /**
+     * The ID of the grocery list template this was published from
+     */
+    @Id
+    @Column(name = "TEMPLATE_ID")
+    private long id;
+
+    /**
+     * The ID of the user who published this template
+     */
+    @Column(name = "PUBLISHER_ID", nullable = false)
+    private long publisherId;
+
+    /**
+     * The username of the user who published this template
+     */
+    @Column(name = "PUBLISHER_USERNAME", nullable = false)
+    private String publisherUsername;
+
+    /**
+     * The name of this template, as of when it was last published
+     */
+    @Column(name = "NAME", nullable = false)
+    private String name;
+
+    /**
+     * The names of the items in this template, in order, as of when it was last published
+     */
+    @ElementCollection
+    @CollectionTable(name = "PUBLISHED_TEMPLATE_ITEMS", joinColumns = @JoinColumn(name = "TEMPLATE_ID"))
+    @OrderColumn(name = "POSITION")
+    @Column(name = "ITEM_NAME", nullable = false)
+    private List<String> itemNames;
+
+    /**
+     * The time at which this template was last published
+     */
+    @Column(name = "PUBLISHED_AT", nullable = false)
+    private Instant publishedAt;
+
+    /**
+     * The number of times this template has been republished
+     */
+    @Column(name = "REVISION", nullable = false)
+    private int revision;
+
+    /**
+     * Constructs an empty published template. Required by Hibernate.
+     */
+    protected PublishedTemplate() {
+    }
+
+    /**
+     * Constructs a new published template, at revision 0.
+     *
+     * @param id                a long representing the ID of the template being published
+     * @param publisherId       a long representing the ID of the user publishing the template
+     * @param publisherUsername the String username of the user publishing the template
+     * @param name              the String name of the template
+     * @param itemNames         a List of the String names of the template's items, in order
+     * @param publishedAt       the Instant the template is published at
+     */
+    public PublishedTemplate(long id, long publisherId, String publisherUsername, String name,
+                             List<String> itemNames, Instant publishedAt) {
+        this.id = id;
+        this.publisherId = publisherId;
+        this.publisherUsername = publisherUsername;
+        this.name = name;
+        this.itemNames = new ArrayList<>(itemNames);
+        this.publishedAt = publishedAt;
+    }
+
+    /**
+     * Replace the copy of the template held by this published template, and increment its revision.
+     *
+     * @param name        the String name of the template
+     * @param itemNames   a List of the String names of the template's items, in order
+     * @param publishedAt the Instant the template is republished at
+     */
+    public void republish(String name, List<String> itemNames, Instant publishedAt) {
+        this.name = name;
+        this.itemNames.clear();
+        this.itemNames.addAll(itemNames);
+        this.publishedAt = publishedAt;
+        this.revision++;
+    }
+
+    /**
+     * Get the ID of the template this was published from
+     *
+     * @return a long representing the ID of this template
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the ID of the user who published this template
+     *
+     * @return a long representing the ID of the publisher
+     */
+    public long getPublisherId() {
+        return publisherId;
+    }
+
+    /**
+     * Get the username of the user who published this template
+     *
+     * @return the String username of the publisher
+     */
+    public String getPublisherUsername() {
+        return publisherUsername;
+    }
+
+    /**
+     * Get the name of this template
+     *
+     * @return the String name of this template
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the names of the items in this template
+     *
+     * @return an unmodifiable List of the String names of this template's items, in order
+     */
+    public List<String> getItemNames() {
+        return Collections.unmodifiableList(itemNames);
+    }
+
+    /**
+     * Get the time at which this template was last published
+     *
+     * @return the Instant this template was last published at
+     */
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Get the number of times this template has been republished
+     *
+     * @return an int representing the revision of this template
+     */
+    public int getRevision() {
+        return revision;
+    }
+}
@@ -1,6 +1,11 @@
 package com.saguaro.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.saguaro.id.PooledSequenceGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.*;
@@ -14,17 +19,27 @@ import java.util.Collection;
  * to protected resources by Spring.
  * <p>
  * Every user is by default given the ROLE_USER role on registration.
+ * <p>
+ * Roles are never modified by Saguaro, so they are kept in the second-level cache as
+ * read-only entities.
  *
  * @author Charles Wong
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Role implements GrantedAuthority {
 
     /**
      * An ID for this role
      */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "role_seq")
+    @GenericGenerator(
+            name = "role_seq",
+            strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "ROLE_SEQ")
+    )
     private Long id;
 
     /**
@@ -5,6 +5,11 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.saguaro.id.PooledSequenceGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.*;
@@ -18,9 +23,9 @@ import java.util.stream.Collectors;
  * <p>
  * Every user is identified with a numerical ID, and a unique username. A user must also
  * have a password, which is stored as a bcrypt hash, and a plaintext name. By default,
- * all users are automatically assigned the ROLE_USER role on registration. If a user is
- * currently logged in, they will have a string authentication token associated with
- * their account. Finally, every user can own grocery lists.
+ * all users are automatically assigned the ROLE_USER role on registration. A user may be
+ * logged in on several devices at once, with a separate {@link UserSession} and
+ * authentication token for each. Finally, every user can own grocery lists.
  *
  * @author Charles Wong
  */
@@ -31,7 +36,12 @@ public class User {
      * An ID for this user
      */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "user_seq")
+    @GenericGenerator(
+            name = "user_seq",
+            strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "USER_SEQ")
+    )
     @Column(name = "USER_ID")
     private long id;
 
@@ -53,8 +63,10 @@ public class User {
     private String name;
 
     /**
-     * The roles this user has
+     * The roles this user has. Cached, since they are read to build the user's authorities
+     * on every login.
      */
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ManyToMany
     @JoinTable(
             name = "user_roles",
@@ -70,10 +82,22 @@ public class User {
     private Collection<Role> roles;
 
     /**
-     * The authentication token of this user
+     * The authentication token of a session this user has just logged in with. Tokens are stored
+     * as {@link UserSession} entities, so this is only set on the User returned by a login.
      */
+    @Transient
     private String token;
 
+    /**
+     * A counter that is incremented every time a grocery list this user owns or has shared access to is
+     * created, renamed, deleted, shared or unshared. Exposed to clients as the ETag of their dashboard.
+     * <p>
+     * The counter is only ever changed by a bulk update, so it is never written from this entity.
+     */
+    @JsonIgnore
+    @Column(name = "DASHBOARD_VERSION", nullable = false, updatable = false)
+    private long dashboardVersion;
+
     /**
      * The grocery lists of this user
      *
@@ -91,7 +115,8 @@ public class User {
     private List<GroceryList> sharedLists;
 
     /**
-     * The users this user has befriended
+     * The users this user has befriended. The unique constraint also provides the index used to
+     * check whether two users are friends without loading this list.
      */
     @JsonSerialize(using = FriendSerializer.class)
     @ManyToMany
@@ -104,7 +129,8 @@ public class User {
             inverseJoinColumns = @JoinColumn(
                     name = "FRIEND_ID",
                     referencedColumnName = "USER_ID"
-            )
+            ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"USER_ID", "FRIEND_ID"})
     )
     private List<User> friends;
     // using Sets "breaks" Hibernate
@@ -117,6 +143,20 @@ public class User {
     @ManyToMany(mappedBy = "friends")
     private List<User> befriended;
 
+    /**
+     * A hashed index over the IDs of this user's friends, used for constant time membership checks
+     * that do not compare whole User objects. Built lazily from {@link #friends}, and rebuilt whenever
+     * it no longer describes that list.
+     */
+    @Transient
+    private Set<Long> friendIndex;
+
+    /**
+     * The list of friends that {@link #friendIndex} was built from
+     */
+    @Transient
+    private List<User> indexedFriends;
+
     /**
      * Creates a User with no roles and grocery lists. Does not initialize any
      * attributes; all attributes must be set explicitly to persist this entity.
@@ -139,6 +179,17 @@ public class User {
         return this.id;
     }
 
+    /**
+     * Get the dashboard version of this user. Note that this may be stale if the version was incremented
+     * after this user was loaded.
+     *
+     * @return a long representing the dashboard version of this user
+     */
+    @JsonIgnore
+    public long getDashboardVersion() {
+        return this.dashboardVersion;
+    }
+
     /**
      * Get the name of this user
      *
@@ -196,8 +247,8 @@ public class User {
     }
 
     /**
-     * Get the authentication token of this password. This will return null if the user
-     * is not currently logged in.
+     * Get the authentication token of this user. This will return null unless this User was
+     * returned by a login.
      *
      * @return the String authentication token of this user
      */
@@ -273,12 +324,23 @@ public class User {
     }
 
     /**
-     * Add a user to this user's list of friends
+     * Check if a user is one of this user's friends. Users are compared by ID, in constant time.
+     *
+     * @param user the User to check for
+     * @return true if the user is a friend of this user, false otherwise
+     */
+    public boolean hasFriend(User user) {
+        return getFriendIndex().contains(user.getId());
+    }
+
+    /**
+     * Add a user to this user's list of friends, if they are not already a friend. Users are
+     * compared by ID, so both users should have been persisted.
      *
      * @param user the User to add as a friend
      */
     public void addFriend(User user) {
-        if (user != this && !this.friends.contains(user)) {
+        if (user != this && getFriendIndex().add(user.getId())) {
             this.friends.add(user);
             user.addBefriended(this);
         }
@@ -290,11 +352,27 @@ public class User {
      * @param user the User to remove as a friend
      */
     public void removeFriend(User user) {
-        if (this.friends.remove(user)) {
-            user.removeBefriended(user);
+        if (getFriendIndex().remove(user.getId())) {
+            this.friends.removeIf(friend -> friend.getId() == user.getId());
+            user.removeBefriended(this);
         }
     }
 
+    /**
+     * Get the hashed index over the IDs of this user's friends, rebuilding it if it is missing or
+     * out of date.
+     *
+     * @return a Set containing the IDs of this user's friends
+     */
+    private Set<Long> getFriendIndex() {
+        if (this.friendIndex == null || this.indexedFriends != this.friends) {
+            this.friendIndex = this.friends.stream().map(User::getId).collect(Collectors.toCollection(HashSet::new));
+            this.indexedFriends = this.friends;
+        }
+
+        return this.friendIndex;
+    }
+
     /**
      * Record a user as having befriended this user. Used to maintain the bidirectional
      * relationship.
@@ -312,7 +390,7 @@ public class User {
      * @param user the User to mark as not being befriended by this user anymore
      */
     private void removeBefriended(User user) {
-        this.befriended.remove(user);
+        this.befriended.removeIf(befriender -> befriender.getId() == user.getId());
     }
 
     /**
@@ -0,0 +1,179 @@
+package com.saguaro.entity;
+
+import com.saguaro.id.PooledSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * This class implements a UserSession entity, and is used by Hibernate to generate a
+ * corresponding database representation.
+ * <p>
+ * A session is created every time a user logs in, so a user may be logged in on several devices at
+ * once. Only a SHA-256 hash of the session's authentication token is stored, under a unique index, so
+ * that tokens are looked up by index and cannot be recovered from the database.
+ * <p>
+ * Every session expires a fixed amount of time after it is created. The time it was last used is
+ * recorded as well, but is only updated periodically.
+ *
+ * @author Charles Wong
+ */
+@Entity
+@Table(name = "USER_SESSION", indexes = {
+        @Index(name = "USER_SESSION_TOKEN_HASH_UK", columnList = "TOKEN_HASH", unique = true),
+        @Index(name = "USER_SESSION_EXPIRES_AT_IDX", columnList = "EXPIRES_AT")
+})
+public class UserSession {
+
+    /**
+     * An ID for this session
+     */
+    @Id
+    @GeneratedValue(generator = "session_seq")
+    @GenericGenerator(
+            name = "session_seq",
+            strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "SESSION_SEQ")
+    )
+    @Column(name = "SESSION_ID")
+    private long id;
+
+    /**
+     * The user this session belongs to
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "USER_ID", nullable = false)
+    private User user;
+
+    /**
+     * The hex encoded SHA-256 hash of this session's authentication token
+     */
+    @Column(name = "TOKEN_HASH", nullable = false, length = 64)
+    private String tokenHash;
+
+    /**
+     * The time at which this session was created
+     */
+    @Column(name = "CREATED_AT", nullable = false)
+    private Instant createdAt;
+
+    /**
+     * The time at which this session expires
+     */
+    @Column(name = "EXPIRES_AT", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * The time at which this session was last seen in use
+     */
+    @Column(name = "LAST_SEEN_AT", nullable = false)
+    private Instant lastSeenAt;
+
+    /**
+     * Constructs an empty session. Required by Hibernate.
+     */
+    protected UserSession() {
+    }
+
+    /**
+     * Constructs a new session for a user, which is considered last seen when it is created.
+     *
+     * @param user      the User the session belongs to
+     * @param tokenHash the String hash of the session's token, as returned by {@link #hashToken(String)}
+     * @param createdAt the Instant the session is created at
+     * @param expiresAt the Instant the session expires at
+     */
+    public UserSession(User user, String tokenHash, Instant createdAt, Instant expiresAt) {
+        this.user = user;
+        this.tokenHash = tokenHash;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.lastSeenAt = createdAt;
+    }
+
+    /**
+     * Get the ID of this session
+     *
+     * @return a long representing the ID of this session
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the user this session belongs to
+     *
+     * @return the User this session belongs to
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Get the hash of this session's authentication token
+     *
+     * @return the hex encoded String hash of this session's token
+     */
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    /**
+     * Get the time at which this session was created
+     *
+     * @return the Instant this session was created at
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Get the time at which this session expires
+     *
+     * @return the Instant this session expires at
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Get the time at which this session was last seen in use
+     *
+     * @return the Instant this session was last seen at
+     */
+    public Instant getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    /**
+     * Hash an authentication token into the form it is stored in.
+     *
+     * @param token the String token to hash
+     * @return the hex encoded SHA-256 hash of the token
+     */
+    public static String hashToken(String token) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+}
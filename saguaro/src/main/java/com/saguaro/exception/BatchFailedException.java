@@ -0,0 +1,51 @@
+package com.saguaro.exception;
+
+/**
+ * An exception thrown when one operation of a batch fails, causing the whole batch to be rolled back.
+ * The exception the operation failed with is kept as the cause.
+ *
+ * @author Charles Wong
+ */
+public class BatchFailedException extends Exception {
+
+    /**
+     * The index of the operation that failed, within the batch
+     */
+    private final int index;
+
+    /**
+     * The name of the operation that failed
+     */
+    private final String operation;
+
+    /**
+     * Construct a BatchFailedException for a failed operation.
+     *
+     * @param index     the index of the operation that failed, within the batch
+     * @param operation the String name of the operation that failed
+     * @param cause     the Exception the operation failed with
+     */
+    public BatchFailedException(int index, String operation, Exception cause) {
+        super("Operation " + index + " (" + operation + ") failed: " + cause.getMessage(), cause);
+        this.index = index;
+        this.operation = operation;
+    }
+
+    /**
+     * Get the index of the operation that failed, within the batch.
+     *
+     * @return the index of the failed operation
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the name of the operation that failed.
+     *
+     * @return the String name of the failed operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+}
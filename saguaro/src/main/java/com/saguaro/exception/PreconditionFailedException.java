@@ -0,0 +1,19 @@
+package com.saguaro.exception;
+
+/**
+ * An exception thrown when a conditional request cannot be performed, because the resource it
+ * targets has changed since the version the client expected.
+ *
+ * @author Charles Wong
+ */
+public class PreconditionFailedException extends Exception {
+
+    /**
+     * Construct a PreconditionFailedException with some message string.
+     *
+     * @param message the String message to attach to this exception
+     */
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -46,21 +46,36 @@ public class ResourceNotFoundException extends Exception {
      * @param user the User that the entity was not found for
      */
     public ResourceNotFoundException(Class<?> type, String id, User user) {
-        super(constructMessage(type, id, user));
+        super(constructMessage(type, id, user.getUsername()));
+    }
+
+    /**
+     * Constructor for this exception that will initialize it with a message detailing
+     * what was not found
+     * <p>
+     * Use this when only the username of the user is at hand, to avoid fetching the User.
+     *
+     * @param type     the Class of the entity not found
+     * @param id       a String representation of the ID of the entity that was attempted
+     *                 to be searched for
+     * @param username the String username of the user that the entity was not found for
+     */
+    public ResourceNotFoundException(Class<?> type, String id, String username) {
+        super(constructMessage(type, id, username));
     }
 
     /**
      * Generate an exception message given the type that was not found, the ID that was
-     * not found, and the User that the entity was not found for.
+     * not found, and the username of the user that the entity was not found for.
      *
-     * @param type the Class of the entity not found
-     * @param id   a String representation of the ID of the entity that was attempted
-     *             to be searched for
-     * @param user the User that the entity was not found for
+     * @param type     the Class of the entity not found
+     * @param id       a String representation of the ID of the entity that was attempted
+     *                 to be searched for
+     * @param username the String username of the user that the entity was not found for
      * @return a formatted message detailing what was not found
      */
-    private static String constructMessage(Class<?> type, String id, User user) {
-        return "Could not find " + type.getSimpleName() + " " + id + " for user " + user.getUsername();
+    private static String constructMessage(Class<?> type, String id, String username) {
+        return "Could not find " + type.getSimpleName() + " " + id + " for user " + username;
     }
 
     /**
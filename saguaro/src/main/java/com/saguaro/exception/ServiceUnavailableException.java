@@ -0,0 +1,19 @@
+package com.saguaro.exception;
+
+/**
+ * An exception thrown when a request cannot be served right now because the server is at capacity,
+ * and should be retried later.
+ *
+ * @author Charles Wong
+ */
+public class ServiceUnavailableException extends Exception {
+
+    /**
+     * Construct a ServiceUnavailableException with some message string.
+     *
+     * @param message the String message to attach to this exception
+     */
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.saguaro.exception;
+
+/**
+ * An exception thrown when a client has made too many requests of some kind in a short time, and must
+ * wait before trying again.
+ *
+ * @author Charles Wong
+ */
+public class TooManyRequestsException extends Exception {
+
+    /**
+     * The number of seconds the client should wait before retrying
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Construct a TooManyRequestsException with some message string, and the time the client
+     * should wait before retrying.
+     *
+     * @param message           the String message to attach to this exception
+     * @param retryAfterSeconds the number of seconds the client should wait before retrying
+     */
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Get the number of seconds the client should wait before retrying.
+     *
+     * @return the number of seconds to wait
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
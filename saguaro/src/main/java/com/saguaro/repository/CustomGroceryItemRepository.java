@@ -0,0 +1,24 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.GroceryItem;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A repository interface for grocery item lookups that need to consult the second-level cache
+ * before querying the database.
+ *
+ * @author Charles Wong
+ */
+interface CustomGroceryItemRepository {
+
+    /**
+     * Find all grocery items whose names are in the given collection. Names that do not belong to an
+     * existing grocery item are ignored.
+     *
+     * @param names a Collection of String names of the GroceryItems to find
+     * @return a List of the GroceryItems that were found
+     */
+    List<GroceryItem> findAllByNameIn(Collection<String> names);
+}
@@ -0,0 +1,63 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.GroceryItem;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A custom grocery item repository implementation, which resolves grocery items from the second-level
+ * cache where possible. This class is automatically picked up by Spring as the desired implementation
+ * of CustomGroceryItemRepository.
+ *
+ * @author Charles Wong
+ */
+public class CustomGroceryItemRepositoryImpl implements CustomGroceryItemRepository {
+
+    /**
+     * An EntityManager used to interact with the persistent context
+     */
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * Find all grocery items whose names are in the given collection. Items held by the second-level
+     * cache are loaded from it, and the rest are fetched together in a single query, which is skipped
+     * entirely if every item was cached.
+     *
+     * @param names a Collection of String names of the GroceryItems to find
+     * @return a List of the GroceryItems that were found
+     */
+    @Override
+    public List<GroceryItem> findAllByNameIn(Collection<String> names) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        List<GroceryItem> found = new ArrayList<>(names.size());
+        List<String> uncached = new ArrayList<>();
+
+        for (String name : names) {
+            if (cache.contains(GroceryItem.class, name)) {
+                // may still miss, if the entry was evicted since the check
+                GroceryItem item = entityManager.find(GroceryItem.class, name);
+
+                if (item != null) {
+                    found.add(item);
+                }
+            } else {
+                uncached.add(name);
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            found.addAll(entityManager
+                    .createQuery("select i from GroceryItem i where i.name in :names", GroceryItem.class)
+                    .setParameter("names", uncached)
+                    .getResultList());
+        }
+
+        return found;
+    }
+}
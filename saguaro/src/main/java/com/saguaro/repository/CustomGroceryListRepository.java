@@ -1,7 +1,11 @@
 package com.saguaro.repository;
 
+import java.util.List;
+import java.util.SortedMap;
+
 /**
- * A repository interface used to override the save method. A parameter T must be used
+ * A repository interface used to override the save methods, to copy or page through the items
+ * of a list without loading them, and to share a list without loading its shared users. A parameter T must be used
  * to resolve ambiguity errors. For the purposes of Saguaro, this parameter will always
  * be GroceryList.
  *
@@ -18,4 +22,53 @@ interface CustomGroceryListRepository<T> { // need the T to resolve ambiguity
      * @return the saved entity instance
      */
     <S extends T> S save(S entity);
+
+    /**
+     * Saves a number of entities, and returns the saved instances.
+     *
+     * @param entities an Iterable of the entities to save
+     * @param <S>      the type of the entities to save
+     * @return a List of the saved entity instances
+     */
+    <S extends T> List<S> saveAll(Iterable<S> entities);
+
+    /**
+     * Copies every item of one list to the end of another, in order, without loading the items.
+     * The target entity is refreshed afterwards, so that its items include the copies.
+     *
+     * @param sourceId a long representing the ID of the list to copy items from
+     * @param target   the entity to copy items into, which must have already been saved
+     * @return a List of the names of the items copied, in order
+     */
+    List<String> copyItems(long sourceId, T target);
+
+    /**
+     * Finds the names of the items of a list that come after a given entry, in list order, without
+     * loading the list or its items.
+     *
+     * @param listId       a long representing the ID of the list
+     * @param afterEntryId a long representing the entry after which to start, or 0 to start from the first
+     * @param limit        the maximum number of names to return
+     * @return a SortedMap from entry ID to item name
+     */
+    SortedMap<Long, String> findItemNamesAfter(long listId, long afterEntryId, int limit);
+
+    /**
+     * Shares a list with a user, without loading the list's shared users, and increments the list's version.
+     * Must be called within a transaction, and only if the list is not already shared with the user.
+     *
+     * @param list   the entity to share, which must have already been saved
+     * @param userId a long representing the ID of the user to share the list with
+     */
+    void addShare(T list, long userId);
+
+    /**
+     * Stops sharing a list with a user, without loading the list's shared users, and increments the list's
+     * version if it was shared with the user. Must be called within a transaction.
+     *
+     * @param list   the entity to stop sharing, which must have already been saved
+     * @param userId a long representing the ID of the user to stop sharing the list with
+     * @return true if the list was shared with the user, false otherwise
+     */
+    boolean removeShare(T list, long userId);
 }
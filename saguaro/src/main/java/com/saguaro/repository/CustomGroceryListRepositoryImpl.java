@@ -2,19 +2,61 @@ package com.saguaro.repository;
 
 import com.saguaro.entity.GroceryItem;
 import com.saguaro.entity.GroceryList;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.jdbc.batch.internal.BasicBatchKey;
+import org.hibernate.engine.jdbc.batch.spi.Batch;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jdbc.Expectations;
+import org.hibernate.query.NativeQuery;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
- * A custom grocery list repository implementation, only used to override the save method. This
+ * A custom grocery list repository implementation, used to override the save methods, to copy
+ * and page through items as rows of the LIST_ITEMS join table, and to share lists as single rows of
+ * the SHARED_LISTS join table. This
  * class is automatically picked up by Spring as the desired implementation of
  * CustomGroceryListRepository.
+ * <p>
+ * Neither save method flushes, so the inserts of any number of saved lists and items are only sent
+ * when the transaction is flushed, in JDBC batches ordered by table.
  *
  * @author Charles Wong
  */
 public class CustomGroceryListRepositoryImpl implements CustomGroceryListRepository<GroceryList> {
 
+    /**
+     * The name of the join table holding the items of each list
+     */
+    private static final String ITEMS_TABLE = "LIST_ITEMS";
+
+    /**
+     * The name of the join table holding the users each list is shared with
+     */
+    private static final String SHARED_TABLE = "SHARED_LISTS";
+
+    /**
+     * The role of the collection mapped to the join table, naming its persister
+     */
+    private static final String ITEMS_ROLE = GroceryList.class.getName() + ".items";
+
+    /**
+     * The statement inserting a single row of the join table
+     */
+    private static final String INSERT_ITEM_SQL =
+            "insert into " + ITEMS_TABLE + " (ENTRY_ID, LIST_ID, ITEM_NAME) values (?, ?, ?)";
+
     /**
      * An EntityManager used to interact with the persistent context
      */
@@ -25,7 +67,8 @@ public class CustomGroceryListRepositoryImpl implements CustomGroceryListReposit
      * Save the given GroceryList (or subclass) entity and return the saved instance. Since un-managed
      * entities cannot be persisted as children of an entity (without cascading, which is undesirable
      * in this context), this method first makes sure all child GroceryItems are persisted, and then
-     * persists the GroceryList.
+     * persists the GroceryList. Hibernate always inserts entities before the collection rows that refer
+     * to them, so the items do not need to be flushed first.
      *
      * @param entity the GroceryList to be saved
      * @param <S>    any subclass of GroceryList
@@ -38,10 +81,201 @@ public class CustomGroceryListRepositoryImpl implements CustomGroceryListReposit
                 entityManager.persist(item);
             }
         }
-        entityManager.flush();
 
         entityManager.persist(entity); // TODO: handle exceptions better
 
         return entity;
     }
+
+    /**
+     * Save all the given GroceryList (or subclass) entities, as in {@link #save(GroceryList)}, and return
+     * the saved instances.
+     *
+     * @param entities an Iterable of the GroceryLists to be saved
+     * @param <S>      any subclass of GroceryList
+     * @return a List of the saved entity instances
+     */
+    @Override
+    public <S extends GroceryList> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+
+        return saved;
+    }
+
+    /**
+     * Copy every item of one list to the end of another, reading only the names of the source list's
+     * items from the join table, so that neither the items nor the source list are loaded. The copies
+     * keep the source list's order.
+     * <p>
+     * The entry IDs of the copies are drawn from the list's own collection ID generator, the same one
+     * Hibernate uses when items are added, so they continue from its current block of IDs, and items
+     * added to the target list afterwards sort after the copies. The rows are then inserted through
+     * Hibernate's JDBC batching, so whatever the number of items, the copy takes one query and one
+     * prepared insert.
+     * <p>
+     * The target list is flushed first, since its row must exist before rows referring to it, and is
+     * refreshed afterwards so that its items include the copies.
+     *
+     * @param sourceId a long representing the ID of the list to copy items from
+     * @param target   the GroceryList to copy items into, which must have already been saved
+     * @return a List of the names of the items copied, in order
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> copyItems(long sourceId, GroceryList target) {
+        entityManager.flush();
+
+        List<String> names = entityManager.createNativeQuery(
+                        "select ITEM_NAME from " + ITEMS_TABLE + " where LIST_ID = :sourceId order by ENTRY_ID")
+                .setParameter("sourceId", sourceId)
+                .getResultList();
+
+        if (names.isEmpty()) {
+            return names;
+        }
+
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = session.getFactory()
+                .getMetamodel()
+                .collectionPersister(ITEMS_ROLE)
+                .getIdentifierGenerator();
+
+        // drawn before batching, as fetching a new block of IDs runs a statement of its own
+        long[] entryIds = new long[names.size()];
+
+        for (int i = 0; i < entryIds.length; i++) {
+            entryIds[i] = ((Number) generator.generate(session, target)).longValue();
+        }
+
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        Batch batch = jdbcCoordinator.getBatch(new BasicBatchKey(ITEMS_ROLE + "#COPY", Expectations.BASIC));
+
+        try {
+            for (int i = 0; i < entryIds.length; i++) {
+                PreparedStatement insert = batch.getBatchStatement(INSERT_ITEM_SQL, false);
+                insert.setLong(1, entryIds[i]);
+                insert.setLong(2, target.getId());
+                insert.setString(3, names.get(i));
+                batch.addToBatch();
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices()
+                    .getSqlExceptionHelper()
+                    .convert(e, "Could not copy the items of GroceryList " + sourceId, INSERT_ITEM_SQL);
+        }
+
+        jdbcCoordinator.executeBatch();
+        entityManager.refresh(target);
+
+        return names;
+    }
+
+    /**
+     * Find the names of the items of a list that come after a given entry, reading only the join table.
+     * Entries are ordered by entry ID, as the list's items are, so the rows are read from the join table's
+     * primary key and a page costs the same however far into the list it starts.
+     *
+     * @param listId       a long representing the ID of the list
+     * @param afterEntryId a long representing the entry after which to start, or 0 to start from the first
+     * @param limit        the maximum number of names to return
+     * @return a SortedMap from entry ID to item name
+     */
+    @Override
+    public SortedMap<Long, String> findItemNamesAfter(long listId, long afterEntryId, int limit) {
+        List<?> rows = entityManager.createNativeQuery(
+                        "select ENTRY_ID, ITEM_NAME from " + ITEMS_TABLE +
+                                " where LIST_ID = :listId and ENTRY_ID > :after order by ENTRY_ID")
+                .setParameter("listId", listId)
+                .setParameter("after", afterEntryId)
+                .setMaxResults(limit)
+                .getResultList();
+
+        SortedMap<Long, String> names = new TreeMap<>();
+
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            names.put(((Number) columns[0]).longValue(), (String) columns[1]);
+        }
+
+        return names;
+    }
+
+    /**
+     * Insert a single row sharing a list with a user, and increment the list's version. If the list's shared
+     * users were already loaded, the list is refreshed so that they include the user; otherwise they are left
+     * to load with the new row.
+     *
+     * @param list   the GroceryList to share, which must have already been saved
+     * @param userId a long representing the ID of the user to share the list with
+     */
+    @Override
+    public void addShare(GroceryList list, long userId) {
+        sharedQuery("insert into " + SHARED_TABLE + " (LIST_ID, USER_ID) values (:listId, :userId)")
+                .setParameter("listId", list.getId())
+                .setParameter("userId", userId)
+                .executeUpdate();
+
+        sharedUsersChanged(list);
+    }
+
+    /**
+     * Delete the row sharing a list with a user, if it exists. If a row was deleted, the list's version is
+     * incremented, and if its shared users were already loaded, the list is refreshed so that they no longer
+     * include the user.
+     *
+     * @param list   the GroceryList to stop sharing, which must have already been saved
+     * @param userId a long representing the ID of the user to stop sharing the list with
+     * @return true if a row was deleted, false otherwise
+     */
+    @Override
+    public boolean removeShare(GroceryList list, long userId) {
+        boolean removed = sharedQuery(
+                        "delete from " + SHARED_TABLE + " where LIST_ID = :listId and USER_ID = :userId")
+                .setParameter("listId", list.getId())
+                .setParameter("userId", userId)
+                .executeUpdate() > 0;
+
+        if (removed) {
+            sharedUsersChanged(list);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Create a native query that only touches the shared lists join table. Declaring the table lets
+     * Hibernate invalidate just the cached data depending on it, rather than the whole second-level cache.
+     *
+     * @param sql the String SQL statement to execute
+     * @return the created Query
+     */
+    private Query sharedQuery(String sql) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(SHARED_TABLE);
+    }
+
+    /**
+     * Record that a list's shared users were changed through the join table. The list is refreshed if its
+     * shared users were already loaded, and so would not see the change.
+     * <p>
+     * Hibernate only versions a list when it writes the list's collections itself, so the version is then
+     * incremented here, immediately, so that the list's ETag changes and the returned list carries the new
+     * version. As with changes Hibernate writes, the version is incremented once per transaction, however
+     * many shares of the list change.
+     *
+     * @param list the GroceryList whose shared users changed
+     */
+    private void sharedUsersChanged(GroceryList list) {
+        // refreshed first, since a refresh repeats the lock the list is held with
+        if (Hibernate.isInitialized(list.getSharedUsers())) {
+            entityManager.refresh(list);
+        }
+
+        entityManager.lock(list, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+    }
 }
@@ -0,0 +1,28 @@
+package com.saguaro.repository;
+
+/**
+ * A repository interface for changing friendships directly in the friends join table, without
+ * loading either user's list of friends.
+ *
+ * @author Charles Wong
+ */
+interface CustomUserRepository {
+
+    /**
+     * Record a user as having befriended another user. Must be called within a transaction, and only
+     * if the friendship does not already exist.
+     *
+     * @param userId   a long representing the ID of the user adding the friend
+     * @param friendId a long representing the ID of the user being added as a friend
+     */
+    void addFriendship(long userId, long friendId);
+
+    /**
+     * Remove a user from the friends of another user. Must be called within a transaction.
+     *
+     * @param userId   a long representing the ID of the user removing the friend
+     * @param friendId a long representing the ID of the user being removed as a friend
+     * @return true if the friendship existed and was removed, false otherwise
+     */
+    boolean removeFriendship(long userId, long friendId);
+}
@@ -0,0 +1,73 @@
+package com.saguaro.repository;
+
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+/**
+ * A custom user repository implementation, which writes friendships as single rows of the
+ * USER_FRIENDS join table. This class is automatically picked up by Spring as the desired
+ * implementation of CustomUserRepository.
+ * <p>
+ * Note that users already loaded into the persistence context do not see these changes in
+ * their lists of friends, if those lists were initialized before the change.
+ *
+ * @author Charles Wong
+ */
+public class CustomUserRepositoryImpl implements CustomUserRepository {
+
+    /**
+     * The name of the join table holding friendships
+     */
+    private static final String FRIENDS_TABLE = "USER_FRIENDS";
+
+    /**
+     * An EntityManager used to interact with the persistent context
+     */
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * Insert a single row for a friendship.
+     *
+     * @param userId   a long representing the ID of the user adding the friend
+     * @param friendId a long representing the ID of the user being added as a friend
+     */
+    @Override
+    public void addFriendship(long userId, long friendId) {
+        friendsQuery("insert into " + FRIENDS_TABLE + " (USER_ID, FRIEND_ID) values (:userId, :friendId)")
+                .setParameter("userId", userId)
+                .setParameter("friendId", friendId)
+                .executeUpdate();
+    }
+
+    /**
+     * Delete the row for a friendship, if it exists.
+     *
+     * @param userId   a long representing the ID of the user removing the friend
+     * @param friendId a long representing the ID of the user being removed as a friend
+     * @return true if a row was deleted, false otherwise
+     */
+    @Override
+    public boolean removeFriendship(long userId, long friendId) {
+        return friendsQuery("delete from " + FRIENDS_TABLE + " where USER_ID = :userId and FRIEND_ID = :friendId")
+                .setParameter("userId", userId)
+                .setParameter("friendId", friendId)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Create a native query that only touches the friends join table. Declaring the table lets Hibernate
+     * invalidate just the cached data depending on it, rather than the whole second-level cache.
+     *
+     * @param sql the String SQL statement to execute
+     * @return the created Query
+     */
+    private Query friendsQuery(String sql) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(FRIENDS_TABLE);
+    }
+}
@@ -0,0 +1,25 @@
+package com.saguaro.repository;
+
+/**
+ * A read-only projection pairing the name of a grocery item with the number of grocery lists it is in.
+ * Instances are produced directly by queries in {@link GroceryItemRepository}, without hydrating
+ * GroceryItem entities.
+ *
+ * @author Charles Wong
+ */
+public interface GroceryItemCount {
+
+    /**
+     * Get the name of the grocery item
+     *
+     * @return the String name of the grocery item
+     */
+    String getName();
+
+    /**
+     * Get the number of grocery lists the item is in
+     *
+     * @return a long representing the number of lists containing the item
+     */
+    long getCount();
+}
@@ -2,15 +2,21 @@ package com.saguaro.repository;
 
 import com.saguaro.entity.GroceryItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
 
 /**
  * Interface defining grocery item database interaction methods. Methods defined
  * here are automatically generated implementations by Spring through reflection magic.
- * Extending JpaRepository also provides some default repository methods.
+ * Extending JpaRepository also provides some default repository methods, and lookups by
+ * name that use the second-level cache are provided by {@link CustomGroceryItemRepository}.
  *
  * @author Charles Wong
  */
-public interface GroceryItemRepository extends JpaRepository<GroceryItem, Long> {
+public interface GroceryItemRepository extends JpaRepository<GroceryItem, Long>, CustomGroceryItemRepository {
 
     /**
      * Find a grocery item given its name.
@@ -19,4 +25,18 @@ public interface GroceryItemRepository extends JpaRepository<GroceryItem, Long>
      * @return the GroceryItem with the given name, or null if it does not exist
      */
     GroceryItem findGroceryItemByName(String name);
-}
\ No newline at end of file
+
+    /**
+     * Count the grocery lists each grocery item is in, including items that are in no list at all. Counts
+     * are fetched from a cursor as they are read, so the Stream must be consumed within a transaction and
+     * closed.
+     *
+     * @return a Stream of GroceryItemCount objects, one for every grocery item
+     */
+    @Query("select i.name as name, count(l.id) as count from GroceryItem i left join i.lists l group by i.name")
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    Stream<GroceryItemCount> streamListCountsByItem();
+}
@@ -0,0 +1,46 @@
+package com.saguaro.repository;
+
+/**
+ * A read-only projection of a GroceryList, containing every property of the list except its items
+ * and shared users. Used to stream a list, whose items are then read separately, row by row, without
+ * hydrating the GroceryList entity or its collections.
+ *
+ * @author Charles Wong
+ */
+public interface GroceryListHeader {
+
+    /**
+     * Get the ID of the grocery list
+     *
+     * @return a long representing the ID of the grocery list
+     */
+    long getId();
+
+    /**
+     * Get the name of the grocery list
+     *
+     * @return the String name of the grocery list
+     */
+    String getName();
+
+    /**
+     * Check if the grocery list is a template
+     *
+     * @return true if the grocery list is a template, false otherwise
+     */
+    boolean isTemplate();
+
+    /**
+     * Get the username of the owner of the grocery list
+     *
+     * @return the String username of the user that owns the grocery list
+     */
+    String getOwnerUsername();
+
+    /**
+     * Get the version of the grocery list
+     *
+     * @return a long representing the version of the grocery list
+     */
+    long getVersion();
+}
@@ -1,7 +1,15 @@
 package com.saguaro.repository;
 
 import com.saguaro.entity.GroceryList;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interface defining grocery list database interaction methods. Methods defined
@@ -19,4 +27,144 @@ public interface GroceryListRepository extends JpaRepository<GroceryList, Long>,
      * @return the GroceryList with the given ID, or null if it does not exist
      */
     GroceryList findGroceryListById(long id);
+
+    /**
+     * Check whether a grocery list has been shared with a user, using only the shared lists join table
+     * rather than loading either entity. Ownership is not considered.
+     *
+     * @param id     a long representing the ID of the GroceryList
+     * @param userId a long representing the ID of the user to check for
+     * @return true if the list exists and is shared with the user, false otherwise
+     */
+    @Query("select case when count(s) > 0 then true else false end " +
+            "from GroceryList l join l.sharedUsers s " +
+            "where l.id = :id and s.id = :userId")
+    boolean isSharedWith(@Param("id") long id, @Param("userId") long userId);
+
+    /**
+     * Find summaries of all grocery lists that a user owns or has shared access to, in
+     * a single query. Lists owned by the user can be told apart from shared lists by
+     * comparing {@link GroceryListSummary#getOwnerId()} with the user's ID.
+     *
+     * @param userId a long representing the ID of the user to search for
+     * @return a List of GroceryListSummary objects, one for each accessible grocery list
+     */
+    @Query("select l.id as id, l.name as name, l.isTemplate as template, l.owner.id as ownerId " +
+            "from GroceryList l " +
+            "where l.owner.id = :userId " +
+            "or exists (select s.id from GroceryList sl join sl.sharedUsers s where sl = l and s.id = :userId)")
+    List<GroceryListSummary> findSummariesByUserId(@Param("userId") long userId);
+
+    /**
+     * Find summaries of the grocery lists that a user owns or has shared access to, with IDs greater than
+     * a given ID, in order of ID. Used to page through the lists by keyset: each page starts after the
+     * last ID of the previous one, so later pages cost no more than the first, and are not shifted by
+     * lists created or deleted in the meantime.
+     *
+     * @param userId a long representing the ID of the user to search for
+     * @param after  a long representing the ID after which to start, or 0 to start from the first list
+     * @param page   a Pageable limiting the number of summaries returned
+     * @return a List of GroceryListSummary objects, in order of ID
+     */
+    @Query("select l.id as id, l.name as name, l.isTemplate as template, l.owner.id as ownerId " +
+            "from GroceryList l " +
+            "where l.id > :after " +
+            "and (l.owner.id = :userId " +
+            "or exists (select s.id from GroceryList sl join sl.sharedUsers s where sl = l and s.id = :userId)) " +
+            "order by l.id")
+    List<GroceryListSummary> findSummariesByUserIdAfter(@Param("userId") long userId, @Param("after") long after,
+                                                        Pageable page);
+
+    /**
+     * Find summaries of either the grocery lists or the templates that a user owns, with IDs greater than
+     * a given ID, in order of ID. Used to page through the lists by keyset, as with
+     * {@link #findSummariesByUserIdAfter(long, long, Pageable)}.
+     *
+     * @param userId   a long representing the ID of the owner to search for
+     * @param template a boolean that should be true to find templates, and false to find regular lists
+     * @param after    a long representing the ID after which to start, or 0 to start from the first list
+     * @param page     a Pageable limiting the number of summaries returned
+     * @return a List of GroceryListSummary objects, in order of ID
+     */
+    @Query("select l.id as id, l.name as name, l.isTemplate as template, l.owner.id as ownerId " +
+            "from GroceryList l " +
+            "where l.owner.id = :userId and l.isTemplate = :template and l.id > :after " +
+            "order by l.id")
+    List<GroceryListSummary> findOwnedSummariesAfter(@Param("userId") long userId,
+                                                     @Param("template") boolean template,
+                                                     @Param("after") long after,
+                                                     Pageable page);
+
+    /**
+     * Find the version of a grocery list, if a user owns or has shared access to it, without loading
+     * the list itself.
+     *
+     * @param id     a long representing the ID of the GroceryList
+     * @param userId a long representing the ID of the user requesting the list
+     * @return the version of the GroceryList, or null if it does not exist or the user cannot access it
+     */
+    @Query("select l.version from GroceryList l " +
+            "where l.id = :id " +
+            "and (l.owner.id = :userId " +
+            "or exists (select s.id from GroceryList sl join sl.sharedUsers s where sl = l and s.id = :userId))")
+    Long findVersionByIdAndUserId(@Param("id") long id, @Param("userId") long userId);
+
+    /**
+     * Find every property of a grocery list except its collections, if a user owns or has shared access
+     * to it, without loading the list itself.
+     *
+     * @param id     a long representing the ID of the GroceryList
+     * @param userId a long representing the ID of the user requesting the list
+     * @return a GroceryListHeader, or null if the list does not exist or the user cannot access it
+     */
+    @Query("select l.id as id, l.name as name, l.isTemplate as template, l.owner.username as ownerUsername, " +
+            "l.version as version " +
+            "from GroceryList l " +
+            "where l.id = :id " +
+            "and (l.owner.id = :userId " +
+            "or exists (select s.id from GroceryList sl join sl.sharedUsers s where sl = l and s.id = :userId))")
+    GroceryListHeader findHeaderByIdAndUserId(@Param("id") long id, @Param("userId") long userId);
+
+    /**
+     * Stream the names of the items of a grocery list, in list order. Rows are read from a forward-only
+     * cursor as the stream is consumed, a fetch at a time, so memory use does not grow with the size of the
+     * list. The stream must be consumed within a transaction, and closed afterwards.
+     *
+     * @param id a long representing the ID of the GroceryList
+     * @return a Stream of the String names of the list's items
+     */
+    @Query(value = "select ITEM_NAME from LIST_ITEMS where LIST_ID = :id order by ENTRY_ID", nativeQuery = true)
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    Stream<String> streamItemNames(@Param("id") long id);
+
+    /**
+     * Find every row of the LIST_ITEMS join table, pairing each grocery list with the names of its items.
+     * Rows are ordered by list ID, so that the items of each list are consecutive, and fetched from a cursor
+     * as they are read, so the Stream must be consumed within a transaction and closed.
+     *
+     * @return a Stream of ListItemEntry objects, one for every item of every list
+     */
+    @Query("select l.id as listId, i.name as itemName from GroceryList l join l.items i order by l.id")
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    Stream<ListItemEntry> streamAllItemEntries();
+
+    /**
+     * Stream the usernames of the users a grocery list is shared with, in the same way as
+     * {@link #streamItemNames(long)}.
+     *
+     * @param id a long representing the ID of the GroceryList
+     * @return a Stream of the String usernames of the list's shared users
+     */
+    @Query("select s.username from GroceryList l join l.sharedUsers s where l.id = :id order by s.id")
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    Stream<String> streamSharedUsernames(@Param("id") long id);
 }
@@ -0,0 +1,39 @@
+package com.saguaro.repository;
+
+/**
+ * A read-only projection of a GroceryList, containing only the columns needed to list
+ * grocery lists on a user's dashboard. Instances are produced directly by queries in
+ * {@link GroceryListRepository}, without hydrating GroceryList entities.
+ *
+ * @author Charles Wong
+ */
+public interface GroceryListSummary {
+
+    /**
+     * Get the ID of the grocery list
+     *
+     * @return a long representing the ID of the grocery list
+     */
+    long getId();
+
+    /**
+     * Get the name of the grocery list
+     *
+     * @return the String name of the grocery list
+     */
+    String getName();
+
+    /**
+     * Check if the grocery list is a template
+     *
+     * @return true if the grocery list is a template, false otherwise
+     */
+    boolean isTemplate();
+
+    /**
+     * Get the ID of the owner of the grocery list
+     *
+     * @return a long representing the ID of the user that owns the grocery list
+     */
+    long getOwnerId();
+}
@@ -0,0 +1,25 @@
+package com.saguaro.repository;
+
+/**
+ * A read-only projection of a single row of the LIST_ITEMS join table, pairing a grocery list with the
+ * name of one of its items. Instances are produced directly by queries in {@link GroceryListRepository},
+ * without hydrating GroceryList or GroceryItem entities.
+ *
+ * @author Charles Wong
+ */
+public interface ListItemEntry {
+
+    /**
+     * Get the ID of the grocery list
+     *
+     * @return a long representing the ID of the grocery list
+     */
+    long getListId();
+
+    /**
+     * Get the name of the grocery item
+     *
+     * @return the String name of the grocery item in the list
+     */
+    String getItemName();
+}
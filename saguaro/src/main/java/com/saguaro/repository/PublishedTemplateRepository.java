@@ -0,0 +1,32 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.PublishedTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * Interface defining published template database interaction methods. Methods defined
+ * here are automatically generated implementations by Spring through reflection magic.
+ *
+ * @author Charles Wong
+ */
+public interface PublishedTemplateRepository extends JpaRepository<PublishedTemplate, Long> {
+
+    /**
+     * Find every published template, along with its item names, in a single query.
+     *
+     * @return a List of all PublishedTemplates
+     */
+    @Query("select distinct t from PublishedTemplate t left join fetch t.itemNames")
+    List<PublishedTemplate> findAllWithItems();
+
+    /**
+     * Find a published template given its ID.
+     *
+     * @param id a long representing the ID of the template
+     * @return the PublishedTemplate with the given ID, or null if it has not been published
+     */
+    PublishedTemplate findPublishedTemplateById(long id);
+}
@@ -2,6 +2,9 @@ package com.saguaro.repository;
 
 import com.saguaro.entity.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
 
 /**
  * Interface defining role database interaction methods. Methods defined
@@ -13,10 +16,11 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface RoleRepository extends JpaRepository<Role, Long> {
 
     /**
-     * Find a role given its name.
+     * Find a role given its name. The result is kept in the query cache, since roles never change.
      *
      * @param name the String name of the Role to find
      * @return the Role with the given name, or null if it does not exist
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Role findRoleByName(String name);
 }
@@ -2,15 +2,21 @@ package com.saguaro.repository;
 
 import com.saguaro.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 
 /**
  * Interface defining user database interaction methods. Methods defined
  * here are automatically generated implementations by Spring through reflection magic.
- * Extending JpaRepository also provides some default repository methods.
+ * Extending JpaRepository also provides some default repository methods, and friendships
+ * are written through {@link CustomUserRepository}.
  *
  * @author Charles Wong
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, CustomUserRepository {
 
     /**
      * Find a user given their username.
@@ -20,14 +26,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     User findUserByUsername(String username);
 
-    /**
-     * Find a role given their authentication token.
-     *
-     * @param token the String token of the Role to find
-     * @return the User with the given token, or null if none exists
-     */
-    User findUserByToken(String token);
-
     /**
      * Check if a user with the given username exists in the database.
      *
@@ -35,4 +33,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true if a User with the given username exists, false otherwise
      */
     boolean existsByUsername(String username);
+
+    /**
+     * Check if a user has befriended another user, using only the friends join table rather than
+     * loading either user's list of friends.
+     *
+     * @param userId   a long representing the ID of the user
+     * @param friendId a long representing the ID of the possible friend
+     * @return true if the second user is a friend of the first, false otherwise
+     */
+    @Query("select case when count(f) > 0 then true else false end " +
+            "from User u join u.friends f " +
+            "where u.id = :userId and f.id = :friendId")
+    boolean existsFriendship(@Param("userId") long userId, @Param("friendId") long friendId);
+
+    /**
+     * Find the dashboard version of a user, without loading the user.
+     *
+     * @param id a long representing the ID of the User
+     * @return the dashboard version of the User, or null if it does not exist
+     */
+    @Query("select u.dashboardVersion from User u where u.id = :id")
+    Long findDashboardVersionById(@Param("id") long id);
+
+    /**
+     * Increment the dashboard versions of a number of users in a single update. Must be called within
+     * a transaction.
+     *
+     * @param ids a Collection of the IDs of the Users to update
+     * @return the number of Users updated
+     */
+    @Modifying
+    @Query("update User u set u.dashboardVersion = u.dashboardVersion + 1 where u.id in :ids")
+    int incrementDashboardVersions(@Param("ids") Collection<Long> ids);
 }
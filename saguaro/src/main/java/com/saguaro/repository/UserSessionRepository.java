@@ -0,0 +1,94 @@
+package com.saguaro.repository;
+
+import com.saguaro.entity.UserSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface defining user session database interaction methods. Methods defined
+ * here are automatically generated implementations by Spring through reflection magic.
+ * <p>
+ * The bulk updates and deletes here run in their own transactions, since they are called by
+ * background tasks that should commit each batch as it is written.
+ *
+ * @author Charles Wong
+ */
+public interface UserSessionRepository extends JpaRepository<UserSession, Long> {
+
+    /**
+     * Find an unexpired session given the hash of its token, along with the user it belongs to.
+     *
+     * @param tokenHash the String hash of the session's token
+     * @param now       the current Instant, after which the session must expire
+     * @return the UserSession with the given token hash, or null if none exists or it has expired
+     */
+    @Query("select s from UserSession s join fetch s.user " +
+            "where s.tokenHash = :tokenHash and s.expiresAt > :now")
+    UserSession findActiveByTokenHash(@Param("tokenHash") String tokenHash, @Param("now") Instant now);
+
+    /**
+     * Delete a session given the hash of its token.
+     *
+     * @param tokenHash the String hash of the session's token
+     * @return the number of sessions deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from UserSession s where s.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Delete a number of sessions given the hashes of their tokens, in a single statement.
+     *
+     * @param tokenHashes a Collection of the String hashes of the sessions' tokens
+     * @return the number of sessions deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from UserSession s where s.tokenHash in :tokenHashes")
+    int deleteByTokenHashes(@Param("tokenHashes") Collection<String> tokenHashes);
+
+    /**
+     * Set the last seen time of a number of sessions in a single update. Sessions that no longer
+     * exist are skipped.
+     *
+     * @param tokenHashes a Collection of the String hashes of the sessions' tokens
+     * @param lastSeenAt  the Instant to set as the sessions' last seen time
+     * @return the number of sessions updated
+     */
+    @Transactional
+    @Modifying
+    @Query("update UserSession s set s.lastSeenAt = :lastSeenAt where s.tokenHash in :tokenHashes")
+    int updateLastSeen(@Param("tokenHashes") Collection<String> tokenHashes,
+                       @Param("lastSeenAt") Instant lastSeenAt);
+
+    /**
+     * Find the IDs of sessions that have expired, up to the size of the given page. Answered from
+     * the index on the expiry time.
+     *
+     * @param now   the current Instant
+     * @param batch a Pageable limiting the number of IDs returned
+     * @return a List of the IDs of expired sessions
+     */
+    @Query("select s.id from UserSession s where s.expiresAt <= :now")
+    List<Long> findExpiredIds(@Param("now") Instant now, Pageable batch);
+
+    /**
+     * Delete a number of sessions in a single statement.
+     *
+     * @param ids a Collection of the IDs of the sessions to delete
+     * @return the number of sessions deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from UserSession s where s.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
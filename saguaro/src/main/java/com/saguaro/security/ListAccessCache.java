@@ -0,0 +1,266 @@
+package com.saguaro.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * This class implements a bounded, expiring cache holding, for each user, the IDs of grocery lists that
+ * user is known to have shared access to. It sits in front of the shared access query performed by
+ * {@link com.saguaro.service.GroceryService}, so that repeated requests for the same shared list do not
+ * each require a database round trip.
+ * <p>
+ * Only positive answers are cached, so granting access never requires invalidation to take effect. Any
+ * code that revokes access (unsharing or removing a list) must call {@link #invalidate(Collection)} for
+ * the affected users. Invalidation is repeated once the current transaction completes, so that a request
+ * running concurrently with the revoking transaction cannot leave a stale entry behind.
+ * <p>
+ * Entries expire a fixed amount of time after they are created, and the least recently used
+ * user is evicted once the cache is full. Hit and miss counts are exposed through Micrometer as
+ * <code>saguaro.list.access.cache.requests</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class ListAccessCache implements MeterBinder {
+
+    /**
+     * The maximum number of users held by this cache
+     */
+    private final int maxUsers;
+
+    /**
+     * How long an entry stays valid after being created, in nanoseconds
+     */
+    private final long ttlNanos;
+
+    /**
+     * Source of the current time, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The cached entries keyed by user ID, in access order. All access must be synchronized on this map.
+     */
+    private final LinkedHashMap<Long, Entry> entries;
+
+    /**
+     * Number of access checks answered by this cache
+     */
+    private final AtomicLong hits;
+
+    /**
+     * Number of access checks that had to fall through to the database
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Constructs a ListAccessCache with a size and time to live read from the application properties.
+     *
+     * @param maxUsers   the maximum number of users to hold
+     * @param ttlSeconds the number of seconds an entry remains valid after being created
+     */
+    @Autowired
+    public ListAccessCache(@Value("${saguaro.list-access-cache.max-users:10000}") int maxUsers,
+                           @Value("${saguaro.list-access-cache.ttl-seconds:300}") long ttlSeconds) {
+        this(maxUsers, TimeUnit.SECONDS.toNanos(ttlSeconds), System::nanoTime);
+    }
+
+    /**
+     * Constructs a ListAccessCache with an explicit clock. Used for testing.
+     *
+     * @param maxUsers the maximum number of users to hold
+     * @param ttlNanos the number of nanoseconds an entry remains valid after being created
+     * @param clock    a LongSupplier returning the current time in nanoseconds
+     */
+    ListAccessCache(int maxUsers, long ttlNanos, LongSupplier clock) {
+        this.maxUsers = maxUsers;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ListAccessCache.Entry> eldest) {
+                return size() > ListAccessCache.this.maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Check whether a user is known to have shared access to a grocery list. A false result only means
+     * that access is not cached, and must be checked against the database.
+     *
+     * @param userId a long representing the ID of the user
+     * @param listId a long representing the ID of the grocery list
+     * @return true if the user is known to have access to the list, false otherwise
+     */
+    public boolean contains(long userId, long listId) {
+        long now = clock.getAsLong();
+        Entry entry;
+
+        synchronized (entries) {
+            entry = entries.get(userId);
+
+            if (entry != null && now - entry.expiresAt >= 0) {
+                entries.remove(userId);
+                entry = null;
+            }
+        }
+
+        if (entry != null && entry.listIds.contains(listId)) {
+            hits.incrementAndGet();
+            return true;
+        }
+
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record that a user has shared access to a grocery list.
+     *
+     * @param userId a long representing the ID of the user
+     * @param listId a long representing the ID of the grocery list
+     */
+    public void add(long userId, long listId) {
+        long now = clock.getAsLong();
+        Entry entry;
+
+        synchronized (entries) {
+            entry = entries.get(userId);
+
+            if (entry == null || now - entry.expiresAt >= 0) {
+                entry = new Entry(now + ttlNanos);
+                entries.put(userId, entry);
+            }
+        }
+
+        entry.listIds.add(listId);
+    }
+
+    /**
+     * Remove the cached lists of some users, so that their next access checks go to the database. If
+     * called within a transaction, the users are removed again once that transaction completes.
+     *
+     * @param userIds a Collection of the IDs of the users to remove
+     */
+    public void invalidate(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        remove(ids);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(ids);
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove the cached lists of some users.
+     *
+     * @param userIds a Collection of the IDs of the users to remove
+     */
+    private void remove(Collection<Long> userIds) {
+        synchronized (entries) {
+            entries.keySet().removeAll(userIds);
+        }
+    }
+
+    /**
+     * Get the number of users currently held by this cache, including expired entries
+     * that have not been removed yet.
+     *
+     * @return the number of users in this cache
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the number of access checks that were answered by this cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of access checks that were not answered by this cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Register this cache's hit/miss counters and size with a MeterRegistry. Called by
+     * Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saguaro.list.access.cache.requests", this, ListAccessCache::getHitCount)
+                .tag("result", "hit")
+                .description("List access checks answered by the list access cache")
+                .register(registry);
+        FunctionCounter.builder("saguaro.list.access.cache.requests", this, ListAccessCache::getMissCount)
+                .tag("result", "miss")
+                .description("List access checks that fell through to the database")
+                .register(registry);
+        Gauge.builder("saguaro.list.access.cache.size", this, ListAccessCache::size)
+                .description("Number of users held by the list access cache")
+                .register(registry);
+    }
+
+    /**
+     * The cached list IDs of a single user, along with the time at which they expire.
+     */
+    private static class Entry {
+
+        /**
+         * The IDs of the lists the user is known to have shared access to
+         */
+        private final Set<Long> listIds;
+
+        /**
+         * The time at which this entry expires, in nanoseconds
+         */
+        private final long expiresAt;
+
+        /**
+         * Constructs an empty Entry.
+         *
+         * @param expiresAt the time at which this entry expires, in nanoseconds
+         */
+        private Entry(long expiresAt) {
+            this.listIds = ConcurrentHashMap.newKeySet();
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.saguaro.security;
+
+import com.saguaro.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * This class limits how often the unauthenticated login and register endpoints can be called, so
+ * that a burst of credential stuffing is turned away before any password is hashed. Attempts are
+ * limited both per username and per client address, each with its own token bucket: a bucket holds
+ * up to some number of attempts, and is refilled at a fixed rate. An attempt takes a token from both
+ * buckets or from neither, so attempts rejected for one key do not use up the other's.
+ * <p>
+ * Buckets are kept in a fixed number of independently locked stripes, so that attempts for different
+ * keys rarely contend. Each stripe holds a bounded number of keys, evicting the least recently used
+ * once full; an evicted key simply starts again with a full bucket.
+ * <p>
+ * Rejections and the number of tracked keys are exposed through Micrometer under
+ * <code>saguaro.login.rate.limit</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class LoginRateLimiter implements MeterBinder {
+
+    /**
+     * The number of independently locked stripes each set of buckets is split into
+     */
+    private static final int STRIPES = 16;
+
+    /**
+     * Buckets keyed by username
+     */
+    private final Buckets usernameBuckets;
+
+    /**
+     * Buckets keyed by client address
+     */
+    private final Buckets addressBuckets;
+
+    /**
+     * Source of the current time, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Number of attempts rejected
+     */
+    private final AtomicLong rejections;
+
+    /**
+     * Constructs a LoginRateLimiter with rates and sizes read from the application properties.
+     *
+     * @param usernameCapacity  the maximum number of attempts a username can make at once
+     * @param usernamePerMinute the number of attempts a username regains per minute
+     * @param addressCapacity   the maximum number of attempts an address can make at once
+     * @param addressPerMinute  the number of attempts an address regains per minute
+     * @param maxKeys           the maximum number of usernames, and of addresses, to track
+     */
+    @Autowired
+    public LoginRateLimiter(@Value("${saguaro.login-rate-limit.username.capacity:5}") int usernameCapacity,
+                            @Value("${saguaro.login-rate-limit.username.per-minute:5}") double usernamePerMinute,
+                            @Value("${saguaro.login-rate-limit.address.capacity:20}") int addressCapacity,
+                            @Value("${saguaro.login-rate-limit.address.per-minute:30}") double addressPerMinute,
+                            @Value("${saguaro.login-rate-limit.max-keys:100000}") int maxKeys) {
+        this(usernameCapacity, usernamePerMinute, addressCapacity, addressPerMinute, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * Constructs a LoginRateLimiter with an explicit clock. Used for testing.
+     *
+     * @param usernameCapacity  the maximum number of attempts a username can make at once
+     * @param usernamePerMinute the number of attempts a username regains per minute
+     * @param addressCapacity   the maximum number of attempts an address can make at once
+     * @param addressPerMinute  the number of attempts an address regains per minute
+     * @param maxKeys           the maximum number of usernames, and of addresses, to track
+     * @param clock             a LongSupplier returning the current time in nanoseconds
+     */
+    LoginRateLimiter(int usernameCapacity, double usernamePerMinute, int addressCapacity, double addressPerMinute,
+                     int maxKeys, LongSupplier clock) {
+        this.usernameBuckets = new Buckets(usernameCapacity, usernamePerMinute, maxKeys);
+        this.addressBuckets = new Buckets(addressCapacity, addressPerMinute, maxKeys);
+        this.clock = clock;
+        this.rejections = new AtomicLong();
+    }
+
+    /**
+     * Take one attempt from the buckets of a client address and a username, only if both have one to
+     * spare. Null keys are not limited.
+     *
+     * @param username the String username the attempt is for
+     * @param address  the String address of the client making the attempt
+     * @throws TooManyRequestsException if either bucket is empty
+     */
+    public void acquire(String username, String address) throws TooManyRequestsException {
+        long now = clock.getAsLong();
+
+        // the address stripe is always locked before the username stripe, so the two never deadlock
+        long waitNanos = addressBuckets.tryAcquire(address, now,
+                () -> usernameBuckets.tryAcquire(username, now, () -> 0));
+
+        if (waitNanos > 0) {
+            rejections.incrementAndGet();
+            long waitSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            throw new TooManyRequestsException("Too many attempts, try again in " + waitSeconds + " seconds",
+                    waitSeconds);
+        }
+    }
+
+    /**
+     * Get the number of attempts rejected by this limiter.
+     *
+     * @return the number of rejected attempts
+     */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /**
+     * Get the number of usernames and addresses currently tracked by this limiter.
+     *
+     * @return the number of tracked keys
+     */
+    public int size() {
+        return usernameBuckets.size() + addressBuckets.size();
+    }
+
+    /**
+     * Register this limiter's rejection count and size with a MeterRegistry. Called by
+     * Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saguaro.login.rate.limit.rejected", this, LoginRateLimiter::getRejectionCount)
+                .description("Login and register attempts rejected by the rate limiter")
+                .register(registry);
+        Gauge.builder("saguaro.login.rate.limit.keys", this, LoginRateLimiter::size)
+                .description("Number of usernames and addresses tracked by the rate limiter")
+                .register(registry);
+    }
+
+    /**
+     * A bounded set of token buckets, split into independently locked stripes by key.
+     */
+    private static class Buckets {
+
+        /**
+         * The maximum number of tokens in a bucket
+         */
+        private final double capacity;
+
+        /**
+         * The number of tokens added to a bucket per nanosecond
+         */
+        private final double tokensPerNano;
+
+        /**
+         * The stripes holding the buckets, each in access order. All access to a stripe must be
+         * synchronized on that stripe.
+         */
+        private final List<LinkedHashMap<String, Bucket>> stripes;
+
+        /**
+         * Constructs an empty set of Buckets.
+         *
+         * @param capacity  the maximum number of tokens in a bucket
+         * @param perMinute the number of tokens added to a bucket per minute
+         * @param maxKeys   the maximum number of buckets to hold across all stripes
+         */
+        private Buckets(int capacity, double perMinute, int maxKeys) {
+            this.capacity = capacity;
+            this.tokensPerNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+            this.stripes = new ArrayList<>(STRIPES);
+
+            int maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+
+            for (int i = 0; i < STRIPES; i++) {
+                stripes.add(new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                        return size() > maxKeysPerStripe;
+                    }
+                });
+            }
+        }
+
+        /**
+         * Take a token from the bucket of a key, creating a full bucket if the key is not tracked yet. If the
+         * bucket has a token, another bucket is tried while this one is still locked, and the token is only
+         * taken if that succeeds too.
+         *
+         * @param key  the String key of the bucket, or null to skip limiting
+         * @param now  the current time, in nanoseconds
+         * @param next a LongSupplier trying the other bucket, returning as this method does
+         * @return 0 if a token was taken from both buckets, otherwise the number of nanoseconds until one is
+         * available from the bucket that was empty
+         */
+        private long tryAcquire(String key, long now, LongSupplier next) {
+            if (key == null) {
+                return next.getAsLong();
+            }
+
+            LinkedHashMap<String, Bucket> stripe = stripes.get(Math.floorMod(key.hashCode(), STRIPES));
+
+            synchronized (stripe) {
+                Bucket bucket = stripe.get(key);
+
+                if (bucket == null) {
+                    bucket = new Bucket(capacity, now);
+                    stripe.put(key, bucket);
+                } else {
+                    bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+                    bucket.refilledAt = now;
+                }
+
+                if (bucket.tokens >= 1) {
+                    long waitNanos = next.getAsLong();
+
+                    if (waitNanos == 0) {
+                        bucket.tokens -= 1;
+                    }
+
+                    return waitNanos;
+                }
+
+                return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano));
+            }
+        }
+
+        /**
+         * Get the number of buckets held across all stripes.
+         *
+         * @return the number of buckets
+         */
+        private int size() {
+            int size = 0;
+
+            for (LinkedHashMap<String, Bucket> stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+
+            return size;
+        }
+    }
+
+    /**
+     * The state of a single token bucket.
+     */
+    private static class Bucket {
+
+        /**
+         * The number of tokens currently in this bucket
+         */
+        private double tokens;
+
+        /**
+         * The time at which tokens were last added to this bucket, in nanoseconds
+         */
+        private long refilledAt;
+
+        /**
+         * Constructs a Bucket.
+         *
+         * @param tokens     the number of tokens to start with
+         * @param refilledAt the current time, in nanoseconds
+         */
+        private Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.saguaro.security;
+
+import com.saguaro.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs password hashing and verification on a dedicated, bounded pool of threads, rather
+ * than on the request threads that need them. Password hashes are deliberately expensive, so a burst
+ * of logins or registrations hashed on request threads would use every core, and starve requests
+ * that do not hash anything at all.
+ * <p>
+ * The pool has one thread per core by default, and a bounded queue of waiting hashes. Once the queue
+ * is full, further hashes are rejected immediately with a {@link ServiceUnavailableException}, instead
+ * of leaving their requests waiting for a turn.
+ * <p>
+ * Queue depth, rejections and hashing time are exposed through Micrometer under
+ * <code>saguaro.password.hash</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class PasswordHasher implements MeterBinder, DisposableBean {
+
+    /**
+     * The encoder that performs the actual hashing
+     */
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * The bounded pool hashes are run on
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Number of hashes computed
+     */
+    private final AtomicLong hashes;
+
+    /**
+     * Total time spent computing hashes, in nanoseconds
+     */
+    private final AtomicLong hashNanos;
+
+    /**
+     * Number of hashes rejected because the queue was full
+     */
+    private final AtomicLong rejections;
+
+    /**
+     * Constructs a PasswordHasher with a pool size and queue capacity read from the application properties.
+     *
+     * @param passwordEncoder the PasswordEncoder to hash passwords with
+     * @param threads         the number of hashing threads, or 0 to use one thread per core
+     * @param queueCapacity   the maximum number of hashes waiting for a thread
+     */
+    @Autowired
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          @Value("${saguaro.password-hashing.threads:0}") int threads,
+                          @Value("${saguaro.password-hashing.queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.hashes = new AtomicLong();
+        this.hashNanos = new AtomicLong();
+        this.rejections = new AtomicLong();
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hasher-");
+        threadFactory.setDaemon(true);
+
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Hash a plaintext password.
+     *
+     * @param rawPassword the plaintext password to hash
+     * @return the String hash of the password
+     * @throws ServiceUnavailableException if too many hashes are already waiting
+     */
+    public String encode(CharSequence rawPassword) throws ServiceUnavailableException {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Check a plaintext password against a stored hash.
+     *
+     * @param rawPassword     the plaintext password to check
+     * @param encodedPassword the stored String hash to check against
+     * @return true if the password matches the hash, false otherwise
+     * @throws ServiceUnavailableException if too many hashes are already waiting
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) throws ServiceUnavailableException {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Run a hashing task on the pool, and wait for its result.
+     *
+     * @param task a Callable performing the hashing
+     * @param <T>  the type of the task's result
+     * @return the result of the task
+     * @throws ServiceUnavailableException if the task was rejected, or the waiting thread was interrupted
+     */
+    private <T> T run(Callable<T> task) throws ServiceUnavailableException {
+        Future<T> future;
+
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+
+                try {
+                    return task.call();
+                } finally {
+                    hashNanos.addAndGet(System.nanoTime() - start);
+                    hashes.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.incrementAndGet();
+            throw new ServiceUnavailableException("Too many password requests in progress, try again later");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for a password request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Get the number of hashes waiting for a thread.
+     *
+     * @return the number of queued hashes
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the number of hashes rejected because too many were already waiting.
+     *
+     * @return the number of rejected hashes
+     */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /**
+     * Register this hasher's queue depth, rejection count and hashing time with a MeterRegistry.
+     * Called by Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.password.hash.queue", this, PasswordHasher::getQueueDepth)
+                .description("Number of password hashes waiting for a hashing thread")
+                .register(registry);
+        FunctionCounter.builder("saguaro.password.hash.rejected", this, PasswordHasher::getRejectionCount)
+                .description("Password hashes rejected because the queue was full")
+                .register(registry);
+        FunctionTimer.builder("saguaro.password.hash", this,
+                        hasher -> hasher.hashes.get(), hasher -> hasher.hashNanos.get(), TimeUnit.NANOSECONDS)
+                .description("Time spent computing password hashes")
+                .register(registry);
+    }
+
+    /**
+     * Stop the hashing threads when the application shuts down.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,139 @@
+package com.saguaro.security;
+
+import com.saguaro.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The principal stored in the SecurityContext once a request has been authenticated by
+ * {@link TokenAuthenticationProvider}. It carries the ID and username of the authenticated
+ * user, so that services can refer to that user without querying for them again.
+ * <p>
+ * Note that this object holds no credentials, and is safe to cache.
+ *
+ * @author Charles Wong
+ */
+public class SaguaroPrincipal implements Principal {
+
+    /**
+     * The ID of the authenticated user
+     */
+    private final long id;
+
+    /**
+     * The username of the authenticated user
+     */
+    private final String username;
+
+    /**
+     * The authorities granted to the authenticated user
+     */
+    private final List<GrantedAuthority> authorities;
+
+    /**
+     * Constructs a SaguaroPrincipal for some authenticated user.
+     *
+     * @param id          a long representing the ID of the authenticated user
+     * @param username    the String username of the authenticated user
+     * @param authorities a Collection of the authorities granted to the authenticated user
+     */
+    public SaguaroPrincipal(long id, String username, Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    /**
+     * Build a SaguaroPrincipal using the provided Saguaro User object. The user's roles are copied
+     * into plain authorities, so that the principal holds no references to managed entities.
+     *
+     * @param user the User to build the SaguaroPrincipal from
+     * @return a SaguaroPrincipal populated with the details of the user
+     */
+    public static SaguaroPrincipal of(User user) {
+        return new SaguaroPrincipal(
+                user.getId(),
+                user.getUsername(),
+                user.getAuthorities()
+                        .stream()
+                        .map(authority -> new SimpleGrantedAuthority(authority.getAuthority()))
+                        .collect(Collectors.toList())
+        );
+    }
+
+    /**
+     * Get the ID of the authenticated user
+     *
+     * @return a long representing the ID of the authenticated user
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the username of the authenticated user
+     *
+     * @return the String username of the authenticated user
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Get the authorities granted to the authenticated user
+     *
+     * @return an unmodifiable List of GrantedAuthority objects
+     */
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * Get the name of this principal, which is the username of the authenticated user.
+     *
+     * @return the String username of the authenticated user
+     */
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    /**
+     * Two principals are considered equal if they represent the same user ID.
+     *
+     * @param o the Object to compare to
+     * @return true if the two objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SaguaroPrincipal that = (SaguaroPrincipal) o;
+        return id == that.id;
+    }
+
+    /**
+     * Get a hashcode for this principal.
+     *
+     * @return an integer hashcode
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    /**
+     * Get a String representation of this principal.
+     *
+     * @return a String containing the ID and username of this principal
+     */
+    @Override
+    public String toString() {
+        return "SaguaroPrincipal{id=" + id + ", username='" + username + "'}";
+    }
+}
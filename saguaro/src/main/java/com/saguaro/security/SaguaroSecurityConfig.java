@@ -19,8 +19,9 @@ import org.springframework.security.web.util.matcher.RequestMatcher;
 /**
  * This class configures the security setup for Saguaro. As an overview, only
  * the register and login endpoints are unprotected. All other endpoints require
- * some valid authentication token to access. The h2-console does not require
- * authentication through Saguaro, but requires authentication with the database.
+ * some valid authentication token to access, including the actuator endpoints used
+ * to read metrics. The h2-console does not require authentication through Saguaro,
+ * but requires authentication with the database.
  *
  * This class also provides the password encryption bean to the application.
  *
@@ -40,7 +41,8 @@ public class SaguaroSecurityConfig extends WebSecurityConfigurerAdapter {
      */
     private static final RequestMatcher REQUEST_MATCHER = new OrRequestMatcher(
             new AntPathRequestMatcher("/api/**"),
-            new AntPathRequestMatcher("/logout*")
+            new AntPathRequestMatcher("/logout*"),
+            new AntPathRequestMatcher("/actuator/**")
     );
 
     /**
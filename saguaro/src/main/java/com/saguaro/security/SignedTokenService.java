@@ -0,0 +1,397 @@
+package com.saguaro.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class issues and verifies self-contained authentication tokens, as an alternative to the
+ * database backed sessions of {@link com.saguaro.service.SessionService}. It is only used when the
+ * <code>saguaro.session.mode</code> property is set to <code>signed</code>.
+ * <p>
+ * A signed token carries a random token ID, and the ID, username, authorities and expiry time of the
+ * user it was issued to, followed by an HMAC-SHA256 signature of all of the above. Verifying a token
+ * therefore requires no database access, so any server holding the same signing key can authenticate
+ * it.
+ * <p>
+ * Signed tokens cannot be deleted, so logging out adds the token's ID to an in-memory revocation set,
+ * where it stays until the token would have expired anyway. The revocation set is local to this server;
+ * a token revoked on one server remains valid on others until it expires, which is why signed tokens
+ * are given a much shorter lifetime than sessions. The number of revoked tokens held is exposed through
+ * Micrometer as <code>saguaro.signed.token.revoked</code>.
+ * <p>
+ * If no signing key is configured, a random key is generated on startup. Tokens signed with it are
+ * only accepted by this server, until it is restarted.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class SignedTokenService implements MeterBinder {
+
+    /**
+     * The version written at the start of every token payload
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * The MAC algorithm tokens are signed with
+     */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * The minimum length of a signing key, in bytes
+     */
+    private static final int MIN_KEY_LENGTH = 32;
+
+    /**
+     * Whether signed tokens are issued and accepted
+     */
+    private final boolean enabled;
+
+    /**
+     * The key tokens are signed with
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * How long a token stays valid after being issued
+     */
+    private final Duration ttl;
+
+    /**
+     * Source of the current time
+     */
+    private final Clock clock;
+
+    /**
+     * A MAC for each thread, since Mac instances are not thread safe
+     */
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * The IDs of revoked tokens, mapped to the epoch second at which the tokens expire
+     */
+    private final Map<UUID, Long> revoked;
+
+    /**
+     * Constructs a SignedTokenService with a mode, key and token lifetime read from the application
+     * properties.
+     *
+     * @param mode       the String session mode; signed tokens are enabled if it is <code>signed</code>
+     * @param signingKey the Base64 encoded String signing key, or an empty String to generate one
+     * @param ttlMinutes the number of minutes a token remains valid after being issued
+     */
+    @Autowired
+    public SignedTokenService(@Value("${saguaro.session.mode:opaque}") String mode,
+                              @Value("${saguaro.session.signing-key:}") String signingKey,
+                              @Value("${saguaro.session.signed-ttl-minutes:60}") long ttlMinutes) {
+        this(parseMode(mode), decodeKey(signingKey), Duration.ofMinutes(ttlMinutes), Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a SignedTokenService with an explicit key and clock. Used for testing.
+     *
+     * @param enabled whether signed tokens are issued and accepted
+     * @param key     the raw bytes of the signing key
+     * @param ttl     the Duration a token remains valid after being issued
+     * @param clock   the Clock to read the current time from
+     */
+    SignedTokenService(boolean enabled, byte[] key, Duration ttl, Clock clock) {
+        if (key.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("Signing key must be at least " + MIN_KEY_LENGTH + " bytes");
+        }
+
+        this.enabled = enabled;
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+        this.revoked = new ConcurrentHashMap<>();
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(this.key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                // every Java platform is required to support HmacSHA256
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Check whether signed tokens are enabled, in which case logins should be issued signed tokens
+     * rather than sessions.
+     *
+     * @return true if signed tokens are enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Issue a signed token for an authenticated user.
+     *
+     * @param principal the SaguaroPrincipal of the user to issue a token for
+     * @return the String signed token
+     */
+    public String issue(SaguaroPrincipal principal) {
+        UUID id = UUID.randomUUID();
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            out.writeLong(principal.getId());
+            out.writeLong(expiresAt);
+            out.writeUTF(principal.getUsername());
+            out.writeShort(principal.getAuthorities().size());
+
+            for (GrantedAuthority authority : principal.getAuthorities()) {
+                out.writeUTF(authority.getAuthority());
+            }
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+
+        byte[] payload = bytes.toByteArray();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(macs.get().doFinal(payload));
+    }
+
+    /**
+     * Verify a signed token, without any database access. If the token has a valid signature, has
+     * not expired and has not been revoked, a {@link SaguaroPrincipal} is built from its contents.
+     *
+     * @param token the String token to verify
+     * @return a SaguaroPrincipal representing the token's user, or null if signed tokens are disabled
+     * or the token is not a valid signed token
+     */
+    public SaguaroPrincipal verify(String token) {
+        Payload payload = decode(token);
+
+        if (payload == null || revoked.containsKey(payload.id)) {
+            return null;
+        }
+
+        return new SaguaroPrincipal(payload.userId, payload.username, payload.authorities);
+    }
+
+    /**
+     * Revoke a signed token, so that it is no longer accepted by this server.
+     *
+     * @param token the String token to revoke
+     * @return true if the token was a valid signed token, false otherwise
+     */
+    public boolean revoke(String token) {
+        Payload payload = decode(token);
+
+        if (payload == null) {
+            return false;
+        }
+
+        revoked.put(payload.id, payload.expiresAt);
+        return true;
+    }
+
+    /**
+     * Remove the IDs of revoked tokens that have since expired, which are rejected regardless. Called
+     * periodically by Spring.
+     *
+     * @return the number of revoked token IDs removed
+     */
+    @Scheduled(fixedDelayString = "${saguaro.session.sweep-interval-ms:300000}")
+    public int purgeRevocations() {
+        long now = clock.instant().getEpochSecond();
+        int before = revoked.size();
+
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+        return before - revoked.size();
+    }
+
+    /**
+     * Get the number of revoked token IDs held by this server.
+     *
+     * @return the number of revoked tokens
+     */
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    /**
+     * Register this service's revoked token gauge with a MeterRegistry. Called by Spring when metrics
+     * are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.signed.token.revoked", this, SignedTokenService::getRevokedCount)
+                .description("Revoked signed tokens that have not expired yet")
+                .register(registry);
+    }
+
+    /**
+     * Check the signature and expiry of a token, and read its contents.
+     *
+     * @param token the String token to decode
+     * @return the Payload of the token, or null if signed tokens are disabled or the token is not a
+     * valid, unexpired signed token
+     */
+    private Payload decode(String token) {
+        int separator = token.indexOf('.');
+
+        if (!enabled || separator < 0) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(token.substring(0, separator));
+            signature = decoder.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(signature, macs.get().doFinal(payload))) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+
+            UUID id = new UUID(in.readLong(), in.readLong());
+            long userId = in.readLong();
+            long expiresAt = in.readLong();
+            String username = in.readUTF();
+            int count = in.readUnsignedShort();
+            List<GrantedAuthority> authorities = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+            }
+
+            if (expiresAt <= clock.instant().getEpochSecond()) {
+                return null;
+            }
+
+            return new Payload(id, userId, expiresAt, username, authorities);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the session mode property.
+     *
+     * @param mode the String session mode, either <code>opaque</code> or <code>signed</code>
+     * @return true if the mode is <code>signed</code>, false if it is <code>opaque</code>
+     */
+    private static boolean parseMode(String mode) {
+        if ("signed".equalsIgnoreCase(mode)) {
+            return true;
+        } else if ("opaque".equalsIgnoreCase(mode)) {
+            return false;
+        }
+
+        throw new IllegalArgumentException("Unknown session mode: " + mode);
+    }
+
+    /**
+     * Decode the signing key property, generating a random key if it is empty.
+     *
+     * @param signingKey the Base64 encoded String signing key, or an empty String
+     * @return the raw bytes of the signing key
+     */
+    private static byte[] decodeKey(String signingKey) {
+        if (signingKey.isBlank()) {
+            byte[] key = new byte[MIN_KEY_LENGTH];
+            new SecureRandom().nextBytes(key);
+            return key;
+        }
+
+        return Base64.getDecoder().decode(signingKey.trim());
+    }
+
+    /**
+     * The verified contents of a signed token.
+     */
+    private static class Payload {
+
+        /**
+         * The random ID of the token
+         */
+        private final UUID id;
+
+        /**
+         * The ID of the user the token was issued to
+         */
+        private final long userId;
+
+        /**
+         * The epoch second at which the token expires
+         */
+        private final long expiresAt;
+
+        /**
+         * The username of the user the token was issued to
+         */
+        private final String username;
+
+        /**
+         * The authorities of the user the token was issued to
+         */
+        private final List<GrantedAuthority> authorities;
+
+        /**
+         * Constructs a Payload from the contents of a token.
+         *
+         * @param id          the UUID of the token
+         * @param userId      a long representing the ID of the token's user
+         * @param expiresAt   the epoch second at which the token expires
+         * @param username    the String username of the token's user
+         * @param authorities a List of the authorities of the token's user
+         */
+        private Payload(UUID id, long userId, long expiresAt, String username, List<GrantedAuthority> authorities) {
+            this.id = id;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.username = username;
+            this.authorities = authorities;
+        }
+    }
+}
@@ -41,17 +41,35 @@ public class TokenAuthenticationFilter extends AbstractAuthenticationProcessingF
      */
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) throws AuthenticationException {
-        String token = request.getHeader("AUTHORIZATION");
+        String token = resolveToken(request);
 
         if (token == null) {
             throw new AuthenticationCredentialsNotFoundException("No AUTHORIZATION header found");
         }
-        token = token.replace("Bearer", "").trim();
 
         Authentication requestAuth = new UsernamePasswordAuthenticationToken(token, token);
         return getAuthenticationManager().authenticate(requestAuth);
     }
 
+    /**
+     * Read the authentication token provided in the Authorization header of a request.
+     * <p>
+     * Spring erases the credentials of an Authentication once it has been authenticated, so
+     * endpoints that need the token itself must read it from the request again.
+     *
+     * @param request the HttpServletRequest to read the token from
+     * @return the String token provided in the request, or null if no Authorization header was provided
+     */
+    public static String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader("AUTHORIZATION");
+
+        if (header == null) {
+            return null;
+        }
+
+        return header.replace("Bearer", "").trim();
+    }
+
     /**
      * Define actions to perform upon successful authentication.
      * <p>
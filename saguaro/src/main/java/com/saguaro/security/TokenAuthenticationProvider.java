@@ -1,5 +1,6 @@
 package com.saguaro.security;
 
+import com.saguaro.service.SessionService;
 import com.saguaro.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -7,7 +8,6 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 /**
@@ -25,10 +25,37 @@ public class TokenAuthenticationProvider implements AuthenticationProvider {
     @Autowired
     UserService userService;
 
+    /**
+     * Saguaro's session service, told about every authenticated request
+     */
+    @Autowired
+    SessionService sessionService;
+
+    /**
+     * Service verifying signed tokens, when they are enabled
+     */
+    @Autowired
+    SignedTokenService signedTokenService;
+
+    /**
+     * Cache of recently authenticated tokens
+     */
+    @Autowired
+    TokenCache tokenCache;
+
     /**
      * Authenticate an Authentication object that was caught through Saguaro's filter chain. In
      * particular, this method attempts to match the token provided in the Authentication object
      * with an existing user's token.
+     * <p>
+     * The returned Authentication holds a {@link SaguaroPrincipal} as its principal, so that
+     * the ID of the authenticated user is available without querying for them again.
+     * <p>
+     * Signed tokens are verified by the {@link SignedTokenService} alone, without touching the database.
+     * Other tokens belong to sessions. Recently seen session tokens are answered from the {@link TokenCache},
+     * and only fall through to {@link UserService#findByToken(String)} on a miss. Either way, the use of a
+     * session token is recorded with the {@link SessionService}, which writes it later along with other
+     * sessions' activity.
      *
      * @param authentication the Authentication object to authenticate
      * @return a fully populated and valid Authentication object, if authentication was successful
@@ -37,14 +64,30 @@ public class TokenAuthenticationProvider implements AuthenticationProvider {
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
         String token = authentication.getCredentials().toString();
-        UserDetails userDetails = userService.findByToken(token);
+        SaguaroPrincipal principal = signedTokenService.verify(token);
+
+        if (principal != null) {
+            return new UsernamePasswordAuthenticationToken(principal, token, principal.getAuthorities());
+        }
+
+        principal = tokenCache.get(token);
+
+        if (principal == null) {
+            // read first, so that a logout racing with the lookup keeps the token out of the cache
+            long generation = tokenCache.generation();
+            principal = userService.findByToken(token);
 
-        if (userDetails == null) {
-            throw new BadCredentialsException("Cannot find user by token");
+            if (principal == null) {
+                throw new BadCredentialsException("Cannot find user by token");
+            }
+
+            tokenCache.put(token, principal, generation);
         }
 
-        // notice that in this instance, the token is stored into the password field of UserDetails
-        return new UsernamePasswordAuthenticationToken(userDetails.getUsername(), userDetails.getPassword(), userDetails.getAuthorities());
+        sessionService.recordActivity(token);
+
+        // notice that in this instance, the token is stored as the credentials of the Authentication
+        return new UsernamePasswordAuthenticationToken(principal, token, principal.getAuthorities());
     }
 
     /**
@@ -0,0 +1,261 @@
+package com.saguaro.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * This class implements a bounded, expiring cache from authentication tokens to the
+ * {@link SaguaroPrincipal} of the user holding that token. It sits in front of the token lookup performed
+ * by {@link TokenAuthenticationProvider}, so that repeated requests with the same token do
+ * not each require a database round trip.
+ * <p>
+ * Entries expire a fixed amount of time after they are cached, and the least recently used
+ * entry is evicted once the cache is full. Any code that invalidates a token (logging out,
+ * or logging in again) must also call {@link #invalidate(String)}.
+ * <p>
+ * A lookup that misses reads the {@link #generation()} before going to the database, and passes it to
+ * {@link #put(String, SaguaroPrincipal, long)}. The put is dropped if any token was invalidated in the
+ * meantime, so that a lookup racing with a logout cannot cache the token that logout just revoked.
+ * <p>
+ * Hit and miss counts are exposed through Micrometer as <code>saguaro.token.cache.requests</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class TokenCache implements MeterBinder {
+
+    /**
+     * The maximum number of tokens held by this cache
+     */
+    private final int maxSize;
+
+    /**
+     * How long an entry stays valid after being cached, in nanoseconds
+     */
+    private final long ttlNanos;
+
+    /**
+     * Source of the current time, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The cached entries, in access order. All access must be synchronized on this map.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Number of invalidations so far. All access must be synchronized on {@link #entries}.
+     */
+    private long invalidations;
+
+    /**
+     * Number of lookups answered by this cache
+     */
+    private final AtomicLong hits;
+
+    /**
+     * Number of lookups that had to fall through to the database
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Constructs a TokenCache with a size and time to live read from the application properties.
+     *
+     * @param maxSize    the maximum number of tokens to hold
+     * @param ttlSeconds the number of seconds an entry remains valid after being cached
+     */
+    @Autowired
+    public TokenCache(@Value("${saguaro.token-cache.max-size:10000}") int maxSize,
+                      @Value("${saguaro.token-cache.ttl-seconds:300}") long ttlSeconds) {
+        this(maxSize, TimeUnit.SECONDS.toNanos(ttlSeconds), System::nanoTime);
+    }
+
+    /**
+     * Constructs a TokenCache with an explicit clock. Used for testing.
+     *
+     * @param maxSize  the maximum number of tokens to hold
+     * @param ttlNanos the number of nanoseconds an entry remains valid after being cached
+     * @param clock    a LongSupplier returning the current time in nanoseconds
+     */
+    TokenCache(int maxSize, long ttlNanos, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenCache.Entry> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the cached principal for a token. Returns null if the token is not cached, or
+     * if its entry has expired.
+     *
+     * @param token the String authentication token to look up
+     * @return the cached SaguaroPrincipal, or null if none is available
+     */
+    public SaguaroPrincipal get(String token) {
+        long now = clock.getAsLong();
+
+        synchronized (entries) {
+            Entry entry = entries.get(token);
+
+            if (entry != null && now - entry.expiresAt < 0) {
+                hits.incrementAndGet();
+                return entry.principal;
+            } else if (entry != null) {
+                entries.remove(token);
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Get the current generation of this cache, which changes every time a token is invalidated. Must be
+     * read before looking up a token's principal to cache.
+     *
+     * @return the current generation
+     */
+    public long generation() {
+        synchronized (entries) {
+            return invalidations;
+        }
+    }
+
+    /**
+     * Cache the principal belonging to a token, unless a token has been invalidated since the given
+     * generation. Since the principal may have been looked up before that invalidation, it might belong to
+     * a token that is no longer valid.
+     *
+     * @param token      the String authentication token to cache
+     * @param principal  the SaguaroPrincipal of the user holding the token
+     * @param generation the {@link #generation()} read before the principal was looked up
+     * @return true if the principal was cached, false otherwise
+     */
+    public boolean put(String token, SaguaroPrincipal principal, long generation) {
+        Entry entry = new Entry(principal, clock.getAsLong() + ttlNanos);
+
+        synchronized (entries) {
+            if (invalidations != generation) {
+                return false;
+            }
+
+            entries.put(token, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Remove a token from this cache, so that the next request using it is checked against
+     * the database. Null tokens are ignored.
+     *
+     * @param token the String authentication token to remove
+     */
+    public void invalidate(String token) {
+        if (token == null) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.remove(token);
+            invalidations++;
+        }
+    }
+
+    /**
+     * Get the number of entries currently held by this cache, including expired entries
+     * that have not been removed yet.
+     *
+     * @return the number of entries in this cache
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups that were answered by this cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that were not answered by this cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Register this cache's hit/miss counters and size with a MeterRegistry. Called by
+     * Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saguaro.token.cache.requests", this, TokenCache::getHitCount)
+                .tag("result", "hit")
+                .description("Token lookups answered by the token cache")
+                .register(registry);
+        FunctionCounter.builder("saguaro.token.cache.requests", this, TokenCache::getMissCount)
+                .tag("result", "miss")
+                .description("Token lookups that fell through to the database")
+                .register(registry);
+        Gauge.builder("saguaro.token.cache.size", this, TokenCache::size)
+                .description("Number of tokens held by the token cache")
+                .register(registry);
+    }
+
+    /**
+     * A cached value, along with the time at which it expires.
+     */
+    private static class Entry {
+
+        /**
+         * The cached principal
+         */
+        private final SaguaroPrincipal principal;
+
+        /**
+         * The time at which this entry expires, in nanoseconds
+         */
+        private final long expiresAt;
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param principal the SaguaroPrincipal to cache
+         * @param expiresAt the time at which this entry expires, in nanoseconds
+         */
+        private Entry(SaguaroPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.saguaro.service;
+
+import java.util.List;
+
+/**
+ * A single operation of a batch, as deserialized from the body of a batch request. The operation is named
+ * by its op field, after the endpoint it stands in for, and only uses the fields that endpoint takes as
+ * parameters; the rest are left null.
+ * <p>
+ * List IDs are given as strings, so that they can either hold an ID, or refer to the list returned by an
+ * earlier operation of the same batch as <code>$</code> followed by that operation's index.
+ *
+ * @author Charles Wong
+ */
+public class BatchOperation {
+
+    /**
+     * The name of the operation, such as create-list or share-list
+     */
+    private String op;
+
+    /**
+     * The ID of the list to operate on, or a reference to an earlier operation's list
+     */
+    private String id;
+
+    /**
+     * The name of a list
+     */
+    private String name;
+
+    /**
+     * Whether a created list should be a template
+     */
+    private boolean template;
+
+    /**
+     * The ID of the template to create a list from, or a reference to an earlier operation's list
+     */
+    private String templateId;
+
+    /**
+     * The username of the user to share or unshare a list with
+     */
+    private String username;
+
+    /**
+     * The names of the grocery items to add or remove
+     */
+    private List<String> items;
+
+    /**
+     * The version the list must be at, or null to skip this check
+     */
+    private Long version;
+
+    /**
+     * Constructs an empty BatchOperation. Used for deserialization.
+     */
+    public BatchOperation() {
+    }
+
+    /**
+     * Constructs a BatchOperation with only a name and a list ID.
+     *
+     * @param op the String name of the operation
+     * @param id the String ID of the list to operate on, or a reference to an earlier operation's list
+     */
+    public BatchOperation(String op, String id) {
+        this.op = op;
+        this.id = id;
+    }
+
+    /**
+     * Get the name of this operation
+     *
+     * @return the String name of this operation
+     */
+    public String getOp() {
+        return op;
+    }
+
+    /**
+     * Set the name of this operation
+     *
+     * @param op the String name of this operation
+     */
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    /**
+     * Get the ID of the list to operate on
+     *
+     * @return the String ID of the list, or a reference to an earlier operation's list
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Set the ID of the list to operate on
+     *
+     * @param id the String ID of the list, or a reference to an earlier operation's list
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the name of a list
+     *
+     * @return the String name of a list
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the name of a list
+     *
+     * @param name the String name of a list
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get whether a created list should be a template
+     *
+     * @return true if the created list should be a template, false otherwise
+     */
+    public boolean isTemplate() {
+        return template;
+    }
+
+    /**
+     * Set whether a created list should be a template
+     *
+     * @param template true if the created list should be a template, false otherwise
+     */
+    public void setTemplate(boolean template) {
+        this.template = template;
+    }
+
+    /**
+     * Get the ID of the template to create a list from
+     *
+     * @return the String ID of the template, a reference to an earlier operation's list, or null
+     */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Set the ID of the template to create a list from
+     *
+     * @param templateId the String ID of the template, or a reference to an earlier operation's list
+     */
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    /**
+     * Get the username of the user to share or unshare a list with
+     *
+     * @return the String username of the user
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Set the username of the user to share or unshare a list with
+     *
+     * @param username the String username of the user
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Get the names of the grocery items to add or remove
+     *
+     * @return a List of the String names of the grocery items
+     */
+    public List<String> getItems() {
+        return items;
+    }
+
+    /**
+     * Set the names of the grocery items to add or remove
+     *
+     * @param items a List of the String names of the grocery items
+     */
+    public void setItems(List<String> items) {
+        this.items = items;
+    }
+
+    /**
+     * Get the version the list must be at
+     *
+     * @return the Long version the list must be at, or null to skip this check
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version the list must be at
+     *
+     * @param version the Long version the list must be at, or null to skip this check
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,222 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.BatchFailedException;
+import com.saguaro.exception.InvalidParamException;
+import com.saguaro.exception.PreconditionFailedException;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.security.SaguaroPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a service class running batches of grocery list operations, so that a client can perform
+ * a sequence of changes, such as creating a list, renaming it and sharing it, in a single request.
+ * <p>
+ * Each operation stands in for one grocery list endpoint, and is delegated to the same
+ * {@link GroceryService} method. A batch runs in a single transaction, which every operation joins: if any
+ * operation fails, no later operation is run, and the changes of every earlier operation are rolled back.
+ * <p>
+ * An operation can refer to the list returned by an earlier operation as <code>$</code> followed by that
+ * operation's index, such as <code>$0</code> for the list created by the first operation.
+ *
+ * @author Charles Wong
+ */
+@Service
+public class BatchService {
+
+    /**
+     * A grocery list Service to delegate operations to
+     */
+    private final GroceryService groceryService;
+
+    /**
+     * The maximum number of operations in a single batch
+     */
+    private final int maxOperations;
+
+    /**
+     * Constructs a BatchService, with the maximum size of a batch read from the application properties.
+     * <p>
+     * Note that this constructor is automatically picked up by Spring for autowiring.
+     *
+     * @param groceryService a GroceryService to delegate operations to
+     * @param maxOperations  the maximum number of operations in a single batch
+     */
+    @Autowired
+    public BatchService(GroceryService groceryService,
+                        @Value("${saguaro.batch.max-operations:50}") int maxOperations) {
+        this.groceryService = groceryService;
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Run a batch of operations in order, in a single transaction, on behalf of the user specified by
+     * principal. If any operation fails, the whole batch is rolled back.
+     * <p>
+     * The result of each operation is what the endpoint it stands in for would have returned: the
+     * affected GroceryList, or null for operations that return no content. Since the lists are shared
+     * by the whole batch, each is returned as it is once the batch has finished.
+     *
+     * @param operations a List of the BatchOperations to run, in order
+     * @param principal  the SaguaroPrincipal of the user running the batch
+     * @return a List of the results of the operations, in the same order
+     * @throws InvalidParamException if the batch holds more operations than allowed
+     * @throws BatchFailedException  if an operation failed, in which case nothing is changed
+     */
+    @Transactional(rollbackFor = BatchFailedException.class)
+    public List<Object> execute(List<BatchOperation> operations, SaguaroPrincipal principal)
+            throws InvalidParamException, BatchFailedException {
+        if (operations.size() > maxOperations) {
+            throw new InvalidParamException("A batch can hold at most " + maxOperations + " operations, not "
+                    + operations.size());
+        }
+
+        List<Object> results = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperation operation = operations.get(i);
+
+            try {
+                results.add(run(operation, results, principal));
+            } catch (InvalidParamException | ResourceNotFoundException | PreconditionFailedException e) {
+                throw new BatchFailedException(i, operation.getOp(), e);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Run a single operation by delegating to the corresponding GroceryService method.
+     *
+     * @param operation the BatchOperation to run
+     * @param results   a List of the results of the operations run so far
+     * @param principal the SaguaroPrincipal of the user running the batch
+     * @return the result of the operation, or null if it has none
+     * @throws InvalidParamException       if the operation is unknown, or is missing a parameter
+     * @throws ResourceNotFoundException   if the operation refers to something the user cannot access
+     * @throws PreconditionFailedException if a list is not at the version the operation expects
+     */
+    private Object run(BatchOperation operation, List<Object> results, SaguaroPrincipal principal)
+            throws InvalidParamException, ResourceNotFoundException, PreconditionFailedException {
+        String op = operation.getOp() == null ? "" : operation.getOp();
+
+        switch (op) {
+            case "create-list":
+                if (operation.isTemplate()) {
+                    return groceryService.createNewList(requireName(operation), principal, true);
+                } else if (operation.getTemplateId() != null) {
+                    return groceryService.createNewList(requireName(operation), principal,
+                            resolveId(operation.getTemplateId(), results));
+                }
+
+                return groceryService.createNewList(requireName(operation), principal, false);
+            case "edit-list-name":
+                return groceryService.editListName(resolveId(operation.getId(), results), requireName(operation),
+                        operation.getVersion(), principal);
+            case "add-items":
+                groceryService.addItems(resolveId(operation.getId(), results), requireItems(operation),
+                        operation.getVersion(), principal);
+                return null;
+            case "remove-items":
+                groceryService.removeItems(resolveId(operation.getId(), results), requireItems(operation),
+                        operation.getVersion(), principal);
+                return null;
+            case "delete-list":
+                groceryService.removeList(resolveId(operation.getId(), results), operation.getVersion(), principal);
+                return null;
+            case "share-list":
+                return groceryService.shareList(resolveId(operation.getId(), results), requireUsername(operation),
+                        principal);
+            case "unshare-list":
+                return groceryService.unshareList(resolveId(operation.getId(), results), requireUsername(operation),
+                        principal);
+            default:
+                throw new InvalidParamException("Unknown operation " + operation.getOp());
+        }
+    }
+
+    /**
+     * Resolve a list ID given to an operation, which either holds the ID itself, or refers to the list
+     * returned by an earlier operation.
+     *
+     * @param id      the String ID, or a reference such as <code>$0</code>
+     * @param results a List of the results of the operations run so far
+     * @return a long representing the ID of the list
+     * @throws InvalidParamException if the ID is missing or malformed, or refers to an operation that did
+     *                               not return a list
+     */
+    private static long resolveId(String id, List<Object> results) throws InvalidParamException {
+        if (id == null) {
+            throw new InvalidParamException("Operation requires a list ID");
+        }
+
+        try {
+            if (!id.startsWith("$")) {
+                return Long.parseLong(id);
+            }
+
+            int index = Integer.parseInt(id.substring(1));
+
+            if (index >= 0 && index < results.size() && results.get(index) instanceof GroceryList) {
+                return ((GroceryList) results.get(index)).getId();
+            }
+        } catch (NumberFormatException e) {
+            throw new InvalidParamException("Malformed list ID " + id);
+        }
+
+        throw new InvalidParamException(id + " does not refer to a list returned by an earlier operation");
+    }
+
+    /**
+     * Get the non-blank list name an operation requires.
+     *
+     * @param operation the BatchOperation to get the name of
+     * @return the String name given to the operation
+     * @throws InvalidParamException if the operation has no name, or a blank one
+     */
+    private static String requireName(BatchOperation operation) throws InvalidParamException {
+        if (operation.getName() == null || operation.getName().isBlank()) {
+            throw new InvalidParamException("Operation " + operation.getOp() + " requires a name");
+        }
+
+        return operation.getName();
+    }
+
+    /**
+     * Get the non-blank item names an operation requires.
+     *
+     * @param operation the BatchOperation to get the item names of
+     * @return a List of the String item names given to the operation
+     * @throws InvalidParamException if the operation has no item names, or a blank one
+     */
+    private static List<String> requireItems(BatchOperation operation) throws InvalidParamException {
+        if (operation.getItems() == null
+                || operation.getItems().stream().anyMatch(name -> name == null || name.isBlank())) {
+            throw new InvalidParamException("Operation " + operation.getOp() + " requires non-blank item names");
+        }
+
+        return operation.getItems();
+    }
+
+    /**
+     * Get the username an operation requires.
+     *
+     * @param operation the BatchOperation to get the username of
+     * @return the String username given to the operation
+     * @throws InvalidParamException if the operation has no username
+     */
+    private static String requireUsername(BatchOperation operation) throws InvalidParamException {
+        if (operation.getUsername() == null) {
+            throw new InvalidParamException("Operation " + operation.getOp() + " requires a username");
+        }
+
+        return operation.getUsername();
+    }
+}
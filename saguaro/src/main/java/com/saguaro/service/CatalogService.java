@@ -0,0 +1,195 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.GroceryItem;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.entity.PublishedTemplate;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.PublishedTemplateRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * This class is a service class providing all logic for the published template catalog, from which any
+ * user can create grocery lists.
+ * <p>
+ * Publishing a template copies its name and item names into the published template tables, and into the
+ * in-memory {@link TemplateCatalog}. Browsing the catalog and creating lists from it are answered from that
+ * catalog alone, so they never read grocery lists, and are unaffected by later changes to, or the deletion
+ * of, the template that was published. A template must be republished for such changes to appear.
+ *
+ * @author Charles Wong
+ */
+@Service
+@Transactional(readOnly = true)
+public class CatalogService {
+
+    /**
+     * Repository interface for published template tables
+     */
+    private final PublishedTemplateRepository publishedTemplateRepository;
+
+    /**
+     * Repository interface for grocery list tables
+     */
+    private final GroceryListRepository groceryListRepository;
+
+    /**
+     * A grocery list Service to create lists from templates with
+     */
+    private final GroceryService groceryService;
+
+    /**
+     * The in-memory catalog of published templates
+     */
+    private final TemplateCatalog templateCatalog;
+
+    /**
+     * Constructs a CatalogService, injecting all required dependencies.
+     * <p>
+     * Note that this constructor is automatically picked up by Spring for autowiring.
+     *
+     * @param publishedTemplateRepository a PublishedTemplateRepository instance to support this service
+     * @param groceryListRepository       a GroceryListRepository instance to support this service
+     * @param groceryService              a GroceryService to create lists from templates with
+     * @param templateCatalog             the TemplateCatalog to answer catalog reads from
+     */
+    public CatalogService(PublishedTemplateRepository publishedTemplateRepository,
+                          GroceryListRepository groceryListRepository,
+                          GroceryService groceryService,
+                          TemplateCatalog templateCatalog) {
+        this.publishedTemplateRepository = publishedTemplateRepository;
+        this.groceryListRepository = groceryListRepository;
+        this.groceryService = groceryService;
+        this.templateCatalog = templateCatalog;
+    }
+
+    /**
+     * Get a page of the catalog, ordered by template name.
+     * <p>
+     * The returned Map has the keys "templates", holding the templates on the page, "page", "size", and
+     * "total", holding the number of templates in the whole catalog.
+     *
+     * @param page an int representing the index of the page to get, starting from 0
+     * @param size an int representing the number of templates on each page
+     * @return a Map describing the page
+     */
+    public Map<String, Object> browse(int page, int size) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("templates", templateCatalog.getPage(page, size));
+        body.put("page", page);
+        body.put("size", size);
+        body.put("total", templateCatalog.size());
+
+        return body;
+    }
+
+    /**
+     * Get a version of the catalog, which changes whenever a template is published, republished or
+     * unpublished, for use as an ETag.
+     *
+     * @return a long representing the version of the catalog
+     */
+    public long getCatalogVersion() {
+        return templateCatalog.getFingerprint();
+    }
+
+    /**
+     * Get a template from the catalog.
+     *
+     * @param id a long representing the ID of the template
+     * @return the CatalogTemplate with the given ID
+     * @throws ResourceNotFoundException if no template with the given ID is published
+     */
+    public CatalogTemplate getTemplate(long id) throws ResourceNotFoundException {
+        CatalogTemplate template = templateCatalog.get(id);
+
+        if (template == null) {
+            throw new ResourceNotFoundException("Could not find catalog template " + id);
+        }
+
+        return template;
+    }
+
+    /**
+     * Publish a template to the catalog, or republish it with its current name and items if it has already
+     * been published. Only the owner of a template can publish it.
+     *
+     * @param listId    a long representing the ID of the template to publish
+     * @param principal the SaguaroPrincipal of the user publishing the template
+     * @return the CatalogTemplate as published
+     * @throws ResourceNotFoundException if the ID does not match a template owned by the user
+     */
+    @Transactional
+    public CatalogTemplate publish(long listId, SaguaroPrincipal principal) throws ResourceNotFoundException {
+        GroceryList list = groceryListRepository.findGroceryListById(listId);
+
+        if (list == null || !list.isTemplate() || list.getOwner() == null
+                || list.getOwner().getId() != principal.getId()) {
+            throw new ResourceNotFoundException("Could not find GroceryList template " + listId + " for user "
+                    + principal.getUsername());
+        }
+
+        List<String> itemNames = list.getItems().stream().map(GroceryItem::getName).collect(Collectors.toList());
+        PublishedTemplate published = publishedTemplateRepository.findPublishedTemplateById(listId);
+
+        if (published == null) {
+            published = publishedTemplateRepository.save(new PublishedTemplate(listId, principal.getId(),
+                    principal.getUsername(), list.getName(), itemNames, Instant.now()));
+        } else {
+            published.republish(list.getName(), itemNames, Instant.now());
+        }
+
+        CatalogTemplate template = CatalogTemplate.of(published);
+        templateCatalog.put(template);
+
+        return template;
+    }
+
+    /**
+     * Remove a template from the catalog. Only the user who published a template can unpublish it. Lists
+     * already created from the template are not affected.
+     *
+     * @param id        a long representing the ID of the template to unpublish
+     * @param principal the SaguaroPrincipal of the user unpublishing the template
+     * @throws ResourceNotFoundException if the ID does not match a template published by the user
+     */
+    @Transactional
+    public void unpublish(long id, SaguaroPrincipal principal) throws ResourceNotFoundException {
+        PublishedTemplate published = publishedTemplateRepository.findPublishedTemplateById(id);
+
+        if (published == null || published.getPublisherId() != principal.getId()) {
+            throw new ResourceNotFoundException(PublishedTemplate.class, String.valueOf(id), principal.getUsername());
+        }
+
+        publishedTemplateRepository.delete(published);
+        templateCatalog.remove(id);
+    }
+
+    /**
+     * Create a new grocery list for the user specified by principal, holding the items of a template in
+     * the catalog. The template is read from the in-memory catalog.
+     *
+     * @param id        a long representing the ID of the template to create the list from
+     * @param name      a String to initialize the new GroceryList's name with, or null or blank to use the
+     *                  template's
+     * @param principal the SaguaroPrincipal of the user to create this list for
+     * @return the newly saved GroceryList object
+     * @throws ResourceNotFoundException if no template with the given ID is published
+     */
+    @Transactional
+    public GroceryList createList(long id, String name, SaguaroPrincipal principal)
+            throws ResourceNotFoundException {
+        CatalogTemplate template = getTemplate(id);
+
+        return groceryService.createNewList(name != null && !name.isBlank() ? name : template.getName(), principal,
+                template.getItems());
+    }
+}
@@ -0,0 +1,131 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.PublishedTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * An immutable copy of a published template, as held in memory by the {@link TemplateCatalog} and
+ * returned by the catalog endpoints. Since instances are never modified, they can be shared by any number
+ * of concurrent readers without locking.
+ *
+ * @author Charles Wong
+ */
+public final class CatalogTemplate {
+
+    /**
+     * The ID of the grocery list template this was published from
+     */
+    private final long id;
+
+    /**
+     * The name of this template
+     */
+    private final String name;
+
+    /**
+     * The username of the user who published this template
+     */
+    private final String publisher;
+
+    /**
+     * The names of the items in this template, in order
+     */
+    private final List<String> items;
+
+    /**
+     * The time at which this template was last published
+     */
+    private final Instant publishedAt;
+
+    /**
+     * The number of times this template has been republished
+     */
+    private final int revision;
+
+    /**
+     * Constructs a CatalogTemplate.
+     *
+     * @param id          a long representing the ID of the template
+     * @param name        the String name of the template
+     * @param publisher   the String username of the user who published the template
+     * @param items       a List of the String names of the template's items, in order
+     * @param publishedAt the Instant the template was last published at
+     * @param revision    an int representing the number of times the template has been republished
+     */
+    public CatalogTemplate(long id, String name, String publisher, List<String> items,
+                           Instant publishedAt, int revision) {
+        this.id = id;
+        this.name = name;
+        this.publisher = publisher;
+        this.items = List.copyOf(items);
+        this.publishedAt = publishedAt;
+        this.revision = revision;
+    }
+
+    /**
+     * Copy a published template entity into a CatalogTemplate. Its item names must already be loaded.
+     *
+     * @param template the PublishedTemplate to copy
+     * @return a new CatalogTemplate holding the same data
+     */
+    public static CatalogTemplate of(PublishedTemplate template) {
+        return new CatalogTemplate(template.getId(), template.getName(), template.getPublisherUsername(),
+                template.getItemNames(), template.getPublishedAt(), template.getRevision());
+    }
+
+    /**
+     * Get the ID of the template this was published from
+     *
+     * @return a long representing the ID of this template
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the name of this template
+     *
+     * @return the String name of this template
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the username of the user who published this template
+     *
+     * @return the String username of the publisher
+     */
+    public String getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Get the names of the items in this template
+     *
+     * @return an unmodifiable List of the String names of this template's items, in order
+     */
+    public List<String> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the time at which this template was last published
+     *
+     * @return the Instant this template was last published at
+     */
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Get the number of times this template has been republished
+     *
+     * @return an int representing the revision of this template
+     */
+    public int getRevision() {
+        return revision;
+    }
+}
@@ -3,22 +3,36 @@ package com.saguaro.service;
 import com.saguaro.entity.GroceryItem;
 import com.saguaro.entity.GroceryList;
 import com.saguaro.entity.User;
+import com.saguaro.exception.PreconditionFailedException;
 import com.saguaro.exception.ResourceNotFoundException;
 import com.saguaro.repository.GroceryItemRepository;
 import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.GroceryListSummary;
 import com.saguaro.repository.UserRepository;
+import com.saguaro.security.ListAccessCache;
+import com.saguaro.security.SaguaroPrincipal;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class is a service class providing all logic for grocery list related operations. It is responsible
  * for interfacing with repository interfaces to fetch/persist User entities.
+ * <p>
+ * All operations are performed on behalf of an authenticated {@link SaguaroPrincipal}. Ownership and access
+ * checks compare user IDs taken from the principal, so that the authenticated user does not need to be fetched
+ * again for every request. Shared access is checked against the shared lists join table, with positive
+ * answers kept in a {@link ListAccessCache}, so that the shared users of a list are never loaded just to
+ * authorize a request.
+ * <p>
+ * Each grocery list carries a version, and each user a dashboard version, which clients use as ETags to avoid
+ * refetching unchanged data. Operations that change what appears on a user's dashboard increment that user's
+ * dashboard version, and methods modifying a list optionally take the list version the client expects.
  *
  * @author Charles Wong
  */
@@ -41,6 +55,27 @@ public class GroceryService {
      */
     private GroceryItemRepository groceryItemRepository;
 
+    /**
+     * Cache of the lists each user is known to have shared access to
+     */
+    private ListAccessCache listAccessCache;
+
+    /**
+     * Index of grocery item names, told about items as they are added to and removed from lists
+     */
+    private ItemSuggestionIndex itemSuggestionIndex;
+
+    /**
+     * Index of the words of item names in each list, told about every change to the items of a list
+     */
+    private ListSearchIndex listSearchIndex;
+
+    /**
+     * Matrix of how often grocery items are found in the same list, told about every change to the items
+     * of a list
+     */
+    private ItemCooccurrenceIndex itemCooccurrenceIndex;
+
     /**
      * Constructs a GroceryService, injecting all requires dependencies.
      * <p>
@@ -49,162 +84,402 @@ public class GroceryService {
      * @param userRepository        a UserRepository instance to support this service
      * @param groceryListRepository a GroceryListRepository instance to support this service
      * @param groceryItemRepository a GroceryItemRepository instance to support this service
+     * @param listAccessCache       a ListAccessCache instance to check and invalidate shared access in
+     * @param itemSuggestionIndex   an ItemSuggestionIndex instance to report added and removed items to
+     * @param listSearchIndex       a ListSearchIndex instance to report changes to the items of lists to
+     * @param itemCooccurrenceIndex an ItemCooccurrenceIndex instance to report changes to the items of lists to
      */
     public GroceryService(UserRepository userRepository,
                           GroceryListRepository groceryListRepository,
-                          GroceryItemRepository groceryItemRepository) {
+                          GroceryItemRepository groceryItemRepository,
+                          ListAccessCache listAccessCache,
+                          ItemSuggestionIndex itemSuggestionIndex,
+                          ListSearchIndex listSearchIndex,
+                          ItemCooccurrenceIndex itemCooccurrenceIndex) {
         this.userRepository = userRepository;
         this.groceryListRepository = groceryListRepository;
         this.groceryItemRepository = groceryItemRepository;
+        this.listAccessCache = listAccessCache;
+        this.itemSuggestionIndex = itemSuggestionIndex;
+        this.listSearchIndex = listSearchIndex;
+        this.itemCooccurrenceIndex = itemCooccurrenceIndex;
     }
 
     /**
-     * Given a username, gets all the grocery lists that the corresponding user owns. Returns
+     * Given a principal, gets all the grocery lists that the corresponding user owns. Returns
      * the results as a map from list ID to list name.
      * <p>
-     * Delegates to {@link #getListNamesByUsername(String, boolean, boolean)}.
+     * Delegates to {@link #getListNames(SaguaroPrincipal, boolean, boolean)}.
      *
-     * @param username the String username of the user to fetch for
+     * @param principal the SaguaroPrincipal of the user to fetch for
      * @return a mapping from list ID to list name of all the lists the user owns
      */
-    public Map<Long, String> getOwnedListNames(String username) {
-        return getListNamesByUsername(username, false, false);
+    public Map<Long, String> getOwnedListNames(SaguaroPrincipal principal) {
+        return getListNames(principal, false, false);
     }
 
     /**
-     * Given a username, gets all the grocery lists that the corresponding user has shared
+     * Given a principal, gets a page of the grocery lists that the corresponding user owns, in order of
+     * list ID. Returns the results as an ordered map from list ID to list name.
+     *
+     * @param principal the SaguaroPrincipal of the user to fetch for
+     * @param after     a long representing the list ID after which the page starts, or 0 for the first page
+     * @param limit     the maximum number of lists on the page
+     * @return a KeysetPage holding a mapping from list ID to list name, and the cursor of the next page
+     */
+    public KeysetPage<Map<Long, String>> getOwnedListNames(SaguaroPrincipal principal, long after, int limit) {
+        List<GroceryListSummary> summaries = groceryListRepository.findOwnedSummariesAfter(principal.getId(),
+                false, after, PageRequest.of(0, limit + 1));
+        Long next = KeysetPage.trim(summaries, limit, GroceryListSummary::getId);
+
+        Map<Long, String> names = new LinkedHashMap<>();
+
+        for (GroceryListSummary summary : summaries) {
+            names.put(summary.getId(), summary.getName());
+        }
+
+        return new KeysetPage<>(names, next);
+    }
+
+    /**
+     * Given a principal, gets all the grocery lists that the corresponding user has shared
      * access to. Returns the results as a map from list ID to list name.
      * <p>
-     * Delegates to {@link #getListNamesByUsername(String, boolean, boolean)}.
+     * Delegates to {@link #getListNames(SaguaroPrincipal, boolean, boolean)}.
      *
-     * @param username the String username of the user to fetch for
+     * @param principal the SaguaroPrincipal of the user to fetch for
      * @return a mapping from list ID to list name of all the lists the user has shared access to
      */
-    public Map<Long, String> getSharedListNames(String username) {
-        return getListNamesByUsername(username, true, false);
+    public Map<Long, String> getSharedListNames(SaguaroPrincipal principal) {
+        return getListNames(principal, true, false);
     }
 
     /**
-     * Given a username, gets all the grocery list templates that the corresponding user owns. Returns
+     * Given a principal, gets all the grocery list templates that the corresponding user owns. Returns
      * the results as a map from list ID to list name.
      * <p>
-     * Delegates to {@link #getListNamesByUsername(String, boolean, boolean)}.
+     * Delegates to {@link #getListNames(SaguaroPrincipal, boolean, boolean)}.
      *
-     * @param username the String username of the user to fetch for
+     * @param principal the SaguaroPrincipal of the user to fetch for
      * @return a mapping from list ID to list name of all the templates the user owns
      */
-    public Map<Long, String> getOwnedTemplateNames(String username) {
-        return getListNamesByUsername(username, false, true);
+    public Map<Long, String> getOwnedTemplateNames(SaguaroPrincipal principal) {
+        return getListNames(principal, false, true);
     }
 
     /**
-     * Given a username, gets all the grocery list templates that the corresponding user has shared
+     * Given a principal, gets all the grocery list templates that the corresponding user has shared
      * access to. Returns the results as a map from list ID to list name.
      * <p>
-     * Delegates to {@link #getListNamesByUsername(String, boolean, boolean)}.
+     * Delegates to {@link #getListNames(SaguaroPrincipal, boolean, boolean)}.
      *
-     * @param username the String username of the user to fetch for
+     * @param principal the SaguaroPrincipal of the user to fetch for
      * @return a mapping from list ID to list name of all the templates the user has shared access to
      */
-    public Map<Long, String> getSharedTemplateNames(String username) {
-        return getListNamesByUsername(username, true, true);
+    public Map<Long, String> getSharedTemplateNames(SaguaroPrincipal principal) {
+        return getListNames(principal, true, true);
     }
 
     /**
-     * Fetch the either the owned or shared access lists of a user, given a username and a
+     * Fetch the either the owned or shared access lists of a user, given a principal and a
      * boolean specifier.
      *
-     * @param username the String username of the user to fetch for
-     * @param shared   a boolean that should be true if the shared access lists are desired, and false
-     *                 if the owned lists are desired
+     * @param principal the SaguaroPrincipal of the user to fetch for
+     * @param shared    a boolean that should be true if the shared access lists are desired, and false
+     *                  if the owned lists are desired
+     * @param template  a boolean that should be true if templates are desired, and false if regular
+     *                  lists are desired
      * @return a mapping from list ID to list name of the desired type of list
      */
-    private Map<Long, String> getListNamesByUsername(String username, boolean shared, boolean template) {
-        User user = userRepository.findUserByUsername(username);
+    private Map<Long, String> getListNames(SaguaroPrincipal principal, boolean shared, boolean template) {
+        return groceryListRepository.findSummariesByUserId(principal.getId())
+                .stream()
+                .filter(summary -> summary.isTemplate() == template
+                        && (summary.getOwnerId() != principal.getId()) == shared)
+                .collect(Collectors.toMap(GroceryListSummary::getId, GroceryListSummary::getName));
+    }
 
-        List<GroceryList> lists = shared ? user.getSharedLists() : user.getGroceryLists();
+    /**
+     * Given a principal, gets every grocery list and template that the corresponding user owns or has
+     * shared access to, using a single query that does not load any GroceryList entities.
+     * <p>
+     * The returned Map has two keys, "lists" and "templates". Each of these maps to another Map with the
+     * keys "owned" and "shared", which in turn map to a mapping from list ID to list name.
+     *
+     * @param principal the SaguaroPrincipal of the user to fetch for
+     * @return a Map describing all lists the user has access to
+     */
+    public Map<String, Object> getAllListNames(SaguaroPrincipal principal) {
+        return groupListNames(groceryListRepository.findSummariesByUserId(principal.getId()), principal);
+    }
 
-        return lists
-                .stream()
-                .filter(template ? GroceryList::isTemplate : p -> !p.isTemplate())
-                .collect(Collectors.toMap(GroceryList::getId, GroceryList::getName));
+    /**
+     * Given a principal, gets a page of the grocery lists and templates that the corresponding user owns or
+     * has shared access to, in order of list ID. The page is grouped in the same way as
+     * {@link #getAllListNames(SaguaroPrincipal)}, with each group holding the page's lists of that kind.
+     *
+     * @param principal the SaguaroPrincipal of the user to fetch for
+     * @param after     a long representing the list ID after which the page starts, or 0 for the first page
+     * @param limit     the maximum number of lists and templates on the page
+     * @return a KeysetPage holding a Map describing the lists on the page, and the cursor of the next page
+     */
+    public KeysetPage<Map<String, Object>> getAllListNames(SaguaroPrincipal principal, long after, int limit) {
+        List<GroceryListSummary> summaries = groceryListRepository.findSummariesByUserIdAfter(principal.getId(),
+                after, PageRequest.of(0, limit + 1));
+        Long next = KeysetPage.trim(summaries, limit, GroceryListSummary::getId);
+
+        return new KeysetPage<>(groupListNames(summaries, principal), next);
+    }
+
+    /**
+     * Given a principal, find the grocery lists and templates that the corresponding user owns or has shared
+     * access to, holding items whose names match a query. Every word of the query must match the start of a
+     * word of some item in a list, ignoring case. Returns the results as a map from list ID to list name, in
+     * order of list ID.
+     * <p>
+     * Lists are matched against an in-memory {@link ListSearchIndex}, so no grocery items are loaded.
+     *
+     * @param query     the String query to search for
+     * @param principal the SaguaroPrincipal of the user to search for
+     * @return a mapping from list ID to list name of every matching list
+     */
+    public Map<Long, String> searchLists(String query, SaguaroPrincipal principal) {
+        Map<Long, String> accessible = new HashMap<>();
+
+        for (GroceryListSummary summary : groceryListRepository.findSummariesByUserId(principal.getId())) {
+            accessible.put(summary.getId(), summary.getName());
+        }
+
+        Map<Long, String> names = new TreeMap<>();
+
+        for (Long id : listSearchIndex.search(query, accessible.keySet())) {
+            names.put(id, accessible.get(id));
+        }
+
+        return names;
+    }
+
+    /**
+     * Group list summaries by whether they are templates, and by whether the user represented by a principal
+     * owns them. The order of the summaries is kept within each group.
+     *
+     * @param summaries the GroceryListSummary objects to group
+     * @param principal the SaguaroPrincipal of the user the summaries were fetched for
+     * @return a Map describing the lists, as returned by {@link #getAllListNames(SaguaroPrincipal)}
+     */
+    private static Map<String, Object> groupListNames(List<GroceryListSummary> summaries,
+                                                      SaguaroPrincipal principal) {
+        Map<Long, String> ownedLists = new LinkedHashMap<>();
+        Map<Long, String> sharedLists = new LinkedHashMap<>();
+        Map<Long, String> ownedTemplates = new LinkedHashMap<>();
+        Map<Long, String> sharedTemplates = new LinkedHashMap<>();
+
+        for (GroceryListSummary summary : summaries) {
+            boolean owned = summary.getOwnerId() == principal.getId();
+
+            if (summary.isTemplate()) {
+                (owned ? ownedTemplates : sharedTemplates).put(summary.getId(), summary.getName());
+            } else {
+                (owned ? ownedLists : sharedLists).put(summary.getId(), summary.getName());
+            }
+        }
+
+        Map<String, Object> lists = new HashMap<>();
+        lists.put("owned", ownedLists);
+        lists.put("shared", sharedLists);
+
+        Map<String, Object> templates = new HashMap<>();
+        templates.put("owned", ownedTemplates);
+        templates.put("shared", sharedTemplates);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("lists", lists);
+        body.put("templates", templates);
+
+        return body;
+    }
+
+    /**
+     * Get the dashboard version of the user represented by a principal, without loading the user. The
+     * version changes whenever the result of {@link #getAllListNames(SaguaroPrincipal)} may have changed.
+     *
+     * @param principal the SaguaroPrincipal of the user to fetch for
+     * @return a long representing the user's dashboard version
+     */
+    public long getDashboardVersion(SaguaroPrincipal principal) {
+        Long version = userRepository.findDashboardVersionById(principal.getId());
+
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Get the version of a grocery list, without loading the list. Access is checked in the same way as
+     * {@link #getListById(long, SaguaroPrincipal)}.
+     *
+     * @param id        a long representing the ID of the grocery list
+     * @param principal the SaguaroPrincipal of the user making the request
+     * @return a long representing the version of the grocery list
+     * @throws ResourceNotFoundException if the provided ID does not match any existing list, or if the user
+     *                                   making the request is not authorized to access it
+     */
+    public long getListVersion(long id, SaguaroPrincipal principal) throws ResourceNotFoundException {
+        Long version = groceryListRepository.findVersionByIdAndUserId(id, principal.getId());
+
+        if (version == null) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
+        }
+
+        return version;
+    }
+
+    /**
+     * Fetch a page of the names of the items of a grocery list, in list order, without loading the list or
+     * its items. Access is checked in the same way as {@link #getListById(long, SaguaroPrincipal)}.
+     *
+     * @param id        a long representing the ID of the grocery list
+     * @param after     a long representing the entry after which the page starts, or 0 for the first page
+     * @param limit     the maximum number of item names on the page
+     * @param principal the SaguaroPrincipal of the user making the request
+     * @return a KeysetPage holding the item names, and the cursor of the next page
+     * @throws ResourceNotFoundException if the provided ID does not match any existing list, or if the user
+     *                                   making the request is not authorized to access it
+     */
+    public KeysetPage<List<String>> getItemNames(long id, long after, int limit, SaguaroPrincipal principal)
+            throws ResourceNotFoundException {
+        getListVersion(id, principal);
+
+        SortedMap<Long, String> entries = groceryListRepository.findItemNamesAfter(id, after, limit + 1);
+        Long next = null;
+
+        if (entries.size() > limit) {
+            entries.remove(entries.lastKey());
+            next = entries.lastKey();
+        }
+
+        return new KeysetPage<>(new ArrayList<>(entries.values()), next);
     }
 
     /**
      * Fetch a grocery list, specified by its ID. The list corresponding to the ID, if it exists,
-     * is only returned if the provided username corresponds to the owner or one of the shared
+     * is only returned if the provided principal corresponds to the owner or one of the shared
      * users of the list. Otherwise, a ResourceNotFoundException is thrown.
      *
-     * @param id       a long representing the ID of the grocery list to fetch
-     * @param username the String username of the user making the request
+     * @param id        a long representing the ID of the grocery list to fetch
+     * @param principal the SaguaroPrincipal of the user making the request
      * @return the found GroceryList object
      * @throws ResourceNotFoundException if the provided ID does not match any existing list, or if the user
      *                                   making the fetch request is not authorized to do so
      */
-    public GroceryList getListById(long id, String username)
+    public GroceryList getListById(long id, SaguaroPrincipal principal)
             throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
-        GroceryList list = groceryListRepository.findGroceryListById(id);
-
-        if (list == null || !(user.equals(list.getOwner()) || list.getSharedUsers().contains(user))) {
-            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), user);
-        }
-
-        return list;
+        return findAccessibleList(id, principal);
     }
 
     /**
-     * Create a new grocery list with the provided name, for the user specified by username. Additionally mark
+     * Create a new grocery list with the provided name, for the user specified by principal. Additionally mark
      * this grocery list as being a template or not.
      *
-     * @param name     a String to initialize the new GroceryList's name with
-     * @param username the String username of the user to create this list for
-     * @param template a boolean specifying whether this grocery list should be a template
+     * @param name      a String to initialize the new GroceryList's name with
+     * @param principal the SaguaroPrincipal of the user to create this list for
+     * @param template  a boolean specifying whether this grocery list should be a template
      * @return the newly saved GroceryList object
      */
     @Transactional
-    public GroceryList createNewList(String name, String username, boolean template) {
-        User user = userRepository.findUserByUsername(username);
+    public GroceryList createNewList(String name, SaguaroPrincipal principal, boolean template) {
+        User user = userRepository.getById(principal.getId());
 
         GroceryList list = new GroceryList();
         list.setName(name);
         list.setOwner(user);
         list.setTemplate(template);
 
+        touchDashboard(principal.getId());
+
         return groceryListRepository.save(list);
     }
 
     /**
-     * Create a new grocery list with the provided name, for the user specified by username.
+     * Create a new grocery list with the provided name, for the user specified by principal, holding
+     * grocery items with the given names, in order. As with {@link #addItems(long, Collection, Long,
+     * SaguaroPrincipal)}, existing grocery items are reused, and new ones are created only for names that do
+     * not exist yet. Duplicate names are ignored.
+     *
+     * @param name      a String to initialize the new GroceryList's name with
+     * @param principal the SaguaroPrincipal of the user to create this list for
+     * @param itemNames a List of the String names of the grocery items to add to the list
+     * @return the newly saved GroceryList object
+     */
+    @Transactional
+    public GroceryList createNewList(String name, SaguaroPrincipal principal, List<String> itemNames) {
+        User user = userRepository.getById(principal.getId());
+
+        GroceryList list = new GroceryList();
+        list.setName(name);
+        list.setOwner(user);
+        list.setTemplate(false);
+
+        Set<String> names = new LinkedHashSet<>(itemNames);
+        Map<String, GroceryItem> savedItems = findItemsByName(names);
+
+        for (String itemName : names) {
+            GroceryItem savedItem = savedItems.get(itemName);
+            list.addItem(savedItem != null ? savedItem : new GroceryItem(itemName));
+        }
+
+        itemSuggestionIndex.itemsAdded(names);
+        touchDashboard(principal.getId());
+
+        GroceryList saved = groceryListRepository.save(list);
+        listSearchIndex.itemsAdded(saved.getId(), names);
+        itemCooccurrenceIndex.itemsAdded(saved.getId(), names);
+
+        return saved;
+    }
+
+    /**
+     * Create a new grocery list with the provided name, for the user specified by principal.
      * Additionally initialize this grocery list with the items from a template. If the
      * template does not exist, a ResourceNotFoundException is thrown.
      * <p>
+     * The template's items are copied with one query and one batched insert on the join table, so this
+     * takes the same statements however many items the template has.
+     * <p>
      * Note that a grocery list cannot have been marked as a template if it is being initalized with a template.
      *
      * @param name       a String to initialize the new GroceryList's name with
-     * @param username   the String username of the user to create this list for
+     * @param principal  the SaguaroPrincipal of the user to create this list for
      * @param templateId a long representing the ID of the template to initialize this grocery list with
      * @return the newly saved GroceryList object
      * @throws ResourceNotFoundException if the provided template id to initialize this grocery list with does not
      *                                   exist
      */
     @Transactional
-    public GroceryList createNewList(String name, String username, long templateId) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+    public GroceryList createNewList(String name, SaguaroPrincipal principal, long templateId)
+            throws ResourceNotFoundException {
         GroceryList template = groceryListRepository.findGroceryListById(templateId);
 
-        if (template == null || !template.isTemplate() || !user.equals(template.getOwner())) {
-            throw new ResourceNotFoundException("Could not find GroceryList template " + templateId + " for user " + user.getUsername());
+        if (template == null || !template.isTemplate() || !isOwner(template, principal)) {
+            throw new ResourceNotFoundException("Could not find GroceryList template " + templateId + " for user "
+                    + principal.getUsername());
         }
 
         GroceryList list = new GroceryList();
         list.setName(name);
-        list.setOwner(user);
+        // the template's owner has already been loaded, and is the user creating this list
+        list.setOwner(template.getOwner());
         list.setTemplate(false);
 
-        this.mergeLists(list, template);
+        touchDashboard(principal.getId());
 
-        return groceryListRepository.save(list);
+        groceryListRepository.save(list);
+        // copied by name in the join table, so the template's items are never loaded
+        List<String> names = groceryListRepository.copyItems(template.getId(), list);
+        itemSuggestionIndex.itemsAdded(names);
+
+        listSearchIndex.listCopied(template.getId(), list.getId());
+        itemCooccurrenceIndex.listCopied(template.getId(), list.getId());
+
+        return list;
     }
 
     /**
@@ -221,25 +496,33 @@ public class GroceryService {
      * <p>
      * If the new grocery list includes and non-null name field, the string contained in that field will
      * overwrite the old list's existing name.
+     * <p>
+     * If an expected version is given, and the existing list is no longer at that version, a
+     * PreconditionFailedException is thrown and nothing is saved.
      *
-     * @param list     the GroceryList to save as the new state
-     * @param username the String username of the user making the request
+     * @param list            the GroceryList to save as the new state
+     * @param expectedVersion the version the existing list must be at, or null to skip this check
+     * @param principal       the SaguaroPrincipal of the user making the request
      * @return the newly saved GroceryList object
-     * @throws ResourceNotFoundException if the new list's ID does not match an existing list that the user
-     *                                   is authorized to edit
+     * @throws ResourceNotFoundException   if the new list's ID does not match an existing list that the user
+     *                                     is authorized to edit
+     * @throws PreconditionFailedException if the existing list is not at the expected version
      */
     @Transactional
-    public GroceryList saveList(GroceryList list, String username) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+    public GroceryList saveList(GroceryList list, Long expectedVersion, SaguaroPrincipal principal)
+            throws ResourceNotFoundException, PreconditionFailedException {
         GroceryList oldList = groceryListRepository.findGroceryListById(list.getId());
 
-        if (oldList == null || !(user.equals(oldList.getOwner()) || oldList.getSharedUsers().contains(user))) {
+        if (oldList == null || !hasAccess(oldList, principal)) {
             throw new ResourceNotFoundException(GroceryList.class,
-                    String.valueOf(list.getId()), user);
+                    String.valueOf(list.getId()), principal.getUsername());
         }
 
-        if (list.getName() != null) {
+        checkVersion(oldList, expectedVersion);
+
+        if (list.getName() != null && !list.getName().equals(oldList.getName())) {
             oldList.setName(list.getName());
+            touchDashboards(oldList);
         }
 
         this.mergeLists(oldList, list);
@@ -247,6 +530,89 @@ public class GroceryService {
         return groceryListRepository.save(oldList);
     }
 
+    /**
+     * Add grocery items to an existing grocery list, given only the names of the items to add. Names of items
+     * already in the list are ignored. As with {@link #saveList(GroceryList, Long, SaguaroPrincipal)}, existing
+     * grocery items are reused, and new ones are created only for names that do not exist yet.
+     * <p>
+     * If the list ID does not match an existing list, or the user making the request is not authorized to
+     * edit the list, a ResourceNotFoundException is thrown.
+     *
+     * @param id              a long representing the ID of the grocery list to add items to
+     * @param names           a Collection of String names of the grocery items to add
+     * @param expectedVersion the version the list must be at, or null to skip this check
+     * @param principal       the SaguaroPrincipal of the user making the request
+     * @throws ResourceNotFoundException   if the list ID does not match an existing list that the user
+     *                                     is authorized to edit
+     * @throws PreconditionFailedException if the list is not at the expected version
+     */
+    @Transactional
+    public void addItems(long id, Collection<String> names, Long expectedVersion, SaguaroPrincipal principal)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        GroceryList list = findAccessibleList(id, principal);
+        checkVersion(list, expectedVersion);
+        Set<String> addedNames = new LinkedHashSet<>();
+
+        for (String name : names) {
+            if (!list.containsItem(new GroceryItem(name))) {
+                addedNames.add(name);
+            }
+        }
+
+        if (addedNames.isEmpty()) {
+            return;
+        }
+
+        Map<String, GroceryItem> savedItems = findItemsByName(addedNames);
+
+        for (String name : addedNames) {
+            GroceryItem savedItem = savedItems.get(name);
+            list.addItem(savedItem != null ? savedItem : new GroceryItem(name));
+        }
+
+        itemSuggestionIndex.itemsAdded(addedNames);
+        listSearchIndex.itemsAdded(id, addedNames);
+        itemCooccurrenceIndex.itemsAdded(id, addedNames);
+        groceryListRepository.save(list);
+    }
+
+    /**
+     * Remove grocery items from an existing grocery list, given only the names of the items to remove. Names
+     * of items that are not in the list are ignored.
+     * <p>
+     * If the list ID does not match an existing list, or the user making the request is not authorized to
+     * edit the list, a ResourceNotFoundException is thrown.
+     *
+     * @param id              a long representing the ID of the grocery list to remove items from
+     * @param names           a Collection of String names of the grocery items to remove
+     * @param expectedVersion the version the list must be at, or null to skip this check
+     * @param principal       the SaguaroPrincipal of the user making the request
+     * @throws ResourceNotFoundException   if the list ID does not match an existing list that the user
+     *                                     is authorized to edit
+     * @throws PreconditionFailedException if the list is not at the expected version
+     */
+    @Transactional
+    public void removeItems(long id, Collection<String> names, Long expectedVersion, SaguaroPrincipal principal)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        GroceryList list = findAccessibleList(id, principal);
+        checkVersion(list, expectedVersion);
+        Set<GroceryItem> removed = names.stream().map(GroceryItem::new).collect(Collectors.toSet());
+        Set<GroceryItem> retained = new HashSet<>();
+        List<String> removedNames = new ArrayList<>();
+
+        for (GroceryItem item : list.getItems()) {
+            if (!removed.contains(item)) {
+                retained.add(item);
+            } else {
+                removedNames.add(item.getName());
+            }
+        }
+
+        itemSuggestionIndex.itemsRemoved(removedNames);
+        listSearchIndex.itemsRemoved(id, removedNames);
+        itemCooccurrenceIndex.itemsRemoved(id, removedNames);
+        list.retainItems(retained);
+    }
 
     /**
      * Given an old grocery list and a new grocery list, replace the items in the old grocery list with
@@ -254,55 +620,101 @@ public class GroceryService {
      * application) exists in both lists, then the item in the old list should not be overwritten with a new instance.
      * Additionally, if an item needs to be added to the old list from the new list, and that item already exists
      * in the database, then that is the instance that should be saved to the list (do not duplicate existing items).
+     * <p>
+     * All items that need to be added to the old list are resolved against the database in a single query, and
+     * membership checks use the old list's hashed item index, so finding the changes runs in linear time. Each
+     * removed item still shifts the entry IDs of the items after it in the old list; see
+     * {@link GroceryList#retainItems(Set)}.
      *
      * @param oldList the GroceryList to save a new state to
      * @param newList a GroceryList that the old list's state to be modified to mirror
      */
     private void mergeLists(GroceryList oldList, GroceryList newList) {
-        HashSet<GroceryItem> foundItems = new HashSet<>();
+        Set<GroceryItem> newItems = new LinkedHashSet<>(newList.getItems());
+        Set<String> addedNames = new LinkedHashSet<>();
 
-        for (GroceryItem item : newList.getItems()) {
-            if (!oldList.getItems().contains(item)) {
-                GroceryItem savedItem = groceryItemRepository.findGroceryItemByName(item.getName());
-                oldList.addItem(Objects.requireNonNullElse(savedItem, item));
+        for (GroceryItem item : newItems) {
+            if (!oldList.containsItem(item)) {
+                addedNames.add(item.getName());
             }
+        }
+
+        Map<String, GroceryItem> savedItems = findItemsByName(addedNames);
+
+        List<String> removedNames = new ArrayList<>();
 
-            foundItems.add(item);
+        for (GroceryItem item : oldList.getItems()) {
+            if (!newItems.contains(item)) {
+                removedNames.add(item.getName());
+            }
         }
 
-        for (int i = oldList.getItems().size() - 1; i >= 0; i--) {
-            if (!foundItems.contains(oldList.getItems().get(i))) {
-                oldList.removeItem(oldList.getItems().get(i));
+        for (GroceryItem item : newItems) {
+            if (!oldList.containsItem(item)) {
+                GroceryItem savedItem = savedItems.get(item.getName());
+                oldList.addItem(Objects.requireNonNullElse(savedItem, item));
             }
         }
+
+        itemSuggestionIndex.itemsAdded(addedNames);
+        itemSuggestionIndex.itemsRemoved(removedNames);
+        listSearchIndex.itemsAdded(oldList.getId(), addedNames);
+        listSearchIndex.itemsRemoved(oldList.getId(), removedNames);
+        itemCooccurrenceIndex.itemsAdded(oldList.getId(), addedNames);
+        itemCooccurrenceIndex.itemsRemoved(oldList.getId(), removedNames);
+        oldList.retainItems(newItems);
     }
 
     /**
-     * Set an existing grocery list's name to some new string. This method assumes that the username
+     * Fetch all existing grocery items with the given names in a single query, keyed by name. Names which
+     * do not belong to an existing grocery item are not included in the result; the caller's own instances
+     * for those are persisted together when the grocery list is saved.
+     *
+     * @param names a Collection of String names of the grocery items to fetch
+     * @return a Map from name to the existing GroceryItem with that name
+     */
+    private Map<String, GroceryItem> findItemsByName(Collection<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return groceryItemRepository.findAllByNameIn(names)
+                .stream()
+                .collect(Collectors.toMap(GroceryItem::getName, Function.identity()));
+    }
+
+    /**
+     * Set an existing grocery list's name to some new string. This method assumes that the principal
      * provided must be valid, since a user must be authenticated in order to edit a list's name.
      * <p>
      * A ResourceNotFoundException is found in the case where the provided list ID does not match
-     * any grocery list belonging to the user with the provided username.
+     * any grocery list belonging to the user represented by the provided principal.
      * <p>
      * If the edit is successful, then the newly modified GroceryList is returned.
      *
-     * @param listId   a long representing the ID of the grocery list to edit
-     * @param newName  the String to set the name of the grocery list to
-     * @param username the username of the user making the edit
+     * @param listId          a long representing the ID of the grocery list to edit
+     * @param newName         the String to set the name of the grocery list to
+     * @param expectedVersion the version the list must be at, or null to skip this check
+     * @param principal       the SaguaroPrincipal of the user making the edit
      * @return the newly modified GroceryList object
-     * @throws ResourceNotFoundException if the provided list ID does not match any grocery list belonging
-     *                                   to the user with the provided username
+     * @throws ResourceNotFoundException   if the provided list ID does not match any grocery list belonging
+     *                                     to the user represented by the provided principal
+     * @throws PreconditionFailedException if the list is not at the expected version
      */
     @Transactional
-    public GroceryList editListName(long listId, String newName, String username) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+    public GroceryList editListName(long listId, String newName, Long expectedVersion, SaguaroPrincipal principal)
+            throws ResourceNotFoundException, PreconditionFailedException {
         GroceryList list = groceryListRepository.findGroceryListById(listId);
 
-        if (list == null || list.getOwner() != user) {
-            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(listId), user);
+        if (list == null || !isOwner(list, principal)) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(listId), principal.getUsername());
         }
 
+        checkVersion(list, expectedVersion);
+
         list.setName(newName);
+        touchDashboards(list);
+
         return groceryListRepository.save(list);
     }
 
@@ -310,20 +722,36 @@ public class GroceryService {
      * Given a grocery list ID, remove the corresponding grocery list if the user making this
      * request is authorized to do so.
      *
-     * @param id       a long representing the ID of the grocery list to remove
-     * @param username the String username of the user making the delete request
-     * @throws ResourceNotFoundException if the provided ID does not match an existing list that the user making
-     *                                   is an owner of
+     * @param id              a long representing the ID of the grocery list to remove
+     * @param expectedVersion the version the list must be at, or null to skip this check
+     * @param principal       the SaguaroPrincipal of the user making the delete request
+     * @throws ResourceNotFoundException   if the provided ID does not match an existing list that the user making
+     *                                     is an owner of
+     * @throws PreconditionFailedException if the list is not at the expected version
      */
     @Transactional
-    public void removeList(long id, String username) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+    public void removeList(long id, Long expectedVersion, SaguaroPrincipal principal)
+            throws ResourceNotFoundException, PreconditionFailedException {
         GroceryList list = groceryListRepository.findGroceryListById(id);
 
-        if (list == null || !user.equals(list.getOwner())) {
-            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), user);
+        if (list == null || !isOwner(list, principal)) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
         }
 
+        checkVersion(list, expectedVersion);
+
+        Set<Long> userIds = listUserIds(list);
+        userRepository.incrementDashboardVersions(userIds);
+        listAccessCache.invalidate(userIds);
+
+        // read as plain names, since the list's items are not otherwise needed to delete it
+        try (Stream<String> names = groceryListRepository.streamItemNames(id)) {
+            itemSuggestionIndex.itemsRemoved(names.collect(Collectors.toList()));
+        }
+
+        listSearchIndex.listRemoved(id);
+        itemCooccurrenceIndex.listRemoved(id);
+
         groceryListRepository.delete(list);
     }
 
@@ -333,38 +761,46 @@ public class GroceryService {
      * not met, then a ResourceNotFoundException is thrown.
      * <p>
      * Furthermore, if the user to be shared with cannot be found, or if the list ID does not match any
-     * existing list, a ResourceNotFoundException is thrown. This method assumes that the username of the
+     * existing list, a ResourceNotFoundException is thrown. This method assumes that the principal of the
      * sharer provided is valid, since a user must be authenticated to call an endpoint that calls this
      * method.
+     * <p>
+     * Sharing a list with a user it is already shared with has no effect. The share is checked and written as
+     * a single row, without loading the list's shared users.
      *
      * @param id            a long representing the ID of the GroceryList to share
      * @param shareUsername the String username of the user to share the list with
-     * @param username      the username of the owner of the list
+     * @param principal     the SaguaroPrincipal of the owner of the list
      * @return the newly modified GroceryList object
      * @throws ResourceNotFoundException if the list to be shared does not belong to the sharer, or if the
      *                                   sharee is not a friend of the sharer
      */
     @Transactional
-    public GroceryList shareList(long id, String shareUsername, String username) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
-
+    public GroceryList shareList(long id, String shareUsername, SaguaroPrincipal principal)
+            throws ResourceNotFoundException {
         GroceryList list = groceryListRepository.findGroceryListById(id);
 
-        if (list == null || !user.equals(list.getOwner())) {
-            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), user);
+        if (list == null || !isOwner(list, principal)) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
         }
 
+        User user = list.getOwner();
+
         User sharee = userRepository.findUserByUsername(shareUsername);
 
         if (sharee == null) {
             throw new ResourceNotFoundException(User.class, shareUsername);
-        } else if (!user.getFriends().contains(sharee)) {
+        } else if (!userRepository.existsFriendship(user.getId(), sharee.getId())) {
             throw new ResourceNotFoundException(User.class, shareUsername, user);
         }
 
-        list.addSharedUser(sharee);
+        if (sharee.getId() != user.getId() && !groceryListRepository.isSharedWith(id, sharee.getId())) {
+            groceryListRepository.addShare(list, sharee.getId());
+            touchDashboard(sharee.getId());
+            listAccessCache.invalidate(Set.of(sharee.getId()));
+        }
 
-        return groceryListRepository.save(list);
+        return list;
     }
 
     /**
@@ -373,36 +809,153 @@ public class GroceryService {
      * the above conditions are not met, then a ResourceNotFoundException will be thrown, with an appropriate
      * error message.
      * <p>
-     * If the removal was successful, the newly modified GroceryList object is returned.
+     * If the removal was successful, the newly modified GroceryList object is returned. The share is removed
+     * as a single row, without loading the list's shared users.
      *
      * @param id            a long representing the ID of the GroceryList to unshare
      * @param shareUsername the String username of the user to unshare the list with
-     * @param username      the STring username of the user performing this operation
+     * @param principal     the SaguaroPrincipal of the user performing this operation
      * @return the newly modified GroceryList object
      * @throws ResourceNotFoundException if the list to be unshared does not belong to the authenticated user, or
      *                                   if the user to be unshared was not part of the shared users of the list
      */
     @Transactional
-    public GroceryList unshareList(long id, String shareUsername, String username) throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
-
+    public GroceryList unshareList(long id, String shareUsername, SaguaroPrincipal principal)
+            throws ResourceNotFoundException {
         GroceryList list = groceryListRepository.findGroceryListById(id);
 
-        if (list == null || !user.equals(list.getOwner())) {
-            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), user);
+        if (list == null || !isOwner(list, principal)) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
         }
 
         User sharee = userRepository.findUserByUsername(shareUsername);
 
         if (sharee == null) {
             throw new ResourceNotFoundException(User.class, shareUsername);
-        } else if (!list.getSharedUsers().contains(sharee)) {
+        } else if (!groceryListRepository.removeShare(list, sharee.getId())) {
             throw new ResourceNotFoundException("Grocery list " + id + " is not shared with User " + shareUsername);
         }
 
-        list.removeSharedUser(sharee);
+        touchDashboard(sharee.getId());
+        listAccessCache.invalidate(Set.of(sharee.getId()));
 
-        return groceryListRepository.save(list);
+        return list;
+    }
+
+    /**
+     * Fetch a grocery list by ID, if the user represented by a principal owns, or has shared access to, it.
+     *
+     * @param id        a long representing the ID of the grocery list to fetch
+     * @param principal the SaguaroPrincipal of the user making the request
+     * @return the found GroceryList object
+     * @throws ResourceNotFoundException if the provided ID does not match any existing list, or if the user
+     *                                   is not authorized to access it
+     */
+    private GroceryList findAccessibleList(long id, SaguaroPrincipal principal) throws ResourceNotFoundException {
+        GroceryList list = groceryListRepository.findGroceryListById(id);
+
+        if (list == null || !hasAccess(list, principal)) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
+        }
+
+        return list;
+    }
+
+    /**
+     * Check that a grocery list is at the version a client expects it to be at.
+     *
+     * @param list            the GroceryList to check
+     * @param expectedVersion the expected version of the list, or null to skip this check
+     * @throws PreconditionFailedException if the list is not at the expected version
+     */
+    private void checkVersion(GroceryList list, Long expectedVersion) throws PreconditionFailedException {
+        if (expectedVersion != null && list.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Grocery list " + list.getId() + " is at version "
+                    + list.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    /**
+     * Increment the dashboard version of a single user.
+     *
+     * @param userId a long representing the ID of the user
+     */
+    private void touchDashboard(long userId) {
+        userRepository.incrementDashboardVersions(Set.of(userId));
+    }
+
+    /**
+     * Increment the dashboard versions of the owner and every shared user of a grocery list, in a
+     * single update.
+     *
+     * @param list the GroceryList whose users should be updated
+     */
+    private void touchDashboards(GroceryList list) {
+        userRepository.incrementDashboardVersions(listUserIds(list));
+    }
+
+    /**
+     * Collect the IDs of the owner and every shared user of a grocery list.
+     *
+     * @param list the GroceryList whose users should be collected
+     * @return a Set of user IDs
+     */
+    private Set<Long> listUserIds(GroceryList list) {
+        Set<Long> ids = new HashSet<>();
+
+        if (list.getOwner() != null) {
+            ids.add(list.getOwner().getId());
+        }
+
+        for (User user : list.getSharedUsers()) {
+            ids.add(user.getId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Check if the user represented by a principal owns a grocery list.
+     *
+     * @param list      the GroceryList to check
+     * @param principal the SaguaroPrincipal of the user to check for
+     * @return true if the user owns the list, false otherwise
+     */
+    private boolean isOwner(GroceryList list, SaguaroPrincipal principal) {
+        return list.getOwner() != null && list.getOwner().getId() == principal.getId();
+    }
+
+    /**
+     * Check if the user represented by a principal owns, or has shared access to, a grocery list.
+     *
+     * @param list      the GroceryList to check
+     * @param principal the SaguaroPrincipal of the user to check for
+     * @return true if the user can access the list, false otherwise
+     */
+    private boolean hasAccess(GroceryList list, SaguaroPrincipal principal) {
+        return isOwner(list, principal) || isSharedWith(list.getId(), principal);
+    }
+
+    /**
+     * Check if a grocery list has been shared with the user represented by a principal, without loading
+     * the list's shared users. Lists the user is already known to have access to are answered from the
+     * {@link ListAccessCache}, and anything else is checked with a single indexed query.
+     *
+     * @param listId    a long representing the ID of the GroceryList to check
+     * @param principal the SaguaroPrincipal of the user to check for
+     * @return true if the list is shared with the user, false otherwise
+     */
+    private boolean isSharedWith(long listId, SaguaroPrincipal principal) {
+        if (listAccessCache.contains(principal.getId(), listId)) {
+            return true;
+        }
+
+        if (groceryListRepository.isSharedWith(listId, principal.getId())) {
+            listAccessCache.add(principal.getId(), listId);
+            return true;
+        }
+
+        return false;
     }
 
 }
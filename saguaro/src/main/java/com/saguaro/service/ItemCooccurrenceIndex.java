@@ -0,0 +1,785 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.ListItemEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * This class holds an in-memory co-occurrence matrix over grocery items, counting for every pair of items
+ * the number of grocery lists holding both, used to recommend items that people who add one item also add.
+ * <p>
+ * Items are numbered as they are first seen, and each item's row of the matrix is a sparse hash table from
+ * item number to count, stored in primitive arrays. Each row also keeps its highest counted items, so a
+ * recommendation only reads the rows of the items it is given. The items of every list are kept as well,
+ * so that adding an item to a list only counts it against the items already there.
+ * <p>
+ * {@link GroceryService} reports items as they are added to and removed from lists, lists created from
+ * templates, and removed lists, and the matrix is updated once the reporting transaction commits. The
+ * matrix is built from the database once the application is ready, with each row counted in parallel on the
+ * common ForkJoinPool, and rebuilt every <code>saguaro.recommendations.reload-ms</code> milliseconds to pick
+ * up changes made through other servers. A rebuild runs without blocking recommendations or updates, and a
+ * change committed while it runs may be missed until the next one. The number of item pairs found together in at
+ * least one list is exposed through Micrometer as <code>saguaro.recommendations.pairs</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class ItemCooccurrenceIndex extends SnapshotIndex<ItemCooccurrenceIndex.Matrix> implements MeterBinder {
+
+    /**
+     * The maximum number of recommendations returned, and the number of highest counted items kept by each
+     * row of the matrix
+     */
+    public static final int MAX_RECOMMENDATIONS = 10;
+
+    /**
+     * The number of rows below which a parallel build counts rows itself, rather than splitting them further
+     */
+    private static final int BUILD_THRESHOLD = 64;
+
+    /**
+     * An empty array of item numbers, shared by every list and row holding none
+     */
+    private static final int[] NO_ITEMS = new int[0];
+
+    /**
+     * Repository interface for grocery list tables
+     */
+    private final GroceryListRepository groceryListRepository;
+
+    /**
+     * Constructs an ItemCooccurrenceIndex, which is built once the application is ready.
+     *
+     * @param groceryListRepository a GroceryListRepository to load the items of every list from
+     * @param transactionManager    a PlatformTransactionManager to run each build in a read-only transaction
+     */
+    @Autowired
+    public ItemCooccurrenceIndex(GroceryListRepository groceryListRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this(groceryListRepository, readOnly(transactionManager));
+    }
+
+    /**
+     * Constructs an ItemCooccurrenceIndex running each build with the given TransactionOperations.
+     *
+     * @param groceryListRepository a GroceryListRepository to load the items of every list from
+     * @param transactions          the TransactionOperations to run each build in
+     */
+    ItemCooccurrenceIndex(GroceryListRepository groceryListRepository, TransactionOperations transactions) {
+        super(transactions);
+        this.groceryListRepository = groceryListRepository;
+    }
+
+    /**
+     * Recommend grocery items to add alongside some others, such as the items already in a list being
+     * edited. Items are ranked by the total number of lists they share with each of the given items, highest
+     * first, then by name, and the given items themselves are never recommended.
+     * <p>
+     * Only the highest counted items of each given item are considered, so an item that is rarely found with
+     * any single one of the given items is not recommended, however many of them it is found with.
+     *
+     * @param names a Collection of the String names of the grocery items to recommend alongside
+     * @param limit the maximum number of names to return, at most {@link #MAX_RECOMMENDATIONS}
+     * @return a List of the String names of the recommended grocery items
+     */
+    public List<String> recommend(Collection<String> names, int limit) {
+        return read(current -> recommend(current, names, limit));
+    }
+
+    /**
+     * Recommend grocery items from a matrix, as in {@link #recommend(Collection, int)}.
+     *
+     * @param current the Matrix to read
+     * @param names   a Collection of the String names of the grocery items to recommend alongside
+     * @param limit   the maximum number of names to return
+     * @return a List of the String names of the recommended grocery items
+     */
+    private static List<String> recommend(Matrix current, Collection<String> names, int limit) {
+        Set<Integer> given = new LinkedHashSet<>();
+
+        for (String name : names) {
+            Integer item = current.ids.get(name);
+
+            if (item != null) {
+                given.add(item);
+            }
+        }
+
+        Map<Integer, Long> scores = new HashMap<>();
+
+        for (int item : given) {
+            Row row = current.rows.get(item);
+
+            for (int other : row.top(current.names)) {
+                scores.merge(other, (long) row.get(other), Long::sum);
+            }
+        }
+
+        scores.keySet().removeAll(given);
+
+        List<Map.Entry<Integer, Long>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Integer, Long>comparingByValue().reversed()
+                .thenComparing(entry -> current.names.get(entry.getKey())));
+
+        List<String> recommended = new ArrayList<>(Math.min(limit, ranked.size()));
+
+        for (int i = 0; i < limit && i < ranked.size(); i++) {
+            recommended.add(current.names.get(ranked.get(i).getKey()));
+        }
+
+        return recommended;
+    }
+
+    /**
+     * Get the number of pairs of grocery items found together in at least one list.
+     *
+     * @return the number of item pairs with a non-zero count
+     */
+    public long pairs() {
+        return read(matrix -> matrix.entries / 2);
+    }
+
+    /**
+     * Record that grocery items were added to a list. If called within a transaction, the matrix is only
+     * updated once that transaction commits.
+     *
+     * @param listId a long representing the ID of the list
+     * @param names  a Collection of the String names of the added grocery items
+     */
+    public void itemsAdded(long listId, Collection<String> names) {
+        List<String> added = List.copyOf(names);
+
+        update(matrix -> {
+            for (String name : added) {
+                matrix.add(listId, matrix.intern(name));
+            }
+        });
+    }
+
+    /**
+     * Record that grocery items were removed from a list. If called within a transaction, the matrix is only
+     * updated once that transaction commits.
+     *
+     * @param listId a long representing the ID of the list
+     * @param names  a Collection of the String names of the removed grocery items
+     */
+    public void itemsRemoved(long listId, Collection<String> names) {
+        List<String> removed = List.copyOf(names);
+
+        update(matrix -> {
+            for (String name : removed) {
+                Integer item = matrix.ids.get(name);
+
+                if (item != null) {
+                    matrix.remove(listId, item);
+                }
+            }
+        });
+    }
+
+    /**
+     * Record that a list was created holding a copy of the items of another. If called within a transaction,
+     * the matrix is only updated once that transaction commits.
+     *
+     * @param sourceId a long representing the ID of the list the items were copied from
+     * @param targetId a long representing the ID of the list the items were copied to
+     */
+    public void listCopied(long sourceId, long targetId) {
+        update(matrix -> {
+            for (int item : matrix.lists.getOrDefault(sourceId, NO_ITEMS)) {
+                matrix.add(targetId, item);
+            }
+        });
+    }
+
+    /**
+     * Record that a list was removed. If called within a transaction, the matrix is only updated once that
+     * transaction commits.
+     *
+     * @param listId a long representing the ID of the removed list
+     */
+    public void listRemoved(long listId) {
+        update(matrix -> {
+            for (int item : matrix.lists.getOrDefault(listId, NO_ITEMS)) {
+                matrix.remove(listId, item);
+            }
+        });
+    }
+
+    /**
+     * Rebuild the matrix from the database. The new matrix is built without holding this index's lock, so
+     * recommendations are answered from the old one until it is swapped in.
+     */
+    @Override
+    @Scheduled(initialDelayString = "${saguaro.recommendations.reload-ms:3600000}",
+            fixedDelayString = "${saguaro.recommendations.reload-ms:3600000}")
+    public void reload() {
+        super.reload();
+    }
+
+    /**
+     * Build a matrix of the items of every grocery list. The lists are streamed from a single query, and then
+     * every row of the matrix is counted in parallel, each from the lists holding that row's item, so that
+     * no two tasks ever write to the same row.
+     *
+     * @return a new, fully ranked Matrix
+     */
+    @Override
+    protected Matrix load() {
+        Matrix loaded = new Matrix();
+        List<int[]> listItems = new ArrayList<>();
+        int[] buffer = new int[16];
+        int size = 0;
+        Long listId = null;
+
+        // rows are ordered by list ID, so each list is complete once the next one starts
+        try (Stream<ListItemEntry> entries = groceryListRepository.streamAllItemEntries()) {
+            Iterator<ListItemEntry> iterator = entries.iterator();
+
+            while (iterator.hasNext()) {
+                ListItemEntry entry = iterator.next();
+
+                if (listId != null && listId != entry.getListId()) {
+                    loaded.lists.put(listId, Arrays.copyOf(buffer, size));
+                    listItems.add(loaded.lists.get(listId));
+                    size = 0;
+                }
+
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+
+                listId = entry.getListId();
+                buffer[size++] = loaded.intern(entry.getItemName());
+            }
+        }
+
+        if (listId != null) {
+            loaded.lists.put(listId, Arrays.copyOf(buffer, size));
+            listItems.add(loaded.lists.get(listId));
+        }
+
+        // invert the lists, to find the lists holding each item
+        int[] degrees = new int[loaded.names.size()];
+
+        for (int[] items : listItems) {
+            for (int item : items) {
+                degrees[item]++;
+            }
+        }
+
+        int[][] itemLists = new int[degrees.length][];
+
+        for (int item = 0; item < degrees.length; item++) {
+            itemLists[item] = new int[degrees[item]];
+            degrees[item] = 0;
+        }
+
+        for (int list = 0; list < listItems.size(); list++) {
+            for (int item : listItems.get(list)) {
+                itemLists[item][degrees[item]++] = list;
+            }
+        }
+
+        ForkJoinPool.commonPool().invoke(new BuildRows(loaded, listItems, itemLists, 0, degrees.length));
+
+        for (Row row : loaded.rows) {
+            loaded.entries += row.size;
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Register the size of this index with a MeterRegistry. Called by Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.recommendations.pairs", this, ItemCooccurrenceIndex::pairs)
+                .description("Number of grocery item pairs in the co-occurrence matrix")
+                .register(registry);
+    }
+
+    /**
+     * The matrix itself, along with the numbering of items and the items of every list.
+     */
+    static class Matrix {
+
+        /**
+         * The number of every item, keyed by exact item name
+         */
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        /**
+         * The name of every item, indexed by item number
+         */
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * The row of every item, indexed by item number
+         */
+        private final List<Row> rows = new ArrayList<>();
+
+        /**
+         * The numbers of the items of every list, keyed by list ID, in no particular order
+         */
+        private final Map<Long, int[]> lists = new HashMap<>();
+
+        /**
+         * The number of non-zero counts in the matrix, which holds each pair of items twice
+         */
+        private long entries;
+
+        /**
+         * Get the number of an item, numbering it if it is new.
+         *
+         * @param name the String name of the grocery item
+         * @return the item's number
+         */
+        private int intern(String name) {
+            Integer item = ids.get(name);
+
+            if (item == null) {
+                item = names.size();
+                ids.put(name, item);
+                names.add(name);
+                rows.add(new Row());
+            }
+
+            return item;
+        }
+
+        /**
+         * Add an item to a list, counting it once against every item already in the list. Items already in
+         * the list are ignored.
+         *
+         * @param listId a long representing the ID of the list
+         * @param item   the number of the item
+         */
+        private void add(long listId, int item) {
+            int[] items = lists.getOrDefault(listId, NO_ITEMS);
+
+            if (indexOf(items, item) >= 0) {
+                return;
+            }
+
+            for (int other : items) {
+                count(item, other, 1);
+                count(other, item, 1);
+            }
+
+            int[] added = Arrays.copyOf(items, items.length + 1);
+            added[items.length] = item;
+            lists.put(listId, added);
+        }
+
+        /**
+         * Remove an item from a list, uncounting it against every item left in the list. Items not in the
+         * list are ignored.
+         *
+         * @param listId a long representing the ID of the list
+         * @param item   the number of the item
+         */
+        private void remove(long listId, int item) {
+            int[] items = lists.getOrDefault(listId, NO_ITEMS);
+            int index = indexOf(items, item);
+
+            if (index < 0) {
+                return;
+            }
+
+            int[] left = Arrays.copyOf(items, items.length - 1);
+
+            if (index < left.length) {
+                // the last item takes the removed item's place
+                left[index] = items[items.length - 1];
+            }
+
+            if (left.length == 0) {
+                lists.remove(listId);
+            } else {
+                lists.put(listId, left);
+            }
+
+            for (int other : left) {
+                count(item, other, -1);
+                count(other, item, -1);
+            }
+        }
+
+        /**
+         * Change the count of an item in another item's row, and keep the row's highest counted items up to
+         * date.
+         *
+         * @param item  the number of the item whose row to change
+         * @param other the number of the item to change the count of
+         * @param delta the amount to change the count by
+         */
+        private void count(int item, int other, int delta) {
+            Row row = rows.get(item);
+            int before = row.size;
+
+            row.add(other, delta);
+            entries += row.size - before;
+
+            if (delta > 0) {
+                row.promote(other, names);
+            } else {
+                row.demote(other);
+            }
+        }
+    }
+
+    /**
+     * Count the rows of a range of items, from the lists holding each, splitting the range across the
+     * ForkJoinPool while it is large.
+     */
+    private static class BuildRows extends RecursiveAction {
+
+        /**
+         * The matrix whose rows are counted
+         */
+        private final Matrix matrix;
+
+        /**
+         * The numbers of the items of every list, indexed by list
+         */
+        private final List<int[]> listItems;
+
+        /**
+         * The lists holding every item, indexed by item number
+         */
+        private final int[][] itemLists;
+
+        /**
+         * The first item number to count, inclusive
+         */
+        private final int from;
+
+        /**
+         * The last item number to count, exclusive
+         */
+        private final int to;
+
+        /**
+         * Constructs a BuildRows task.
+         *
+         * @param matrix    the Matrix whose rows to count
+         * @param listItems the numbers of the items of every list
+         * @param itemLists the lists holding every item
+         * @param from      the first item number to count, inclusive
+         * @param to        the last item number to count, exclusive
+         */
+        private BuildRows(Matrix matrix, List<int[]> listItems, int[][] itemLists, int from, int to) {
+            this.matrix = matrix;
+            this.listItems = listItems;
+            this.itemLists = itemLists;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Count and rank the rows of this task's items, or split them between two new tasks.
+         */
+        @Override
+        protected void compute() {
+            if (to - from > BUILD_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildRows(matrix, listItems, itemLists, from, middle),
+                        new BuildRows(matrix, listItems, itemLists, middle, to));
+                return;
+            }
+
+            for (int item = from; item < to; item++) {
+                Row row = matrix.rows.get(item);
+
+                for (int list : itemLists[item]) {
+                    for (int other : listItems.get(list)) {
+                        if (other != item) {
+                            row.add(other, 1);
+                        }
+                    }
+                }
+
+                row.rank(matrix.names);
+            }
+        }
+    }
+
+    /**
+     * A row of the matrix: an open addressing hash table from item number to count, stored in primitive
+     * arrays, along with the row's highest counted items.
+     */
+    private static class Row {
+
+        /**
+         * The key of an empty slot
+         */
+        private static final int EMPTY = -1;
+
+        /**
+         * The item number in each slot, or {@link #EMPTY}. The length is always a power of two.
+         */
+        private int[] keys = {EMPTY, EMPTY, EMPTY, EMPTY};
+
+        /**
+         * The count in each slot
+         */
+        private int[] counts = new int[4];
+
+        /**
+         * The number of items with a non-zero count
+         */
+        private int size;
+
+        /**
+         * The highest counted items, by count then by name, or null if they need to be ranked again
+         */
+        private int[] top = NO_ITEMS;
+
+        /**
+         * Get the count of an item.
+         *
+         * @param key the number of the item
+         * @return the item's count, or 0 if it has none
+         */
+        private int get(int key) {
+            int slot = slot(key);
+
+            return keys[slot] == key ? counts[slot] : 0;
+        }
+
+        /**
+         * Change the count of an item, dropping it from the table once its count reaches zero.
+         *
+         * @param key   the number of the item
+         * @param delta the amount to change the count by
+         */
+        private void add(int key, int delta) {
+            int slot = slot(key);
+
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+
+                if (counts[slot] <= 0) {
+                    delete(slot);
+                }
+            } else if (delta > 0) {
+                keys[slot] = key;
+                counts[slot] = delta;
+                size++;
+
+                // kept at most three quarters full, so probes stay short
+                if (size * 4 > keys.length * 3) {
+                    resize(keys.length * 2);
+                }
+            }
+        }
+
+        /**
+         * Get the highest counted items, ranking them again if they are out of date.
+         *
+         * @param names the names of every item, to break ties in count
+         * @return an array of the numbers of at most {@link #MAX_RECOMMENDATIONS} items, highest counted first
+         */
+        private int[] top(List<String> names) {
+            if (top == null) {
+                rank(names);
+            }
+
+            return top;
+        }
+
+        /**
+         * Rank the highest counted items from every item in the row.
+         *
+         * @param names the names of every item, to break ties in count
+         */
+        private void rank(List<String> names) {
+            top = NO_ITEMS;
+
+            for (int key : keys) {
+                if (key != EMPTY) {
+                    promote(key, names);
+                }
+            }
+        }
+
+        /**
+         * Move an item whose count has increased up the highest counted items, entering it if it now ranks
+         * among them.
+         *
+         * @param key   the number of the item
+         * @param names the names of every item, to break ties in count
+         */
+        private void promote(int key, List<String> names) {
+            if (top == null) {
+                return;
+            }
+
+            int index = indexOf(top, key);
+
+            if (index < 0) {
+                if (top.length < MAX_RECOMMENDATIONS) {
+                    top = Arrays.copyOf(top, top.length + 1);
+                } else if (!ranksAbove(key, top[top.length - 1], names)) {
+                    return;
+                }
+
+                index = top.length - 1;
+                top[index] = key;
+            }
+
+            for (; index > 0 && ranksAbove(top[index], top[index - 1], names); index--) {
+                int swapped = top[index - 1];
+                top[index - 1] = top[index];
+                top[index] = swapped;
+            }
+        }
+
+        /**
+         * Note that an item's count has decreased. If it was among the highest counted items, another item
+         * may now rank above it, so they are ranked again the next time they are read.
+         *
+         * @param key the number of the item
+         */
+        private void demote(int key) {
+            if (top != null && indexOf(top, key) >= 0) {
+                top = null;
+            }
+        }
+
+        /**
+         * Check whether one item ranks above another, by count, then by name.
+         *
+         * @param key   the number of the item to check
+         * @param other the number of the item to compare against
+         * @param names the names of every item, to break ties in count
+         * @return true if the first item ranks above the other, false otherwise
+         */
+        private boolean ranksAbove(int key, int other, List<String> names) {
+            int count = get(key);
+            int otherCount = get(other);
+
+            return count != otherCount ? count > otherCount : names.get(key).compareTo(names.get(other)) < 0;
+        }
+
+        /**
+         * Find the slot holding an item, or the empty slot where it would be inserted.
+         *
+         * @param key the number of the item
+         * @return the index of the slot
+         */
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        /**
+         * Empty a slot, shifting back any later items that would no longer be found past the new gap.
+         *
+         * @param slot the index of the slot to empty
+         */
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+
+            for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+
+                // an item can fill the gap unless its home slot lies after the gap, up to the item itself
+                boolean between = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+
+                if (!between) {
+                    keys[gap] = keys[next];
+                    counts[gap] = counts[next];
+                    gap = next;
+                }
+            }
+
+            keys[gap] = EMPTY;
+            counts[gap] = 0;
+            size--;
+        }
+
+        /**
+         * Move every item into a table of a new capacity.
+         *
+         * @param capacity the new number of slots, a power of two
+         */
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+
+            keys = new int[capacity];
+            counts = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        /**
+         * Spread the bits of an item number, since consecutive numbers would otherwise fill consecutive
+         * slots.
+         *
+         * @param key the number of the item
+         * @return the hash of the item number
+         */
+        private static int hash(int key) {
+            int hash = key * 0x9E3779B9;
+
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Find an item number in an array.
+     *
+     * @param items the array of item numbers to search
+     * @param item  the item number to find
+     * @return the index of the item number, or -1 if it is not in the array
+     */
+    private static int indexOf(int[] items, int item) {
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == item) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+package com.saguaro.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class is a service class for looking up grocery items across every list, rather than within a
+ * single one. Lookups are answered from in-memory indexes, without touching the database.
+ *
+ * @author Charles Wong
+ */
+@Service
+public class ItemService {
+
+    /**
+     * The prefix index used to suggest grocery items
+     */
+    private final ItemSuggestionIndex itemSuggestionIndex;
+
+    /**
+     * The co-occurrence matrix used to recommend grocery items
+     */
+    private final ItemCooccurrenceIndex itemCooccurrenceIndex;
+
+    /**
+     * Constructs an ItemService.
+     * <p>
+     * Note that this constructor is automatically picked up by Spring for autowiring.
+     *
+     * @param itemSuggestionIndex   an ItemSuggestionIndex to suggest grocery items from
+     * @param itemCooccurrenceIndex an ItemCooccurrenceIndex to recommend grocery items from
+     */
+    public ItemService(ItemSuggestionIndex itemSuggestionIndex, ItemCooccurrenceIndex itemCooccurrenceIndex) {
+        this.itemSuggestionIndex = itemSuggestionIndex;
+        this.itemCooccurrenceIndex = itemCooccurrenceIndex;
+    }
+
+    /**
+     * Suggest the names of grocery items starting with a prefix, ignoring case and surrounding whitespace,
+     * with the items in the most lists first.
+     *
+     * @param prefix the String prefix typed so far
+     * @param limit  the maximum number of names to return
+     * @return a List of the String names of the suggested grocery items
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return itemSuggestionIndex.suggest(prefix.strip(), limit);
+    }
+
+    /**
+     * Recommend the names of grocery items that are often found in the same lists as some others, with the
+     * items found with them in the most lists first. The given items are never recommended.
+     *
+     * @param names a Collection of the String names of the grocery items to recommend alongside
+     * @param limit the maximum number of names to return
+     * @return a List of the String names of the recommended grocery items
+     */
+    public List<String> recommend(Collection<String> names, int limit) {
+        return itemCooccurrenceIndex.recommend(names, limit);
+    }
+}
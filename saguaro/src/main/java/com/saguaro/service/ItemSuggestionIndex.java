@@ -0,0 +1,438 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.GroceryItemCount;
+import com.saguaro.repository.GroceryItemRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * This class holds an in-memory prefix index over the names of every grocery item, used to suggest items
+ * as a user types. Items are ranked by the number of grocery lists they are in, so the items people add
+ * most often are suggested first.
+ * <p>
+ * The index is a trie over item names, ignoring case. Every node caches the highest ranked items below
+ * it, so a suggestion only walks the characters of the prefix, and costs the same however many items
+ * share that prefix. Changing an item's count only re-ranks the nodes on that item's path.
+ * <p>
+ * {@link GroceryService} reports items as they are added to and removed from lists, including items that
+ * are created by being added or copied from a template, and the index is updated once the reporting
+ * transaction commits. Changes made through other servers are only picked up when the index is rebuilt from
+ * the database, which happens once the application is ready and every
+ * <code>saguaro.suggestions.reload-ms</code> milliseconds. A rebuild runs without blocking suggestions or
+ * updates, and a change committed while it runs may be missed until the next one. The number of items in the index is exposed through Micrometer as
+ * <code>saguaro.suggestions.items</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class ItemSuggestionIndex extends SnapshotIndex<ItemSuggestionIndex.Trie> implements MeterBinder {
+
+    /**
+     * The maximum number of suggestions returned for a prefix
+     */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /**
+     * The order suggestions are ranked in: by number of lists, highest first, then by name
+     */
+    private static final Comparator<Entry> RANK = Comparator
+            .comparingLong((Entry entry) -> entry.count).reversed()
+            .thenComparing(entry -> entry.name);
+
+    /**
+     * An empty array of entries, shared by every node holding none
+     */
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    /**
+     * Repository interface for grocery item tables
+     */
+    private final GroceryItemRepository groceryItemRepository;
+
+    /**
+     * Constructs an ItemSuggestionIndex, which is built once the application is ready.
+     *
+     * @param groceryItemRepository a GroceryItemRepository to load grocery items and their counts from
+     * @param transactionManager    a PlatformTransactionManager to run each build in a read-only transaction
+     */
+    @Autowired
+    public ItemSuggestionIndex(GroceryItemRepository groceryItemRepository,
+                               PlatformTransactionManager transactionManager) {
+        this(groceryItemRepository, readOnly(transactionManager));
+    }
+
+    /**
+     * Constructs an ItemSuggestionIndex running each build with the given TransactionOperations.
+     *
+     * @param groceryItemRepository a GroceryItemRepository to load grocery items and their counts from
+     * @param transactions          the TransactionOperations to run each build in
+     */
+    ItemSuggestionIndex(GroceryItemRepository groceryItemRepository, TransactionOperations transactions) {
+        super(transactions);
+        this.groceryItemRepository = groceryItemRepository;
+    }
+
+    /**
+     * Suggest the names of the grocery items starting with a prefix, ignoring case, highest ranked first.
+     *
+     * @param prefix the String prefix typed so far
+     * @param limit  the maximum number of names to return, at most {@link #MAX_SUGGESTIONS}
+     * @return a List of the String names of the suggested grocery items
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+
+        return read(trie -> {
+            Node node = trie.root;
+
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+
+            if (node == null) {
+                return Collections.emptyList();
+            }
+
+            int size = Math.min(limit, node.top.length);
+            List<String> names = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                names.add(node.top[i].name);
+            }
+
+            return names;
+        });
+    }
+
+    /**
+     * Get the number of grocery items in the index.
+     *
+     * @return the number of indexed grocery items
+     */
+    public int size() {
+        return read(trie -> trie.byName.size());
+    }
+
+    /**
+     * Record that grocery items were added to a list, creating them in the index if they are new. If called
+     * within a transaction, the index is only updated once that transaction commits.
+     *
+     * @param names a Collection of the String names of the added grocery items
+     */
+    public void itemsAdded(Collection<String> names) {
+        List<String> added = List.copyOf(names);
+
+        update(trie -> trie.adjust(added, 1));
+    }
+
+    /**
+     * Record that grocery items were removed from a list. If called within a transaction, the index is only
+     * updated once that transaction commits.
+     *
+     * @param names a Collection of the String names of the removed grocery items
+     */
+    public void itemsRemoved(Collection<String> names) {
+        List<String> removed = List.copyOf(names);
+
+        update(trie -> trie.adjust(removed, -1));
+    }
+
+    /**
+     * Rebuild the index from the database. The new index is built without holding this index's lock, so
+     * suggestions are answered from the old one until it is swapped in.
+     */
+    @Override
+    @Scheduled(initialDelayString = "${saguaro.suggestions.reload-ms:300000}",
+            fixedDelayString = "${saguaro.suggestions.reload-ms:300000}")
+    public void reload() {
+        super.reload();
+    }
+
+    /**
+     * Build an index of every grocery item and the number of lists it is in.
+     *
+     * @return a new, fully ranked Trie
+     */
+    @Override
+    protected Trie load() {
+        Trie loaded = new Trie();
+
+        try (Stream<GroceryItemCount> counts = groceryItemRepository.streamListCountsByItem()) {
+            counts.forEach(count -> loaded.insert(count.getName(), count.getCount()));
+        }
+
+        loaded.root.rankAll();
+
+        return loaded;
+    }
+
+    /**
+     * Normalize an item name or prefix into a key of the trie.
+     *
+     * @param name the String to normalize
+     * @return the String key, in lower case
+     */
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Register the size of this index with a MeterRegistry. Called by Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.suggestions.items", this, ItemSuggestionIndex::size)
+                .description("Number of grocery items in the suggestion index")
+                .register(registry);
+    }
+
+    /**
+     * A prefix tree over grocery item names, along with an index of its entries by exact name.
+     */
+    static class Trie {
+
+        /**
+         * The node of the empty prefix
+         */
+        private final Node root = new Node();
+
+        /**
+         * Every entry in the trie, keyed by exact item name
+         */
+        private final Map<String, Entry> byName = new HashMap<>();
+
+        /**
+         * Insert an entry without ranking any nodes. Used while loading, after which every node is ranked
+         * at once.
+         *
+         * @param name  the String name of the grocery item
+         * @param count the number of lists the grocery item is in
+         */
+        private void insert(String name, long count) {
+            Entry entry = new Entry(name, count);
+            byName.put(name, entry);
+            node(name, null).addEntry(entry);
+        }
+
+        /**
+         * Change the counts of several entries by the same amount, as in {@link #adjust(String, long)}.
+         *
+         * @param names a Collection of the String names of the grocery items
+         * @param delta the amount to change each count by
+         */
+        private void adjust(Collection<String> names, long delta) {
+            for (String name : names) {
+                adjust(name, delta);
+            }
+        }
+
+        /**
+         * Change the count of an entry, adding it if it is new, and re-rank every node on its path, deepest
+         * first, so that each node is ranked from already ranked children.
+         *
+         * @param name  the String name of the grocery item
+         * @param delta the amount to change the count by
+         */
+        private void adjust(String name, long delta) {
+            Entry entry = byName.get(name);
+            List<Node> path = new ArrayList<>(name.length() + 1);
+
+            if (entry == null) {
+                if (delta <= 0) {
+                    return;
+                }
+
+                entry = new Entry(name, 0);
+                byName.put(name, entry);
+                node(name, path).addEntry(entry);
+            } else {
+                node(name, path);
+            }
+
+            entry.count = Math.max(0, entry.count + delta);
+
+            for (int i = path.size() - 1; i >= 0; i--) {
+                path.get(i).rank();
+            }
+        }
+
+        /**
+         * Find the node of a name, creating any missing nodes on its path.
+         *
+         * @param name the String name of a grocery item
+         * @param path a List to add every node on the path to, starting from the root, or null
+         * @return the Node whose prefix is the normalized name
+         */
+        private Node node(String name, List<Node> path) {
+            String key = normalize(name);
+            Node node = root;
+
+            if (path != null) {
+                path.add(node);
+            }
+
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+
+                if (path != null) {
+                    path.add(node);
+                }
+            }
+
+            return node;
+        }
+    }
+
+    /**
+     * A node of the trie, holding its children in arrays sorted by character to keep the many small nodes
+     * compact.
+     */
+    private static class Node {
+
+        /**
+         * The characters leading to each child, sorted
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * The children of this node, in the same order as their keys
+         */
+        private Node[] children = new Node[0];
+
+        /**
+         * The entries whose normalized names end at this node. More than one item can end at the same node,
+         * when their names only differ in case.
+         */
+        private Entry[] entries = NO_ENTRIES;
+
+        /**
+         * The highest ranked entries at or below this node, in rank order
+         */
+        private Entry[] top = NO_ENTRIES;
+
+        /**
+         * Get the child of this node reached by a character.
+         *
+         * @param c the char leading to the child
+         * @return the child Node, or null if there is none
+         */
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Get the child of this node reached by a character, creating it if there is none.
+         *
+         * @param c the char leading to the child
+         * @return the child Node
+         */
+        private Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            Node child = new Node();
+
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            newKeys[index] = c;
+
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newChildren[index] = child;
+
+            keys = newKeys;
+            children = newChildren;
+
+            return child;
+        }
+
+        /**
+         * Add an entry ending at this node.
+         *
+         * @param entry the Entry to add
+         */
+        private void addEntry(Entry entry) {
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+        }
+
+        /**
+         * Rank this node from its own entries and the already ranked entries of its children.
+         */
+        private void rank() {
+            List<Entry> candidates = new ArrayList<>(Arrays.asList(entries));
+
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+
+            candidates.sort(RANK);
+            top = candidates.subList(0, Math.min(MAX_SUGGESTIONS, candidates.size())).toArray(NO_ENTRIES);
+        }
+
+        /**
+         * Rank every node below this one, and then this node.
+         */
+        private void rankAll() {
+            for (Node child : children) {
+                child.rankAll();
+            }
+
+            rank();
+        }
+    }
+
+    /**
+     * A grocery item in the index, along with the number of lists it is in.
+     */
+    private static class Entry {
+
+        /**
+         * The exact name of the grocery item
+         */
+        private final String name;
+
+        /**
+         * The number of grocery lists the item is in
+         */
+        private long count;
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param name  the String name of the grocery item
+         * @param count the number of lists the grocery item is in
+         */
+        private Entry(String name, long count) {
+            this.name = name;
+            this.count = count;
+        }
+    }
+}
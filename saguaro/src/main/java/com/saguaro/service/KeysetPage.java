@@ -0,0 +1,76 @@
+package com.saguaro.service;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * A single page of results, read by keyset rather than by offset: each page holds the results whose keys
+ * come after a cursor, and the cursor to pass for the page after it. Since a page is found by seeking to its
+ * cursor, reading a later page costs the same as reading the first, and results added or removed before
+ * the cursor do not shift what the next page holds.
+ *
+ * @param <T> the type of the page's content
+ * @author Charles Wong
+ */
+public final class KeysetPage<T> {
+
+    /**
+     * The results on this page
+     */
+    private final T content;
+
+    /**
+     * The cursor to pass for the next page, or null if this is the last page
+     */
+    private final Long next;
+
+    /**
+     * Constructs a KeysetPage.
+     *
+     * @param content the results on this page
+     * @param next    a Long representing the cursor of the next page, or null if this is the last page
+     */
+    public KeysetPage(T content, Long next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    /**
+     * Get the results on this page
+     *
+     * @return the results on this page
+     */
+    public T getContent() {
+        return content;
+    }
+
+    /**
+     * Get the cursor to pass for the next page
+     *
+     * @return a Long representing the cursor of the next page, or null if this is the last page
+     */
+    public Long getNext() {
+        return next;
+    }
+
+    /**
+     * Find the cursor of the next page, given rows fetched with a limit of one more than the page size. If the
+     * extra row was found, there is a next page: the extra row is removed, and the key of the last row left
+     * is returned.
+     *
+     * @param rows  a mutable List of the rows fetched, in order of key
+     * @param limit the page size
+     * @param key   a function returning the key of a row
+     * @param <R>   the type of the rows
+     * @return a Long representing the cursor of the next page, or null if there is none
+     */
+    static <R> Long trim(List<R> rows, int limit, ToLongFunction<R> key) {
+        if (rows.size() <= limit) {
+            return null;
+        }
+
+        rows.subList(limit, rows.size()).clear();
+
+        return key.applyAsLong(rows.get(limit - 1));
+    }
+}
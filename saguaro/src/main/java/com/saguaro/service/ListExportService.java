@@ -0,0 +1,133 @@
+package com.saguaro.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListHeader;
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * This class is a service class streaming grocery lists as JSON, for lists too large to be loaded and
+ * serialized whole, such as bulk exports and catering lists.
+ * <p>
+ * A list is written in the same shape as the GroceryList entity is serialized, but its items and shared
+ * users are read from forward-only cursors and written to the output as each row is read, so the memory
+ * used by an export does not depend on the size of the list.
+ *
+ * @author Charles Wong
+ */
+@Service
+public class ListExportService {
+
+    /**
+     * The number of items written between flushes of the output, so that a slow client receives the list
+     * as it is read, rather than once the server's buffers fill up
+     */
+    private static final int FLUSH_INTERVAL = 1000;
+
+    /**
+     * A grocery list Repository to read lists from
+     */
+    private final GroceryListRepository groceryListRepository;
+
+    /**
+     * The application's ObjectMapper, whose JsonFactory is used to write lists
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs a ListExportService.
+     * <p>
+     * Note that this constructor is automatically picked up by Spring for autowiring.
+     *
+     * @param groceryListRepository a GroceryListRepository to read lists from
+     * @param objectMapper          the ObjectMapper used to create JSON generators
+     */
+    public ListExportService(GroceryListRepository groceryListRepository, ObjectMapper objectMapper) {
+        this.groceryListRepository = groceryListRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Fetch every property of a grocery list except its items and shared users, if the user represented by
+     * a principal owns, or has shared access to, it.
+     *
+     * @param id        a long representing the ID of the grocery list
+     * @param principal the SaguaroPrincipal of the user making the request
+     * @return the GroceryListHeader of the list
+     * @throws ResourceNotFoundException if the provided ID does not match any existing list, or if the user
+     *                                   making the request is not authorized to access it
+     */
+    @Transactional(readOnly = true)
+    public GroceryListHeader getListHeader(long id, SaguaroPrincipal principal) throws ResourceNotFoundException {
+        GroceryListHeader header = groceryListRepository.findHeaderByIdAndUserId(id, principal.getId());
+
+        if (header == null) {
+            throw new ResourceNotFoundException(GroceryList.class, String.valueOf(id), principal.getUsername());
+        }
+
+        return header;
+    }
+
+    /**
+     * Write a grocery list as JSON, reading its items and shared users row by row while they are written.
+     * Access to the list must already have been checked, by fetching its header.
+     * <p>
+     * Since the rows are read from open cursors, this method holds a read-only transaction, and a database
+     * connection, until the whole list has been written.
+     *
+     * @param header the GroceryListHeader of the list to write
+     * @param out    the OutputStream to write to
+     * @throws IOException if the list could not be written, such as when the client disconnects
+     */
+    @Transactional(readOnly = true)
+    public void writeList(GroceryListHeader header, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // the response stream belongs to the container, which closes it once this method returns
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            generator.writeStartObject();
+            generator.writeNumberField("id", header.getId());
+            generator.writeStringField("name", header.getName());
+            generator.writeStringField("owner", header.getOwnerUsername());
+            generator.writeBooleanField("template", header.isTemplate());
+
+            generator.writeArrayFieldStart("items");
+            try (Stream<String> names = groceryListRepository.streamItemNames(header.getId())) {
+                Iterator<String> iterator = names.iterator();
+
+                for (int written = 1; iterator.hasNext(); written++) {
+                    generator.writeStartObject();
+                    generator.writeStringField("name", iterator.next());
+                    generator.writeEndObject();
+
+                    if (written % FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("sharedUsers");
+            try (Stream<String> usernames = groceryListRepository.streamSharedUsernames(header.getId())) {
+                Iterator<String> iterator = usernames.iterator();
+
+                while (iterator.hasNext()) {
+                    generator.writeString(iterator.next());
+                }
+            }
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+    }
+}
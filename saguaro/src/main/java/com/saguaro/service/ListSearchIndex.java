@@ -0,0 +1,355 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.ListItemEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * This class holds an in-memory inverted index from the words of grocery item names to the grocery lists
+ * holding those items, used to find which lists contain an item without loading any lists.
+ * <p>
+ * Item names are split into words, ignoring case and punctuation, so "Whole milk" is found by "milk". A
+ * search matches every word of a query as a prefix, and only returns lists holding an item matching each
+ * word, so "whole mil" finds lists holding "Whole milk", but not lists only holding "Milk". The index is
+ * shared by all users: searches are given the lists a user can access, and only ever return those.
+ * <p>
+ * {@link GroceryService} reports items as they are added to and removed from lists, lists created from
+ * templates, and removed lists, and the index is updated once the reporting transaction commits. The index
+ * is built from the database once the application is ready, and rebuilt every
+ * <code>saguaro.search.reload-ms</code> milliseconds to pick up changes made through other servers. A
+ * rebuild streams the items of every list without blocking searches or updates, and a change committed while
+ * it runs may be missed until the next one. The number of distinct words in the
+ * index is exposed through Micrometer as <code>saguaro.search.words</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class ListSearchIndex extends SnapshotIndex<ListSearchIndex.Index> implements MeterBinder {
+
+    /**
+     * The separators between the words of an item name or query
+     */
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Repository interface for grocery list tables
+     */
+    private final GroceryListRepository groceryListRepository;
+
+    /**
+     * Constructs a ListSearchIndex, which is built once the application is ready.
+     *
+     * @param groceryListRepository a GroceryListRepository to load the items of every list from
+     * @param transactionManager    a PlatformTransactionManager to run each build in a read-only transaction
+     */
+    @Autowired
+    public ListSearchIndex(GroceryListRepository groceryListRepository,
+                           PlatformTransactionManager transactionManager) {
+        this(groceryListRepository, readOnly(transactionManager));
+    }
+
+    /**
+     * Constructs a ListSearchIndex running each build with the given TransactionOperations.
+     *
+     * @param groceryListRepository a GroceryListRepository to load the items of every list from
+     * @param transactions          the TransactionOperations to run each build in
+     */
+    ListSearchIndex(GroceryListRepository groceryListRepository, TransactionOperations transactions) {
+        super(transactions);
+        this.groceryListRepository = groceryListRepository;
+    }
+
+    /**
+     * Find the grocery lists, among those given, holding items matching every word of a query. Each word
+     * matches the start of any word of an item name, ignoring case.
+     *
+     * @param query      the String query to search for
+     * @param accessible a Set of the IDs of the lists that may be returned
+     * @return a Set of the IDs of the matching lists, or an empty Set if the query holds no words
+     */
+    public Set<Long> search(String query, Set<Long> accessible) {
+        Set<String> terms = tokenize(query);
+
+        if (terms.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        return read(index -> {
+            Set<Long> matched = new HashSet<>(accessible);
+
+            // each word narrows down the lists matched by the previous ones
+            for (String term : terms) {
+                matched = index.match(term, matched);
+
+                if (matched.isEmpty()) {
+                    break;
+                }
+            }
+
+            return matched;
+        });
+    }
+
+    /**
+     * Get the number of distinct words in the index.
+     *
+     * @return the number of indexed words
+     */
+    public int size() {
+        return read(index -> index.postings.size());
+    }
+
+    /**
+     * Record that grocery items were added to a list. If called within a transaction, the index is only
+     * updated once that transaction commits.
+     *
+     * @param listId a long representing the ID of the list
+     * @param names  a Collection of the String names of the added grocery items
+     */
+    public void itemsAdded(long listId, Collection<String> names) {
+        List<String> added = List.copyOf(names);
+
+        update(index -> {
+            for (String name : added) {
+                index.add(listId, name, 1);
+            }
+        });
+    }
+
+    /**
+     * Record that grocery items were removed from a list. If called within a transaction, the index is only
+     * updated once that transaction commits.
+     *
+     * @param listId a long representing the ID of the list
+     * @param names  a Collection of the String names of the removed grocery items
+     */
+    public void itemsRemoved(long listId, Collection<String> names) {
+        List<String> removed = List.copyOf(names);
+
+        update(index -> {
+            for (String name : removed) {
+                index.add(listId, name, -1);
+            }
+        });
+    }
+
+    /**
+     * Record that a list was created holding a copy of the items of another. If called within a transaction,
+     * the index is only updated once that transaction commits.
+     *
+     * @param sourceId a long representing the ID of the list the items were copied from
+     * @param targetId a long representing the ID of the list the items were copied to
+     */
+    public void listCopied(long sourceId, long targetId) {
+        update(index -> index.copy(sourceId, targetId));
+    }
+
+    /**
+     * Record that a list was removed. If called within a transaction, the index is only updated once that
+     * transaction commits.
+     *
+     * @param listId a long representing the ID of the removed list
+     */
+    public void listRemoved(long listId) {
+        update(index -> index.remove(listId));
+    }
+
+    /**
+     * Rebuild the index from the database. The new index is built without holding this index's lock, so
+     * searches are answered from the old one until it is swapped in.
+     */
+    @Override
+    @Scheduled(initialDelayString = "${saguaro.search.reload-ms:300000}",
+            fixedDelayString = "${saguaro.search.reload-ms:300000}")
+    public void reload() {
+        super.reload();
+    }
+
+    /**
+     * Build an index of the items of every grocery list.
+     *
+     * @return a new Index
+     */
+    @Override
+    protected Index load() {
+        Index loaded = new Index();
+
+        try (Stream<ListItemEntry> entries = groceryListRepository.streamAllItemEntries()) {
+            entries.forEach(entry -> loaded.add(entry.getListId(), entry.getItemName(), 1));
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Split an item name or query into its distinct words, in lower case.
+     *
+     * @param text the String to split
+     * @return a Set of the String words, in order of first appearance
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+
+        for (String word : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Register the size of this index with a MeterRegistry. Called by Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.search.words", this, ListSearchIndex::size)
+                .description("Number of distinct words in the grocery list search index")
+                .register(registry);
+    }
+
+    /**
+     * The index itself, counting for each word how many items of each list hold it, so that removing one
+     * item does not unlist a word that another item of the same list still holds.
+     */
+    static class Index {
+
+        /**
+         * The inverted index: for each word, in order, the number of items holding it in each list
+         */
+        private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+        /**
+         * The forward index: for each list, the number of its items holding each word
+         */
+        private final Map<Long, Map<String, Integer>> words = new HashMap<>();
+
+        /**
+         * Change the counts of the words of an item name in a list.
+         *
+         * @param listId a long representing the ID of the list
+         * @param name   the String name of the grocery item
+         * @param delta  the amount to change each count by
+         */
+        private void add(long listId, String name, int delta) {
+            for (String word : tokenize(name)) {
+                count(listId, word, delta);
+            }
+        }
+
+        /**
+         * Change the count of a word in a list, in both directions of the index, dropping it once it reaches
+         * zero.
+         *
+         * @param listId a long representing the ID of the list
+         * @param word   the String word
+         * @param delta  the amount to change the count by
+         */
+        private void count(long listId, String word, int delta) {
+            Map<Long, Integer> lists = postings.computeIfAbsent(word, key -> new HashMap<>());
+            Map<String, Integer> listWords = this.words.computeIfAbsent(listId, key -> new HashMap<>());
+
+            if (lists.merge(listId, delta, Integer::sum) <= 0) {
+                lists.remove(listId);
+                listWords.remove(word);
+            } else {
+                listWords.merge(word, delta, Integer::sum);
+            }
+
+            if (lists.isEmpty()) {
+                postings.remove(word);
+            }
+
+            if (listWords.isEmpty()) {
+                this.words.remove(listId);
+            }
+        }
+
+        /**
+         * Add every word of one list to another.
+         *
+         * @param sourceId a long representing the ID of the list to copy from
+         * @param targetId a long representing the ID of the list to copy to
+         */
+        private void copy(long sourceId, long targetId) {
+            Map<String, Integer> sourceWords = words.get(sourceId);
+
+            if (sourceWords != null) {
+                for (Map.Entry<String, Integer> entry : Map.copyOf(sourceWords).entrySet()) {
+                    count(targetId, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Remove every word of a list.
+         *
+         * @param listId a long representing the ID of the list
+         */
+        private void remove(long listId) {
+            Map<String, Integer> listWords = words.get(listId);
+
+            if (listWords != null) {
+                for (Map.Entry<String, Integer> entry : Map.copyOf(listWords).entrySet()) {
+                    count(listId, entry.getKey(), -entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Find the lists, among some candidates, holding a word starting with a prefix. For each matching
+         * word, either its lists or the candidates are scanned, whichever is smaller.
+         *
+         * @param prefix     the String prefix to match
+         * @param candidates a Set of the IDs of the candidate lists
+         * @return a Set of the IDs of the matching candidates
+         */
+        private Set<Long> match(String prefix, Set<Long> candidates) {
+            Set<Long> matched = new HashSet<>();
+
+            for (Map<Long, Integer> lists : postings.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                if (lists.size() < candidates.size()) {
+                    for (Long listId : lists.keySet()) {
+                        if (candidates.contains(listId)) {
+                            matched.add(listId);
+                        }
+                    }
+                } else {
+                    for (Long listId : candidates) {
+                        if (lists.containsKey(listId)) {
+                            matched.add(listId);
+                        }
+                    }
+                }
+
+                if (matched.size() == candidates.size()) {
+                    break;
+                }
+            }
+
+            return matched;
+        }
+    }
+}
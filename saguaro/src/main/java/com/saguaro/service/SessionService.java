@@ -0,0 +1,579 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.User;
+import com.saguaro.entity.UserSession;
+import com.saguaro.repository.UserSessionRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is a service class providing all logic for user sessions. It is responsible for
+ * interfacing with the session repository to create, find and delete {@link UserSession} entities.
+ * <p>
+ * Session activity is not written on every request. Instead, the tokens of authenticated requests are
+ * collected in memory, and the last seen times of all sessions used since the previous flush are written
+ * periodically in batched updates. Expired sessions are likewise purged periodically, in batches, so that
+ * no single statement locks a large part of the session table.
+ * <p>
+ * By default, sessions are inserted and deleted as soon as users log in and out. If the
+ * <code>saguaro.session.write-mode</code> property is set to <code>write-behind</code>, new and deleted
+ * sessions are instead held in an in-memory map, which is consulted before the database when looking
+ * up a token, and written in batches every <code>saguaro.session.write-behind.flush-ms</code> milliseconds,
+ * or as soon as <code>saguaro.session.write-behind.flush-threshold</code> writes are pending. Flushes run on
+ * a thread of their own, so they neither wait behind other scheduled tasks nor slow down or fail the login
+ * or logout that filled the pending writes; a failed flush is retried on the next one. Pending writes
+ * are also flushed when the application shuts down. This trades durability for throughput: if the server
+ * stops abruptly, logins and logouts from the last flush interval are lost, and other servers sharing
+ * the database do not see them until they are flushed.
+ * <p>
+ * The number of sessions awaiting a last seen update, the number of pending session writes, the number of
+ * failed background flushes and the number of sessions purged are exposed through Micrometer as
+ * <code>saguaro.session.activity.pending</code>, <code>saguaro.session.writes.pending</code>,
+ * <code>saguaro.session.flush.failures</code> and <code>saguaro.session.purged</code>.
+ *
+ * @author Charles Wong
+ */
+@Service
+public class SessionService implements MeterBinder, DisposableBean {
+
+    /**
+     * Repository interface for session tables
+     */
+    private final UserSessionRepository sessionRepository;
+
+    /**
+     * How long a session stays valid after being created
+     */
+    private final Duration ttl;
+
+    /**
+     * The maximum number of sessions written by a single update or delete
+     */
+    private final int batchSize;
+
+    /**
+     * Whether session inserts and deletes are written behind, rather than immediately
+     */
+    private final boolean writeBehind;
+
+    /**
+     * The number of pending session writes at which a flush is started without waiting for the next interval
+     */
+    private final int flushThreshold;
+
+    /**
+     * Source of the current time
+     */
+    private final Clock clock;
+
+    /**
+     * Session writes that have not been flushed yet, keyed by token hash. Authoritative for the tokens
+     * it holds, so that a session is usable as soon as it is created and unusable as soon as it is deleted.
+     */
+    private final ConcurrentHashMap<String, PendingWrite> pendingWrites;
+
+    /**
+     * Held while pending session writes are flushed, so that only one flush runs at a time
+     */
+    private final ReentrantLock flushLock;
+
+    /**
+     * The single thread pending session writes are flushed on, or null if they are not written behind
+     */
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * Whether a flush has been handed to the flush thread and has not started yet
+     */
+    private final AtomicBoolean flushRequested;
+
+    /**
+     * Number of background flushes that failed
+     */
+    private final AtomicLong flushFailures;
+
+    /**
+     * The tokens of sessions used since the last flush. Replaced with an empty set on every flush.
+     */
+    private final AtomicReference<Set<String>> activeTokens;
+
+    /**
+     * Number of expired sessions purged
+     */
+    private final AtomicLong purged;
+
+    /**
+     * Constructs a SessionService with a session lifetime, batch size and write mode read from the
+     * application properties. When writing behind, the flush thread is started, and flushes pending session
+     * writes every flush interval.
+     * <p>
+     * Note that this constructor is automatically picked up by Spring for autowiring.
+     *
+     * @param sessionRepository a UserSessionRepository instance to support this service
+     * @param ttlDays           the number of days a session remains valid after being created
+     * @param batchSize         the maximum number of sessions written by a single statement
+     * @param writeMode         the String write mode, either <code>sync</code> or <code>write-behind</code>
+     * @param flushMs           the number of milliseconds between flushes of pending session writes
+     * @param flushThreshold    the number of pending session writes that starts a flush early
+     */
+    @Autowired
+    public SessionService(UserSessionRepository sessionRepository,
+                          @Value("${saguaro.session.ttl-days:30}") long ttlDays,
+                          @Value("${saguaro.session.batch-size:500}") int batchSize,
+                          @Value("${saguaro.session.write-mode:sync}") String writeMode,
+                          @Value("${saguaro.session.write-behind.flush-ms:1000}") long flushMs,
+                          @Value("${saguaro.session.write-behind.flush-threshold:500}") int flushThreshold) {
+        this(sessionRepository, Duration.ofDays(ttlDays), batchSize, flushThreshold,
+                parseWriteMode(writeMode) ? newFlushExecutor() : null, Clock.systemUTC());
+
+        if (flushExecutor != null) {
+            flushExecutor.scheduleWithFixedDelay(this::flushInBackground, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Constructs a SessionService with an explicit flush executor and clock. Used for testing. Nothing is
+     * scheduled on the executor; it is only handed flushes once the flush threshold is reached.
+     *
+     * @param sessionRepository a UserSessionRepository instance to support this service
+     * @param ttl               the Duration a session remains valid after being created
+     * @param batchSize         the maximum number of sessions written by a single statement
+     * @param flushThreshold    the number of pending session writes that starts a flush early
+     * @param flushExecutor     the ScheduledExecutorService to flush pending session writes on, or null to
+     *                          write session inserts and deletes immediately
+     * @param clock             the Clock to read the current time from
+     */
+    SessionService(UserSessionRepository sessionRepository, Duration ttl, int batchSize, int flushThreshold,
+                   ScheduledExecutorService flushExecutor, Clock clock) {
+        this.sessionRepository = sessionRepository;
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+        this.writeBehind = flushExecutor != null;
+        this.flushThreshold = flushThreshold;
+        this.flushExecutor = flushExecutor;
+        this.clock = clock;
+        this.activeTokens = new AtomicReference<>(ConcurrentHashMap.newKeySet());
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.flushLock = new ReentrantLock();
+        this.flushRequested = new AtomicBoolean();
+        this.flushFailures = new AtomicLong();
+        this.purged = new AtomicLong();
+    }
+
+    /**
+     * Create a new session for a user, leaving any other sessions of the user untouched. When writing
+     * behind, the session is usable immediately, but only inserted on the next flush.
+     *
+     * @param user the User to create a session for
+     * @return the String authentication token of the new session. Only its hash is stored, so this is
+     * the only time the token is available.
+     */
+    public String createSession(User user) {
+        String token = UUID.randomUUID().toString();
+        Instant now = clock.instant();
+        UserSession session = new UserSession(user, UserSession.hashToken(token), now, now.plus(ttl));
+
+        if (writeBehind) {
+            pendingWrites.put(session.getTokenHash(), new PendingWrite(session, SaguaroPrincipal.of(user)));
+            flushIfFull();
+        } else {
+            sessionRepository.save(session);
+        }
+
+        return token;
+    }
+
+    /**
+     * Find the user of the unexpired session holding the provided authentication token. Pending session
+     * writes are checked before the database.
+     *
+     * @param token the String authentication token to attempt to match
+     * @return a SaguaroPrincipal representing the session's user, or null if no session holds the token
+     * or it has expired
+     */
+    @Transactional(readOnly = true)
+    public SaguaroPrincipal findPrincipal(String token) {
+        String tokenHash = UserSession.hashToken(token);
+        Instant now = clock.instant();
+        PendingWrite pending = pendingWrites.get(tokenHash);
+
+        if (pending != null) {
+            return pending.isDelete() || !pending.session.getExpiresAt().isAfter(now) ? null : pending.principal;
+        }
+
+        UserSession session = sessionRepository.findActiveByTokenHash(tokenHash, now);
+
+        return session == null ? null : SaguaroPrincipal.of(session.getUser());
+    }
+
+    /**
+     * Delete the session holding the provided authentication token. Any other sessions of the same user
+     * remain valid. When writing behind, the session is unusable immediately, but only deleted on the
+     * next flush.
+     *
+     * @param token the String authentication token of the session to delete
+     */
+    public void revokeSession(String token) {
+        String tokenHash = UserSession.hashToken(token);
+        activeTokens.get().remove(token);
+
+        if (writeBehind) {
+            pendingWrites.put(tokenHash, new PendingWrite(null, null));
+            flushIfFull();
+        } else {
+            sessionRepository.deleteByTokenHash(tokenHash);
+        }
+    }
+
+    /**
+     * Write all pending session inserts and deletes, in batches. A session created and deleted between
+     * two flushes is never written at all. Called periodically on the flush thread when writing behind.
+     * <p>
+     * Each batch is removed from the pending writes once it has been committed, unless the write for one
+     * of its tokens has been replaced in the meantime. If a batch fails, it and any later batches are left
+     * pending, and retried on the next flush.
+     *
+     * @return the number of pending writes flushed
+     */
+    public int flushWrites() {
+        if (!writeBehind) {
+            return 0;
+        }
+
+        flushLock.lock();
+        try {
+            return writePending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Hand a flush of pending session writes to the flush thread, if there are enough of them and no
+     * flush is already waiting to run. Never writes on, or fails, the calling thread.
+     */
+    private void flushIfFull() {
+        if (pendingWrites.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(this::flushInBackground);
+            } catch (RejectedExecutionException e) {
+                // shutting down, and the pending writes are flushed on shutdown anyway
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Flush pending session writes on the flush thread. A failed flush leaves its writes pending, and is
+     * only counted, so that the flush thread keeps running and retries them on the next flush.
+     */
+    private void flushInBackground() {
+        flushRequested.set(false);
+
+        try {
+            flushWrites();
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write a snapshot of the pending session writes, in batches. Must be called while holding the flush lock.
+     *
+     * @return the number of pending writes flushed
+     */
+    private int writePending() {
+        Map<String, PendingWrite> batch = new HashMap<>();
+        int flushed = 0;
+
+        for (Map.Entry<String, PendingWrite> entry : pendingWrites.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+
+            if (batch.size() == batchSize) {
+                flushed += writeBatch(batch);
+                batch = new HashMap<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            flushed += writeBatch(batch);
+        }
+
+        return flushed;
+    }
+
+    /**
+     * Write one batch of pending session writes, and remove them from the pending writes once committed.
+     *
+     * @param batch a Map of pending writes, keyed by token hash
+     * @return the number of pending writes flushed
+     */
+    private int writeBatch(Map<String, PendingWrite> batch) {
+        List<UserSession> inserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+
+        batch.forEach((tokenHash, write) -> {
+            if (write.isDelete()) {
+                deletes.add(tokenHash);
+            } else {
+                inserts.add(write.session);
+            }
+        });
+
+        if (!inserts.isEmpty()) {
+            sessionRepository.saveAll(inserts);
+        }
+
+        if (!deletes.isEmpty()) {
+            sessionRepository.deleteByTokenHashes(deletes);
+        }
+
+        batch.forEach(pendingWrites::remove);
+        return batch.size();
+    }
+
+    /**
+     * Record that the session holding the provided authentication token has been used. The session's
+     * last seen time is written on the next call to {@link #flushActivity()}, so repeated calls for the
+     * same token between flushes cost a single update.
+     *
+     * @param token the String authentication token of an authenticated session
+     */
+    public void recordActivity(String token) {
+        activeTokens.get().add(token);
+    }
+
+    /**
+     * Write the last seen time of every session used since the previous flush, in batched updates.
+     * Called periodically by Spring.
+     * <p>
+     * Activity recorded while a flush is running may be counted towards either that flush or the next,
+     * and in rare cases is dropped; last seen times are approximate by design.
+     *
+     * @return the number of sessions updated
+     */
+    @Scheduled(fixedDelayString = "${saguaro.session.activity-flush-ms:60000}")
+    public int flushActivity() {
+        Set<String> tokens = activeTokens.getAndSet(ConcurrentHashMap.newKeySet());
+
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+
+        Instant now = clock.instant();
+        List<String> batch = new ArrayList<>(Math.min(tokens.size(), batchSize));
+        int updated = 0;
+
+        for (String token : tokens) {
+            batch.add(UserSession.hashToken(token));
+
+            if (batch.size() == batchSize) {
+                updated += sessionRepository.updateLastSeen(batch, now);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            updated += sessionRepository.updateLastSeen(batch, now);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Delete all expired sessions, one batch at a time. Each batch is committed before the next one is
+     * read, so that a large backlog of expired sessions does not hold locks for long. Called periodically
+     * by Spring.
+     *
+     * @return the number of sessions deleted
+     */
+    @Scheduled(fixedDelayString = "${saguaro.session.sweep-interval-ms:300000}")
+    public int purgeExpiredSessions() {
+        Instant now = clock.instant();
+        int deleted = 0;
+        List<Long> ids;
+
+        do {
+            ids = sessionRepository.findExpiredIds(now, PageRequest.of(0, batchSize));
+
+            if (!ids.isEmpty()) {
+                deleted += sessionRepository.deleteByIds(ids);
+            }
+        } while (ids.size() == batchSize);
+
+        purged.addAndGet(deleted);
+        return deleted;
+    }
+
+    /**
+     * Get the number of sessions used since the last flush.
+     *
+     * @return the number of sessions awaiting a last seen update
+     */
+    public int getPendingActivityCount() {
+        return activeTokens.get().size();
+    }
+
+    /**
+     * Get the number of session inserts and deletes that have not been flushed yet.
+     *
+     * @return the number of pending session writes
+     */
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Get the number of background flushes of pending session writes that failed.
+     *
+     * @return the number of failed flushes
+     */
+    public long getFlushFailureCount() {
+        return flushFailures.get();
+    }
+
+    /**
+     * Get the number of expired sessions that have been purged.
+     *
+     * @return the number of sessions purged
+     */
+    public long getPurgedCount() {
+        return purged.get();
+    }
+
+    /**
+     * Register this service's pending activity gauge and purge counter with a MeterRegistry. Called by
+     * Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.session.activity.pending", this, SessionService::getPendingActivityCount)
+                .description("Sessions awaiting a last seen update")
+                .register(registry);
+        Gauge.builder("saguaro.session.writes.pending", this, SessionService::getPendingWriteCount)
+                .description("Session inserts and deletes awaiting a flush")
+                .register(registry);
+        FunctionCounter.builder("saguaro.session.flush.failures", this, SessionService::getFlushFailureCount)
+                .description("Background flushes of pending session writes that failed")
+                .register(registry);
+        FunctionCounter.builder("saguaro.session.purged", this, SessionService::getPurgedCount)
+                .description("Expired sessions purged")
+                .register(registry);
+    }
+
+    /**
+     * Stop the flush thread, letting a running flush finish, then flush pending session writes and pending
+     * session activity, when the application shuts down.
+     */
+    @Override
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+
+            try {
+                flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushWrites();
+        flushActivity();
+    }
+
+    /**
+     * Create the single daemon thread pending session writes are flushed on.
+     *
+     * @return a new ScheduledExecutorService
+     */
+    private static ScheduledExecutorService newFlushExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("session-flush-");
+        threadFactory.setDaemon(true);
+
+        return Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Read the session write mode property.
+     *
+     * @param writeMode the String write mode, either <code>sync</code> or <code>write-behind</code>
+     * @return true if the mode is <code>write-behind</code>, false if it is <code>sync</code>
+     */
+    private static boolean parseWriteMode(String writeMode) {
+        if ("write-behind".equalsIgnoreCase(writeMode)) {
+            return true;
+        } else if ("sync".equalsIgnoreCase(writeMode)) {
+            return false;
+        }
+
+        throw new IllegalArgumentException("Unknown session write mode: " + writeMode);
+    }
+
+    /**
+     * A session insert or delete that has not been flushed yet.
+     */
+    private static class PendingWrite {
+
+        /**
+         * The session to insert, or null if the session is to be deleted
+         */
+        private final UserSession session;
+
+        /**
+         * The principal of the session's user, or null if the session is to be deleted
+         */
+        private final SaguaroPrincipal principal;
+
+        /**
+         * Constructs a PendingWrite. Both arguments are null for a delete.
+         *
+         * @param session   the UserSession to insert, or null
+         * @param principal the SaguaroPrincipal of the session's user, or null
+         */
+        private PendingWrite(UserSession session, SaguaroPrincipal principal) {
+            this.session = session;
+            this.principal = principal;
+        }
+
+        /**
+         * Check whether this write deletes a session.
+         *
+         * @return true if the session is to be deleted, false if it is to be inserted
+         */
+        private boolean isDelete() {
+            return session == null;
+        }
+    }
+}
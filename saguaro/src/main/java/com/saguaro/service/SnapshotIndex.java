@@ -0,0 +1,156 @@
+package com.saguaro.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Base class of the in-memory indexes built from a snapshot of the database, and kept up to date with the
+ * changes {@link GroceryService} reports to them.
+ * <p>
+ * The snapshot is built once the application is ready, or on first use if that comes sooner, and rebuilt
+ * by {@link #reload()}, which subclasses schedule. Reads and changes are serialized on the index's lock,
+ * but snapshots are built without holding it, so a build never blocks reads of the old snapshot, or the
+ * changes applied as transactions commit. Builds are serialized on a lock of their own, so readers arriving
+ * before the first snapshot wait for a single build rather than each starting one.
+ * <p>
+ * A change is only applied once the transaction reporting it commits, and is skipped if the snapshot has
+ * not been built yet, since building it reads the change from the database. A change committed while a
+ * build is running may be missed until the next one.
+ *
+ * @param <T> the type of the snapshot
+ * @author Charles Wong
+ */
+abstract class SnapshotIndex<T> {
+
+    /**
+     * Runs each build, so that it may read the database through a cursor
+     */
+    private final TransactionOperations transactions;
+
+    /**
+     * Held while a snapshot is built, so that only one build runs at a time
+     */
+    private final Object loadLock = new Object();
+
+    /**
+     * The current snapshot, or null if it has not been built yet. All access must be synchronized on this
+     * object.
+     */
+    private T snapshot;
+
+    /**
+     * Constructs a SnapshotIndex, which is built once the application is ready.
+     *
+     * @param transactions the TransactionOperations to run each build in
+     */
+    protected SnapshotIndex(TransactionOperations transactions) {
+        this.transactions = transactions;
+    }
+
+    /**
+     * Create the TransactionOperations running each build in a read-only transaction.
+     *
+     * @param transactionManager the PlatformTransactionManager to run the transactions with
+     * @return a TransactionOperations starting read-only transactions
+     */
+    protected static TransactionOperations readOnly(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Build the first snapshot, unless a read already has. Called by Spring once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        synchronized (loadLock) {
+            if (!isLoaded()) {
+                swap();
+            }
+        }
+    }
+
+    /**
+     * Rebuild the snapshot from the database. The new snapshot is built without holding this index's lock,
+     * so reads are answered from the old one until it is swapped in.
+     */
+    public void reload() {
+        synchronized (loadLock) {
+            swap();
+        }
+    }
+
+    /**
+     * Answer a query from the current snapshot, waiting for the first snapshot to be built if it has not
+     * been yet.
+     *
+     * @param query a Function reading the snapshot
+     * @param <R>   the type of the query's result
+     * @return the result of the query
+     */
+    protected <R> R read(Function<T, R> query) {
+        if (!isLoaded()) {
+            warm();
+        }
+
+        synchronized (this) {
+            return query.apply(snapshot);
+        }
+    }
+
+    /**
+     * Apply a change to the current snapshot once the current transaction commits, or immediately if
+     * there is none.
+     *
+     * @param change a Consumer changing the snapshot
+     */
+    protected void update(Consumer<T> change) {
+        TransactionCallbacks.afterCommit(() -> apply(change));
+    }
+
+    /**
+     * Build a new snapshot from the database, within a transaction.
+     *
+     * @return the new snapshot
+     */
+    protected abstract T load();
+
+    /**
+     * Build a new snapshot and swap it in. Must be called while holding the build lock, and not this index's
+     * lock.
+     */
+    private void swap() {
+        T loaded = transactions.execute(status -> load());
+
+        synchronized (this) {
+            snapshot = loaded;
+        }
+    }
+
+    /**
+     * Check whether the first snapshot has been built.
+     *
+     * @return true if there is a snapshot, false otherwise
+     */
+    private synchronized boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Apply a change to the current snapshot, unless it has not been built yet.
+     *
+     * @param change a Consumer changing the snapshot
+     */
+    private synchronized void apply(Consumer<T> change) {
+        if (snapshot != null) {
+            change.accept(snapshot);
+        }
+    }
+}
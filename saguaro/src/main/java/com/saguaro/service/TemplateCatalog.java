@@ -0,0 +1,270 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.PublishedTemplateRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * This class holds an in-memory snapshot of every published template, which answers all catalog reads
+ * without touching the database. The snapshot is immutable, and is read through a single volatile field,
+ * so readers never lock or wait on each other.
+ * <p>
+ * Changes are copy-on-write: publishing, republishing or unpublishing a template builds a new snapshot
+ * from a copy of the current one and swaps it in, so a reader always sees either the whole change or none
+ * of it. Changes made within a transaction are only applied once it commits. Writers are serialized, which
+ * is cheap since templates are published far less often than the catalog is read.
+ * <p>
+ * The snapshot is loaded from the published template tables on first use, and reloaded every
+ * <code>saguaro.catalog.reload-ms</code> milliseconds so that templates published through other servers
+ * appear. The number of templates in the catalog is exposed through Micrometer as
+ * <code>saguaro.catalog.templates</code>.
+ *
+ * @author Charles Wong
+ */
+@Component
+public class TemplateCatalog implements MeterBinder {
+
+    /**
+     * The order templates are browsed in: by name, ignoring case, then by ID
+     */
+    static final Comparator<CatalogTemplate> ORDER = Comparator
+            .comparing(CatalogTemplate::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingLong(CatalogTemplate::getId);
+
+    /**
+     * Repository interface for published template tables
+     */
+    private final PublishedTemplateRepository publishedTemplateRepository;
+
+    /**
+     * The current snapshot, or null if it has not been loaded yet. Only replaced while holding this
+     * catalog's lock.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructs a TemplateCatalog, which is loaded on first use.
+     *
+     * @param publishedTemplateRepository a PublishedTemplateRepository to load published templates from
+     */
+    public TemplateCatalog(PublishedTemplateRepository publishedTemplateRepository) {
+        this.publishedTemplateRepository = publishedTemplateRepository;
+    }
+
+    /**
+     * Get a page of the catalog, in browsing order. Pages past the end of the catalog are empty.
+     *
+     * @param page an int representing the index of the page to get, starting from 0
+     * @param size an int representing the number of templates on each page
+     * @return an unmodifiable List of the CatalogTemplates on the page
+     */
+    public List<CatalogTemplate> getPage(int page, int size) {
+        List<CatalogTemplate> ordered = current().ordered;
+        int from = (int) Math.min((long) page * size, ordered.size());
+        int to = (int) Math.min((long) from + size, ordered.size());
+
+        return ordered.subList(from, to);
+    }
+
+    /**
+     * Get a template from the catalog.
+     *
+     * @param id a long representing the ID of the template
+     * @return the CatalogTemplate with the given ID, or null if it is not published
+     */
+    public CatalogTemplate get(long id) {
+        return current().byId.get(id);
+    }
+
+    /**
+     * Get the number of templates in the catalog.
+     *
+     * @return the number of published templates
+     */
+    public int size() {
+        return current().ordered.size();
+    }
+
+    /**
+     * Get a fingerprint of the catalog's contents, which changes whenever a template is published,
+     * republished or unpublished. Servers holding the same templates compute the same fingerprint.
+     *
+     * @return a long fingerprint of the catalog
+     */
+    public long getFingerprint() {
+        return current().fingerprint;
+    }
+
+    /**
+     * Add a template to the catalog, or replace it if it is already there. If called within a transaction,
+     * the template is only added once that transaction commits.
+     *
+     * @param template the CatalogTemplate to add
+     */
+    public void put(CatalogTemplate template) {
+        TransactionCallbacks.afterCommit(() -> apply(template));
+    }
+
+    /**
+     * Remove a template from the catalog, if it is there. If called within a transaction, the template is
+     * only removed once that transaction commits.
+     *
+     * @param id a long representing the ID of the template to remove
+     */
+    public void remove(long id) {
+        TransactionCallbacks.afterCommit(() -> unapply(id));
+    }
+
+    /**
+     * Reload the catalog from the published template tables. The current snapshot is kept if nothing
+     * has changed, and holds the lock while loading, so that no change made meanwhile is overwritten.
+     */
+    @Scheduled(fixedDelayString = "${saguaro.catalog.reload-ms:60000}")
+    public synchronized void reload() {
+        Snapshot loaded = load();
+
+        if (snapshot == null || snapshot.fingerprint != loaded.fingerprint) {
+            snapshot = loaded;
+        }
+    }
+
+    /**
+     * Get the current snapshot, loading it if this is the first use of the catalog.
+     *
+     * @return the current Snapshot
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = load();
+                }
+
+                current = snapshot;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Build a snapshot of every published template.
+     *
+     * @return a new Snapshot of the published template tables
+     */
+    private Snapshot load() {
+        return new Snapshot(publishedTemplateRepository.findAllWithItems()
+                .stream()
+                .map(CatalogTemplate::of)
+                .sorted(ORDER)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Swap in a copy of the current snapshot with a template added or replaced. A template older than the
+     * one already in the catalog, as applied by a transaction that committed first but finished later, is
+     * ignored.
+     *
+     * @param template the CatalogTemplate to add
+     */
+    private synchronized void apply(CatalogTemplate template) {
+        List<CatalogTemplate> ordered = new ArrayList<>(current().ordered);
+        CatalogTemplate old = snapshot.byId.get(template.getId());
+
+        if (old != null) {
+            if (old.getRevision() > template.getRevision()) {
+                return;
+            }
+
+            ordered.remove(Collections.binarySearch(ordered, old, ORDER));
+        }
+
+        // the template is never found, since its ID is no longer in the list
+        ordered.add(-Collections.binarySearch(ordered, template, ORDER) - 1, template);
+        snapshot = new Snapshot(ordered);
+    }
+
+    /**
+     * Swap in a copy of the current snapshot with a template removed.
+     *
+     * @param id a long representing the ID of the template to remove
+     */
+    private synchronized void unapply(long id) {
+        CatalogTemplate old = current().byId.get(id);
+
+        if (old != null) {
+            List<CatalogTemplate> ordered = new ArrayList<>(snapshot.ordered);
+            ordered.remove(Collections.binarySearch(ordered, old, ORDER));
+            snapshot = new Snapshot(ordered);
+        }
+    }
+
+    /**
+     * Register the size of this catalog with a MeterRegistry. Called by Spring when metrics are enabled.
+     *
+     * @param registry the MeterRegistry to bind to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saguaro.catalog.templates", this, TemplateCatalog::size)
+                .description("Number of templates in the published template catalog")
+                .register(registry);
+    }
+
+    /**
+     * An immutable view of the catalog at one point in time.
+     */
+    private static class Snapshot {
+
+        /**
+         * Every published template, in browsing order
+         */
+        private final List<CatalogTemplate> ordered;
+
+        /**
+         * Every published template, keyed by ID
+         */
+        private final Map<Long, CatalogTemplate> byId;
+
+        /**
+         * A fingerprint of the templates' IDs, revisions and publishing times
+         */
+        private final long fingerprint;
+
+        /**
+         * Constructs a Snapshot from templates already in browsing order.
+         *
+         * @param ordered a Collection of CatalogTemplates, in browsing order
+         */
+        private Snapshot(Collection<CatalogTemplate> ordered) {
+            this.ordered = List.copyOf(ordered);
+
+            Map<Long, CatalogTemplate> byId = new HashMap<>();
+            long fingerprint = 17;
+
+            for (CatalogTemplate template : this.ordered) {
+                byId.put(template.getId(), template);
+                fingerprint = 31 * fingerprint + template.getId();
+                fingerprint = 31 * fingerprint + template.getRevision();
+                fingerprint = 31 * fingerprint + template.getPublishedAt().toEpochMilli();
+            }
+
+            this.byId = Map.copyOf(byId);
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.saguaro.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for deferring work until the current transaction has committed. Used by the in-memory indexes
+ * and the template catalog, so that they only ever reflect changes that were actually written.
+ *
+ * @author Charles Wong
+ */
+final class TransactionCallbacks {
+
+    /**
+     * Not instantiable
+     */
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Run an action once the current transaction commits, or immediately if there is none. The action is
+     * dropped if the transaction rolls back.
+     *
+     * @param action the Runnable to run
+     */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -5,18 +5,24 @@ import com.saguaro.entity.User;
 import com.saguaro.exception.InvalidLoginException;
 import com.saguaro.exception.InvalidParamException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.exception.ServiceUnavailableException;
 import com.saguaro.repository.RoleRepository;
 import com.saguaro.repository.UserRepository;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.saguaro.security.PasswordHasher;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.security.SignedTokenService;
+import com.saguaro.security.TokenCache;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.UUID;
-
 /**
  * This class is a service class providing all logic for user related operations. It is responsible
  * for interfacing with repository interfaces to fetch/persist User entities.
+ * <p>
+ * Methods that hash passwords do so through a {@link PasswordHasher}, and run outside of a transaction, so
+ * that requests waiting for a hash do not hold on to database connections. Each repository call they make
+ * runs in its own transaction instead.
  *
  * @author Charles Wong
  */
@@ -37,7 +43,22 @@ public class UserService {
     /**
      * Bean that handles password hashing
      */
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    /**
+     * Service that manages the sessions users log in with
+     */
+    private SessionService sessionService;
+
+    /**
+     * Service that issues signed tokens, when they are enabled
+     */
+    private SignedTokenService signedTokenService;
+
+    /**
+     * Cache of authenticated tokens, which must be told about invalidated tokens
+     */
+    private TokenCache tokenCache;
 
     /**
      * Constructs a UserService, injecting all requires dependencies.
@@ -46,39 +67,54 @@ public class UserService {
      *
      * @param userRepository  a UserRepository instance to support this service
      * @param roleRepository  a RoleRepository instance to support this service
-     * @param passwordEncoder a PasswordEncoder instance to support this service
+     * @param passwordHasher  a PasswordHasher instance to support this service
+     * @param sessionService     a SessionService instance to create and find sessions with
+     * @param signedTokenService a SignedTokenService instance to issue and revoke signed tokens with
+     * @param tokenCache         a TokenCache instance to invalidate tokens in
      */
     public UserService(UserRepository userRepository,
                        RoleRepository roleRepository,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordHasher passwordHasher,
+                       SessionService sessionService,
+                       SignedTokenService signedTokenService,
+                       TokenCache tokenCache) {
 
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.sessionService = sessionService;
+        this.signedTokenService = signedTokenService;
+        this.tokenCache = tokenCache;
     }
 
     /**
-     * Given a username and password, attempt to log in the user. If successful, an authentication
-     * token is generated for the user, and attached to the returned User object. If the user already
-     * has an authentication token, a new one will be generated regardless, which will overwrite
-     * the old token.
+     * Given a username and password, attempt to log in the user. If successful, a new session is
+     * created for the user, and its authentication token is attached to the returned User object.
+     * Any other sessions of the user remain valid, so a user can be logged in on several devices.
+     * <p>
+     * If signed tokens are enabled, no session is created. The user is issued a signed token by the
+     * {@link SignedTokenService} instead, which is verified without the database.
      * <p>
      * If the provided combination does not match an existing user, then an InvalidLoginException is thrown.
      *
      * @param username the String username attempting to log in
      * @param password the String password of the user attempting to log in
      * @return the corresponding User object to the inputted username and password, with a login token
-     * @throws InvalidLoginException if the provided username and password does not match an existing user
+     * @throws InvalidLoginException       if the provided username and password does not match an existing user
+     * @throws ServiceUnavailableException if too many passwords are already waiting to be checked
      */
-    @Transactional
-    public User login(String username, String password) throws InvalidLoginException {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public User login(String username, String password) throws InvalidLoginException, ServiceUnavailableException {
         User user = userRepository.findUserByUsername(username);
 
         if (user != null) {
-            if (passwordEncoder.matches(password, user.getPassword())) {
-                String newToken = UUID.randomUUID().toString();
-                user.setToken(newToken);
-                userRepository.save(user);
+            if (passwordHasher.matches(password, user.getPassword())) {
+                if (signedTokenService.isEnabled()) {
+                    user.setToken(signedTokenService.issue(SaguaroPrincipal.of(user)));
+                } else {
+                    user.setToken(sessionService.createSession(user));
+                }
+
                 return user;
             }
         }
@@ -87,24 +123,26 @@ public class UserService {
     }
 
     /**
-     * Given a username, logout the corresponding user by invalidating their
-     * authentication token.
+     * Given an authentication token, logout the session holding it by deleting that
+     * session and removing the token from the {@link TokenCache}. Other sessions of the
+     * same user remain valid. Signed tokens are instead revoked with the {@link SignedTokenService}.
      * <p>
-     * This method assumes that the provided username is one that belongs to an
-     * existing user, since a user must be authenticated with Saguaro to logout.
+     * This method assumes that the provided token is one that was just authenticated,
+     * since a user must be authenticated with Saguaro to logout.
      *
-     * @param username the String username of the user to logout
+     * @param token the String authentication token of the session to logout
      */
-    @Transactional
-    public void logout(String username) {
-        User user = userRepository.findUserByUsername(username);
-        user.setToken(null);
-        userRepository.save(user);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void logout(String token) {
+        if (!signedTokenService.revoke(token)) {
+            sessionService.revokeSession(token);
+            tokenCache.invalidate(token);
+        }
     }
 
     /**
      * Register a new user with Saguaro, using the provided username, password, and name. The password is
-     * hashed using the PasswordEncoder bean injected into this service class, and saved. All users are given
+     * hashed using the PasswordHasher bean injected into this service class, and saved. All users are given
      * the role "ROLE_USER", which is assumed to exist in the role database table before any user is registered.
      * <p>
      * If a username attempting to register already belongs to an existing user, an InvalidParamException is thrown.
@@ -115,18 +153,19 @@ public class UserService {
      * @param password the String password of the user attempting to register
      * @param name     the String name of the user attempting to register
      * @return a fully populated User object containing the details of the newly registered user
-     * @throws InvalidParamException if the username provided already belongs to an existing user
+     * @throws InvalidParamException       if the username provided already belongs to an existing user
+     * @throws ServiceUnavailableException if too many passwords are already waiting to be hashed
      */
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User registerNewUser(String username, String password, String name)
-            throws InvalidParamException {
+            throws InvalidParamException, ServiceUnavailableException {
         if (userRepository.existsByUsername(username)) {
             throw new InvalidParamException("Could not register user: " + username + "; username already exists");
         }
 
         User newUser = new User();
         newUser.setUsername(username);
-        newUser.setPassword(passwordEncoder.encode(password));
+        newUser.setPassword(passwordHasher.encode(password));
         newUser.setName(name);
 
         Role userRole = roleRepository.findRoleByName("ROLE_USER");
@@ -136,123 +175,121 @@ public class UserService {
     }
 
     /**
-     * Attempt to find the user that holds the provided authentication token. If none exist,
-     * then return null. Otherwise, populate a {@link UserDetails} object with the user's details
-     * and return that. This method is intended to be used as part of Saguaro's security flow.
+     * Attempt to find the user whose unexpired session holds the provided authentication token. If none
+     * exist, then return null. Otherwise, populate a {@link SaguaroPrincipal} with the user's ID, username
+     * and authorities and return that. This method is intended to be used as part of Saguaro's
+     * security flow.
      *
      * @param token the String authentication token to attempt to match
-     * @return a fully populated UserDetails object containing the found user, or null if none is found
+     * @return a SaguaroPrincipal representing the found user, or null if none is found
      */
-    public UserDetails findByToken(String token) {
-        User user = userRepository.findUserByToken(token);
-
-        if (user == null) {
-            return null;
-        }
-
-        return buildSpringUser(user);
+    public SaguaroPrincipal findByToken(String token) {
+        return sessionService.findPrincipal(token);
     }
 
     /**
-     * Build a UserDetails object using the provided Saguaro User object
+     * Fetch the User represented by an authenticated principal, by its ID.
      *
-     * @param user the User to build the UserDetails from
-     * @return a UserDetails object populated with the details of the user
+     * @param principal the SaguaroPrincipal of an authenticated user
+     * @return the User represented by the principal
      */
-    private org.springframework.security.core.userdetails.User buildSpringUser(User user) {
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getToken(),
-                true,
-                true,
-                true,
-                true,
-                user.getAuthorities()
-        );
+    private User findAuthenticatedUser(SaguaroPrincipal principal) {
+        return userRepository.findById(principal.getId())
+                .orElseThrow(() -> new IllegalStateException("Authenticated user " + principal.getUsername()
+                        + " no longer exists"));
     }
 
     /**
-     * Edits the name and password of a User, specified by a username. The name
+     * Edits the name and password of a User, specified by a principal. The name
      * or password can be null, in which case that attribute of the user remains
      * unchanged.
      * <p>
      * The plaintext password is hashed using bcrypt, and then saved.
      *
-     * @param name     the String name to replace, if not null
-     * @param password the String plaintext of the password to replace, if not null
-     * @param username the String username of the user to change the attributes of
+     * @param name      the String name to replace, if not null
+     * @param password  the String plaintext of the password to replace, if not null
+     * @param principal the SaguaroPrincipal of the user to change the attributes of
      * @return the newly saved User object
+     * @throws ServiceUnavailableException if too many passwords are already waiting to be hashed
      */
-    @Transactional
-    public User edit(String name, String password, String username) {
-        User user = userRepository.findUserByUsername(username);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public User edit(String name, String password, SaguaroPrincipal principal) throws ServiceUnavailableException {
+        User user = findAuthenticatedUser(principal);
 
         if (name != null) {
             user.setName(name);
         }
 
         if (password != null) {
-            user.setPassword(passwordEncoder.encode(password));
+            user.setPassword(passwordHasher.encode(password));
         }
 
         return userRepository.save(user);
     }
 
     /**
-     * Given a friend username and a username, add the User represented by the former as
-     * a friend of the latter. This method assumes that the username (but not the
+     * Given a friend username and a principal, add the User represented by the former as
+     * a friend of the latter. This method assumes that the principal (but not the
      * friend's username) belongs to a valid user, since a user must be authenticated
      * in order to add a friend.
      * <p>
      * If the provided friend username does not map to an existing user, a
-     * ResourceNotFoundException is thrown.
+     * ResourceNotFoundException is thrown. Adding an existing friend, or oneself, has no effect.
+     * <p>
+     * The friendship is checked and written as a single row, without loading the user's friends.
      *
      * @param friendUsername the String username of the user to add as a friend
-     * @param username       the String username of the user adding the friend
+     * @param principal      the SaguaroPrincipal of the user adding the friend
      * @return the newly modified User object
      * @throws ResourceNotFoundException if the given username to add as a friend does not
      *                                   exist
      */
     @Transactional
-    public User addFriend(String friendUsername, String username)
+    public User addFriend(String friendUsername, SaguaroPrincipal principal)
             throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+        User user = findAuthenticatedUser(principal);
         User friend = userRepository.findUserByUsername(friendUsername);
 
         if (friend == null) {
             throw new ResourceNotFoundException(User.class, friendUsername);
         }
 
-        user.addFriend(friend);
-        return userRepository.save(user);
+        if (friend.getId() != user.getId() && !userRepository.existsFriendship(user.getId(), friend.getId())) {
+            userRepository.addFriendship(user.getId(), friend.getId());
+        }
+
+        return user;
     }
 
     /**
-     * Given a friend username and a username, remove the User represented by the former from
-     * the friends of the latter. This method assumes that the username (but not the
+     * Given a friend username and a principal, remove the User represented by the former from
+     * the friends of the latter. This method assumes that the principal (but not the
      * friend's username) belongs to a valid user, since a user must be authenticated
      * in order to remove a friend.
      * <p>
      * If the provided friend username does not map to an existing friend of the user, a
      * ResourceNotFoundException is thrown.
+     * <p>
+     * The friendship is removed as a single row, without loading the user's friends.
      *
      * @param friendUsername the String username of the user to remove from friends
-     * @param username       the String username of the user removing the friend
+     * @param principal      the SaguaroPrincipal of the user removing the friend
      * @return the newly modified User object
      * @throws ResourceNotFoundException if the user with the given username is not an existing
      *                                   friend
      */
     @Transactional
-    public User removeFriend(String friendUsername, String username)
+    public User removeFriend(String friendUsername, SaguaroPrincipal principal)
             throws ResourceNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+        User user = findAuthenticatedUser(principal);
         User friend = userRepository.findUserByUsername(friendUsername);
 
         if (friend == null) {
             throw new ResourceNotFoundException(User.class, friendUsername);
+        } else if (!userRepository.removeFriendship(user.getId(), friend.getId())) {
+            throw new ResourceNotFoundException(User.class, friendUsername, user);
         }
 
-        user.removeFriend(friend);
-        return userRepository.save(user);
+        return user;
     }
 }
@@ -0,0 +1,20 @@
+-- Migrates a LIST_ITEMS table created before items were mapped with a surrogate ENTRY_ID.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+--
+-- Existing rows are numbered in the order H2 stores them, which is the order they were
+-- inserted, so lists keep the order their items were added in.
+
+CREATE SEQUENCE IF NOT EXISTS list_items_seq START WITH 1 INCREMENT BY 1;
+
+ALTER TABLE list_items ADD COLUMN IF NOT EXISTS entry_id BIGINT;
+
+UPDATE list_items
+SET entry_id = NEXT VALUE FOR list_items_seq
+WHERE entry_id IS NULL;
+
+ALTER TABLE list_items ALTER COLUMN entry_id SET NOT NULL;
+
+ALTER TABLE list_items ADD CONSTRAINT list_items_pk PRIMARY KEY (entry_id);
@@ -0,0 +1,24 @@
+-- Creates the per-entity sequences used by PooledSequenceGenerator, for a database created while
+-- users, roles, lists and sessions shared HIBERNATE_SEQUENCE.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+--
+-- Each sequence is restarted above the largest ID already in use. The increment must match
+-- saguaro.id.block-size (50 by default).
+
+CREATE SEQUENCE IF NOT EXISTS user_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE user_seq RESTART WITH (SELECT COALESCE(MAX(user_id), 0) + 1 FROM user);
+
+CREATE SEQUENCE IF NOT EXISTS role_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE role_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM role);
+
+CREATE SEQUENCE IF NOT EXISTS list_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE list_seq RESTART WITH (SELECT COALESCE(MAX(list_id), 0) + 1 FROM grocery_list);
+
+CREATE SEQUENCE IF NOT EXISTS session_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE session_seq RESTART WITH (SELECT COALESCE(MAX(session_id), 0) + 1 FROM user_session);
+
+ALTER SEQUENCE list_items_seq RESTART WITH (SELECT COALESCE(MAX(entry_id), 0) + 1 FROM list_items);
+ALTER SEQUENCE list_items_seq INCREMENT BY 50;
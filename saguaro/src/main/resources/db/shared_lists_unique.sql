@@ -0,0 +1,14 @@
+-- Adds a unique constraint on (LIST_ID, USER_ID) to a SHARED_LISTS table created before it was
+-- declared on the mapping. The constraint's index is what shared access checks are answered from.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+--
+-- Duplicate rows should not exist, since lists are never shared with the same user twice, but
+-- any that do are removed first so that the constraint can be added.
+
+DELETE FROM shared_lists
+WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM shared_lists GROUP BY list_id, user_id);
+
+ALTER TABLE shared_lists ADD CONSTRAINT IF NOT EXISTS shared_lists_list_user_uk UNIQUE (list_id, user_id);
@@ -0,0 +1,23 @@
+-- Creates the tables holding templates published to the template catalog.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+
+CREATE TABLE IF NOT EXISTS published_template (
+    template_id        BIGINT       NOT NULL PRIMARY KEY,
+    publisher_id       BIGINT       NOT NULL,
+    publisher_username VARCHAR(255) NOT NULL,
+    name               VARCHAR(255) NOT NULL,
+    published_at       TIMESTAMP    NOT NULL,
+    revision           INT          NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS published_template_items (
+    template_id BIGINT       NOT NULL,
+    position    INT          NOT NULL,
+    item_name   VARCHAR(255) NOT NULL,
+    PRIMARY KEY (template_id, position),
+    CONSTRAINT published_template_items_template_fk
+        FOREIGN KEY (template_id) REFERENCES published_template (template_id)
+);
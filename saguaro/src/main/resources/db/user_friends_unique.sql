@@ -0,0 +1,13 @@
+-- Adds a unique constraint on (USER_ID, FRIEND_ID) to a USER_FRIENDS table created before it was
+-- declared on the mapping. The constraint's index is what friendship checks are answered from.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+--
+-- Any duplicate friendships are removed first so that the constraint can be added.
+
+DELETE FROM user_friends
+WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM user_friends GROUP BY user_id, friend_id);
+
+ALTER TABLE user_friends ADD CONSTRAINT IF NOT EXISTS user_friends_user_friend_uk UNIQUE (user_id, friend_id);
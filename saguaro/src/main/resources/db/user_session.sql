@@ -0,0 +1,35 @@
+-- Moves the authentication tokens of a USER table created before sessions were mapped into a
+-- separate USER_SESSION table, storing only the SHA-256 hash of each token.
+--
+-- The schema is normally recreated on startup (ddl-auto: create-drop), so this script is only
+-- needed to keep the data of a database created by an older version. Run it once, with the
+-- server stopped, before starting the new version with ddl-auto set to validate or none.
+--
+-- Tokens used to be non-expiring, so migrated sessions are given the default lifetime of 30 days
+-- from the time of migration. Users that were logged in stay logged in with their current token.
+
+CREATE TABLE IF NOT EXISTS user_session (
+    session_id   BIGINT      NOT NULL PRIMARY KEY,
+    user_id      BIGINT      NOT NULL,
+    token_hash   VARCHAR(64) NOT NULL,
+    created_at   TIMESTAMP   NOT NULL,
+    expires_at   TIMESTAMP   NOT NULL,
+    last_seen_at TIMESTAMP   NOT NULL,
+    CONSTRAINT user_session_user_fk FOREIGN KEY (user_id) REFERENCES user (user_id)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS user_session_token_hash_uk ON user_session (token_hash);
+
+CREATE INDEX IF NOT EXISTS user_session_expires_at_idx ON user_session (expires_at);
+
+INSERT INTO user_session (session_id, user_id, token_hash, created_at, expires_at, last_seen_at)
+SELECT NEXT VALUE FOR hibernate_sequence,
+       user_id,
+       LOWER(RAWTOHEX(HASH('SHA256', STRINGTOUTF8(token), 1))),
+       CURRENT_TIMESTAMP,
+       DATEADD('DAY', 30, CURRENT_TIMESTAMP),
+       CURRENT_TIMESTAMP
+FROM user
+WHERE token IS NOT NULL;
+
+ALTER TABLE user DROP COLUMN IF EXISTS token;
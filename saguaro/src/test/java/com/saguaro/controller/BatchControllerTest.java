@@ -0,0 +1,105 @@
+package com.saguaro.controller;
+
+import com.saguaro.exception.BatchFailedException;
+import com.saguaro.exception.PreconditionFailedException;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.service.BatchOperation;
+import com.saguaro.service.BatchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class BatchControllerTest {
+
+    @InjectMocks
+    private BatchController batchController;
+
+    @Mock
+    private BatchService batchService;
+
+    private MockMvc mvc;
+    private SaguaroPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(batchController)
+                .setControllerAdvice(new SaguaroExceptionHandler())
+                .build();
+
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
+        lenient().when(authentication.getPrincipal()).thenReturn(principal);
+        SecurityContextHolder.setContext(securityContext);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchSuccess() throws Exception {
+        when(batchService.execute(anyList(), eq(principal))).thenReturn(Arrays.asList(null, null));
+
+        mvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\": \"add-items\", \"id\": 3, \"items\": [\"bread\"], \"version\": 2}," +
+                                " {\"op\": \"share-list\", \"id\": \"$0\", \"username\": \"friend\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertEquals("{\"results\":[null,null]}",
+                        result.getResponse().getContentAsString()));
+
+        ArgumentCaptor<List<BatchOperation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(batchService).execute(captor.capture(), eq(principal));
+
+        List<BatchOperation> operations = captor.getValue();
+        assertEquals("3", operations.get(0).getId());
+        assertEquals(List.of("bread"), operations.get(0).getItems());
+        assertEquals(2L, operations.get(0).getVersion());
+        assertEquals("$0", operations.get(1).getId());
+        assertEquals("friend", operations.get(1).getUsername());
+    }
+
+    @Test
+    void testBatchFailureStatus() throws Exception {
+        when(batchService.execute(anyList(), eq(principal))).thenThrow(
+                new BatchFailedException(1, "share-list", new ResourceNotFoundException("not a friend")));
+
+        mvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testBatchPreconditionFailedStatus() throws Exception {
+        when(batchService.execute(anyList(), eq(principal))).thenThrow(
+                new BatchFailedException(0, "delete-list", new PreconditionFailedException("stale")));
+
+        mvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isPreconditionFailed());
+    }
+}
@@ -0,0 +1,141 @@
+package com.saguaro.controller;
+
+import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.service.CatalogService;
+import com.saguaro.service.CatalogTemplate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogControllerTest {
+
+    @InjectMocks
+    private CatalogController catalogController;
+
+    @Mock
+    private CatalogService catalogService;
+
+    private MockMvc mvc;
+    private SaguaroPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(catalogController)
+                .setControllerAdvice(new SaguaroExceptionHandler())
+                .build();
+
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
+        lenient().when(authentication.getPrincipal()).thenReturn(principal);
+        SecurityContextHolder.setContext(securityContext);
+    }
+
+    @Nested
+    class BrowseTest {
+
+        @Test
+        void testBrowseETag() throws Exception {
+            when(catalogService.getCatalogVersion()).thenReturn(255L);
+            when(catalogService.browse(1, 10)).thenReturn(new HashMap<>());
+
+            mvc.perform(get("/api/catalog")
+                            .queryParam("page", "1")
+                            .queryParam("size", "10"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"catalog-ff\""));
+        }
+
+        @Test
+        void testBrowseNotModified() throws Exception {
+            when(catalogService.getCatalogVersion()).thenReturn(255L);
+
+            mvc.perform(get("/api/catalog")
+                            .header("If-None-Match", "\"catalog-ff\""))
+                    .andExpect(status().isNotModified());
+
+            verify(catalogService, never()).browse(anyInt(), anyInt());
+        }
+    }
+
+    @Nested
+    class TemplateTest {
+
+        @Test
+        void testGetTemplateNotFound() throws Exception {
+            when(catalogService.getTemplate(anyLong())).thenThrow(ResourceNotFoundException.class);
+
+            mvc.perform(get("/api/catalog/3"))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void testPublish() throws Exception {
+            CatalogTemplate template = new CatalogTemplate(3L, "Weekly shop", "username", List.of("bread"),
+                    Instant.EPOCH, 0);
+            when(catalogService.publish(3L, principal)).thenReturn(template);
+
+            mvc.perform(post("/api/catalog/publish")
+                            .queryParam("id", "3"))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void testUnpublish() throws Exception {
+            mvc.perform(delete("/api/catalog/publish")
+                            .queryParam("id", "3"))
+                    .andExpect(status().isNoContent());
+
+            verify(catalogService).unpublish(3L, principal);
+        }
+    }
+
+    @Nested
+    class CreateListTest {
+
+        @Test
+        void testCreateList() throws Exception {
+            when(catalogService.createList(3L, "Groceries", principal)).thenReturn(new GroceryList());
+
+            mvc.perform(post("/api/catalog/3/create-list")
+                            .queryParam("name", "Groceries"))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void testCreateListNotFound() throws Exception {
+            when(catalogService.createList(3L, null, principal)).thenThrow(ResourceNotFoundException.class);
+
+            mvc.perform(post("/api/catalog/3/create-list"))
+                    .andExpect(status().isNotFound())
+                    .andExpect(result -> assertTrue(result.getResolvedException() instanceof
+                            ResourceNotFoundException));
+        }
+    }
+}
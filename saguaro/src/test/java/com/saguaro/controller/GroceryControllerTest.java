@@ -4,8 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.saguaro.entity.GroceryItem;
 import com.saguaro.entity.GroceryList;
 import com.saguaro.entity.User;
+import com.saguaro.exception.PreconditionFailedException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListHeader;
+import com.saguaro.security.SaguaroPrincipal;
 import com.saguaro.service.GroceryService;
+import com.saguaro.service.KeysetPage;
+import com.saguaro.service.ListExportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -20,16 +25,25 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,8 +55,12 @@ class GroceryControllerTest {
     @Mock
     private GroceryService groceryService;
 
+    @Mock
+    private ListExportService listExportService;
+
     private MockMvc mvc;
     private JacksonTester<GroceryList> jsonGroceryList;
+    private SaguaroPrincipal principal;
 
     @BeforeEach
     void setUp() {
@@ -52,10 +70,12 @@ class GroceryControllerTest {
                 .setControllerAdvice(new SaguaroExceptionHandler())
                 .build();
 
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+
         Authentication authentication = mock(Authentication.class);
         SecurityContext securityContext = mock(SecurityContext.class);
         lenient().when(securityContext.getAuthentication()).thenReturn(authentication);
-        lenient().when(authentication.getPrincipal()).thenReturn("username");
+        lenient().when(authentication.getPrincipal()).thenReturn(principal);
         SecurityContextHolder.setContext(securityContext);
     }
 
@@ -67,12 +87,138 @@ class GroceryControllerTest {
             HashMap<Long, String> lists = new HashMap<>();
             lists.put(1L, "name");
 
-            when(groceryService.getOwnedListNames(anyString())).thenReturn(lists);
+            when(groceryService.getOwnedListNames(any(SaguaroPrincipal.class))).thenReturn(lists);
 
             mvc.perform(get("/api/all-lists"))
                     .andExpect(status().isOk())
                     .andExpect(result -> assertEquals((new ObjectMapper()).writeValueAsString(lists), result.getResponse().getContentAsString()));
         }
+
+        @Test
+        void testGetListsPage() throws Exception {
+            Map<Long, String> lists = new LinkedHashMap<>();
+            lists.put(6L, "first");
+            lists.put(8L, "second");
+
+            when(groceryService.getOwnedListNames(principal, 5L, 2)).thenReturn(new KeysetPage<>(lists, 8L));
+
+            mvc.perform(get("/api/all-lists")
+                            .queryParam("after", "5")
+                            .queryParam("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(result -> assertEquals(Map.of("lists", Map.of("6", "first", "8", "second"), "next", 8),
+                            new ObjectMapper().readValue(result.getResponse().getContentAsString(), Map.class)));
+
+            verify(groceryService, never()).getOwnedListNames(any(SaguaroPrincipal.class));
+        }
+    }
+
+    @Nested
+    class SearchListsTest {
+
+        @Test
+        void testSearchLists() throws Exception {
+            Map<Long, String> lists = new TreeMap<>(Map.of(2L, "weekly", 7L, "party"));
+
+            when(groceryService.searchLists("whole mil", principal)).thenReturn(lists);
+
+            mvc.perform(get("/api/lists/search")
+                            .queryParam("q", "whole mil"))
+                    .andExpect(status().isOk())
+                    .andExpect(result -> assertEquals("{\"2\":\"weekly\",\"7\":\"party\"}",
+                            result.getResponse().getContentAsString()));
+        }
+
+        @Test
+        void testSearchListsMissingQuery() throws Exception {
+            mvc.perform(get("/api/lists/search"))
+                    .andExpect(status().isBadRequest());
+
+            verify(groceryService, never()).searchLists(anyString(), any(SaguaroPrincipal.class));
+        }
+    }
+
+    @Nested
+    class GetAllListsFullTest {
+
+        @Test
+        void testGetAllListsFullETag() throws Exception {
+            when(groceryService.getDashboardVersion(principal)).thenReturn(5L);
+            when(groceryService.getAllListNames(principal)).thenReturn(new HashMap<>());
+
+            mvc.perform(get("/api/v2/all-lists"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"1-5\""));
+        }
+
+        @Test
+        void testGetAllListsFullNotModified() throws Exception {
+            when(groceryService.getDashboardVersion(principal)).thenReturn(5L);
+
+            mvc.perform(get("/api/v2/all-lists")
+                            .header("If-None-Match", "\"1-5\""))
+                    .andExpect(status().isNotModified());
+
+            verify(groceryService, never()).getAllListNames(any(SaguaroPrincipal.class));
+        }
+
+        @Test
+        void testGetAllListsFullLastPage() throws Exception {
+            when(groceryService.getDashboardVersion(principal)).thenReturn(5L);
+            when(groceryService.getAllListNames(principal, 0L, 10))
+                    .thenReturn(new KeysetPage<>(Map.of("lists", Map.of(), "templates", Map.of()), null));
+
+            mvc.perform(get("/api/v2/all-lists")
+                            .queryParam("limit", "10"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"1-5\""))
+                    .andExpect(result -> {
+                        Map<?, ?> body = new ObjectMapper().readValue(result.getResponse().getContentAsString(),
+                                Map.class);
+
+                        assertTrue(body.containsKey("next"));
+                        assertNull(body.get("next"));
+                        assertEquals(Map.of(), body.get("lists"));
+                    });
+        }
+    }
+
+    @Nested
+    class GetItemsTest {
+
+        @Test
+        void testGetItemsPage() throws Exception {
+            when(groceryService.getListVersion(1L, principal)).thenReturn(3L);
+            when(groceryService.getItemNames(1L, 10L, 2, principal))
+                    .thenReturn(new KeysetPage<>(List.of("bread", "milk"), 12L));
+
+            mvc.perform(get("/api/list/1/items")
+                            .queryParam("after", "10")
+                            .queryParam("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"3\""))
+                    .andExpect(result -> assertEquals(Map.of("items", List.of("bread", "milk"), "next", 12),
+                            new ObjectMapper().readValue(result.getResponse().getContentAsString(), Map.class)));
+        }
+
+        @Test
+        void testGetItemsNotModified() throws Exception {
+            when(groceryService.getListVersion(1L, principal)).thenReturn(3L);
+
+            mvc.perform(get("/api/list/1/items")
+                            .header("If-None-Match", "\"3\""))
+                    .andExpect(status().isNotModified());
+
+            verify(groceryService, never()).getItemNames(anyLong(), anyLong(), anyInt(), any(SaguaroPrincipal.class));
+        }
+
+        @Test
+        void testGetItemsNotFound() throws Exception {
+            when(groceryService.getListVersion(1L, principal)).thenThrow(ResourceNotFoundException.class);
+
+            mvc.perform(get("/api/list/1/items"))
+                    .andExpect(status().isNotFound());
+        }
     }
 
     @Nested
@@ -85,7 +231,7 @@ class GroceryControllerTest {
             list.setName("name");
             list.addItem(new GroceryItem("Bread"));
 
-            when(groceryService.getListById(anyLong(), anyString())).thenReturn(list);
+            when(groceryService.getListById(anyLong(), any(SaguaroPrincipal.class))).thenReturn(list);
 
             mvc.perform(get("/api/list")
                             .queryParam("id", "1"))
@@ -95,7 +241,7 @@ class GroceryControllerTest {
 
         @Test
         void testGetListNotFound() throws Exception {
-            when(groceryService.getListById(anyLong(), anyString())).thenThrow(ResourceNotFoundException.class);
+            when(groceryService.getListById(anyLong(), any(SaguaroPrincipal.class))).thenThrow(ResourceNotFoundException.class);
 
             mvc.perform(get("/api/list")
                             .queryParam("id", "1"))
@@ -104,6 +250,82 @@ class GroceryControllerTest {
                             ResourceNotFoundException));
         }
 
+        @Test
+        void testGetListETag() throws Exception {
+            GroceryList list = new GroceryList();
+            ReflectionTestUtils.setField(list, "id", 1L);
+
+            when(groceryService.getListVersion(1L, principal)).thenReturn(3L);
+            when(groceryService.getListById(1L, principal)).thenReturn(list);
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @Test
+        void testGetListNotModified() throws Exception {
+            when(groceryService.getListVersion(1L, principal)).thenReturn(3L);
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1")
+                            .header("If-None-Match", "\"3\""))
+                    .andExpect(status().isNotModified());
+
+            verify(groceryService, never()).getListById(anyLong(), any(SaguaroPrincipal.class));
+        }
+
+        @Test
+        void testGetListModified() throws Exception {
+            GroceryList list = new GroceryList();
+            ReflectionTestUtils.setField(list, "id", 1L);
+
+            when(groceryService.getListVersion(1L, principal)).thenReturn(4L);
+            when(groceryService.getListById(1L, principal)).thenReturn(list);
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1")
+                            .header("If-None-Match", "\"3\""))
+                    .andExpect(status().isOk())
+                    .andExpect(result -> assertEquals(jsonGroceryList.write(list).getJson(), result.getResponse().getContentAsString()));
+        }
+
+        @Test
+        void testGetListModifiedBySharing() throws Exception {
+            GroceryList list = new GroceryList();
+            ReflectionTestUtils.setField(list, "id", 1L);
+
+            when(groceryService.getListVersion(1L, principal)).thenReturn(3L).thenReturn(4L);
+            when(groceryService.getListById(1L, principal)).thenReturn(list);
+            when(groceryService.shareList(1L, "friend", principal)).thenReturn(list);
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1"))
+                    .andExpect(header().string("ETag", "\"3\""));
+
+            mvc.perform(post("/api/share-list")
+                            .queryParam("id", "1")
+                            .queryParam("username", "friend"))
+                    .andExpect(status().isOk());
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1")
+                            .header("If-None-Match", "\"3\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"4\""));
+        }
+
+        @Test
+        void testGetListVersionNotFound() throws Exception {
+            when(groceryService.getListVersion(anyLong(), any(SaguaroPrincipal.class))).thenThrow(ResourceNotFoundException.class);
+
+            mvc.perform(get("/api/list")
+                            .queryParam("id", "1")
+                            .header("If-None-Match", "\"0\""))
+                    .andExpect(status().isNotFound());
+        }
+
         @Test
         void testGetListBadRequest() throws Exception {
             mvc.perform(get("/api/list")
@@ -112,6 +334,51 @@ class GroceryControllerTest {
         }
     }
 
+    @Nested
+    class ExportListTest {
+
+        @Test
+        void testExportList() throws Exception {
+            GroceryListHeader header = mock(GroceryListHeader.class);
+            when(header.getVersion()).thenReturn(3L);
+            when(listExportService.getListHeader(1L, principal)).thenReturn(header);
+            doAnswer(invocation -> {
+                invocation.getArgument(1, OutputStream.class).write("{}".getBytes());
+                return null;
+            }).when(listExportService).writeList(eq(header), any());
+
+            MvcResult result = mvc.perform(get("/api/list/1/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"3\""))
+                    .andExpect(response -> assertEquals("{}", response.getResponse().getContentAsString()));
+        }
+
+        @Test
+        void testExportListNotModified() throws Exception {
+            GroceryListHeader header = mock(GroceryListHeader.class);
+            when(header.getVersion()).thenReturn(3L);
+            when(listExportService.getListHeader(1L, principal)).thenReturn(header);
+
+            mvc.perform(get("/api/list/1/export")
+                            .header("If-None-Match", "\"3\""))
+                    .andExpect(status().isNotModified());
+
+            verify(listExportService, never()).writeList(any(), any());
+        }
+
+        @Test
+        void testExportListNotFound() throws Exception {
+            when(listExportService.getListHeader(1L, principal)).thenThrow(ResourceNotFoundException.class);
+
+            mvc.perform(get("/api/list/1/export"))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
     @Nested
     class CreateListTest {
 
@@ -121,8 +388,8 @@ class GroceryControllerTest {
             newList.setName("name");
             ReflectionTestUtils.setField(newList, "id", 1L);
 
-            // getPrinciple() is stubbed to return "username"
-            when(groceryService.createNewList(newList.getName(), "username", false)).thenReturn(newList);
+            // getPrincipal() is stubbed to return principal
+            when(groceryService.createNewList(newList.getName(), principal, false)).thenReturn(newList);
 
             mvc.perform(post("/api/create-list")
                             .queryParam("name", "name"))
@@ -137,8 +404,8 @@ class GroceryControllerTest {
             newList.setTemplate(true);
             ReflectionTestUtils.setField(newList, "id", 1L);
 
-            // getPrinciple() is stubbed to return "username"
-            when(groceryService.createNewList(newList.getName(), "username", true)).thenReturn(newList);
+            // getPrincipal() is stubbed to return principal
+            when(groceryService.createNewList(newList.getName(), principal, true)).thenReturn(newList);
 
             mvc.perform(post("/api/create-list")
                             .queryParam("name", "name")
@@ -158,8 +425,8 @@ class GroceryControllerTest {
             newList.addItem(item);
             ReflectionTestUtils.setField(newList, "id", 1L);
 
-            // getPrinciple() is stubbed to return "username"
-            when(groceryService.createNewList(newList.getName(), "username", 3)).thenReturn(newList);
+            // getPrincipal() is stubbed to return principal
+            when(groceryService.createNewList(newList.getName(), principal, 3)).thenReturn(newList);
 
             mvc.perform(post("/api/create-list")
                             .queryParam("name", "name")
@@ -170,7 +437,7 @@ class GroceryControllerTest {
 
         @Test
         void testCreateListWithTemplateNotFound() throws Exception {
-            when(groceryService.createNewList(anyString(), anyString(), anyLong())).thenThrow(ResourceNotFoundException.class);
+            when(groceryService.createNewList(anyString(), any(SaguaroPrincipal.class), anyLong())).thenThrow(ResourceNotFoundException.class);
 
             mvc.perform(post("/api/create-list")
                             .queryParam("name", "name")
@@ -188,6 +455,48 @@ class GroceryControllerTest {
         }
     }
 
+    @Nested
+    class ItemsTest {
+
+        @Test
+        void testAddItemsSuccess() throws Exception {
+            mvc.perform(post("/api/list/1/items")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"bread\", \"milk\"]"))
+                    .andExpect(status().isNoContent());
+
+            verify(groceryService, times(1)).addItems(1L, List.of("bread", "milk"), null, principal);
+        }
+
+        @Test
+        void testAddItemsNotFound() throws Exception {
+            willThrow(new ResourceNotFoundException(GroceryList.class, "1", "username"))
+                    .given(groceryService).addItems(anyLong(), anyList(), any(), any(SaguaroPrincipal.class));
+
+            mvc.perform(post("/api/list/1/items")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"bread\"]"))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void testRemoveItemsSuccess() throws Exception {
+            mvc.perform(delete("/api/list/1/items")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"bread\"]"))
+                    .andExpect(status().isNoContent());
+
+            verify(groceryService, times(1)).removeItems(1L, List.of("bread"), null, principal);
+        }
+
+        @Test
+        void testRemoveItemsBadRequestNoBody() throws Exception {
+            mvc.perform(delete("/api/list/1/items")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
     @Nested
     class SaveListTest {
 
@@ -198,8 +507,8 @@ class GroceryControllerTest {
             saveList.addItem(new GroceryItem("bread"));
             ReflectionTestUtils.setField(saveList, "id", 1L);
 
-            // getPrinciple() is stubbed to return "username"
-            when(groceryService.saveList(saveList, "username")).thenReturn(saveList);
+            // getPrincipal() is stubbed to return principal
+            when(groceryService.saveList(saveList, null, principal)).thenReturn(saveList);
 
             mvc.perform(put("/api/save-list")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -215,7 +524,7 @@ class GroceryControllerTest {
             saveList.addItem(new GroceryItem("bread"));
             ReflectionTestUtils.setField(saveList, "id", 1L);
 
-            when(groceryService.saveList(any(GroceryList.class), anyString())).thenThrow(ResourceNotFoundException.class);
+            when(groceryService.saveList(any(GroceryList.class), any(), any(SaguaroPrincipal.class))).thenThrow(ResourceNotFoundException.class);
 
             mvc.perform(put("/api/save-list")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -225,6 +534,56 @@ class GroceryControllerTest {
                             ResourceNotFoundException));
         }
 
+        @Test
+        void testSaveListIfMatch() throws Exception {
+            GroceryList saveList = new GroceryList();
+            saveList.addItem(new GroceryItem("bread"));
+            ReflectionTestUtils.setField(saveList, "id", 1L);
+
+            GroceryList saved = new GroceryList();
+            ReflectionTestUtils.setField(saved, "version", 4L);
+
+            when(groceryService.saveList(saveList, 3L, principal)).thenReturn(saved);
+
+            mvc.perform(put("/api/save-list")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(jsonGroceryList.write(saveList).getJson()))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"4\""));
+        }
+
+        @Test
+        void testSaveListPreconditionFailed() throws Exception {
+            GroceryList saveList = new GroceryList();
+            saveList.addItem(new GroceryItem("bread"));
+            ReflectionTestUtils.setField(saveList, "id", 1L);
+
+            when(groceryService.saveList(any(GroceryList.class), any(), any(SaguaroPrincipal.class)))
+                    .thenThrow(new PreconditionFailedException("modified"));
+
+            mvc.perform(put("/api/save-list")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(jsonGroceryList.write(saveList).getJson()))
+                    .andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        void testSaveListMalformedIfMatch() throws Exception {
+            GroceryList saveList = new GroceryList();
+            saveList.addItem(new GroceryItem("bread"));
+            ReflectionTestUtils.setField(saveList, "id", 1L);
+
+            mvc.perform(put("/api/save-list")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"1-5\"")
+                            .content(jsonGroceryList.write(saveList).getJson()))
+                    .andExpect(status().isPreconditionFailed());
+
+            verify(groceryService, never()).saveList(any(GroceryList.class), any(), any(SaguaroPrincipal.class));
+        }
+
         @Test
         void testSaveListBadRequestNoId() throws Exception {
             HashMap<String, String> bad = new HashMap<>();
@@ -266,7 +625,7 @@ class GroceryControllerTest {
         @Test
         void testEditListNameValid() throws Exception {
             GroceryList list = new GroceryList();
-            when(groceryService.editListName(anyLong(), anyString(), anyString())).thenReturn(list);
+            when(groceryService.editListName(anyLong(), anyString(), any(), any(SaguaroPrincipal.class))).thenReturn(list);
 
             mvc.perform(put("/api/edit-list-name")
                             .queryParam("id", "4")
@@ -277,7 +636,7 @@ class GroceryControllerTest {
 
         @Test
         void testEditListNameNotFound() throws Exception {
-            when(groceryService.editListName(anyLong(), anyString(), anyString())).thenThrow(ResourceNotFoundException.class);
+            when(groceryService.editListName(anyLong(), anyString(), any(), any(SaguaroPrincipal.class))).thenThrow(ResourceNotFoundException.class);
 
             mvc.perform(put("/api/edit-list-name")
                             .queryParam("id", "4")
@@ -306,10 +665,20 @@ class GroceryControllerTest {
                     .andExpect(status().isNoContent());
         }
 
+        @Test
+        void testDeleteListIfMatch() throws Exception {
+            mvc.perform(delete("/api/delete-list")
+                            .queryParam("id", "1")
+                            .header("If-Match", "W/\"2\""))
+                    .andExpect(status().isNoContent());
+
+            verify(groceryService, times(1)).removeList(1L, 2L, principal);
+        }
+
         @Test
         void testDeleteListNotFound() throws Exception {
             willThrow(new ResourceNotFoundException(GroceryList.class, "id", mock(User.class)))
-                    .given(groceryService).removeList(anyLong(), anyString());
+                    .given(groceryService).removeList(anyLong(), any(), any(SaguaroPrincipal.class));
 
             mvc.perform(delete("/api/delete-list")
                             .queryParam("id", "1"))
@@ -0,0 +1,95 @@
+package com.saguaro.controller;
+
+import com.saguaro.service.ItemService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ItemControllerTest {
+
+    @InjectMocks
+    private ItemController itemController;
+
+    @Mock
+    private ItemService itemService;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(itemController)
+                .setControllerAdvice(new SaguaroExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testSuggest() throws Exception {
+        when(itemService.suggest("mi", 10)).thenReturn(List.of("Milk", "Mint"));
+
+        mvc.perform(get("/api/items/suggest")
+                        .queryParam("prefix", "mi"))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertEquals("[\"Milk\",\"Mint\"]", result.getResponse().getContentAsString()));
+    }
+
+    @Test
+    void testSuggestLimit() throws Exception {
+        when(itemService.suggest("mi", 3)).thenReturn(List.of());
+
+        mvc.perform(get("/api/items/suggest")
+                        .queryParam("prefix", "mi")
+                        .queryParam("limit", "3"))
+                .andExpect(status().isOk());
+
+        verify(itemService).suggest("mi", 3);
+    }
+
+    @Test
+    void testSuggestBadRequest() throws Exception {
+        mvc.perform(get("/api/items/suggest"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testRecommend() throws Exception {
+        when(itemService.recommend(List.of("Bread", "Milk"), 10)).thenReturn(List.of("Butter", "Eggs"));
+
+        mvc.perform(get("/api/items/recommend")
+                        .queryParam("name", "Bread", "Milk"))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertEquals("[\"Butter\",\"Eggs\"]", result.getResponse().getContentAsString()));
+    }
+
+    @Test
+    void testRecommendLimit() throws Exception {
+        when(itemService.recommend(List.of("Bread"), 3)).thenReturn(List.of());
+
+        mvc.perform(get("/api/items/recommend")
+                        .queryParam("name", "Bread")
+                        .queryParam("limit", "3"))
+                .andExpect(status().isOk());
+
+        verify(itemService).recommend(List.of("Bread"), 3);
+    }
+
+    @Test
+    void testRecommendBadRequest() throws Exception {
+        mvc.perform(get("/api/items/recommend"))
+                .andExpect(status().isBadRequest());
+
+        verify(itemService, never()).recommend(anyCollection(), anyInt());
+    }
+}
@@ -5,6 +5,10 @@ import com.saguaro.entity.User;
 import com.saguaro.exception.InvalidLoginException;
 import com.saguaro.exception.InvalidParamException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.exception.ServiceUnavailableException;
+import com.saguaro.exception.TooManyRequestsException;
+import com.saguaro.security.LoginRateLimiter;
+import com.saguaro.security.SaguaroPrincipal;
 import com.saguaro.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -21,11 +25,14 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,8 +44,12 @@ class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private LoginRateLimiter loginRateLimiter;
+
     private MockMvc mvc;
     private JacksonTester<User> jsonUser;
+    private SaguaroPrincipal principal;
 
     @BeforeEach
     void setUp() {
@@ -47,6 +58,8 @@ class UserControllerTest {
         mvc = MockMvcBuilders.standaloneSetup(userController)
                 .setControllerAdvice(new SaguaroExceptionHandler())
                 .build();
+
+        principal = new SaguaroPrincipal(1L, "username", List.of());
     }
 
     @Nested
@@ -68,7 +81,9 @@ class UserControllerTest {
                             .queryParam("password", "password")
                     ).andExpect(status().isOk())
                     .andExpect(result -> assertEquals(result.getResponse().getContentAsString(),
-                            jsonUser.write(user).getJson()));
+                            jsonUser.write(user).getJson()))
+                    .andExpect(result -> assertFalse(result.getResponse().getContentAsString()
+                            .contains("dashboardVersion")));
         }
 
         @Test
@@ -82,6 +97,31 @@ class UserControllerTest {
                             instanceof InvalidLoginException))
                     .andExpect(status().isUnauthorized());
         }
+
+        @Test
+        void testLoginRateLimited() throws Exception {
+            doThrow(new TooManyRequestsException("Too many attempts", 30))
+                    .when(loginRateLimiter).acquire(eq("username"), anyString());
+
+            mvc.perform(post("/login")
+                            .queryParam("username", "username")
+                            .queryParam("password", "password")
+                    ).andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "30"));
+
+            verify(userService, never()).login(anyString(), anyString());
+        }
+
+        @Test
+        void testLoginOverloaded() throws Exception {
+            when(userService.login(anyString(), anyString())).thenThrow(ServiceUnavailableException.class);
+
+            mvc.perform(post("/login")
+                            .queryParam("username", "username")
+                            .queryParam("password", "password")
+                    ).andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        }
     }
 
     @Nested
@@ -187,18 +227,11 @@ class UserControllerTest {
     class TestLogout {
         @Test
         void testLogout() throws Exception {
-            Authentication authentication = mock(Authentication.class);
-            SecurityContext securityContext = mock(SecurityContext.class);
-            when(securityContext.getAuthentication()).thenReturn(authentication);
-            when(authentication.getPrincipal()).thenReturn("username");
-            SecurityContextHolder.setContext(securityContext);
-
-
             mvc.perform(post("/logout")
-                    .header("Authentication", "token")
+                    .header("Authorization", "Bearer token")
             ).andExpect(status().isNoContent());
 
-            verify(userService, times(1)).logout(anyString());
+            verify(userService, times(1)).logout("token");
         }
     }
 
@@ -225,9 +258,9 @@ class UserControllerTest {
         @Test
         void testEditUserValid() throws Exception {
             when(securityContext.getAuthentication()).thenReturn(authentication);
-            when(authentication.getPrincipal()).thenReturn("username");
+            when(authentication.getPrincipal()).thenReturn(principal);
 
-            when(userService.edit("name", "password", "username"))
+            when(userService.edit("name", "password", principal))
                     .thenReturn(user);
 
             mvc.perform(put("/api/edit-user")
@@ -243,9 +276,9 @@ class UserControllerTest {
         @Test
         void testEditUserUsernameIgnored() throws Exception {
             when(securityContext.getAuthentication()).thenReturn(authentication);
-            when(authentication.getPrincipal()).thenReturn("username");
+            when(authentication.getPrincipal()).thenReturn(principal);
 
-            when(userService.edit("name", "password", "username"))
+            when(userService.edit("name", "password", principal))
                     .thenReturn(user);
 
             mvc.perform(put("/api/edit-user")
@@ -262,9 +295,9 @@ class UserControllerTest {
         @Test
         void testEditUserNullFields() throws Exception {
             when(securityContext.getAuthentication()).thenReturn(authentication);
-            when(authentication.getPrincipal()).thenReturn("username");
+            when(authentication.getPrincipal()).thenReturn(principal);
 
-            when(userService.edit(null, null, "username"))
+            when(userService.edit(null, null, principal))
                     .thenReturn(user);
 
             mvc.perform(put("/api/edit-user")
@@ -308,7 +341,7 @@ class UserControllerTest {
             authentication = mock(Authentication.class);
             securityContext = mock(SecurityContext.class);
             when(securityContext.getAuthentication()).thenReturn(authentication);
-            when(authentication.getPrincipal()).thenReturn("username");
+            when(authentication.getPrincipal()).thenReturn(principal);
             SecurityContextHolder.setContext(securityContext);
         }
 
@@ -318,7 +351,7 @@ class UserControllerTest {
             User friend = new User();
             user.addFriend(friend);
 
-            when(userService.addFriend("friend", "username")).thenReturn(user);
+            when(userService.addFriend("friend", principal)).thenReturn(user);
 
             mvc.perform(post("/api/add-friend")
                             .queryParam("username", "friend")
@@ -333,7 +366,7 @@ class UserControllerTest {
             User friend = new User();
             user.addFriend(friend);
 
-            when(userService.addFriend("friend", "username")).thenThrow(ResourceNotFoundException.class);
+            when(userService.addFriend("friend", principal)).thenThrow(ResourceNotFoundException.class);
 
             mvc.perform(post("/api/add-friend")
                             .queryParam("username", "friend")
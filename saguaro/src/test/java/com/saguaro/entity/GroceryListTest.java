@@ -8,6 +8,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -129,6 +130,88 @@ class GroceryListTest {
         }
     }
 
+    @Nested
+    class ContainsItemTest {
+
+        private GroceryList list;
+        private GroceryItem item;
+
+        @BeforeEach
+        void setUpContainsItem() {
+            list = new GroceryList();
+            item = new GroceryItem("Bread");
+        }
+
+        @Test
+        void testContainsAddedItem() {
+            list.addItem(item);
+
+            assertTrue(list.containsItem(new GroceryItem("Bread")));
+            assertFalse(list.containsItem(new GroceryItem("Milk")));
+        }
+
+        @Test
+        void testContainsAfterItemsReplaced() {
+            list.addItem(new GroceryItem("Milk"));
+            ReflectionTestUtils.setField(list, "items", new ArrayList<>(List.of(item)));
+
+            assertTrue(list.containsItem(item));
+            assertFalse(list.containsItem(new GroceryItem("Milk")));
+        }
+
+        @Test
+        void testItemsUnmodifiable() {
+            assertThrows(UnsupportedOperationException.class, () -> list.getItems().add(item));
+        }
+    }
+
+    @Nested
+    class RetainItemsTest {
+
+        private GroceryList list;
+        private GroceryItem bread;
+        private GroceryItem milk;
+        private GroceryItem eggs;
+
+        @BeforeEach
+        void setUpRetainItems() {
+            list = new GroceryList();
+            bread = mock(GroceryItem.class);
+            milk = mock(GroceryItem.class);
+            eggs = mock(GroceryItem.class);
+
+            list.addItem(bread);
+            list.addItem(milk);
+            list.addItem(eggs);
+        }
+
+        @Test
+        void testRetainSomeItems() {
+            list.retainItems(Set.of(eggs, bread));
+
+            assertEquals(List.of(bread, eggs), list.getItems());
+            assertFalse(list.containsItem(milk));
+            verify(milk, times(1)).removeList(list);
+            verify(bread, times(0)).removeList(list);
+        }
+
+        @Test
+        void testRetainAllItems() {
+            list.retainItems(Set.of(bread, milk, eggs));
+
+            assertEquals(List.of(bread, milk, eggs), list.getItems());
+            verify(milk, times(0)).removeList(list);
+        }
+
+        @Test
+        void testRetainNoItems() {
+            list.retainItems(Set.of());
+
+            assertEquals(0, list.getItems().size());
+            assertFalse(list.containsItem(bread));
+        }
+    }
+
     @Nested
     class AddSharedUserTest {
         GroceryList list;
@@ -0,0 +1,93 @@
+package com.saguaro.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListAccessCacheTest {
+
+    private AtomicLong clock;
+    private ListAccessCache listAccessCache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        listAccessCache = new ListAccessCache(2, 100, clock::get);
+    }
+
+    @Test
+    void testContainsCachedList() {
+        listAccessCache.add(1L, 10L);
+        listAccessCache.add(1L, 11L);
+
+        assertTrue(listAccessCache.contains(1L, 10L));
+        assertTrue(listAccessCache.contains(1L, 11L));
+        assertEquals(2, listAccessCache.getHitCount());
+        assertEquals(0, listAccessCache.getMissCount());
+    }
+
+    @Test
+    void testContainsUncachedList() {
+        listAccessCache.add(1L, 10L);
+
+        assertFalse(listAccessCache.contains(1L, 11L));
+        assertFalse(listAccessCache.contains(2L, 10L));
+        assertEquals(0, listAccessCache.getHitCount());
+        assertEquals(2, listAccessCache.getMissCount());
+    }
+
+    @Test
+    void testExpiredEntry() {
+        listAccessCache.add(1L, 10L);
+        clock.set(100);
+
+        assertFalse(listAccessCache.contains(1L, 10L));
+        assertEquals(0, listAccessCache.size());
+    }
+
+    @Test
+    void testAddAfterExpiryStartsNewEntry() {
+        listAccessCache.add(1L, 10L);
+        clock.set(100);
+        listAccessCache.add(1L, 11L);
+
+        assertFalse(listAccessCache.contains(1L, 10L));
+        assertTrue(listAccessCache.contains(1L, 11L));
+    }
+
+    @Test
+    void testInvalidateUsers() {
+        listAccessCache.add(1L, 10L);
+        listAccessCache.add(2L, 10L);
+        listAccessCache.invalidate(Set.of(1L));
+
+        assertFalse(listAccessCache.contains(1L, 10L));
+        assertTrue(listAccessCache.contains(2L, 10L));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        listAccessCache.add(1L, 10L);
+        listAccessCache.add(2L, 10L);
+        listAccessCache.contains(1L, 10L); // user 2 is now the least recently used
+        listAccessCache.add(3L, 10L);
+
+        assertEquals(2, listAccessCache.size());
+        assertTrue(listAccessCache.contains(1L, 10L));
+        assertFalse(listAccessCache.contains(2L, 10L));
+        assertTrue(listAccessCache.contains(3L, 10L));
+    }
+
+    @Test
+    void testInvalidateIgnoresUnknownUsers() {
+        listAccessCache.add(1L, 10L);
+        listAccessCache.invalidate(List.of(2L, 3L));
+
+        assertEquals(1, listAccessCache.size());
+    }
+}
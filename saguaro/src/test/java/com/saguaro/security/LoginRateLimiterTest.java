@@ -0,0 +1,109 @@
+package com.saguaro.security;
+
+import com.saguaro.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    private AtomicLong clock;
+    private LoginRateLimiter loginRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        // 2 attempts per username, 4 per address, each regaining 1 attempt per minute
+        loginRateLimiter = new LoginRateLimiter(2, 1, 4, 1, 64, clock::get);
+    }
+
+    @Test
+    void testAllowsBurstUpToCapacity() throws Exception {
+        loginRateLimiter.acquire("user", "address");
+        loginRateLimiter.acquire("user", "address");
+
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("user", "address"));
+        assertEquals(1, loginRateLimiter.getRejectionCount());
+    }
+
+    @Test
+    void testLimitsAddressAcrossUsernames() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            loginRateLimiter.acquire("user" + i, "address");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("other", "address"));
+        loginRateLimiter.acquire("other", "elsewhere");
+    }
+
+    @Test
+    void testLimitsUsernameAcrossAddresses() throws Exception {
+        loginRateLimiter.acquire("user", "first");
+        loginRateLimiter.acquire("user", "second");
+
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("user", "third"));
+    }
+
+    @Test
+    void testRejectedUsernameKeepsAddressAttempts() throws Exception {
+        loginRateLimiter.acquire("user", "address");
+        loginRateLimiter.acquire("user", "address");
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("user", "address"));
+        }
+
+        // only the two accepted attempts were taken from the address
+        loginRateLimiter.acquire("other", "address");
+        loginRateLimiter.acquire("other", "address");
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("third", "address"));
+    }
+
+    @Test
+    void testRejectedAddressKeepsUsernameAttempts() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            loginRateLimiter.acquire("user" + i, "address");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("user", "address"));
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("user", "address"));
+
+        loginRateLimiter.acquire("user", "elsewhere");
+        loginRateLimiter.acquire("user", "elsewhere");
+    }
+
+    @Test
+    void testRefillsOverTime() throws Exception {
+        loginRateLimiter.acquire("user", "address");
+        loginRateLimiter.acquire("user", "address");
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> loginRateLimiter.acquire("user", "address"));
+        assertEquals(60, e.getRetryAfterSeconds());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        loginRateLimiter.acquire("user", "address");
+    }
+
+    @Test
+    void testNullUsernameNotLimited() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            loginRateLimiter.acquire(null, "address" + i);
+        }
+
+        assertEquals(4, loginRateLimiter.size());
+    }
+
+    @Test
+    void testTrackedKeysBounded() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            loginRateLimiter.acquire("user" + i, "address" + i);
+        }
+
+        assertTrue(loginRateLimiter.size() <= 2 * 64);
+    }
+}
@@ -0,0 +1,102 @@
+package com.saguaro.security;
+
+import com.saguaro.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void cleanUp() {
+        passwordHasher.destroy();
+    }
+
+    private PasswordEncoder encoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hash:" + rawPassword);
+            }
+        };
+    }
+
+    @Test
+    void testEncodeAndMatches() throws Exception {
+        passwordHasher = new PasswordHasher(encoder(new CountDownLatch(1), new CountDownLatch(0)), 1, 1);
+
+        String hash = passwordHasher.encode("password");
+
+        assertEquals("hash:password", hash);
+        assertTrue(passwordHasher.matches("password", hash));
+        assertFalse(passwordHasher.matches("wrong", hash));
+    }
+
+    @Test
+    void testRejectsWhenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        passwordHasher = new PasswordHasher(encoder(started, release), 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> running = callers.submit(() -> passwordHasher.encode("first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> queued = callers.submit(() -> passwordHasher.encode("second"));
+
+            while (passwordHasher.getQueueDepth() < 1) {
+                Thread.sleep(1);
+            }
+
+            assertThrows(ServiceUnavailableException.class, () -> passwordHasher.encode("third"));
+            assertEquals(1, passwordHasher.getRejectionCount());
+
+            release.countDown();
+            assertEquals("hash:first", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash:second", queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testEncoderExceptionRethrown() {
+        passwordHasher = new PasswordHasher(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new IllegalArgumentException("bad password");
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return false;
+            }
+        }, 1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> passwordHasher.encode("password"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.saguaro.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedTokenServiceTest {
+
+    private MutableClock clock;
+    private byte[] key;
+    private SaguaroPrincipal principal;
+    private SignedTokenService signedTokenService;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2021-12-01T00:00:00Z"));
+        key = new byte[32];
+        Arrays.fill(key, (byte) 7);
+        principal = new SaguaroPrincipal(42L, "thechosenone", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        signedTokenService = new SignedTokenService(true, key, Duration.ofMinutes(60), clock);
+    }
+
+    @Test
+    void testVerifyIssuedToken() {
+        SaguaroPrincipal actual = signedTokenService.verify(signedTokenService.issue(principal));
+
+        assertEquals(42L, actual.getId());
+        assertEquals("thechosenone", actual.getUsername());
+        assertEquals("ROLE_USER", actual.getAuthorities().get(0).getAuthority());
+    }
+
+    @Test
+    void testIssuedTokensDiffer() {
+        assertNotEquals(signedTokenService.issue(principal), signedTokenService.issue(principal));
+    }
+
+    @Test
+    void testExpiredToken() {
+        String token = signedTokenService.issue(principal);
+        clock.advance(Duration.ofMinutes(60));
+
+        assertNull(signedTokenService.verify(token));
+    }
+
+    @Test
+    void testTamperedToken() {
+        String token = signedTokenService.issue(principal);
+        String other = signedTokenService.issue(new SaguaroPrincipal(1L, "ronald", List.of()));
+
+        // the payload of one token with the signature of another
+        String forged = other.substring(0, other.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertNull(signedTokenService.verify(forged));
+        assertNull(signedTokenService.verify(token.substring(0, token.length() - 2)));
+    }
+
+    @Test
+    void testTokenSignedWithOtherKey() {
+        byte[] otherKey = new byte[32];
+        SignedTokenService other = new SignedTokenService(true, otherKey, Duration.ofMinutes(60), clock);
+
+        assertNull(signedTokenService.verify(other.issue(principal)));
+    }
+
+    @Test
+    void testNotSignedToken() {
+        assertNull(signedTokenService.verify("6f1ed002-ab5d-42f6-9c6b-0e5e1b8f8e4d"));
+        assertNull(signedTokenService.verify("not.base64!"));
+        assertFalse(signedTokenService.revoke("6f1ed002-ab5d-42f6-9c6b-0e5e1b8f8e4d"));
+    }
+
+    @Test
+    void testDisabled() {
+        SignedTokenService disabled = new SignedTokenService(false, key, Duration.ofMinutes(60), clock);
+
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.verify(signedTokenService.issue(principal)));
+    }
+
+    @Test
+    void testRevokedToken() {
+        String token = signedTokenService.issue(principal);
+        String other = signedTokenService.issue(principal);
+
+        assertTrue(signedTokenService.revoke(token));
+
+        assertNull(signedTokenService.verify(token));
+        assertNotNull(signedTokenService.verify(other));
+    }
+
+    @Test
+    void testPurgeExpiredRevocations() {
+        signedTokenService.revoke(signedTokenService.issue(principal));
+        clock.advance(Duration.ofMinutes(30));
+        signedTokenService.revoke(signedTokenService.issue(principal));
+
+        assertEquals(0, signedTokenService.purgeRevocations());
+        clock.advance(Duration.ofMinutes(30));
+
+        assertEquals(1, signedTokenService.purgeRevocations());
+        assertEquals(1, signedTokenService.getRevokedCount());
+    }
+
+    @Test
+    void testShortKeyRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SignedTokenService(true, new byte[16], Duration.ofMinutes(60), clock));
+    }
+
+    /**
+     * A Clock that only moves when told to.
+     */
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.saguaro.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCacheTest {
+
+    private AtomicLong clock;
+    private TokenCache tokenCache;
+    private SaguaroPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        tokenCache = new TokenCache(2, 100, clock::get);
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+    }
+
+    @Test
+    void testGetCachedToken() {
+        tokenCache.put("token", principal, tokenCache.generation());
+
+        assertEquals(principal, tokenCache.get("token"));
+        assertEquals(1, tokenCache.getHitCount());
+        assertEquals(0, tokenCache.getMissCount());
+    }
+
+    @Test
+    void testGetUncachedToken() {
+        assertNull(tokenCache.get("token"));
+        assertEquals(0, tokenCache.getHitCount());
+        assertEquals(1, tokenCache.getMissCount());
+    }
+
+    @Test
+    void testExpiredToken() {
+        tokenCache.put("token", principal, tokenCache.generation());
+        clock.set(100);
+
+        assertNull(tokenCache.get("token"));
+        assertEquals(0, tokenCache.size());
+    }
+
+    @Test
+    void testInvalidateToken() {
+        tokenCache.put("token", principal, tokenCache.generation());
+        tokenCache.invalidate("token");
+
+        assertNull(tokenCache.get("token"));
+    }
+
+    @Test
+    void testInvalidateNullToken() {
+        tokenCache.put("token", principal, tokenCache.generation());
+        tokenCache.invalidate(null);
+
+        assertEquals(principal, tokenCache.get("token"));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        tokenCache.put("first", principal, tokenCache.generation());
+        tokenCache.put("second", principal, tokenCache.generation());
+        tokenCache.get("first"); // second is now the least recently used
+        tokenCache.put("third", principal, tokenCache.generation());
+
+        assertEquals(2, tokenCache.size());
+        assertNotNull(tokenCache.get("first"));
+        assertNull(tokenCache.get("second"));
+        assertNotNull(tokenCache.get("third"));
+    }
+
+    @Test
+    void testPutAfterInvalidateIsDropped() {
+        long generation = tokenCache.generation();
+        // a logout invalidates the token while its principal is being looked up
+        tokenCache.invalidate("token");
+
+        assertFalse(tokenCache.put("token", principal, generation));
+        assertNull(tokenCache.get("token"));
+        assertEquals(0, tokenCache.size());
+    }
+
+    @Test
+    void testPutAfterInvalidateIsDroppedWhenConcurrent() throws InterruptedException {
+        CountDownLatch looked = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        Thread lookup = new Thread(() -> {
+            long generation = tokenCache.generation();
+            looked.countDown();
+
+            try {
+                invalidated.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            tokenCache.put("token", principal, generation);
+        });
+        lookup.start();
+
+        looked.await();
+        tokenCache.invalidate("token");
+        invalidated.countDown();
+        lookup.join();
+
+        assertNull(tokenCache.get("token"));
+    }
+
+    @Test
+    void testPutWithCurrentGeneration() {
+        tokenCache.invalidate("other");
+
+        assertTrue(tokenCache.put("token", principal, tokenCache.generation()));
+        assertEquals(principal, tokenCache.get("token"));
+    }
+}
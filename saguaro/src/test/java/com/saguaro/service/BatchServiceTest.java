@@ -0,0 +1,157 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.GroceryList;
+import com.saguaro.exception.BatchFailedException;
+import com.saguaro.exception.InvalidParamException;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.security.SaguaroPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchServiceTest {
+
+    @Mock
+    private GroceryService groceryService;
+
+    private BatchService batchService;
+    private SaguaroPrincipal principal;
+    private GroceryList created;
+
+    @BeforeEach
+    void setUp() {
+        batchService = new BatchService(groceryService, 3);
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+
+        created = new GroceryList();
+        ReflectionTestUtils.setField(created, "id", 7L);
+    }
+
+    private BatchOperation createList(String name) {
+        BatchOperation operation = new BatchOperation("create-list", null);
+        operation.setName(name);
+
+        return operation;
+    }
+
+    @Nested
+    class ExecuteTest {
+
+        @Test
+        void testCreateRenameShare() throws Exception {
+            BatchOperation rename = new BatchOperation("edit-list-name", "$0");
+            rename.setName("Renamed");
+            BatchOperation share = new BatchOperation("share-list", "$0");
+            share.setUsername("friend");
+
+            when(groceryService.createNewList("New list", principal, false)).thenReturn(created);
+            when(groceryService.editListName(7L, "Renamed", null, principal)).thenReturn(created);
+            when(groceryService.shareList(7L, "friend", principal)).thenReturn(created);
+
+            List<Object> results = batchService.execute(List.of(createList("New list"), rename, share), principal);
+
+            assertEquals(List.of(created, created, created), results);
+        }
+
+        @Test
+        void testCreateFromTemplateAndAddItems() throws Exception {
+            BatchOperation create = createList("From template");
+            create.setTemplateId("3");
+            BatchOperation add = new BatchOperation("add-items", "$0");
+            add.setItems(List.of("bread"));
+            add.setVersion(2L);
+
+            when(groceryService.createNewList("From template", principal, 3L)).thenReturn(created);
+
+            List<Object> results = batchService.execute(List.of(create, add), principal);
+
+            verify(groceryService).addItems(7L, List.of("bread"), 2L, principal);
+            assertEquals(Arrays.asList(created, null), results);
+        }
+
+        @Test
+        void testFailureStopsBatch() throws Exception {
+            BatchOperation share = new BatchOperation("share-list", "$0");
+            share.setUsername("stranger");
+            BatchOperation delete = new BatchOperation("delete-list", "$0");
+
+            when(groceryService.createNewList("New list", principal, false)).thenReturn(created);
+            when(groceryService.shareList(7L, "stranger", principal)).thenThrow(ResourceNotFoundException.class);
+
+            BatchFailedException e = assertThrows(BatchFailedException.class,
+                    () -> batchService.execute(List.of(createList("New list"), share, delete), principal));
+
+            assertEquals(1, e.getIndex());
+            assertEquals("share-list", e.getOperation());
+            assertTrue(e.getCause() instanceof ResourceNotFoundException);
+            verify(groceryService, never()).removeList(anyLong(), any(), any(SaguaroPrincipal.class));
+        }
+
+        @Test
+        void testTooManyOperations() {
+            List<BatchOperation> operations = List.of(createList("a"), createList("b"), createList("c"),
+                    createList("d"));
+
+            assertThrows(InvalidParamException.class, () -> batchService.execute(operations, principal));
+            verifyNoInteractions(groceryService);
+        }
+    }
+
+    @Nested
+    class InvalidOperationTest {
+
+        private void assertInvalid(BatchOperation operation) {
+            BatchFailedException e = assertThrows(BatchFailedException.class,
+                    () -> batchService.execute(List.of(operation), principal));
+
+            assertTrue(e.getCause() instanceof InvalidParamException);
+            assertEquals(0, e.getIndex());
+        }
+
+        @Test
+        void testUnknownOperation() {
+            assertInvalid(new BatchOperation("drop-tables", "1"));
+            assertInvalid(new BatchOperation(null, "1"));
+        }
+
+        @Test
+        void testMissingParameters() {
+            assertInvalid(createList(" "));
+            assertInvalid(new BatchOperation("delete-list", null));
+            assertInvalid(new BatchOperation("add-items", "1"));
+            assertInvalid(new BatchOperation("share-list", "1"));
+        }
+
+        @Test
+        void testBadReferences() {
+            assertInvalid(new BatchOperation("delete-list", "one"));
+            assertInvalid(new BatchOperation("delete-list", "$0"));
+            assertInvalid(new BatchOperation("delete-list", "$x"));
+        }
+
+        @Test
+        void testReferenceToOperationWithoutList() throws Exception {
+            BatchOperation delete = new BatchOperation("delete-list", "1");
+            BatchOperation rename = new BatchOperation("edit-list-name", "$0");
+            rename.setName("Renamed");
+
+            BatchFailedException e = assertThrows(BatchFailedException.class,
+                    () -> batchService.execute(List.of(delete, rename), principal));
+
+            assertEquals(1, e.getIndex());
+            assertTrue(e.getCause() instanceof InvalidParamException);
+        }
+    }
+}
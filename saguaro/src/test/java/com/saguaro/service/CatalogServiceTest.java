@@ -0,0 +1,187 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.GroceryItem;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.entity.PublishedTemplate;
+import com.saguaro.entity.User;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.PublishedTemplateRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogServiceTest {
+
+    @InjectMocks
+    private CatalogService catalogService;
+
+    @Mock
+    private PublishedTemplateRepository publishedTemplateRepository;
+
+    @Mock
+    private GroceryListRepository groceryListRepository;
+
+    @Mock
+    private GroceryService groceryService;
+
+    @Mock
+    private TemplateCatalog templateCatalog;
+
+    private SaguaroPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+    }
+
+    @Nested
+    class PublishTest {
+
+        GroceryList template;
+
+        @BeforeEach
+        void setUpPublish() {
+            User owner = mock(User.class);
+            lenient().when(owner.getId()).thenReturn(1L);
+
+            template = mock(GroceryList.class);
+            lenient().when(template.getOwner()).thenReturn(owner);
+            lenient().when(template.isTemplate()).thenReturn(true);
+            lenient().when(template.getName()).thenReturn("Weekly shop");
+            lenient().when(template.getItems()).thenReturn(List.of(new GroceryItem("bread"), new GroceryItem("milk")));
+        }
+
+        @Test
+        void testPublishNewTemplate() throws Exception {
+            when(groceryListRepository.findGroceryListById(3L)).thenReturn(template);
+            when(publishedTemplateRepository.save(any(PublishedTemplate.class))).thenAnswer(ans -> ans.getArgument(0));
+
+            CatalogTemplate published = catalogService.publish(3L, principal);
+
+            assertEquals(3L, published.getId());
+            assertEquals("Weekly shop", published.getName());
+            assertEquals("username", published.getPublisher());
+            assertEquals(List.of("bread", "milk"), published.getItems());
+            assertEquals(0, published.getRevision());
+            verify(templateCatalog).put(published);
+        }
+
+        @Test
+        void testRepublishTemplate() throws Exception {
+            PublishedTemplate existing = new PublishedTemplate(3L, 1L, "username", "Old name",
+                    List.of("eggs"), Instant.EPOCH);
+            when(groceryListRepository.findGroceryListById(3L)).thenReturn(template);
+            when(publishedTemplateRepository.findPublishedTemplateById(3L)).thenReturn(existing);
+
+            CatalogTemplate published = catalogService.publish(3L, principal);
+
+            assertEquals("Weekly shop", published.getName());
+            assertEquals(List.of("bread", "milk"), published.getItems());
+            assertEquals(1, published.getRevision());
+            verify(publishedTemplateRepository, never()).save(any(PublishedTemplate.class));
+            verify(templateCatalog).put(published);
+        }
+
+        @Test
+        void testPublishNotTemplate() {
+            when(groceryListRepository.findGroceryListById(3L)).thenReturn(template);
+            when(template.isTemplate()).thenReturn(false);
+
+            assertThrows(ResourceNotFoundException.class, () -> catalogService.publish(3L, principal));
+            verify(templateCatalog, never()).put(any());
+        }
+
+        @Test
+        void testPublishNotOwned() {
+            when(groceryListRepository.findGroceryListById(3L)).thenReturn(template);
+
+            assertThrows(ResourceNotFoundException.class,
+                    () -> catalogService.publish(3L, new SaguaroPrincipal(2L, "other", List.of())));
+            verify(templateCatalog, never()).put(any());
+        }
+
+        @Test
+        void testPublishNotFound() {
+            assertThrows(ResourceNotFoundException.class, () -> catalogService.publish(3L, principal));
+        }
+    }
+
+    @Nested
+    class UnpublishTest {
+
+        @Test
+        void testUnpublishSuccess() throws Exception {
+            PublishedTemplate existing = new PublishedTemplate(3L, 1L, "username", "Weekly shop",
+                    List.of(), Instant.EPOCH);
+            when(publishedTemplateRepository.findPublishedTemplateById(3L)).thenReturn(existing);
+
+            catalogService.unpublish(3L, principal);
+
+            verify(publishedTemplateRepository).delete(existing);
+            verify(templateCatalog).remove(3L);
+        }
+
+        @Test
+        void testUnpublishNotPublisher() {
+            PublishedTemplate existing = new PublishedTemplate(3L, 2L, "other", "Weekly shop",
+                    List.of(), Instant.EPOCH);
+            when(publishedTemplateRepository.findPublishedTemplateById(3L)).thenReturn(existing);
+
+            assertThrows(ResourceNotFoundException.class, () -> catalogService.unpublish(3L, principal));
+            verify(templateCatalog, never()).remove(anyLong());
+        }
+    }
+
+    @Nested
+    class CreateListTest {
+
+        CatalogTemplate template;
+
+        @BeforeEach
+        void setUpCreateList() {
+            template = new CatalogTemplate(3L, "Weekly shop", "other", List.of("bread", "milk"), Instant.EPOCH, 0);
+        }
+
+        @Test
+        void testCreateListFromCatalogOnly() throws Exception {
+            GroceryList list = new GroceryList();
+            when(templateCatalog.get(3L)).thenReturn(template);
+            when(groceryService.createNewList("Groceries", principal, List.of("bread", "milk"))).thenReturn(list);
+
+            assertSame(list, catalogService.createList(3L, "Groceries", principal));
+            verifyNoInteractions(groceryListRepository, publishedTemplateRepository);
+        }
+
+        @Test
+        void testCreateListDefaultsToTemplateName() throws Exception {
+            when(templateCatalog.get(3L)).thenReturn(template);
+
+            catalogService.createList(3L, " ", principal);
+
+            ArgumentCaptor<String> name = ArgumentCaptor.forClass(String.class);
+            verify(groceryService).createNewList(name.capture(), eq(principal), anyList());
+            assertEquals("Weekly shop", name.getValue());
+        }
+
+        @Test
+        void testCreateListNotPublished() {
+            assertThrows(ResourceNotFoundException.class, () -> catalogService.createList(3L, null, principal));
+            verifyNoInteractions(groceryService);
+        }
+    }
+}
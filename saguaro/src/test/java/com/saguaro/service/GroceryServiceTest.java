@@ -3,10 +3,15 @@ package com.saguaro.service;
 import com.saguaro.entity.GroceryItem;
 import com.saguaro.entity.GroceryList;
 import com.saguaro.entity.User;
+import com.saguaro.exception.PreconditionFailedException;
 import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryItemCount;
 import com.saguaro.repository.GroceryItemRepository;
 import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.GroceryListSummary;
 import com.saguaro.repository.UserRepository;
+import com.saguaro.security.ListAccessCache;
+import com.saguaro.security.SaguaroPrincipal;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -17,8 +22,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -39,7 +47,20 @@ class GroceryServiceTest {
     @Mock
     GroceryListRepository groceryListRepository;
 
+    @Mock
+    ListAccessCache listAccessCache;
+
+    @Mock
+    ItemSuggestionIndex itemSuggestionIndex;
+
+    @Mock
+    ListSearchIndex listSearchIndex;
+
+    @Mock
+    ItemCooccurrenceIndex itemCooccurrenceIndex;
+
     User user;
+    SaguaroPrincipal principal;
     GroceryList list = mock(GroceryList.class);
 
     private AutoCloseable closeable;
@@ -51,9 +72,11 @@ class GroceryServiceTest {
         list = mock(GroceryList.class);
 
         // to access all grocery list endpoints, and thus the grocery service,
-        // one needs to be authenticated, so username should always return a
+        // one needs to be authenticated, so the principal always represents a
         // valid user
-        when(userRepository.findUserByUsername(anyString())).thenReturn(user);
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+        lenient().when(user.getId()).thenReturn(1L);
+        lenient().when(userRepository.getById(anyLong())).thenReturn(user);
     }
 
     @AfterEach
@@ -61,23 +84,132 @@ class GroceryServiceTest {
         closeable.close();
     }
 
+    GroceryListSummary mockSummary(long id, String name, boolean template, long ownerId) {
+        GroceryListSummary summary = mock(GroceryListSummary.class);
+        lenient().when(summary.getId()).thenReturn(id);
+        lenient().when(summary.getName()).thenReturn(name);
+        lenient().when(summary.isTemplate()).thenReturn(template);
+        lenient().when(summary.getOwnerId()).thenReturn(ownerId);
+
+        return summary;
+    }
+
     @Nested
-    class GetListNamesByUsernameTest {
+    class GetListNamesTest {
+
+        GroceryListSummary ownedList;
+        GroceryListSummary sharedList;
+        GroceryListSummary ownedTemplate;
+        GroceryListSummary sharedTemplate;
+
+        @BeforeEach
+        void setUpGetListNames() {
+            ownedList = mockSummary(1L, "owned list", false, 1L);
+            sharedList = mockSummary(2L, "shared list", false, 2L);
+            ownedTemplate = mockSummary(3L, "owned template", true, 1L);
+            sharedTemplate = mockSummary(4L, "shared template", true, 2L);
+
+            when(groceryListRepository.findSummariesByUserId(1L))
+                    .thenReturn(List.of(ownedList, sharedList, ownedTemplate, sharedTemplate));
+        }
 
         @Test
-        void testGetListsValidUser() {
-            when(user.getGroceryLists()).thenReturn(Arrays.asList(list, list, list));
-            when(list.getId()).thenReturn(1L, 2L, 3L);
-            when(list.getName()).thenReturn("name");
+        void testGetOwnedListNames() {
+            Map<Long, String> actual = groceryService.getOwnedListNames(principal);
 
-            Map<Long, String> actual = groceryService.getOwnedListNames("username");
+            assertEquals(Map.of(1L, "owned list"), actual);
+        }
 
-            HashMap<Long, String> expected = new HashMap<>();
-            expected.put(1L, "name");
-            expected.put(2L, "name");
-            expected.put(3L, "name");
+        @Test
+        void testGetSharedTemplateNames() {
+            Map<Long, String> actual = groceryService.getSharedTemplateNames(principal);
+
+            assertEquals(Map.of(4L, "shared template"), actual);
+        }
+
+        @Test
+        void testGetAllListNames() {
+            Map<String, Object> actual = groceryService.getAllListNames(principal);
+
+            Map<String, Object> expected = Map.of(
+                    "lists", Map.of(
+                            "owned", Map.of(1L, "owned list"),
+                            "shared", Map.of(2L, "shared list")),
+                    "templates", Map.of(
+                            "owned", Map.of(3L, "owned template"),
+                            "shared", Map.of(4L, "shared template")));
 
             assertEquals(expected, actual);
+            verify(groceryListRepository, times(1)).findSummariesByUserId(1L);
+        }
+
+        @Test
+        void testSearchLists() {
+            when(listSearchIndex.search("milk", Set.of(1L, 2L, 3L, 4L))).thenReturn(Set.of(4L, 2L));
+
+            Map<Long, String> actual = groceryService.searchLists("milk", principal);
+
+            assertEquals(List.of(2L, 4L), new ArrayList<>(actual.keySet()));
+            assertEquals(Map.of(2L, "shared list", 4L, "shared template"), actual);
+        }
+    }
+
+    @Nested
+    class PageListNamesTest {
+
+        @Test
+        void testGetOwnedListNamesPage() {
+            List<GroceryListSummary> summaries = new ArrayList<>(List.of(mockSummary(6L, "first", false, 1L),
+                    mockSummary(8L, "second", false, 1L),
+                    mockSummary(9L, "third", false, 1L)));
+            when(groceryListRepository.findOwnedSummariesAfter(eq(1L), eq(false), eq(5L), any()))
+                    .thenReturn(summaries);
+
+            KeysetPage<Map<Long, String>> page = groceryService.getOwnedListNames(principal, 5L, 2);
+
+            assertEquals(List.of(6L, 8L), new ArrayList<>(page.getContent().keySet()));
+            assertEquals(8L, page.getNext());
+        }
+
+        @Test
+        void testGetAllListNamesLastPage() {
+            List<GroceryListSummary> summaries = new ArrayList<>(List.of(mockSummary(1L, "owned list", false, 1L),
+                    mockSummary(4L, "shared template", true, 2L)));
+            when(groceryListRepository.findSummariesByUserIdAfter(eq(1L), eq(0L), any()))
+                    .thenReturn(summaries);
+
+            KeysetPage<Map<String, Object>> page = groceryService.getAllListNames(principal, 0L, 2);
+
+            Map<String, Object> expected = Map.of(
+                    "lists", Map.of(
+                            "owned", Map.of(1L, "owned list"),
+                            "shared", Map.of()),
+                    "templates", Map.of(
+                            "owned", Map.of(),
+                            "shared", Map.of(4L, "shared template")));
+
+            assertEquals(expected, page.getContent());
+            assertNull(page.getNext());
+        }
+
+        @Test
+        void testGetItemNamesPage() throws Exception {
+            when(groceryListRepository.findVersionByIdAndUserId(1L, 1L)).thenReturn(0L);
+            when(groceryListRepository.findItemNamesAfter(1L, 10L, 3))
+                    .thenReturn(new TreeMap<>(Map.of(11L, "bread", 12L, "milk", 14L, "eggs")));
+
+            KeysetPage<List<String>> page = groceryService.getItemNames(1L, 10L, 2, principal);
+
+            assertEquals(List.of("bread", "milk"), page.getContent());
+            assertEquals(12L, page.getNext());
+        }
+
+        @Test
+        void testGetItemNamesNotFound() {
+            when(groceryListRepository.findVersionByIdAndUserId(1L, 1L)).thenReturn(null);
+
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.getItemNames(1L, 0L, 2, principal));
+            verify(groceryListRepository, never()).findItemNamesAfter(anyLong(), anyLong(), anyInt());
         }
     }
 
@@ -89,7 +221,7 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
             when(list.getOwner()).thenReturn(user);
 
-            GroceryList actual = groceryService.getListById(1L, "username");
+            GroceryList actual = groceryService.getListById(1L, principal);
 
             assertEquals(list, actual);
         }
@@ -98,7 +230,7 @@ class GroceryServiceTest {
         void testGetListByIdInvalidId() {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(null);
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.getListById(1L, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.getListById(1L, principal));
         }
 
         @Test
@@ -106,7 +238,42 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
             when(list.getOwner()).thenReturn(mock(User.class));
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.getListById(1L, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.getListById(1L, principal));
+        }
+
+        @Test
+        void testGetListByIdSharedCached() throws Exception {
+            when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
+            when(list.getId()).thenReturn(2L);
+            when(list.getOwner()).thenReturn(mock(User.class));
+            when(listAccessCache.contains(1L, 2L)).thenReturn(true);
+
+            assertEquals(list, groceryService.getListById(2L, principal));
+            verify(groceryListRepository, never()).isSharedWith(anyLong(), anyLong());
+            verify(list, never()).getSharedUsers();
+        }
+
+        @Test
+        void testGetListByIdSharedUncached() throws Exception {
+            when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
+            when(list.getId()).thenReturn(2L);
+            when(list.getOwner()).thenReturn(mock(User.class));
+            when(groceryListRepository.isSharedWith(2L, 1L)).thenReturn(true);
+
+            assertEquals(list, groceryService.getListById(2L, principal));
+            verify(listAccessCache, times(1)).add(1L, 2L);
+            verify(list, never()).getSharedUsers();
+        }
+
+        @Test
+        void testGetListByIdOwnerSkipsSharedCheck() throws Exception {
+            when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
+            when(list.getOwner()).thenReturn(user);
+
+            groceryService.getListById(1L, principal);
+
+            verify(listAccessCache, never()).contains(anyLong(), anyLong());
+            verify(groceryListRepository, never()).isSharedWith(anyLong(), anyLong());
         }
     }
 
@@ -120,7 +287,7 @@ class GroceryServiceTest {
 
         @Test
         void testCreateListSuccess() {
-            GroceryList list = groceryService.createNewList("name", "username", false);
+            GroceryList list = groceryService.createNewList("name", principal, false);
 
             verify(groceryListRepository, times(1)).save(any(GroceryList.class));
             assertEquals("name", list.getName());
@@ -131,7 +298,7 @@ class GroceryServiceTest {
 
         @Test
         void testCreateTemplateSuccess() {
-            GroceryList list = groceryService.createNewList("name", "username", true);
+            GroceryList list = groceryService.createNewList("name", principal, true);
 
             verify(groceryListRepository, times(1)).save(any(GroceryList.class));
             assertEquals("name", list.getName());
@@ -139,6 +306,20 @@ class GroceryServiceTest {
             assertEquals(0, list.getItems().size());
             assertTrue(list.isTemplate());
         }
+
+        @Test
+        void testCreateListWithItemNames() {
+            GroceryItem bread = new GroceryItem("bread");
+            when(groceryItemRepository.findAllByNameIn(anyCollection())).thenReturn(List.of(bread));
+
+            GroceryList list = groceryService.createNewList("name", principal, List.of("milk", "bread", "milk"));
+
+            verify(groceryItemRepository, times(1)).findAllByNameIn(anyCollection());
+            assertEquals(List.of("milk", "bread"),
+                    list.getItems().stream().map(GroceryItem::getName).collect(Collectors.toList()));
+            assertSame(bread, list.getItems().get(1));
+            assertFalse(list.isTemplate());
+        }
     }
 
     @Nested
@@ -146,12 +327,9 @@ class GroceryServiceTest {
 
         GroceryList template;
 
-        GroceryItem item;
-
         @BeforeEach
         void setUpCreateListWithTemplate() {
             this.template = mock(GroceryList.class);
-            this.item = mock(GroceryItem.class);
         }
 
         @Test
@@ -160,24 +338,61 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(template);
             when(template.getOwner()).thenReturn(user);
             when(template.isTemplate()).thenReturn(true);
-            when(template.getItems()).thenReturn(List.of(item));
+            when(template.getId()).thenReturn(1L);
+            when(groceryListRepository.copyItems(eq(1L), any(GroceryList.class))).thenReturn(List.of("Milk", "Eggs"));
 
             System.out.println(user.equals(template.getOwner()));
 
-            GroceryList list = groceryService.createNewList("name", "username", 1L);
+            GroceryList list = groceryService.createNewList("name", principal, 1L);
 
             verify(groceryListRepository, times(1)).save(any(GroceryList.class));
+            verify(groceryListRepository, times(1)).copyItems(1L, list);
+            verify(groceryListRepository, never()).streamItemNames(anyLong());
+            verify(itemSuggestionIndex, times(1)).itemsAdded(List.of("Milk", "Eggs"));
+            verify(listSearchIndex, times(1)).listCopied(1L, list.getId());
+            verify(itemCooccurrenceIndex, times(1)).listCopied(1L, list.getId());
+            verify(template, never()).getItems();
             assertEquals("name", list.getName());
             assertEquals(user, list.getOwner());
-            assertEquals(template.getItems(), list.getItems());
             assertFalse(list.isTemplate());
         }
 
+        @Test
+        void testCreateListWithTemplateThenDeleteKeepsSuggestions() throws Exception {
+            ItemSuggestionIndex suggestions = new ItemSuggestionIndex(groceryItemRepository,
+                    TransactionOperations.withoutTransaction());
+            GroceryService service = new GroceryService(userRepository, groceryListRepository,
+                    groceryItemRepository, listAccessCache, suggestions, listSearchIndex, itemCooccurrenceIndex);
+
+            // Milk is in the template and one other list, and would rank after Mild salsa on a tie
+            GroceryItemCount milk = mock(GroceryItemCount.class);
+            when(milk.getName()).thenReturn("Milk");
+            when(milk.getCount()).thenReturn(2L);
+            GroceryItemCount salsa = mock(GroceryItemCount.class);
+            when(salsa.getName()).thenReturn("Mild salsa");
+            when(salsa.getCount()).thenReturn(1L);
+            when(groceryItemRepository.streamListCountsByItem()).thenAnswer(ans -> Stream.of(milk, salsa));
+            assertEquals(List.of("Milk", "Mild salsa"), suggestions.suggest("mi", 10));
+
+            when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(template);
+            when(groceryListRepository.copyItems(eq(1L), any(GroceryList.class))).thenReturn(List.of("Milk"));
+            when(template.getOwner()).thenReturn(user);
+            when(template.isTemplate()).thenReturn(true);
+            when(template.getId()).thenReturn(1L);
+
+            GroceryList created = service.createNewList("name", principal, 1L);
+            when(groceryListRepository.findGroceryListById(2L)).thenReturn(created);
+            service.removeList(2L, null, principal);
+
+            assertEquals(List.of("Milk", "Mild salsa"), suggestions.suggest("mi", 10));
+        }
+
         @Test
         void testCreateListWithTemplateNotFound() {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(null);
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", "username", 1L));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", principal, 1L));
         }
 
         @Test
@@ -185,7 +400,7 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(template);
             when(template.isTemplate()).thenReturn(false);
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", "username", 1L));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", principal, 1L));
         }
 
         @Test
@@ -194,7 +409,86 @@ class GroceryServiceTest {
             when(template.isTemplate()).thenReturn(true);
             when(template.getOwner()).thenReturn(mock(User.class));
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", "username", 1L));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.createNewList("name", principal, 1L));
+        }
+    }
+
+    @Nested
+    class ItemsTest {
+
+        GroceryList existingList;
+        GroceryItem bread;
+
+        @BeforeEach
+        void setUpItems() {
+            bread = new GroceryItem("bread");
+
+            existingList = new GroceryList();
+            existingList.setOwner(user);
+            existingList.addItem(bread);
+        }
+
+        @Test
+        void testAddItems() throws Exception {
+            GroceryItem milk = new GroceryItem("milk");
+
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+            when(groceryItemRepository.findAllByNameIn(Set.of("milk", "eggs"))).thenReturn(List.of(milk));
+
+            groceryService.addItems(1L, List.of("bread", "milk", "eggs"), null, principal);
+
+            verify(groceryItemRepository, times(1)).findAllByNameIn(anyCollection());
+            verify(groceryListRepository, times(1)).save(existingList);
+            assertEquals(List.of(bread, milk, new GroceryItem("eggs")), existingList.getItems());
+            assertSame(milk, existingList.getItems().get(1));
+            verify(itemSuggestionIndex).itemsAdded(Set.of("milk", "eggs"));
+            verify(listSearchIndex).itemsAdded(1L, Set.of("milk", "eggs"));
+            verify(itemCooccurrenceIndex).itemsAdded(1L, Set.of("milk", "eggs"));
+        }
+
+        @Test
+        void testAddItemsAllExisting() throws Exception {
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+
+            groceryService.addItems(1L, List.of("bread"), null, principal);
+
+            verify(groceryItemRepository, never()).findAllByNameIn(anyCollection());
+            assertEquals(List.of(bread), existingList.getItems());
+        }
+
+        @Test
+        void testRemoveItems() throws Exception {
+            existingList.addItem(new GroceryItem("milk"));
+
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+
+            groceryService.removeItems(1L, List.of("milk", "eggs"), null, principal);
+
+            assertEquals(List.of(bread), existingList.getItems());
+            verify(itemSuggestionIndex).itemsRemoved(List.of("milk"));
+            verify(listSearchIndex).itemsRemoved(1L, List.of("milk"));
+            verify(itemCooccurrenceIndex).itemsRemoved(1L, List.of("milk"));
+        }
+
+        @Test
+        void testAddItemsVersionMismatch() {
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+
+            assertThrows(PreconditionFailedException.class,
+                    () -> groceryService.addItems(1L, List.of("milk"), 2L, principal));
+            verify(groceryListRepository, never()).save(any(GroceryList.class));
+            assertEquals(List.of(bread), existingList.getItems());
+        }
+
+        @Test
+        void testItemsUnmatchedUser() {
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(list);
+            when(list.getOwner()).thenReturn(mock(User.class));
+
+            assertThrows(ResourceNotFoundException.class,
+                    () -> groceryService.addItems(1L, List.of("bread"), null, principal));
+            assertThrows(ResourceNotFoundException.class,
+                    () -> groceryService.removeItems(1L, List.of("bread"), null, principal));
         }
     }
 
@@ -217,13 +511,41 @@ class GroceryServiceTest {
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
+            verify(groceryItemRepository, never()).findAllByNameIn(anyCollection());
             assertTrue(actual.getItems().contains(bread));
             assertEquals(1, actual.getItems().size());
         }
 
+        @Test
+        void testSaveListNewItemsResolvedTogether() throws Exception {
+            GroceryItem milk = mock(GroceryItem.class);
+            when(milk.getName()).thenReturn("milk");
+
+            GroceryItem eggs = mock(GroceryItem.class);
+            when(eggs.getName()).thenReturn("eggs");
+
+            GroceryList existingList = new GroceryList();
+            existingList.setOwner(user);
+
+            GroceryList newList = new GroceryList();
+            newList.setOwner(user);
+            newList.addItem(milk);
+            newList.addItem(eggs);
+            ReflectionTestUtils.setField(newList, "id", 1L);
+
+            when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+            when(groceryItemRepository.findAllByNameIn(Set.of("milk", "eggs"))).thenReturn(List.of(milk));
+
+            GroceryList actual = groceryService.saveList(newList, null, principal);
+
+            verify(groceryItemRepository, times(1)).findAllByNameIn(anyCollection());
+            assertEquals(List.of(milk, eggs), actual.getItems());
+        }
+
         @Test
         void testSaveListMissingItemsRemoved() throws Exception {
             GroceryItem bread = mock(GroceryItem.class);
@@ -242,7 +564,7 @@ class GroceryServiceTest {
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
             assertTrue(actual.getItems().contains(bread));
@@ -268,9 +590,9 @@ class GroceryServiceTest {
 
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
-            when(groceryItemRepository.findGroceryItemByName("milk")).thenReturn(milk);
+            when(groceryItemRepository.findAllByNameIn(anyCollection())).thenReturn(List.of(milk));
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
             assertTrue(actual.getItems().contains(bread));
@@ -297,9 +619,9 @@ class GroceryServiceTest {
 
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
-            when(groceryItemRepository.findGroceryItemByName("milk")).thenReturn(null);
+            when(groceryItemRepository.findAllByNameIn(anyCollection())).thenReturn(List.of());
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
             assertTrue(actual.getItems().contains(bread));
@@ -320,9 +642,10 @@ class GroceryServiceTest {
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
+            verify(userRepository, never()).incrementDashboardVersions(anyCollection());
             assertEquals("name", actual.getName());
         }
 
@@ -340,17 +663,50 @@ class GroceryServiceTest {
             when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
             when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
 
-            GroceryList actual = groceryService.saveList(newList, "username");
+            GroceryList actual = groceryService.saveList(newList, null, principal);
 
             verify(groceryListRepository, times(1)).save(existingList);
+            verify(userRepository, times(1)).incrementDashboardVersions(Set.of(1L));
             assertEquals("new", actual.getName());
         }
 
+        @Test
+        void testSaveListVersionMatch() throws Exception {
+            GroceryList existingList = new GroceryList();
+            existingList.setOwner(user);
+            ReflectionTestUtils.setField(existingList, "version", 3L);
+
+            GroceryList newList = new GroceryList();
+            ReflectionTestUtils.setField(newList, "id", 1L);
+
+            when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+
+            groceryService.saveList(newList, 3L, principal);
+
+            verify(groceryListRepository, times(1)).save(existingList);
+        }
+
+        @Test
+        void testSaveListVersionMismatch() {
+            GroceryList existingList = new GroceryList();
+            existingList.setOwner(user);
+            ReflectionTestUtils.setField(existingList, "version", 4L);
+
+            GroceryList newList = new GroceryList();
+            ReflectionTestUtils.setField(newList, "id", 1L);
+
+            when(groceryListRepository.findGroceryListById(1L)).thenReturn(existingList);
+
+            assertThrows(PreconditionFailedException.class, () -> groceryService.saveList(newList, 3L, principal));
+            verify(groceryListRepository, never()).save(any(GroceryList.class));
+        }
+
         @Test
         void testSaveListInvalidId() {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(null);
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.saveList(list, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.saveList(list, null, principal));
         }
 
         @Test
@@ -358,7 +714,7 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
             when(list.getOwner()).thenReturn(mock(User.class));
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.saveList(list, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.saveList(list, null, principal));
         }
     }
 
@@ -370,16 +726,32 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
             when(list.getOwner()).thenReturn(user);
 
-            groceryService.removeList(1L, "username");
+            groceryService.removeList(1L, null, principal);
 
             verify(groceryListRepository, times(1)).delete(list);
+            verify(userRepository, times(1)).incrementDashboardVersions(Set.of(1L));
+            verify(listSearchIndex, times(1)).listRemoved(1L);
+            verify(itemCooccurrenceIndex, times(1)).listRemoved(1L);
+        }
+
+        @Test
+        void testDeleteListInvalidatesSharedUsers() throws Exception {
+            User sharee = mock(User.class);
+            when(sharee.getId()).thenReturn(2L);
+            when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
+            when(list.getOwner()).thenReturn(user);
+            when(list.getSharedUsers()).thenReturn(List.of(sharee));
+
+            groceryService.removeList(1L, null, principal);
+
+            verify(listAccessCache, times(1)).invalidate(Set.of(1L, 2L));
         }
 
         @Test
         void testDeleteListInvalidId() {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(null);
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.removeList(1L, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.removeList(1L, null, principal));
         }
 
         @Test
@@ -387,7 +759,138 @@ class GroceryServiceTest {
             when(groceryListRepository.findGroceryListById(anyLong())).thenReturn(list);
             when(list.getOwner()).thenReturn(mock(User.class));
 
-            assertThrows(ResourceNotFoundException.class, () -> groceryService.removeList(1L, "username"));
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.removeList(1L, null, principal));
+        }
+    }
+
+    @Nested
+    class ShareListTest {
+
+        User sharee;
+
+        @BeforeEach
+        void setUpShareList() {
+            sharee = mock(User.class);
+            lenient().when(sharee.getId()).thenReturn(2L);
+            lenient().when(groceryListRepository.findGroceryListById(1L)).thenReturn(list);
+            lenient().when(list.getOwner()).thenReturn(user);
+            lenient().when(userRepository.findUserByUsername("friend")).thenReturn(sharee);
+        }
+
+        @Test
+        void testShareListValid() throws Exception {
+            when(userRepository.existsFriendship(1L, 2L)).thenReturn(true);
+
+            assertEquals(list, groceryService.shareList(1L, "friend", principal));
+
+            verify(groceryListRepository, times(1)).addShare(list, 2L);
+            verify(userRepository, times(1)).incrementDashboardVersions(Set.of(2L));
+            verify(listAccessCache, times(1)).invalidate(Set.of(2L));
+            verify(list, never()).getSharedUsers();
+        }
+
+        @Test
+        void testShareListAlreadyShared() throws Exception {
+            when(userRepository.existsFriendship(1L, 2L)).thenReturn(true);
+            when(groceryListRepository.isSharedWith(1L, 2L)).thenReturn(true);
+
+            groceryService.shareList(1L, "friend", principal);
+
+            verify(groceryListRepository, never()).addShare(any(GroceryList.class), anyLong());
+            verify(userRepository, never()).incrementDashboardVersions(any());
+        }
+
+        @Test
+        void testShareListNotFriend() {
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.shareList(1L, "friend", principal));
+
+            verify(groceryListRepository, never()).addShare(any(GroceryList.class), anyLong());
+        }
+
+        @Test
+        void testShareListUnmatchedUser() {
+            when(list.getOwner()).thenReturn(mock(User.class));
+
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.shareList(1L, "friend", principal));
+        }
+    }
+
+    @Nested
+    class UnshareListTest {
+
+        User sharee;
+
+        @BeforeEach
+        void setUpUnshareList() {
+            sharee = mock(User.class);
+            lenient().when(sharee.getId()).thenReturn(2L);
+            lenient().when(groceryListRepository.findGroceryListById(1L)).thenReturn(list);
+            lenient().when(list.getOwner()).thenReturn(user);
+            lenient().when(userRepository.findUserByUsername("friend")).thenReturn(sharee);
+        }
+
+        @Test
+        void testUnshareListValid() throws Exception {
+            when(groceryListRepository.removeShare(list, 2L)).thenReturn(true);
+
+            assertEquals(list, groceryService.unshareList(1L, "friend", principal));
+
+            verify(userRepository, times(1)).incrementDashboardVersions(Set.of(2L));
+            verify(listAccessCache, times(1)).invalidate(Set.of(2L));
+            verify(list, never()).getSharedUsers();
+        }
+
+        @Test
+        void testUnshareListNotShared() {
+            when(groceryListRepository.removeShare(list, 2L)).thenReturn(false);
+
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.unshareList(1L, "friend", principal));
+
+            verify(listAccessCache, never()).invalidate(any());
+        }
+
+        @Test
+        void testUnshareListUserDoesNotExist() {
+            when(userRepository.findUserByUsername("friend")).thenReturn(null);
+
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.unshareList(1L, "friend", principal));
+
+            verify(groceryListRepository, never()).removeShare(any(GroceryList.class), anyLong());
+        }
+    }
+
+    @Nested
+    class VersionTest {
+
+        @Test
+        void testGetDashboardVersion() {
+            when(userRepository.findDashboardVersionById(1L)).thenReturn(7L);
+
+            assertEquals(7L, groceryService.getDashboardVersion(principal));
+        }
+
+        @Test
+        void testGetListVersion() throws Exception {
+            when(groceryListRepository.findVersionByIdAndUserId(2L, 1L)).thenReturn(3L);
+
+            assertEquals(3L, groceryService.getListVersion(2L, principal));
+            verify(groceryListRepository, never()).findGroceryListById(anyLong());
+        }
+
+        @Test
+        void testGetListVersionNotFound() {
+            when(groceryListRepository.findVersionByIdAndUserId(anyLong(), anyLong())).thenReturn(null);
+
+            assertThrows(ResourceNotFoundException.class, () -> groceryService.getListVersion(2L, principal));
+        }
+
+        @Test
+        void testCreateListTouchesDashboard() {
+            when(groceryListRepository.save(any(GroceryList.class))).thenAnswer(ans -> ans.getArgument(0));
+
+            groceryService.createNewList("name", principal, false);
+
+            verify(userRepository, times(1)).incrementDashboardVersions(Set.of(1L));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.ListItemEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemCooccurrenceIndexTest extends ListItemIndexTestSupport {
+
+    private ItemCooccurrenceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ItemCooccurrenceIndex(groceryListRepository, TransactionOperations.withoutTransaction());
+
+        // Bread and Milk, Bread and Butter, and Milk and Eggs are each found together in two lists
+        givenEntries(List.of(
+                entry(1, "Bread"),
+                entry(1, "Milk"),
+                entry(1, "Butter"),
+                entry(2, "Bread"),
+                entry(2, "Butter"),
+                entry(3, "Milk"),
+                entry(3, "Eggs"),
+                entry(4, "Bread"),
+                entry(4, "Milk"),
+                entry(4, "Eggs")));
+    }
+
+    private static List<String> itemNames(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "Item " + i).collect(Collectors.toList());
+    }
+
+    @Nested
+    class RecommendTest {
+
+        @Test
+        void testRankedByCount() {
+            assertEquals(List.of("Butter", "Milk", "Eggs"), index.recommend(List.of("Bread"), 10));
+            assertEquals(List.of("Bread", "Eggs", "Butter"), index.recommend(List.of("Milk"), 10));
+            assertEquals(5, index.pairs());
+        }
+
+        @Test
+        void testCombinesGivenItems() {
+            assertEquals(List.of("Butter", "Eggs"), index.recommend(List.of("Bread", "Milk"), 10));
+        }
+
+        @Test
+        void testLimit() {
+            assertEquals(List.of("Butter"), index.recommend(List.of("Bread"), 1));
+        }
+
+        @Test
+        void testUnknownItems() {
+            assertEquals(List.of(), index.recommend(List.of("Caviar"), 10));
+            assertEquals(List.of("Butter", "Milk", "Eggs"), index.recommend(List.of("Caviar", "Bread"), 10));
+        }
+
+        @Test
+        void testLoadedOnce() {
+            index.recommend(List.of("Bread"), 10);
+            index.recommend(List.of("Milk"), 10);
+
+            verifyLoaded(1);
+        }
+
+        @Test
+        void testTopOfManyItems() {
+            // Item i is found with Anchor in i lists
+            List<ListItemEntry> entries = new ArrayList<>();
+            for (int i = 1; i <= 20; i++) {
+                for (int list = 0; list < i; list++) {
+                    entries.add(entry(i * 100 + list, "Anchor"));
+                    entries.add(entry(i * 100 + list, "Item " + i));
+                }
+            }
+            givenEntries(entries);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 20; i > 20 - ItemCooccurrenceIndex.MAX_RECOMMENDATIONS; i--) {
+                expected.add("Item " + i);
+            }
+
+            assertEquals(expected, index.recommend(List.of("Anchor"), ItemCooccurrenceIndex.MAX_RECOMMENDATIONS));
+        }
+    }
+
+    @Nested
+    class UpdateTest {
+
+        @BeforeEach
+        void load() {
+            index.pairs();
+        }
+
+        @Test
+        void testItemsAdded() {
+            index.itemsAdded(2, List.of("Eggs"));
+
+            assertEquals(List.of("Butter", "Eggs", "Milk"), index.recommend(List.of("Bread"), 10));
+            assertEquals(6, index.pairs());
+        }
+
+        @Test
+        void testItemsAddedTwiceIgnored() {
+            index.itemsAdded(1, List.of("Milk", "Bread"));
+
+            assertEquals(List.of("Butter", "Milk", "Eggs"), index.recommend(List.of("Bread"), 10));
+        }
+
+        @Test
+        void testItemsAddedToNewList() {
+            index.itemsAdded(5, List.of("Flour", "Sugar", "Milk"));
+
+            assertEquals(List.of("Milk", "Sugar"), index.recommend(List.of("Flour"), 10));
+            assertEquals(8, index.pairs());
+        }
+
+        @Test
+        void testItemsRemoved() {
+            index.itemsRemoved(1, List.of("Butter"));
+
+            assertEquals(List.of("Bread", "Eggs"), index.recommend(List.of("Milk"), 10));
+            assertEquals(List.of("Milk", "Butter", "Eggs"), index.recommend(List.of("Bread"), 10));
+            assertEquals(4, index.pairs());
+        }
+
+        @Test
+        void testListCopied() {
+            index.listCopied(3, 5);
+
+            assertEquals(List.of("Milk", "Bread"), index.recommend(List.of("Eggs"), 10));
+        }
+
+        @Test
+        void testListRemoved() {
+            index.listRemoved(4);
+
+            assertEquals(List.of("Butter", "Milk"), index.recommend(List.of("Bread"), 10));
+            assertEquals(List.of("Bread", "Butter", "Eggs"), index.recommend(List.of("Milk"), 10));
+            assertEquals(4, index.pairs());
+        }
+
+        @Test
+        void testDemotedItemReranked() {
+            List<String> items = itemNames(0, 12);
+
+            for (int list = 10; list < 13; list++) {
+                index.itemsAdded(list, List.of("Anchor"));
+                index.itemsAdded(list, items.subList(0, list - 9));
+            }
+            index.itemsAdded(20, List.of("Anchor"));
+            index.itemsAdded(20, items);
+
+            // Item 0 is found with Anchor in 4 lists, Item 1 in 3, Item 2 in 2 and every other item in 1
+            assertEquals(List.of("Item 0", "Item 1", "Item 2"), index.recommend(List.of("Anchor"), 3));
+
+            index.itemsRemoved(10, List.of("Item 0"));
+            index.itemsRemoved(11, List.of("Item 0"));
+            index.itemsRemoved(12, List.of("Item 0"));
+
+            assertEquals(List.of("Item 1", "Item 2", "Item 0", "Item 10"), index.recommend(List.of("Anchor"), 4));
+        }
+
+        @Test
+        void testReloadReplacesMatrix() {
+            index.itemsAdded(5, List.of("Flour", "Sugar"));
+
+            index.reload();
+
+            assertEquals(List.of(), index.recommend(List.of("Flour"), 10));
+            verifyLoaded(2);
+        }
+    }
+
+    @Test
+    void testLargeListBuiltAndShrunk() {
+        // enough items to split the build across several tasks, and to grow each row many times
+        List<ListItemEntry> entries = new ArrayList<>();
+        entries.add(entry(1, "Anchor"));
+        for (String name : itemNames(0, 200)) {
+            entries.add(entry(1, name));
+        }
+        givenEntries(entries);
+
+        assertEquals(201 * 200 / 2, index.pairs());
+
+        index.itemsRemoved(1, itemNames(0, 150));
+
+        assertEquals(51 * 50 / 2, index.pairs());
+        assertEquals(itemNames(150, 160), index.recommend(List.of("Anchor"), 10));
+        assertEquals(List.of("Anchor", "Item 150"), index.recommend(List.of("Item 199"), 2));
+    }
+
+    @Test
+    void testUpdatesBeforeLoadSkipped() {
+        index.itemsAdded(5, List.of("Flour", "Sugar"));
+
+        assertEquals(List.of(), index.recommend(List.of("Flour"), 10));
+    }
+}
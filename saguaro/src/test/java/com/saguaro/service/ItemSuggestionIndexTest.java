@@ -0,0 +1,153 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.GroceryItemCount;
+import com.saguaro.repository.GroceryItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemSuggestionIndexTest {
+
+    @Mock
+    private GroceryItemRepository groceryItemRepository;
+
+    private ItemSuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ItemSuggestionIndex(groceryItemRepository, TransactionOperations.withoutTransaction());
+
+        givenCounts(List.of(
+                count("Milk", 5),
+                count("Milk chocolate", 2),
+                count("Mint", 9),
+                count("mince", 0),
+                count("Bread", 7)));
+    }
+
+    private void givenCounts(List<GroceryItemCount> counts) {
+        lenient().when(groceryItemRepository.streamListCountsByItem()).thenAnswer(ans -> counts.stream());
+    }
+
+    private static GroceryItemCount count(String name, long count) {
+        return new GroceryItemCount() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    @Nested
+    class SuggestTest {
+
+        @Test
+        void testRankedByCount() {
+            assertEquals(List.of("Mint", "Milk", "Milk chocolate", "mince"), index.suggest("m", 10));
+            assertEquals(List.of("Milk", "Milk chocolate"), index.suggest("MIL", 10));
+        }
+
+        @Test
+        void testLimit() {
+            assertEquals(List.of("Mint", "Milk"), index.suggest("m", 2));
+        }
+
+        @Test
+        void testNoMatch() {
+            assertEquals(List.of(), index.suggest("eggs", 10));
+        }
+
+        @Test
+        void testLoadedOnce() {
+            index.suggest("m", 10);
+            index.suggest("b", 10);
+
+            verify(groceryItemRepository, times(1)).streamListCountsByItem();
+        }
+
+        @Test
+        void testTopOfManyItems() {
+            List<GroceryItemCount> counts = IntStream.range(0, 1000)
+                    .mapToObj(i -> count("Item " + i, i))
+                    .collect(Collectors.toList());
+            givenCounts(counts);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 999; i > 999 - ItemSuggestionIndex.MAX_SUGGESTIONS; i--) {
+                expected.add("Item " + i);
+            }
+
+            assertEquals(expected, index.suggest("item", ItemSuggestionIndex.MAX_SUGGESTIONS));
+            assertEquals(List.of("Item 999", "Item 998", "Item 997"), index.suggest("item 9", 3));
+        }
+    }
+
+    @Nested
+    class UpdateTest {
+
+        @Test
+        void testItemsAddedCreatesItem() {
+            index.suggest("m", 10);
+
+            index.itemsAdded(List.of("Mango"));
+
+            assertEquals(List.of("Mint", "Milk", "Milk chocolate", "Mango", "mince"), index.suggest("m", 10));
+            assertEquals(6, index.size());
+        }
+
+        @Test
+        void testItemsAddedPromotes() {
+            index.suggest("m", 10);
+
+            index.itemsAdded(List.of("Milk chocolate"));
+            index.itemsAdded(List.of("Milk chocolate", "Milk chocolate", "Milk chocolate"));
+
+            assertEquals(List.of("Milk chocolate", "Milk"), index.suggest("milk", 10));
+        }
+
+        @Test
+        void testItemsRemovedDemotes() {
+            index.suggest("m", 10);
+
+            index.itemsRemoved(List.of("Mint", "Mint", "Mint", "Mint", "Mint"));
+
+            assertEquals(List.of("Milk", "Mint", "Milk chocolate", "mince"), index.suggest("m", 10));
+        }
+
+        @Test
+        void testUpdatesBeforeLoadSkipped() {
+            index.itemsAdded(List.of("Mango"));
+
+            assertEquals(List.of(), index.suggest("man", 10));
+        }
+
+        @Test
+        void testReloadReplacesCounts() {
+            index.suggest("m", 10);
+            index.itemsAdded(List.of("Mango"));
+
+            index.reload();
+
+            assertEquals(List.of(), index.suggest("man", 10));
+            verify(groceryItemRepository, times(2)).streamListCountsByItem();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.saguaro.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saguaro.entity.GroceryItem;
+import com.saguaro.entity.GroceryList;
+import com.saguaro.entity.User;
+import com.saguaro.exception.ResourceNotFoundException;
+import com.saguaro.repository.GroceryListHeader;
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ListExportServiceTest {
+
+    @Mock
+    private GroceryListRepository groceryListRepository;
+
+    private ObjectMapper objectMapper;
+    private ListExportService listExportService;
+    private SaguaroPrincipal principal;
+    private GroceryListHeader header;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        listExportService = new ListExportService(groceryListRepository, objectMapper);
+        principal = new SaguaroPrincipal(1L, "username", List.of());
+
+        header = mock(GroceryListHeader.class);
+        lenient().when(header.getId()).thenReturn(3L);
+        lenient().when(header.getName()).thenReturn("Catering");
+        lenient().when(header.getOwnerUsername()).thenReturn("username");
+        lenient().when(header.isTemplate()).thenReturn(false);
+    }
+
+    @Nested
+    class GetListHeaderTest {
+
+        @Test
+        void testGetListHeader() throws Exception {
+            when(groceryListRepository.findHeaderByIdAndUserId(3L, 1L)).thenReturn(header);
+
+            assertEquals(header, listExportService.getListHeader(3L, principal));
+        }
+
+        @Test
+        void testGetListHeaderNotFound() {
+            when(groceryListRepository.findHeaderByIdAndUserId(3L, 1L)).thenReturn(null);
+
+            assertThrows(ResourceNotFoundException.class, () -> listExportService.getListHeader(3L, principal));
+        }
+    }
+
+    @Nested
+    class WriteListTest {
+
+        @Test
+        void testWriteListMatchesEntityShape() throws Exception {
+            when(groceryListRepository.streamItemNames(3L)).thenReturn(Stream.of("bread", "milk"));
+            when(groceryListRepository.streamSharedUsernames(3L)).thenReturn(Stream.of("friend"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            listExportService.writeList(header, out);
+
+            User owner = new User();
+            owner.setUsername("username");
+            User friend = new User();
+            friend.setUsername("friend");
+
+            GroceryList list = new GroceryList();
+            ReflectionTestUtils.setField(list, "id", 3L);
+            list.setName("Catering");
+            list.setOwner(owner);
+            list.addItem(new GroceryItem("bread"));
+            list.addItem(new GroceryItem("milk"));
+            list.addSharedUser(friend);
+
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(list)),
+                    objectMapper.readTree(out.toByteArray()));
+        }
+
+        @Test
+        void testWriteListClosesStreams() throws Exception {
+            AtomicBoolean itemsClosed = new AtomicBoolean();
+            AtomicBoolean usersClosed = new AtomicBoolean();
+
+            when(groceryListRepository.streamItemNames(3L)).thenReturn(
+                    IntStream.range(0, 2500).mapToObj(i -> "item " + i).onClose(() -> itemsClosed.set(true)));
+            when(groceryListRepository.streamSharedUsernames(3L)).thenReturn(
+                    Stream.<String>empty().onClose(() -> usersClosed.set(true)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            listExportService.writeList(header, out);
+
+            assertEquals(2500, objectMapper.readTree(out.toByteArray()).get("items").size());
+            assertTrue(itemsClosed.get());
+            assertTrue(usersClosed.get());
+        }
+    }
+}
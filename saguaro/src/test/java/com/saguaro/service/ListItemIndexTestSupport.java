@@ -0,0 +1,43 @@
+package com.saguaro.service;
+
+import com.saguaro.repository.GroceryListRepository;
+import com.saguaro.repository.ListItemEntry;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Mockito setup shared by the tests of the indexes built from the rows of the LIST_ITEMS join table.
+ */
+@ExtendWith(MockitoExtension.class)
+abstract class ListItemIndexTestSupport {
+
+    @Mock
+    GroceryListRepository groceryListRepository;
+
+    static ListItemEntry entry(long listId, String itemName) {
+        return new ListItemEntry() {
+            @Override
+            public long getListId() {
+                return listId;
+            }
+
+            @Override
+            public String getItemName() {
+                return itemName;
+            }
+        };
+    }
+
+    void givenEntries(List<ListItemEntry> entries) {
+        lenient().when(groceryListRepository.streamAllItemEntries()).thenAnswer(ans -> entries.stream());
+    }
+
+    void verifyLoaded(int times) {
+        verify(groceryListRepository, times(times)).streamAllItemEntries();
+    }
+}
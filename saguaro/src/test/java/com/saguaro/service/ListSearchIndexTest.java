@@ -0,0 +1,181 @@
+package com.saguaro.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ListSearchIndexTest extends ListItemIndexTestSupport {
+
+    private static final Set<Long> ALL = Set.of(1L, 2L, 3L, 4L);
+
+    private ListSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ListSearchIndex(groceryListRepository, TransactionOperations.withoutTransaction());
+
+        givenEntries(List.of(
+                entry(1, "Whole milk"),
+                entry(1, "Bread"),
+                entry(2, "Milk"),
+                entry(2, "Chocolate milk"),
+                entry(3, "Wholewheat bread"),
+                entry(3, "Peanut-butter")));
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("peanut", "butter"), List.copyOf(ListSearchIndex.tokenize(" Peanut-BUTTER, peanut ")));
+        assertTrue(ListSearchIndex.tokenize("--").isEmpty());
+    }
+
+    @Nested
+    class SearchTest {
+
+        @Test
+        void testWordMatch() {
+            assertEquals(Set.of(1L, 2L), index.search("milk", ALL));
+            assertEquals(Set.of(3L), index.search("BUTTER", ALL));
+        }
+
+        @Test
+        void testPrefixMatch() {
+            assertEquals(Set.of(1L, 3L), index.search("whole", ALL));
+            assertEquals(Set.of(1L, 3L), index.search("bre", ALL));
+        }
+
+        @Test
+        void testEveryWordMustMatch() {
+            assertEquals(Set.of(1L), index.search("whole mil", ALL));
+            assertEquals(Set.of(1L), index.search("milk bread", ALL));
+            assertEquals(Set.of(), index.search("milk peanut", ALL));
+        }
+
+        @Test
+        void testOnlyAccessibleLists() {
+            assertEquals(Set.of(2L), index.search("milk", Set.of(2L, 3L)));
+            assertEquals(Set.of(), index.search("milk", Set.of()));
+        }
+
+        @Test
+        void testNoWords() {
+            assertEquals(Set.of(), index.search(" - ", ALL));
+            verifyLoaded(0);
+        }
+
+        @Test
+        void testLoadedOnce() {
+            index.search("milk", ALL);
+            index.search("bread", ALL);
+
+            verifyLoaded(1);
+        }
+    }
+
+    @Nested
+    class UpdateTest {
+
+        @BeforeEach
+        void load() {
+            index.size();
+        }
+
+        @Test
+        void testItemsAdded() {
+            index.itemsAdded(4, List.of("Oat milk"));
+
+            assertEquals(Set.of(4L), index.search("oat", ALL));
+            assertEquals(Set.of(1L, 2L, 4L), index.search("milk", ALL));
+        }
+
+        @Test
+        void testItemsRemovedKeepsSharedWords() {
+            index.itemsRemoved(2, List.of("Milk"));
+
+            // "Chocolate milk" is still in list 2
+            assertEquals(Set.of(1L, 2L), index.search("milk", ALL));
+
+            index.itemsRemoved(2, List.of("Chocolate milk"));
+
+            assertEquals(Set.of(1L), index.search("milk", ALL));
+            assertEquals(Set.of(), index.search("chocolate", ALL));
+        }
+
+        @Test
+        void testListCopied() {
+            index.listCopied(3, 4);
+
+            assertEquals(Set.of(3L, 4L), index.search("peanut butter", ALL));
+        }
+
+        @Test
+        void testListRemoved() {
+            int words = index.size();
+
+            index.listRemoved(3);
+
+            assertEquals(Set.of(1L), index.search("bread", ALL));
+            assertEquals(Set.of(), index.search("peanut", ALL));
+            assertEquals(words - 3, index.size());
+        }
+
+        @Test
+        void testReloadReplacesIndex() {
+            index.itemsAdded(4, List.of("Oat milk"));
+
+            index.reload();
+
+            assertEquals(Set.of(), index.search("oat", ALL));
+            verifyLoaded(2);
+        }
+    }
+
+    @Test
+    void testWarm() {
+        index.warm();
+        index.warm();
+        index.search("milk", ALL);
+
+        verifyLoaded(1);
+    }
+
+    @Test
+    void testChangesNotBlockedByLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(groceryListRepository.streamAllItemEntries()).thenAnswer(ans -> {
+            loading.countDown();
+            release.await();
+            return List.of(entry(1, "Bread")).stream();
+        });
+
+        CompletableFuture<Set<Long>> search = CompletableFuture.supplyAsync(() -> index.search("bread", ALL));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // a change committed while the first search builds the index is not held up by it
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> index.itemsAdded(4, List.of("Bread")));
+
+        release.countDown();
+
+        assertEquals(Set.of(1L), search.get(5, TimeUnit.SECONDS));
+        verifyLoaded(1);
+    }
+
+    @Test
+    void testUpdatesBeforeLoadSkipped() {
+        index.itemsAdded(4, List.of("Oat milk"));
+
+        assertEquals(Set.of(), index.search("oat", ALL));
+    }
+}
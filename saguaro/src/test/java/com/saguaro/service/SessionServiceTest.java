@@ -0,0 +1,308 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.Role;
+import com.saguaro.entity.User;
+import com.saguaro.entity.UserSession;
+import com.saguaro.repository.UserSessionRepository;
+import com.saguaro.security.SaguaroPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionServiceTest {
+
+    @Mock
+    private UserSessionRepository sessionRepository;
+
+    private Instant now;
+    private SessionService sessionService;
+
+    @BeforeEach
+    void setUp() {
+        now = Instant.parse("2021-12-01T00:00:00Z");
+        sessionService = new SessionService(sessionRepository, Duration.ofDays(30), 2, 3, null,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Nested
+    class CreateSessionTest {
+
+        @Test
+        void testCreateSessionStoresHashedToken() {
+            User user = new User();
+
+            String token = sessionService.createSession(user);
+
+            ArgumentCaptor<UserSession> captor = ArgumentCaptor.forClass(UserSession.class);
+            verify(sessionRepository).save(captor.capture());
+
+            UserSession session = captor.getValue();
+            assertSame(user, session.getUser());
+            assertEquals(UserSession.hashToken(token), session.getTokenHash());
+            assertNotEquals(token, session.getTokenHash());
+            assertEquals(now.plus(Duration.ofDays(30)), session.getExpiresAt());
+            assertEquals(now, session.getLastSeenAt());
+        }
+
+        @Test
+        void testCreateSessionGeneratesNewTokens() {
+            User user = new User();
+
+            assertNotEquals(sessionService.createSession(user), sessionService.createSession(user));
+        }
+    }
+
+    @Nested
+    class FindSessionTest {
+
+        @Test
+        void testFindPrincipalByHash() {
+            User user = new User();
+            user.setUsername("username");
+            user.addRole(new Role("ROLE_USER"));
+            UserSession session = new UserSession(user, UserSession.hashToken("token"), now, now);
+            when(sessionRepository.findActiveByTokenHash(UserSession.hashToken("token"), now)).thenReturn(session);
+
+            SaguaroPrincipal actual = sessionService.findPrincipal("token");
+
+            assertEquals("username", actual.getUsername());
+            assertEquals("ROLE_USER", actual.getAuthorities().get(0).getAuthority());
+        }
+
+        @Test
+        void testFindPrincipalMissing() {
+            assertNull(sessionService.findPrincipal("token"));
+        }
+
+        @Test
+        void testRevokeSessionByHash() {
+            sessionService.revokeSession("token");
+
+            verify(sessionRepository).deleteByTokenHash(UserSession.hashToken("token"));
+        }
+    }
+
+    @Nested
+    class ActivityTest {
+
+        @Test
+        void testRepeatedActivityCoalesced() {
+            when(sessionRepository.updateLastSeen(anyCollection(), eq(now))).thenReturn(1);
+
+            for (int i = 0; i < 10; i++) {
+                sessionService.recordActivity("token");
+            }
+
+            assertEquals(1, sessionService.getPendingActivityCount());
+            assertEquals(1, sessionService.flushActivity());
+            verify(sessionRepository).updateLastSeen(List.of(UserSession.hashToken("token")), now);
+        }
+
+        @Test
+        void testFlushWritesInBatches() {
+            when(sessionRepository.updateLastSeen(anyCollection(), eq(now)))
+                    .thenAnswer(ans -> ((Collection<?>) ans.getArgument(0)).size());
+
+            sessionService.recordActivity("a");
+            sessionService.recordActivity("b");
+            sessionService.recordActivity("c");
+
+            assertEquals(3, sessionService.flushActivity());
+            verify(sessionRepository, times(2)).updateLastSeen(anyCollection(), eq(now));
+            assertEquals(0, sessionService.getPendingActivityCount());
+        }
+
+        @Test
+        void testFlushWithoutActivity() {
+            assertEquals(0, sessionService.flushActivity());
+            verifyNoInteractions(sessionRepository);
+        }
+
+        @Test
+        void testRevokedSessionNotFlushed() {
+            sessionService.recordActivity("token");
+            sessionService.revokeSession("token");
+
+            sessionService.flushActivity();
+
+            verify(sessionRepository, never()).updateLastSeen(anyCollection(), any(Instant.class));
+        }
+    }
+
+    @Nested
+    class WriteBehindTest {
+
+        @Mock
+        private ScheduledExecutorService flushExecutor;
+
+        @Captor
+        private ArgumentCaptor<List<UserSession>> sessions;
+
+        private User user;
+
+        @BeforeEach
+        void setUpWriteBehind() {
+            sessionService = new SessionService(sessionRepository, Duration.ofDays(30), 2, 3, flushExecutor,
+                    Clock.fixed(now, ZoneOffset.UTC));
+
+            user = new User();
+            user.setUsername("username");
+        }
+
+        @Test
+        void testCreatedSessionUsableBeforeFlush() {
+            String token = sessionService.createSession(user);
+
+            assertEquals("username", sessionService.findPrincipal(token).getUsername());
+            assertEquals(1, sessionService.getPendingWriteCount());
+            verifyNoInteractions(sessionRepository);
+        }
+
+        @Test
+        void testRevokedSessionUnusableBeforeFlush() {
+            String token = sessionService.createSession(user);
+            sessionService.flushWrites();
+
+            sessionService.revokeSession(token);
+
+            assertNull(sessionService.findPrincipal(token));
+            verify(sessionRepository, never()).findActiveByTokenHash(anyString(), any(Instant.class));
+            verify(sessionRepository, never()).deleteByTokenHash(anyString());
+        }
+
+        @Test
+        void testFlushWritesInBatches() {
+            String first = sessionService.createSession(user);
+            sessionService.createSession(user);
+            sessionService.revokeSession("old");
+
+            // the third write reached the threshold, and handed a flush to the flush thread
+            ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+            verify(flushExecutor).execute(flush.capture());
+            verifyNoInteractions(sessionRepository);
+
+            flush.getValue().run();
+
+            assertEquals(0, sessionService.getPendingWriteCount());
+            verify(sessionRepository).deleteByTokenHashes(List.of(UserSession.hashToken("old")));
+
+            verify(sessionRepository, atLeastOnce()).saveAll(sessions.capture());
+            assertEquals(2, sessions.getAllValues().stream().mapToInt(List::size).sum());
+
+            // flushed sessions are looked up in the database
+            assertNull(sessionService.findPrincipal(first));
+            verify(sessionRepository).findActiveByTokenHash(UserSession.hashToken(first), now);
+        }
+
+        @Test
+        void testSessionCreatedAndRevokedBeforeFlushNeverInserted() {
+            String token = sessionService.createSession(user);
+            sessionService.revokeSession(token);
+
+            assertEquals(1, sessionService.flushWrites());
+            verify(sessionRepository, never()).saveAll(anyList());
+            verify(sessionRepository).deleteByTokenHashes(List.of(UserSession.hashToken(token)));
+        }
+
+        @Test
+        void testFailedFlushRetried() {
+            when(sessionRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"))
+                    .thenAnswer(ans -> ans.getArgument(0));
+            String token = sessionService.createSession(user);
+
+            assertThrows(IllegalStateException.class, () -> sessionService.flushWrites());
+            assertEquals(1, sessionService.getPendingWriteCount());
+            assertNotNull(sessionService.findPrincipal(token));
+
+            assertEquals(1, sessionService.flushWrites());
+            assertEquals(0, sessionService.getPendingWriteCount());
+        }
+
+        @Test
+        void testFailedBackgroundFlushDoesNotFailLogin() {
+            when(sessionRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database down"));
+            sessionService.createSession(user);
+            sessionService.createSession(user);
+            String token = sessionService.createSession(user);
+
+            ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+            verify(flushExecutor).execute(flush.capture());
+            flush.getValue().run();
+
+            assertEquals(1, sessionService.getFlushFailureCount());
+            assertEquals(3, sessionService.getPendingWriteCount());
+            assertNotNull(sessionService.findPrincipal(token));
+
+            // the next write past the threshold hands over another flush
+            sessionService.createSession(user);
+            verify(flushExecutor, times(2)).execute(any(Runnable.class));
+        }
+
+        @Test
+        void testPendingWritesFlushedOnShutdown() {
+            sessionService.createSession(user);
+
+            sessionService.destroy();
+
+            verify(flushExecutor).shutdown();
+            verify(sessionRepository).saveAll(anyList());
+            assertEquals(0, sessionService.getPendingWriteCount());
+        }
+    }
+
+    @Nested
+    class PurgeTest {
+
+        @Test
+        void testPurgeDeletesInBatches() {
+            when(sessionRepository.findExpiredIds(eq(now), any(Pageable.class)))
+                    .thenReturn(List.of(1L, 2L))
+                    .thenReturn(List.of(3L));
+            when(sessionRepository.deleteByIds(anyCollection()))
+                    .thenAnswer(ans -> ((Collection<?>) ans.getArgument(0)).size());
+
+            assertEquals(3, sessionService.purgeExpiredSessions());
+            verify(sessionRepository).deleteByIds(List.of(1L, 2L));
+            verify(sessionRepository).deleteByIds(List.of(3L));
+            assertEquals(3, sessionService.getPurgedCount());
+        }
+
+        @Test
+        void testPurgeWithoutExpiredSessions() {
+            when(sessionRepository.findExpiredIds(eq(now), any(Pageable.class))).thenReturn(List.of());
+
+            assertEquals(0, sessionService.purgeExpiredSessions());
+            verify(sessionRepository, never()).deleteByIds(anyCollection());
+        }
+    }
+
+    @Test
+    void testHashTokenIsHexSha256() {
+        assertEquals("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08",
+                UserSession.hashToken("test"));
+        assertEquals(64, UserSession.hashToken("token").length());
+    }
+}
@@ -0,0 +1,164 @@
+package com.saguaro.service;
+
+import com.saguaro.entity.PublishedTemplate;
+import com.saguaro.repository.PublishedTemplateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TemplateCatalogTest {
+
+    @Mock
+    private PublishedTemplateRepository publishedTemplateRepository;
+
+    private Instant now;
+    private TemplateCatalog templateCatalog;
+
+    @BeforeEach
+    void setUp() {
+        now = Instant.parse("2021-12-01T00:00:00Z");
+        templateCatalog = new TemplateCatalog(publishedTemplateRepository);
+    }
+
+    private CatalogTemplate template(long id, String name, int revision) {
+        return new CatalogTemplate(id, name, "username", List.of("bread", "milk"), now, revision);
+    }
+
+    private List<Long> pageIds(int page, int size) {
+        return templateCatalog.getPage(page, size)
+                .stream()
+                .map(CatalogTemplate::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Nested
+    class LoadTest {
+
+        @Test
+        void testLoadedOnceOnFirstRead() {
+            when(publishedTemplateRepository.findAllWithItems()).thenReturn(List.of(
+                    new PublishedTemplate(1L, 1L, "username", "Weekly shop", List.of("bread"), now)));
+
+            assertEquals("Weekly shop", templateCatalog.get(1L).getName());
+            assertEquals(1, templateCatalog.size());
+            assertEquals(List.of(1L), pageIds(0, 10));
+
+            verify(publishedTemplateRepository, times(1)).findAllWithItems();
+        }
+
+        @Test
+        void testReloadKeepsUnchangedSnapshot() {
+            when(publishedTemplateRepository.findAllWithItems()).thenReturn(List.of(
+                    new PublishedTemplate(1L, 1L, "username", "Weekly shop", List.of("bread"), now)));
+
+            CatalogTemplate before = templateCatalog.get(1L);
+            templateCatalog.reload();
+
+            assertSame(before, templateCatalog.get(1L));
+        }
+
+        @Test
+        void testReloadPicksUpChanges() {
+            when(publishedTemplateRepository.findAllWithItems())
+                    .thenReturn(List.of())
+                    .thenReturn(List.of(new PublishedTemplate(1L, 1L, "username", "Weekly shop",
+                            List.of("bread"), now)));
+
+            assertEquals(0, templateCatalog.size());
+            long fingerprint = templateCatalog.getFingerprint();
+
+            templateCatalog.reload();
+
+            assertEquals(1, templateCatalog.size());
+            assertNotEquals(fingerprint, templateCatalog.getFingerprint());
+        }
+    }
+
+    @Nested
+    class PageTest {
+
+        @BeforeEach
+        void setUpPage() {
+            when(publishedTemplateRepository.findAllWithItems()).thenReturn(List.of());
+
+            templateCatalog.put(template(1L, "cake", 0));
+            templateCatalog.put(template(2L, "Apple pie", 0));
+            templateCatalog.put(template(3L, "bbq", 0));
+        }
+
+        @Test
+        void testPagesOrderedByName() {
+            assertEquals(List.of(2L, 3L), pageIds(0, 2));
+            assertEquals(List.of(1L), pageIds(1, 2));
+        }
+
+        @Test
+        void testPagePastEndEmpty() {
+            assertEquals(List.of(), pageIds(5, 2));
+            assertEquals(List.of(), pageIds(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        }
+    }
+
+    @Nested
+    class WriteTest {
+
+        @BeforeEach
+        void setUpWrite() {
+            when(publishedTemplateRepository.findAllWithItems()).thenReturn(List.of());
+        }
+
+        @Test
+        void testRepublishReplacesAndReorders() {
+            templateCatalog.put(template(1L, "a", 0));
+            templateCatalog.put(template(2L, "b", 0));
+
+            templateCatalog.put(template(1L, "c", 1));
+
+            assertEquals("c", templateCatalog.get(1L).getName());
+            assertEquals(List.of(2L, 1L), pageIds(0, 10));
+        }
+
+        @Test
+        void testOlderRevisionIgnored() {
+            templateCatalog.put(template(1L, "new", 2));
+            templateCatalog.put(template(1L, "old", 1));
+
+            assertEquals("new", templateCatalog.get(1L).getName());
+            assertEquals(1, templateCatalog.size());
+        }
+
+        @Test
+        void testRemove() {
+            templateCatalog.put(template(1L, "a", 0));
+            templateCatalog.put(template(2L, "b", 0));
+
+            templateCatalog.remove(1L);
+            templateCatalog.remove(3L);
+
+            assertNull(templateCatalog.get(1L));
+            assertEquals(List.of(2L), pageIds(0, 10));
+        }
+
+        @Test
+        void testWriteLeavesPreviousPageUnchanged() {
+            templateCatalog.put(template(1L, "a", 0));
+            List<CatalogTemplate> page = templateCatalog.getPage(0, 10);
+
+            templateCatalog.put(template(2L, "b", 0));
+
+            assertEquals(1, page.size());
+            assertEquals(2, templateCatalog.size());
+        }
+    }
+}
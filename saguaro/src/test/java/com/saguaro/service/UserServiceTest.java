@@ -7,6 +7,10 @@ import com.saguaro.exception.InvalidParamException;
 import com.saguaro.exception.ResourceNotFoundException;
 import com.saguaro.repository.RoleRepository;
 import com.saguaro.repository.UserRepository;
+import com.saguaro.security.PasswordHasher;
+import com.saguaro.security.SaguaroPrincipal;
+import com.saguaro.security.SignedTokenService;
+import com.saguaro.security.TokenCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -16,14 +20,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.UUID;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,7 +45,16 @@ class UserServiceTest {
     private RoleRepository roleRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private SignedTokenService signedTokenService;
+
+    @Mock
+    private TokenCache tokenCache;
 
     private AutoCloseable closeable;
 
@@ -48,6 +63,7 @@ class UserServiceTest {
     private String name;
     private Role role;
     private User user;
+    private SaguaroPrincipal principal;
 
     @BeforeEach
     void setUp() {
@@ -63,6 +79,8 @@ class UserServiceTest {
         user.setPassword(password);
         user.setName(name);
         user.addRole(role);
+
+        principal = new SaguaroPrincipal(user.getId(), username, user.getAuthorities());
     }
 
     @AfterEach
@@ -79,20 +97,40 @@ class UserServiceTest {
         }
 
         @Test
-        void testValidLoginCreatesValidToken() throws Exception {
+        void testValidLoginCreatesSession() throws Exception {
             // mock responses
-            when(passwordEncoder.matches(password, user.getPassword())).thenReturn(true);
+            when(passwordHasher.matches(password, user.getPassword())).thenReturn(true);
+            when(sessionService.createSession(user)).thenReturn("token");
 
             User actual = userService.login(username, password);
 
-            // check for non-null valid UUID token
-            assertNotNull(actual.getToken());
+            // the new session's token is attached to the user
+            assertEquals("token", actual.getToken());
+        }
+
+        @Test
+        void testValidLoginKeepsOtherSessions() throws Exception {
+            user.setToken("old");
+            when(passwordHasher.matches(password, user.getPassword())).thenReturn(true);
+            when(sessionService.createSession(user)).thenReturn("token");
+
+            userService.login(username, password);
+
+            verify(tokenCache, never()).invalidate(anyString());
+            verify(sessionService, never()).revokeSession(anyString());
+            verify(userRepository, never()).save(any(User.class));
+        }
+
+        @Test
+        void testValidLoginIssuesSignedToken() throws Exception {
+            when(passwordHasher.matches(password, user.getPassword())).thenReturn(true);
+            when(signedTokenService.isEnabled()).thenReturn(true);
+            when(signedTokenService.issue(principal)).thenReturn("signed");
+
+            User actual = userService.login(username, password);
 
-            try {
-                UUID.fromString(actual.getToken());
-            } catch (Exception e) {
-                fail("Token is not valid UUID");
-            }
+            assertEquals("signed", actual.getToken());
+            verify(sessionService, never()).createSession(any(User.class));
         }
 
         @Test
@@ -106,9 +144,9 @@ class UserServiceTest {
         }
 
         @Test
-        void testInvalidPasswordLogin() {
+        void testInvalidPasswordLogin() throws Exception {
             // mock responses
-            when(passwordEncoder.matches(password, user.getPassword())).thenReturn(false);
+            when(passwordHasher.matches(password, user.getPassword())).thenReturn(false);
 
             assertThrows(InvalidLoginException.class, () -> userService.login(username, password));
         }
@@ -117,22 +155,33 @@ class UserServiceTest {
     @Nested
     class LogoutTest {
 
-        @BeforeEach()
-        void setUpLogout() {
-            when(userRepository.findUserByUsername(username)).thenReturn(user);
-        }
-
         /*
-        We assume that the username passed to logout is valid, since one must
+        We assume that the token passed to logout is valid, since one must
         be authenticated to logout.
          */
 
         @Test
         void testLogout() {
-            userService.logout(username);
+            userService.logout("token");
+
+            // logout deletes only the session holding the token
+            verify(sessionService).revokeSession("token");
+        }
+
+        @Test
+        void testLogoutInvalidatesCachedToken() {
+            userService.logout("token");
+
+            verify(tokenCache).invalidate("token");
+        }
+
+        @Test
+        void testLogoutSignedToken() {
+            when(signedTokenService.revoke("signed")).thenReturn(true);
+
+            userService.logout("signed");
 
-            // logout invalidates token
-            assertNull(user.getToken());
+            verify(sessionService, never()).revokeSession(anyString());
         }
     }
 
@@ -143,7 +192,7 @@ class UserServiceTest {
         void testValidRegister() throws Exception {
             when(userRepository.existsByUsername(username)).thenReturn(false);
             when(roleRepository.findRoleByName("ROLE_USER")).thenReturn(role);
-            when(passwordEncoder.encode(anyString())).thenReturn(password);
+            when(passwordHasher.encode(anyString())).thenReturn(password);
             when(userRepository.save(any(User.class))).thenAnswer(ans -> ans.getArgument(0));
 
             User newUser = userService.registerNewUser(username, password, name);
@@ -167,25 +216,24 @@ class UserServiceTest {
         @BeforeEach
         void setUpFindByToken() {
             token = "token";
-
-            user.setToken(token);
         }
 
         @Test
         void testTokenExists() {
-            when(userRepository.findUserByToken(token)).thenReturn(user);
+            when(sessionService.findPrincipal(token)).thenReturn(principal);
 
-            UserDetails actual = userService.findByToken(token);
+            SaguaroPrincipal actual = userService.findByToken(token);
 
-            // token is stored into the password field of UserDetails
-            assertEquals(token, actual.getPassword());
+            assertEquals(user.getId(), actual.getId());
+            assertEquals(username, actual.getUsername());
+            assertEquals("ROLE_USER", actual.getAuthorities().get(0).getAuthority());
         }
 
         @Test
         void testTokenDoesNotExist() {
-            when(userRepository.findUserByToken(token)).thenReturn(null);
+            when(sessionService.findPrincipal(token)).thenReturn(null);
 
-            UserDetails actual = userService.findByToken(token);
+            SaguaroPrincipal actual = userService.findByToken(token);
 
             assertNull(actual);
         }
@@ -196,15 +244,15 @@ class UserServiceTest {
 
         @BeforeEach
         void setUpEdit() {
-            when(userRepository.findUserByUsername(username)).thenReturn(user);
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
             when(userRepository.save(any(User.class))).thenAnswer(ans -> ans.getArgument(0));
         }
 
         @Test
-        void testEditNameAndPassword() {
-            when(passwordEncoder.encode("NEW_PASS")).thenReturn("HASH");
+        void testEditNameAndPassword() throws Exception {
+            when(passwordHasher.encode("NEW_PASS")).thenReturn("HASH");
 
-            User actual = userService.edit("NEW_NAME", "NEW_PASS", username);
+            User actual = userService.edit("NEW_NAME", "NEW_PASS", principal);
 
             assertEquals("NEW_NAME", actual.getName());
             assertEquals("HASH", actual.getPassword());
@@ -212,8 +260,8 @@ class UserServiceTest {
         }
 
         @Test
-        void testEditNoChange() {
-            User actual = userService.edit(null, null, username);
+        void testEditNoChange() throws Exception {
+            User actual = userService.edit(null, null, principal);
 
             assertEquals(name, actual.getName());
             assertEquals(password, actual.getPassword());
@@ -233,25 +281,92 @@ class UserServiceTest {
 
             friend = new User();
             friend.setUsername(friendUsername);
+            ReflectionTestUtils.setField(friend, "id", 2L);
         }
 
         @Test
         void testAddFriendValid() throws Exception {
-            when(userRepository.findUserByUsername(username)).thenReturn(user);
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
             when(userRepository.findUserByUsername(friendUsername)).thenReturn(friend);
-            when(userRepository.save(any(User.class))).thenAnswer(ans -> ans.getArgument(0));
 
-            User savedUser = userService.addFriend(friendUsername, username);
+            User savedUser = userService.addFriend(friendUsername, principal);
 
-            assertTrue(savedUser.getFriends().contains(friend));
+            assertEquals(user, savedUser);
+            verify(userRepository).addFriendship(user.getId(), 2L);
         }
 
         @Test
-        void testAddFriendDoesNotExist() {
+        void testAddFriendExistingFriend() throws Exception {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(userRepository.findUserByUsername(friendUsername)).thenReturn(friend);
+            when(userRepository.existsFriendship(user.getId(), 2L)).thenReturn(true);
+
+            userService.addFriend(friendUsername, principal);
+
+            verify(userRepository, never()).addFriendship(anyLong(), anyLong());
+        }
+
+        @Test
+        void testAddFriendSelf() throws Exception {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
             when(userRepository.findUserByUsername(username)).thenReturn(user);
+
+            userService.addFriend(username, principal);
+
+            verify(userRepository, never()).existsFriendship(anyLong(), anyLong());
+            verify(userRepository, never()).addFriendship(anyLong(), anyLong());
+        }
+
+        @Test
+        void testAddFriendDoesNotExist() {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(userRepository.findUserByUsername(friendUsername)).thenReturn(null);
+
+            assertThrows(ResourceNotFoundException.class, () -> userService.addFriend(friendUsername, principal));
+        }
+    }
+
+    @Nested
+    class RemoveFriendTest {
+
+        String friendUsername;
+        User friend;
+
+        @BeforeEach
+        void setUpRemoveFriend() {
+            friendUsername = "friend";
+
+            friend = new User();
+            friend.setUsername(friendUsername);
+            ReflectionTestUtils.setField(friend, "id", 2L);
+        }
+
+        @Test
+        void testRemoveFriendValid() throws Exception {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(userRepository.findUserByUsername(friendUsername)).thenReturn(friend);
+            when(userRepository.removeFriendship(user.getId(), 2L)).thenReturn(true);
+
+            User savedUser = userService.removeFriend(friendUsername, principal);
+
+            assertEquals(user, savedUser);
+        }
+
+        @Test
+        void testRemoveFriendNotFriend() {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+            when(userRepository.findUserByUsername(friendUsername)).thenReturn(friend);
+            when(userRepository.removeFriendship(user.getId(), 2L)).thenReturn(false);
+
+            assertThrows(ResourceNotFoundException.class, () -> userService.removeFriend(friendUsername, principal));
+        }
+
+        @Test
+        void testRemoveFriendDoesNotExist() {
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
             when(userRepository.findUserByUsername(friendUsername)).thenReturn(null);
 
-            assertThrows(ResourceNotFoundException.class, () -> userService.addFriend(friendUsername, username));
+            assertThrows(ResourceNotFoundException.class, () -> userService.removeFriend(friendUsername, principal));
         }
     }
-}
\ No newline at end of file
+}